@@ -39,10 +39,13 @@ import org.apache.poi.hssf.usermodel.HSSFDataFormatter;
  */
 public class FormatTrackingHSSFListener implements HSSFListener {
 	private final HSSFListener _childListener;
+	private final Locale _locale;
 	private final HSSFDataFormatter _formatter;
 	private final NumberFormat _defaultFormat;
-	private final Map<Integer, FormatRecord> _customFormatRecords = new Hashtable<Integer, FormatRecord>();
-	private final List<ExtendedFormatRecord> _xfRecords = new ArrayList<ExtendedFormatRecord>();
+	private final Map<Integer, FormatRecord> _customFormatRecords;
+	private final List<ExtendedFormatRecord> _xfRecords;
+	/** <code>true</code> if the formats belong to another listener */
+	private final boolean _sharedFormats;
 
 	/**
 	 * Creates a format tracking wrapper around the given listener, using
@@ -59,8 +62,31 @@ public class FormatTrackingHSSFListener implements HSSFListener {
 	public FormatTrackingHSSFListener(
 			HSSFListener childListener, Locale locale) {
 		_childListener = childListener;
+		_locale = locale;
 		_formatter = new HSSFDataFormatter(locale);
 		_defaultFormat = NumberFormat.getInstance(locale);
+		_customFormatRecords = new Hashtable<Integer, FormatRecord>();
+		_xfRecords = new ArrayList<ExtendedFormatRecord>();
+		_sharedFormats = false;
+	}
+
+	/**
+	 * Creates a format tracking wrapper around the given listener, which uses
+	 * the formats already collected by another one, and the same locale.<p/>
+	 *
+	 * The formats are only read, and the formatters are not shared, so this can
+	 * be used to format the cells of the sheets processed on other threads by
+	 * {@link HSSFEventFactory#processSheetsInParallel(HSSFRequest, HSSFSheetListenerFactory, org.apache.poi.poifs.filesystem.DirectoryNode, java.util.concurrent.ExecutorService)},
+	 * once <tt>formats</tt> has seen all the workbook global records.
+	 */
+	public FormatTrackingHSSFListener(HSSFListener childListener, FormatTrackingHSSFListener formats) {
+		_childListener = childListener;
+		_locale = formats._locale;
+		_formatter = new HSSFDataFormatter(_locale);
+		_defaultFormat = NumberFormat.getInstance(_locale);
+		_customFormatRecords = formats._customFormatRecords;
+		_xfRecords = formats._xfRecords;
+		_sharedFormats = true;
 	}
 
 	protected int getNumberOfCustomFormats() {
@@ -89,6 +115,10 @@ public class FormatTrackingHSSFListener implements HSSFListener {
 	 * @param record
 	 */
 	public void processRecordInternally(Record record) {
+		if (_sharedFormats) {
+			// the formats are only defined in the workbook globals
+			return;
+		}
 		if (record instanceof FormatRecord) {
 			FormatRecord fr = (FormatRecord) record;
 			_customFormatRecords.put(Integer.valueOf(fr.getIndexCode()), fr);
@@ -17,13 +17,28 @@
 
 package org.apache.poi.hssf.eventusermodel;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import org.apache.poi.EncryptedDocumentException;
 import org.apache.poi.hssf.eventusermodel.HSSFUserException;
 import org.apache.poi.hssf.record.*;
 import org.apache.poi.poifs.filesystem.DirectoryNode;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.util.IntList;
+import org.apache.poi.util.LittleEndian;
 
 /**
  * Low level event based HSSF reader.  Pass either a DocumentInputStream to
@@ -153,4 +168,540 @@ public class HSSFEventFactory {
 		// All done, return our last code
 		return userCode;
 	}
+
+	/**
+	 * Processes the workbook globals, and then the sheets on several threads.<p/>
+	 *
+	 * The workbook global records (up to and including the first {@link EOFRecord})
+	 * are passed to <tt>globalsReq</tt> on the calling thread.  Then a listener is created
+	 * for each sheet by <tt>sheetListenerFactory</tt>, again on the calling thread, and
+	 * the sheet sub-streams are processed by the tasks submitted to <tt>executor</tt>,
+	 * starting at the {@link BoundSheetRecord} offsets.  Each sheet listener receives the
+	 * records of its sheet in order, from its {@link BOFRecord} to its {@link EOFRecord},
+	 * including any embedded chart sub-streams, on one thread.<p/>
+	 *
+	 * This returns when all sheets have been processed.  The first exception thrown
+	 * by a sheet listener is rethrown, and the sheets which have not started yet are
+	 * then skipped.  The workbook stream is read into memory once and shared by the tasks.
+	 * Encrypted workbooks are not supported.
+	 *
+	 * @param globalsReq the request with the listeners for the workbook global records
+	 * @param sheetListenerFactory creates the listener of each sheet
+	 * @param dir  a DirectoryNode containing your workbook
+	 * @param executor runs the processing of the sheets
+	 */
+	public void processSheetsInParallel(HSSFRequest globalsReq, HSSFSheetListenerFactory sheetListenerFactory,
+			DirectoryNode dir, ExecutorService executor) throws IOException {
+		if (isEncrypted(dir)) {
+			// each byte is encrypted with respect to its position, seeking would need the key stream
+			throw new EncryptedDocumentException("Processing sheets in parallel is not supported for encrypted workbooks");
+		}
+		InputStream is = dir.createDocumentInputStream("Workbook");
+		final byte[] data;
+		try {
+			data = IOUtils.toByteArray(is);
+		} finally {
+			is.close();
+		}
+
+		List<BoundSheetRecord> boundSheets = new ArrayList<BoundSheetRecord>();
+		RecordFactoryInputStream recordStream = new RecordFactoryInputStream(new ByteArrayInputStream(data), false);
+		while (true) {
+			Record r = recordStream.nextRecord();
+			if (r == null) {
+				break;
+			}
+			if (r instanceof BoundSheetRecord) {
+				boundSheets.add((BoundSheetRecord) r);
+			}
+			try {
+				globalsReq.processRecord(r);
+			} catch (HSSFUserException hue) {
+				/*If an HSSFUserException user exception is thrown, ignore it.*/
+			}
+			if (r instanceof EOFRecord) {
+				break;
+			}
+		}
+
+		List<Future<?>> results = new ArrayList<Future<?>>(boundSheets.size());
+		try {
+			for (int i = 0; i < boundSheets.size(); i++) {
+				final HSSFListener listener = sheetListenerFactory.createSheetListener(i, boundSheets.get(i));
+				if (listener == null) {
+					continue;
+				}
+				final int bofPos = boundSheets.get(i).getPositionOfBof();
+				results.add(executor.submit(new Runnable() {
+					public void run() {
+						processSubstream(listener, data, bofPos);
+					}
+				}));
+			}
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the sheets to be processed");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		} finally {
+			for (Future<?> result : results) {
+				result.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * Processes the workbook globals, and then the sheets on several threads.
+	 *
+	 * @see #processSheetsInParallel(HSSFRequest, HSSFSheetListenerFactory, DirectoryNode, ExecutorService)
+	 */
+	public void processSheetsInParallel(HSSFRequest globalsReq, HSSFSheetListenerFactory sheetListenerFactory,
+			POIFSFileSystem fs, ExecutorService executor) throws IOException {
+		processSheetsInParallel(globalsReq, sheetListenerFactory, fs.getRoot(), executor);
+	}
+
+	/**
+	 * Passes the records of the sub-stream starting at <tt>bofPos</tt> to the listener,
+	 * up to the {@link EOFRecord} matching its {@link BOFRecord}
+	 */
+	private static void processSubstream(HSSFListener listener, byte[] data, int bofPos) {
+		if (bofPos < 0 || bofPos >= data.length) {
+			throw new RecordFormatException("Sheet offset " + bofPos + " is beyond the end of the workbook stream");
+		}
+		RecordFactoryInputStream recordStream = new RecordFactoryInputStream(
+				new ByteArrayInputStream(data, bofPos, data.length - bofPos), false);
+		int bofDepth = 0;
+		while (true) {
+			Record r = recordStream.nextRecord();
+			if (r == null) {
+				break;
+			}
+			if (bofDepth == 0 && !(r instanceof BOFRecord)) {
+				throw new RecordFormatException("Expected BOF record at offset " + bofPos
+						+ " but found sid " + r.getSid());
+			}
+			listener.processRecord(r);
+			if (r instanceof BOFRecord) {
+				bofDepth++;
+			} else if (r instanceof EOFRecord) {
+				bofDepth--;
+				if (bofDepth == 0) {
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Processes the workbook globals and a range of rows of one sheet into record events.
+	 * The {@link BoundSheetRecord} offsets and the {@link IndexRecord} / {@link DBCellRecord}s
+	 * of the sheet are used to jump straight to the row blocks holding the requested rows, so
+	 * the records of other sheets and rows are not read.<p/>
+	 *
+	 * The listeners receive all workbook global records (up to and including the first
+	 * {@link EOFRecord}), then the {@link BOFRecord} of the sheet, the {@link RowRecord}s and
+	 * cell records of the requested rows (together with their {@link StringRecord}s and any
+	 * shared formula, array or table records covering them), and finally an {@link EOFRecord}.
+	 * A shared formula, array or table record follows the first cell of its range, so if that
+	 * cell is before the requested rows, the record is passed before the first formula using it.
+	 * Sheets without an {@link IndexRecord} are scanned from their {@link BOFRecord}.
+	 * Encrypted workbooks are not supported.
+	 *
+	 * @param req an Instance of HSSFRequest which has your registered listeners
+	 * @param dir  a DirectoryNode containing your workbook
+	 * @param sheetIndex 0-based index of the sheet
+	 * @param firstRow 0-based index of the first row to process
+	 * @param lastRow 0-based index of the last row to process (inclusive)
+	 */
+	public void processSheetRows(HSSFRequest req, DirectoryNode dir, int sheetIndex,
+			int firstRow, int lastRow) throws IOException {
+		try {
+			genericProcessSheetRows(req, dir, sheetIndex, firstRow, lastRow);
+		} catch (HSSFUserException hue) {
+			/*If an HSSFUserException user exception is thrown, ignore it.*/
+		}
+	}
+
+	/**
+	 * Processes the workbook globals and a range of rows of one sheet into record events.
+	 *
+	 * @see #processSheetRows(HSSFRequest, DirectoryNode, int, int, int)
+	 * @return    numeric user-specified result code.
+	 */
+	public short abortableProcessSheetRows(HSSFRequest req, DirectoryNode dir, int sheetIndex,
+			int firstRow, int lastRow) throws IOException, HSSFUserException {
+		return genericProcessSheetRows(req, dir, sheetIndex, firstRow, lastRow);
+	}
+
+	private short genericProcessSheetRows(HSSFRequest req, DirectoryNode dir, int sheetIndex,
+			int firstRow, int lastRow) throws IOException, HSSFUserException {
+		if (firstRow < 0 || lastRow < firstRow) {
+			throw new IllegalArgumentException("Invalid row range (" + firstRow + ".." + lastRow + ")");
+		}
+		if (isEncrypted(dir)) {
+			// each byte is encrypted with respect to its position, seeking would need the key stream
+			throw new EncryptedDocumentException("Row seeking is not supported for encrypted workbooks");
+		}
+		short userCode;
+
+		// The workbook globals, these hold the sheet offsets and the shared strings
+		List<BoundSheetRecord> boundSheets = new ArrayList<BoundSheetRecord>();
+		InputStream in = openWorkbookStream(dir, 0);
+		try {
+			RecordFactoryInputStream recordStream = new RecordFactoryInputStream(in, false);
+			while (true) {
+				Record r = recordStream.nextRecord();
+				if (r == null) {
+					break;
+				}
+				if (r instanceof BoundSheetRecord) {
+					boundSheets.add((BoundSheetRecord) r);
+				}
+				userCode = req.processRecord(r);
+				if (userCode != 0) {
+					return userCode;
+				}
+				if (r instanceof EOFRecord) {
+					break;
+				}
+			}
+		} finally {
+			in.close();
+		}
+		if (sheetIndex < 0 || sheetIndex >= boundSheets.size()) {
+			throw new IllegalArgumentException("Sheet index (" + sheetIndex
+					+ ") is out of range (0.." + (boundSheets.size() - 1) + ")");
+		}
+		int bofPos = boundSheets.get(sheetIndex).getPositionOfBof();
+
+		// The INDEX record, if present, directly follows the BOF record of the sheet
+		IndexRecord index = null;
+		in = openWorkbookStream(dir, bofPos);
+		try {
+			RecordInputStream rs = new RecordInputStream(in);
+			rs.nextRecord();
+			if (rs.getSid() != BOFRecord.sid) {
+				throw new RecordFormatException("Expected BOF record at offset " + bofPos
+						+ " but found sid " + rs.getSid());
+			}
+			userCode = req.processRecord(new BOFRecord(rs));
+			if (userCode != 0) {
+				return userCode;
+			}
+			rs.readRemainder();
+			if (rs.hasNextRecord()) {
+				rs.nextRecord();
+				if (rs.getSid() == IndexRecord.sid) {
+					index = new IndexRecord(rs);
+				}
+			}
+		} finally {
+			in.close();
+		}
+
+		RowRangeFilter filter = new RowRangeFilter(firstRow, lastRow);
+		int[] rowBlocks = index == null ? null : findRowBlocks(dir, index, filter);
+		if (rowBlocks == null) {
+			userCode = processSheetRowsSequentially(req, dir, bofPos, filter);
+		} else {
+			userCode = processRowBlocks(req, dir, index, rowBlocks, filter);
+		}
+		if (userCode != 0) {
+			return userCode;
+		}
+		return req.processRecord(EOFRecord.instance);
+	}
+
+	/**
+	 * Uses the DBCELL offsets of the {@link IndexRecord} to find the row blocks which may hold
+	 * rows of the filter range.  Only the record headers and the first {@link RowRecord} of the
+	 * visited blocks are read.
+	 *
+	 * @return the start offset, length and first row number of each row block, or
+	 * <code>null</code> if the {@link IndexRecord} does not match the row blocks of the sheet
+	 */
+	private static int[] findRowBlocks(DirectoryNode dir, IndexRecord index, RowRangeFilter filter)
+			throws IOException {
+		int startBlock = findRowBlock(dir, index, filter.getFirstRow());
+		if (startBlock < 0) {
+			return null;
+		}
+
+		IntList result = new IntList();
+		for (int i = startBlock; i < index.getNumDbcells(); i++) {
+			int[] block = readRowBlockInfo(dir, index.getDbcellAt(i));
+			if (block == null) {
+				return null;
+			}
+			if (block[2] > filter.getLastRow()) {
+				break;
+			}
+			result.add(block[0]);
+			result.add(block[1]);
+			result.add(block[2]);
+		}
+		return result.toArray();
+	}
+
+	/**
+	 * @return the index of the last row block starting at or before <tt>rowIndex</tt>, or
+	 * <code>-1</code> if the {@link IndexRecord} does not match the row blocks of the sheet
+	 */
+	private static int findRowBlock(DirectoryNode dir, IndexRecord index, int rowIndex)
+			throws IOException {
+		int result = 0;
+		int low = 0;
+		int high = index.getNumDbcells() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int[] block = readRowBlockInfo(dir, index.getDbcellAt(mid));
+			if (block == null) {
+				return -1;
+			}
+			if (block[2] <= rowIndex) {
+				result = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the start offset, length and first row number of the row block which ends with
+	 * the DBCELL record at <tt>dbCellPos</tt>, or <code>null</code> if there is no DBCELL record
+	 * or row block at that position
+	 */
+	private static int[] readRowBlockInfo(DirectoryNode dir, int dbCellPos) throws IOException {
+		// record header (sid and size) followed by the offset back to the first ROW record
+		byte[] buf = new byte[8];
+		if (!readFullyAt(dir, dbCellPos, buf)
+				|| LittleEndian.getShort(buf, 0) != DBCellRecord.sid) {
+			return null;
+		}
+		int rowOffset = LittleEndian.getInt(buf, 4);
+		int blockStart = dbCellPos - rowOffset;
+		if (rowOffset <= 0 || blockStart < 0) {
+			return null;
+		}
+		// record header followed by the row number
+		if (!readFullyAt(dir, blockStart, buf)
+				|| LittleEndian.getShort(buf, 0) != RowRecord.sid) {
+			return null;
+		}
+		return new int[] { blockStart, rowOffset, LittleEndian.getUShort(buf, 4), };
+	}
+
+	private static short processRowBlocks(HSSFRequest req, DirectoryNode dir, IndexRecord index,
+			int[] rowBlocks, RowRangeFilter filter) throws IOException, HSSFUserException {
+		// the shared formula, array and table records in the row blocks before these are not read
+		int firstReadRow = rowBlocks.length == 0 ? 0 : rowBlocks[2];
+		// the first cells of the ranges whose records have been looked for, as row << 16 | column
+		Set<Integer> earlierGroups = new HashSet<Integer>();
+		for (int i = 0; i < rowBlocks.length; i += 3) {
+			List<Record> records = readRowBlock(dir, rowBlocks[i], rowBlocks[i + 1]);
+			for (Record r : records) {
+				if (!(r instanceof FormulaRecord)) {
+					continue;
+				}
+				FormulaRecord fr = (FormulaRecord) r;
+				CellReference firstCell = fr.getFormula().getExpReference();
+				if (firstCell != null && firstCell.getRow() < firstReadRow
+						&& filter.isInRange(fr.getRow())
+						&& earlierGroups.add(Integer.valueOf(firstCell.getRow() << 16 | firstCell.getCol()))) {
+					short userCode = processEarlierGroup(req, dir, index, firstCell);
+					if (userCode != 0) {
+						return userCode;
+					}
+				}
+			}
+			for (Record r : records) {
+				if (filter.accept(r)) {
+					short userCode = req.processRecord(r);
+					if (userCode != 0) {
+						return userCode;
+					}
+				}
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Passes the shared formula, array or table record whose range starts at <tt>firstCell</tt>,
+	 * which is in the row block of that cell
+	 */
+	private static short processEarlierGroup(HSSFRequest req, DirectoryNode dir, IndexRecord index,
+			CellReference firstCell) throws IOException, HSSFUserException {
+		int blockIndex = findRowBlock(dir, index, firstCell.getRow());
+		int[] block = blockIndex < 0 ? null : readRowBlockInfo(dir, index.getDbcellAt(blockIndex));
+		if (block == null) {
+			return 0;
+		}
+		for (Record r : readRowBlock(dir, block[0], block[1])) {
+			if (r instanceof SharedValueRecordBase
+					&& ((SharedValueRecordBase) r).isFirstCell(firstCell.getRow(), firstCell.getCol())) {
+				return req.processRecord(r);
+			}
+		}
+		return 0;
+	}
+
+	private static List<Record> readRowBlock(DirectoryNode dir, int blockStart, int blockLength)
+			throws IOException {
+		byte[] block = new byte[blockLength];
+		if (!readFullyAt(dir, blockStart, block)) {
+			throw new EOFException("Unexpected end of workbook stream in row block");
+		}
+		RecordFactoryInputStream recordStream = new RecordFactoryInputStream(new ByteArrayInputStream(block), false);
+		List<Record> result = new ArrayList<Record>();
+		while (true) {
+			Record r = recordStream.nextRecord();
+			if (r == null) {
+				return result;
+			}
+			result.add(r);
+		}
+	}
+
+	/**
+	 * Fallback for sheets without {@link IndexRecord}: reads the whole sheet sub-stream
+	 */
+	private static short processSheetRowsSequentially(HSSFRequest req, DirectoryNode dir, int bofPos,
+			RowRangeFilter filter) throws IOException, HSSFUserException {
+		InputStream in = openWorkbookStream(dir, bofPos);
+		try {
+			RecordFactoryInputStream recordStream = new RecordFactoryInputStream(in, false);
+			int bofDepth = 0;
+			while (true) {
+				Record r = recordStream.nextRecord();
+				if (r == null) {
+					break;
+				}
+				if (r instanceof BOFRecord) {
+					bofDepth++;
+				} else if (r instanceof EOFRecord) {
+					bofDepth--;
+					if (bofDepth == 0) {
+						break;
+					}
+				} else if (bofDepth == 1 && filter.accept(r)) {
+					short userCode = req.processRecord(r);
+					if (userCode != 0) {
+						return userCode;
+					}
+				}
+			}
+			return 0;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static boolean readFullyAt(DirectoryNode dir, int offset, byte[] buf) throws IOException {
+		InputStream in;
+		try {
+			in = openWorkbookStream(dir, offset);
+		} catch (EOFException e) {
+			return false;
+		}
+		try {
+			return IOUtils.readFully(in, buf) == buf.length;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static InputStream openWorkbookStream(DirectoryNode dir, int offset) throws IOException {
+		InputStream in = dir.createDocumentInputStream("Workbook");
+		long toSkip = offset;
+		while (toSkip > 0) {
+			long n = in.skip(toSkip);
+			if (n <= 0) {
+				throw new EOFException("Offset " + offset + " is beyond the end of the workbook stream");
+			}
+			toSkip -= n;
+		}
+		return in;
+	}
+
+	private static boolean isEncrypted(DirectoryNode dir) throws IOException {
+		InputStream in = openWorkbookStream(dir, 0);
+		try {
+			RecordInputStream rs = new RecordInputStream(in);
+			// FILEPASS follows the BOF record, possibly after a WRITEPROTECT record
+			for (int i = 0; i < 3 && rs.hasNextRecord(); i++) {
+				rs.nextRecord();
+				if (rs.getSid() == FilePassRecord.sid) {
+					return true;
+				}
+				rs.readRemainder();
+			}
+			return false;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Selects the records belonging to a range of rows
+	 */
+	private static final class RowRangeFilter {
+		private final int _firstRow;
+		private final int _lastRow;
+		/** a {@link StringRecord} belongs to the immediately preceding formula */
+		private boolean _lastFormulaAccepted;
+
+		public RowRangeFilter(int firstRow, int lastRow) {
+			_firstRow = firstRow;
+			_lastRow = lastRow;
+		}
+
+		public int getFirstRow() {
+			return _firstRow;
+		}
+
+		public int getLastRow() {
+			return _lastRow;
+		}
+
+		public boolean accept(Record r) {
+			if (r instanceof StringRecord) {
+				return _lastFormulaAccepted;
+			}
+			if (r instanceof SharedValueRecordBase) {
+				// follows the first formula of the group
+				SharedValueRecordBase svr = (SharedValueRecordBase) r;
+				return svr.getFirstRow() <= _lastRow && svr.getLastRow() >= _firstRow;
+			}
+			_lastFormulaAccepted = false;
+			if (r instanceof RowRecord) {
+				return isInRange(((RowRecord) r).getRowNumber());
+			}
+			if (r instanceof CellValueRecordInterface) {
+				boolean result = isInRange(((CellValueRecordInterface) r).getRow());
+				_lastFormulaAccepted = result && r instanceof FormulaRecord;
+				return result;
+			}
+			if (r instanceof MulBlankRecord) {
+				return isInRange(((MulBlankRecord) r).getRow());
+			}
+			return false;
+		}
+
+		public boolean isInRange(int row) {
+			return row >= _firstRow && row <= _lastRow;
+		}
+	}
 }
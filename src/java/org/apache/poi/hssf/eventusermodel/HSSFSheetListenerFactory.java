@@ -0,0 +1,43 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hssf.eventusermodel;
+
+import org.apache.poi.hssf.record.BoundSheetRecord;
+
+/**
+ * Creates the listeners which receive the records of the individual sheets when
+ * a workbook is processed by
+ * {@link HSSFEventFactory#processSheetsInParallel(HSSFRequest, HSSFSheetListenerFactory, org.apache.poi.poifs.filesystem.DirectoryNode, java.util.concurrent.ExecutorService)}.
+ */
+public interface HSSFSheetListenerFactory {
+	/**
+	 * Called on the thread processing the workbook, once all the workbook global
+	 * records have been processed, so the state collected from them (for example
+	 * the {@link org.apache.poi.hssf.record.SSTRecord} or the formats of a
+	 * {@link FormatTrackingHSSFListener}) can be handed to the new listener.  That
+	 * state must only be read by the sheet listeners.  The strings of the SST can be
+	 * looked up with {@link org.apache.poi.hssf.record.SSTRecord#getString(int)}
+	 * from several sheet listeners at once.
+	 *
+	 * @param sheetIndex the 0-based index of the sheet
+	 * @param boundSheet the record with the name and the position of the sheet
+	 * @return the listener for all records of the sheet, from its {@link org.apache.poi.hssf.record.BOFRecord}
+	 *  to its {@link org.apache.poi.hssf.record.EOFRecord}, or <code>null</code> to skip the sheet
+	 */
+	HSSFListener createSheetListener(int sheetIndex, BoundSheetRecord boundSheet);
+}
@@ -18,6 +18,7 @@
 package org.apache.poi.hssf.model;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
@@ -163,6 +164,13 @@ public final class InternalSheet {
         return new InternalSheet(rs);
     }
     private InternalSheet(RecordStream rs) {
+        this(rs, null);
+    }
+    /**
+     * @param rowsAggregate the rows and cells of the sheet if they are not in the record stream,
+     * may be <code>null</code>
+     */
+    private InternalSheet(RecordStream rs, RowRecordsAggregate rowsAggregate) {
         _mergedCellsTable = new MergedCellsTable();
         RowRecordsAggregate rra = null;
 
@@ -332,7 +340,7 @@ public final class InternalSheet {
                 // bug 46206 alludes to files which skip the DIMENSION record
                 // when there are no row/cell records.
                 // Not clear which application wrote these files.
-                rra = new RowRecordsAggregate();
+                rra = rowsAggregate == null ? new RowRecordsAggregate() : rowsAggregate;
             } else {
                 log.log(POILogger.WARN, "DIMENSION record not found even though row/cells present");
                 // Not sure if any tools write files like this, but Excel reads them OK
@@ -342,7 +350,7 @@ public final class InternalSheet {
             records.add(dimsloc, _dimensions);
         }
         if (rra == null) {
-            rra = new RowRecordsAggregate();
+            rra = rowsAggregate == null ? new RowRecordsAggregate() : rowsAggregate;
             records.add(dimsloc + 1, rra);
         }
         _rowsAggregate = rra;
@@ -382,6 +390,10 @@ public final class InternalSheet {
         List<Record> clonedRecords = new ArrayList<Record>(_records.size());
         for (int i = 0; i < _records.size(); i++) {
             RecordBase rb = _records.get(i);
+            if (rb == _rowsAggregate) {
+                // copied directly, see below
+                continue;
+            }
             if (rb instanceof RecordAggregate) {
                 ((RecordAggregate) rb).visitContainedRecords(new RecordCloner(clonedRecords));
                 continue;
@@ -397,7 +409,7 @@ public final class InternalSheet {
             Record rec = (Record) ((Record) rb).clone();
             clonedRecords.add(rec);
         }
-        return createSheet(new RecordStream(clonedRecords, 0));
+        return new InternalSheet(new RecordStream(clonedRecords, 0), _rowsAggregate.cloneRowsAggregate());
     }
 
     /**
@@ -483,7 +495,9 @@ public final class InternalSheet {
         if (condFormatting != null) {
             getConditionalFormattingTable().updateFormulasAfterCellShift(shifter, externSheetIndex);
         }
-        // TODO - adjust data validations
+        if (_dataValidityTable != null) {
+            _dataValidityTable.updateFormulasAfterCellShift(shifter, externSheetIndex);
+        }
     }
 
     public int addMergedRegion(int rowFrom, int colFrom, int rowTo, int colTo) {
@@ -511,6 +525,10 @@ public final class InternalSheet {
         mrt.remove(index);
     }
 
+    public void removeMergedRegions(Collection<Integer> indices) {
+        getMergedRecords().removeAll(indices);
+    }
+
     public CellRangeAddress getMergedRegionAt(int index) {
         //safety checks
         MergedCellsTable mrt = getMergedRecords();
@@ -636,15 +654,39 @@ public final class InternalSheet {
         if(log.check(POILogger.DEBUG)) {
           log.log(POILogger.DEBUG, "add value record  row" + row);
         }
+        updateDimensions(col.getColumn());
+        _rowsAggregate.insertCell(col);
+    }
+
+    /**
+     * Adds a numeric cell to the sheet, replacing any cell at the same position.  Unlike
+     * {@link #addValueRecord(int, CellValueRecordInterface)} no record object is created.
+     */
+    public void addNumberValue(int row, int column, short xfIndex, double value) {
+        updateDimensions(column);
+        _rowsAggregate.insertNumberCell(row, column, xfIndex, value);
+    }
+
+    /**
+     * Adds a string cell to the sheet, replacing any cell at the same position.  Unlike
+     * {@link #addValueRecord(int, CellValueRecordInterface)} no record object is created.
+     *
+     * @param sstIndex the index of the string in the workbook's SST
+     */
+    public void addLabelSSTValue(int row, int column, short xfIndex, int sstIndex) {
+        updateDimensions(column);
+        _rowsAggregate.insertLabelSSTCell(row, column, xfIndex, sstIndex);
+    }
+
+    private void updateDimensions(int column) {
         DimensionsRecord d = _dimensions;
 
-        if (col.getColumn() > d.getLastCol()) {
-            d.setLastCol(( short ) (col.getColumn() + 1));
+        if (column > d.getLastCol()) {
+            d.setLastCol(( short ) (column + 1));
         }
-        if (col.getColumn() < d.getFirstCol()) {
-            d.setFirstCol(col.getColumn());
+        if (column < d.getFirstCol()) {
+            d.setFirstCol(( short ) column);
         }
-        _rowsAggregate.insertCell(col);
     }
 
     /**
@@ -733,6 +775,18 @@ public final class InternalSheet {
         _rowsAggregate.removeRow(row);
     }
 
+    /**
+     * Gets the value record of a single cell for reading, without creating the record object
+     * of a packed cell.
+     *
+     * @return the value record at the specified position or <code>null</code> if there is none.
+     * The record of a packed cell is only valid until the next call and must not be modified,
+     * see {@link org.apache.poi.hssf.record.aggregates.ValueRecordsAggregate#peekCell(int, int)}
+     */
+    public CellValueRecordInterface peekCellValueRecord(int rowIndex, int columnIndex) {
+        return _rowsAggregate.peekCellValueRecord(rowIndex, columnIndex);
+    }
+
     /**
      * Get all the value records (from LOC). Records will be returned from the first
      *  record (starting at LOC) which is a value record.
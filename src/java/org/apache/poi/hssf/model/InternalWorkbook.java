@@ -19,6 +19,7 @@ package org.apache.poi.hssf.model;
 
 import java.security.AccessControlException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -47,6 +48,7 @@ import org.apache.poi.hssf.record.CountryRecord;
 import org.apache.poi.hssf.record.DSFRecord;
 import org.apache.poi.hssf.record.DateWindow1904Record;
 import org.apache.poi.hssf.record.DrawingGroupRecord;
+import org.apache.poi.hssf.record.DrawingRecord;
 import org.apache.poi.hssf.record.EOFRecord;
 import org.apache.poi.hssf.record.EscherAggregate;
 import org.apache.poi.hssf.record.ExtSSTRecord;
@@ -158,8 +160,20 @@ public final class InternalWorkbook {
 
     /** the number of extended format records */
 	private int numxfs;
+    /**
+     * hashed index of the extended format records, keyed by copies of their contents.
+     * Built on demand, see {@link #internExFormat(int)}
+     */
+    private Map<ExtendedFormatRecord, Integer> _exFormatIndexes;
     /** the number of font records */
 	private int numfonts;
+    /**
+     * hashed index of the font records, keyed by copies of their properties.
+     * Built on demand, see {@link #internFont(int)}
+     */
+    private Map<FontKey, Integer> _fontIndexes;
+    /** the key of each font record when it was indexed, by position in the font table */
+    private List<FontKey> _fontKeys;
     /** holds the max format id */
 	private int maxformatid;
     /** whether 1904 date windowing is being used */
@@ -526,8 +540,110 @@ public final class InternalWorkbook {
      *  so you'll need to update those yourself!
      */
     public void removeFontRecord(FontRecord rec) {
+        boolean last = records.get(records.getFontpos()) == rec;
         records.remove(rec); // this updates FontPos for us
         numfonts--;
+        if (_fontIndexes != null) {
+            if (last && _fontKeys.size() == numfonts + 1) {
+                // no other indexes change
+                FontKey key = _fontKeys.remove(numfonts);
+                if (Integer.valueOf(getFontIndexAt(numfonts)).equals(_fontIndexes.get(key))) {
+                    _fontIndexes.remove(key);
+                }
+            } else {
+                _fontIndexes = null;
+            }
+        }
+    }
+
+    /**
+     * Finds the first font record with the same properties (see
+     *  {@link FontRecord#sameProperties(FontRecord)}) as the one at the given index.
+     *  The lookup is hashed, so this stays cheap for workbooks with many fonts.<p/>
+     *
+     * Font records are changed in place, so before a font is taken as having no
+     *  earlier duplicate, the index is checked against the current properties of
+     *  all the font records.
+     *
+     * @param idx the index of the font (0 or greater but NOT 4)
+     * @return the index of the first font record with the same properties, which
+     *  is <code>idx</code> if there is no earlier one
+     */
+    public int internFont(int idx) {
+        if (_fontIndexes == null || _fontKeys.size() > numfonts) {
+            _fontIndexes = new HashMap<FontKey, Integer>(numfonts * 2);
+            _fontKeys = new ArrayList<FontKey>(numfonts);
+        }
+        // index the fonts created since
+        while (_fontKeys.size() < numfonts) {
+            int pos = _fontKeys.size();
+            FontKey key = new FontKey(getFontRecordAt(getFontIndexAt(pos)));
+            _fontKeys.add(key);
+            if (!_fontIndexes.containsKey(key)) {
+                _fontIndexes.put(key, Integer.valueOf(getFontIndexAt(pos)));
+            }
+        }
+        FontRecord font = getFontRecordAt(idx);
+        FontKey key = new FontKey(font);
+        Integer existing = _fontIndexes.get(key);
+        if (existing == null || existing.intValue() == idx
+                || !getFontRecordAt(existing.intValue()).sameProperties(font)) {
+            refreshFontIndexes();
+            existing = _fontIndexes.get(key);
+        }
+        return existing.intValue();
+    }
+
+    /**
+     * Re-indexes the font records changed since they were indexed
+     */
+    private void refreshFontIndexes() {
+        boolean changed = false;
+        for (int pos = 0; pos < _fontKeys.size(); pos++) {
+            FontRecord font = getFontRecordAt(getFontIndexAt(pos));
+            if (!_fontKeys.get(pos).matches(font)) {
+                _fontKeys.set(pos, new FontKey(font));
+                changed = true;
+            }
+        }
+        if (changed) {
+            _fontIndexes.clear();
+            for (int pos = 0; pos < _fontKeys.size(); pos++) {
+                if (!_fontIndexes.containsKey(_fontKeys.get(pos))) {
+                    _fontIndexes.put(_fontKeys.get(pos), Integer.valueOf(getFontIndexAt(pos)));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the font index of the font record at the given position of the font table
+     */
+    private static int getFontIndexAt(int pos) {
+        return pos > 3 ? pos + 1 : pos; // there is no 4
+    }
+
+    /**
+     * Copy of the properties of a font record, as key of {@link #_fontIndexes}
+     */
+    private static final class FontKey {
+        private final FontRecord _font = new FontRecord();
+
+        FontKey(FontRecord font) {
+            _font.cloneStyleFrom(font);
+        }
+
+        boolean matches(FontRecord font) {
+            return _font.sameProperties(font);
+        }
+
+        public int hashCode() {
+            return _font.hashCode();
+        }
+
+        public boolean equals(Object obj) {
+            return obj instanceof FontKey && matches(((FontKey) obj)._font);
+        }
     }
 
     /**
@@ -844,6 +960,73 @@ public final class InternalWorkbook {
     public void removeExFormatRecord(ExtendedFormatRecord rec) {
         records.remove(rec); // this updates XfPos for us
         numxfs--;
+        _exFormatIndexes = null;
+    }
+
+    /**
+     * Removes the ExtendedFormatRecord record at the given index from the
+     *  file's list. This will make all subsequent ExtendedFormat indicies
+     *  drop by one, so you'll need to update those yourself!
+     *
+     * @param index of the Extended format record (0-based)
+     */
+    public void removeExFormatRecord(int index) {
+        int xfptr = records.getXfpos() - (numxfs - 1) + index;
+        ExtendedFormatRecord rec = (ExtendedFormatRecord) records.get(xfptr);
+        records.remove(xfptr); // this updates XfPos for us
+        numxfs--;
+        if (_exFormatIndexes != null) {
+            if (index == numxfs) {
+                // no other indexes change
+                if (Integer.valueOf(index).equals(_exFormatIndexes.get(rec))) {
+                    _exFormatIndexes.remove(rec);
+                }
+            } else {
+                _exFormatIndexes = null;
+            }
+        }
+    }
+
+    /**
+     * Finds the first ExtendedFormatRecord with the same contents as the one at the
+     *  given index.  The lookup is hashed, so this stays cheap for workbooks with
+     *  thousands of styles.<p/>
+     *
+     * Only records that were present when the index was built, or that were passed
+     *  to this method before, are found.  As records can be changed in place, each
+     *  hit is checked against the current contents of the record.
+     *
+     * @param index of the Extended format record (0-based)
+     * @return the index of an earlier record with the same contents, or <code>index</code>
+     *  if there is none (in which case the record gets added to the hashed index)
+     */
+    public int internExFormat(int index) {
+        if (_exFormatIndexes == null) {
+            _exFormatIndexes = new HashMap<ExtendedFormatRecord, Integer>(numxfs * 2);
+            for (int i = 0; i < numxfs; i++) {
+                addExFormatIndex(i);
+            }
+        }
+        ExtendedFormatRecord xf = getExFormatAt(index);
+        Integer existing = _exFormatIndexes.get(xf);
+        if (existing != null) {
+            int existingIndex = existing.intValue();
+            if (existingIndex < numxfs && getExFormatAt(existingIndex).equals(xf)) {
+                return existingIndex;
+            }
+            // the record has been changed since it was indexed
+            _exFormatIndexes.remove(xf);
+        }
+        addExFormatIndex(index);
+        return index;
+    }
+
+    private void addExFormatIndex(int index) {
+        ExtendedFormatRecord key = new ExtendedFormatRecord();
+        key.cloneStyleFrom(getExFormatAt(index));
+        if (!_exFormatIndexes.containsKey(key)) {
+            _exFormatIndexes.put(key, Integer.valueOf(index));
+        }
     }
 
 
@@ -2342,6 +2525,11 @@ public final class InternalWorkbook {
      */
     public void cloneDrawings(InternalSheet sheet){
 
+        if(sheet.findFirstRecordLocBySid(DrawingRecord.sid) == -1) {
+            // the cloned sheet has no drawings, no need to decode the drawing group
+            return;
+        }
+
         findDrawingGroup();
 
         if(drawingManager == null) {
@@ -0,0 +1,420 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hssf.record;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.poi.hssf.record.common.UnicodeString;
+import org.apache.poi.util.IntMapper;
+import org.apache.poi.util.LittleEndian;
+import org.apache.poi.util.POILogFactory;
+import org.apache.poi.util.POILogger;
+
+/**
+ * Holds the strings of an {@link SSTRecord} in their encoded form and decodes
+ * them on demand.<p/>
+ *
+ * The raw data of the SST record and all of its CONTINUE records is kept as a
+ * single byte array (record headers included, so that a {@link RecordInputStream}
+ * can be run over any part of it). While reading, the strings are only skipped
+ * over, and the position of every {@link #STRINGS_PER_OFFSET}th string is
+ * recorded. A string is then decoded by seeking to the nearest recorded
+ * position and skipping the few strings in between.<p/>
+ *
+ * Decoded strings are kept in a small LRU cache. No reverse (string to index)
+ * map is built; {@link #toIntMapper()} decodes everything when the table
+ * needs to be modified.<p/>
+ *
+ * {@link #get(int)} may be called by several threads, for example by the sheet
+ * listeners of {@link org.apache.poi.hssf.eventusermodel.HSSFEventFactory#processSheetsInParallel(
+ * org.apache.poi.hssf.eventusermodel.HSSFRequest, org.apache.poi.hssf.eventusermodel.HSSFSheetListenerFactory,
+ * org.apache.poi.poifs.filesystem.DirectoryNode, java.util.concurrent.ExecutorService)}.
+ */
+final class LazySSTStrings {
+    private static final POILogger _logger = POILogFactory.getLogger(LazySSTStrings.class);
+
+    /** same granularity as the buckets of the EXTSST record */
+    static final int STRINGS_PER_OFFSET = ExtSSTRecord.DEFAULT_BUCKET_SIZE;
+
+    static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private static final UnicodeString EMPTY_STRING = new UnicodeString("");
+
+    /** SST and CONTINUE records including the 4 byte BIFF headers */
+    private final byte[] _data;
+    /** offset of each record header within {@link #_data} */
+    private final int[] _recordOffsets;
+    /** offset of every {@link #STRINGS_PER_OFFSET}th string within {@link #_data} */
+    private final int[] _stringOffsets;
+    /** total number of strings */
+    private final int _numStrings;
+    /** number of strings actually present in the data (may be less than {@link #_numStrings}) */
+    private final int _numEncodedStrings;
+
+    /** access ordered, so even a lookup changes it, guarded by its own lock */
+    private final Map<Integer, UnicodeString> _cache;
+
+    /**
+     * Reads the remainder of the current SST record and all of the following
+     * CONTINUE records, and indexes the <tt>stringCount</tt> strings within.
+     */
+    public LazySSTStrings(int stringCount, RecordInputStream in) {
+        this(stringCount, in, DEFAULT_CACHE_SIZE);
+    }
+
+    public LazySSTStrings(int stringCount, RecordInputStream in, final int cacheSize) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(in.remaining() + 4);
+        int nRecords = 0;
+        byte[] header = new byte[4];
+        short sid = SSTRecord.sid;
+        while (true) {
+            byte[] body = in.readRemainder();
+            LittleEndian.putShort(header, 0, sid);
+            LittleEndian.putUShort(header, 2, body.length);
+            baos.write(header, 0, header.length);
+            baos.write(body, 0, body.length);
+            nRecords++;
+            if (!in.hasNextRecord() || in.getNextSid() != ContinueRecord.sid) {
+                break;
+            }
+            in.nextRecord();
+            sid = ContinueRecord.sid;
+        }
+        _data = baos.toByteArray();
+        _recordOffsets = new int[nRecords];
+        for (int i = 0, pos = 0; i < nRecords; i++) {
+            _recordOffsets[i] = pos;
+            pos += 4 + LittleEndian.getUShort(_data, pos + 2);
+        }
+
+        _numStrings = stringCount;
+        _stringOffsets = new int[(stringCount + STRINGS_PER_OFFSET - 1) / STRINGS_PER_OFFSET];
+        Scanner scanner = new Scanner(0);
+        int i = 0;
+        for (; i < stringCount; i++) {
+            if (scanner.isAtEnd()) {
+                _logger.log(POILogger.WARN, "Ran out of data before creating all the strings! String at index " + i);
+                break;
+            }
+            if (i % STRINGS_PER_OFFSET == 0) {
+                _stringOffsets[i / STRINGS_PER_OFFSET] = scanner.getPosition();
+            }
+            scanner.skipString();
+        }
+        _numEncodedStrings = i;
+
+        _cache = new LinkedHashMap<Integer, UnicodeString>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Integer, UnicodeString> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public int size() {
+        return _numStrings;
+    }
+
+    public UnicodeString get(int index) {
+        if (index < 0 || index >= _numStrings) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _numStrings);
+        }
+        if (index >= _numEncodedStrings) {
+            return EMPTY_STRING;
+        }
+        Integer key = Integer.valueOf(index);
+        UnicodeString result;
+        synchronized (_cache) {
+            result = _cache.get(key);
+        }
+        if (result == null) {
+            // the encoded data is never modified, so it is decoded outside of the lock
+            result = decode(index);
+            synchronized (_cache) {
+                _cache.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    private UnicodeString decode(int index) {
+        Scanner scanner = new Scanner(_stringOffsets[index / STRINGS_PER_OFFSET]);
+        for (int i = index % STRINGS_PER_OFFSET; i > 0; i--) {
+            scanner.skipString();
+        }
+        return new UnicodeString(scanner.createRecordInputStream());
+    }
+
+    /**
+     * @return an iterator decoding all strings in sequence, bypassing the cache
+     */
+    public Iterator<UnicodeString> iterator() {
+        return new Iterator<UnicodeString>() {
+            private RecordInputStream _in;
+            private int _index;
+
+            public boolean hasNext() {
+                return _index < _numStrings;
+            }
+
+            public UnicodeString next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (_index >= _numEncodedStrings) {
+                    _index++;
+                    return EMPTY_STRING;
+                }
+                if (_in == null) {
+                    _in = new Scanner(_stringOffsets[0]).createRecordInputStream();
+                }
+                _index++;
+                return new UnicodeString(_in);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Decodes all strings into an {@link IntMapper} so that the table can be modified.
+     */
+    public IntMapper<UnicodeString> toIntMapper() {
+        IntMapper<UnicodeString> result = new IntMapper<UnicodeString>(_numStrings);
+        Iterator<UnicodeString> it = iterator();
+        while (it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Walks over the encoded strings following the same CONTINUE rules as
+     * {@link UnicodeString#UnicodeString(RecordInputStream)}, without decoding anything.
+     */
+    private final class Scanner {
+        private int _pos;
+        private int _recordEnd;
+
+        /**
+         * @param pos a position within the body of a record
+         */
+        Scanner(int pos) {
+            int recIndex = findRecord(pos);
+            int recStart = _recordOffsets[recIndex];
+            if (pos < recStart + 4) {
+                pos = recStart + 4;
+            }
+            _pos = pos;
+            _recordEnd = recStart + 4 + LittleEndian.getUShort(_data, recStart + 2);
+        }
+
+        private int findRecord(int pos) {
+            int low = 0;
+            int high = _recordOffsets.length - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (_recordOffsets[mid] <= pos) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        public int getPosition() {
+            return _pos;
+        }
+
+        public boolean isAtEnd() {
+            return _pos == _recordEnd && _recordEnd == _data.length;
+        }
+
+        private void nextRecord() {
+            if (_recordEnd >= _data.length) {
+                throw new RecordFormatException("Expected to find a ContinueRecord in order to read remaining SST data");
+            }
+            _pos = _recordEnd + 4;
+            _recordEnd = _pos + LittleEndian.getUShort(_data, _recordEnd + 2);
+        }
+
+        /** moves on to the next record if the current one has been fully read */
+        private void checkRecordPosition(int requiredByteCount) {
+            if (_recordEnd - _pos >= requiredByteCount) {
+                return;
+            }
+            if (_pos == _recordEnd) {
+                nextRecord();
+                return;
+            }
+            throw new RecordFormatException("Not enough data (" + (_recordEnd - _pos)
+                    + ") to read requested (" + requiredByteCount +") bytes");
+        }
+
+        private int readUByte() {
+            checkRecordPosition(1);
+            return _data[_pos++] & 0xFF;
+        }
+
+        private int readUShort() {
+            checkRecordPosition(2);
+            int result = LittleEndian.getUShort(_data, _pos);
+            _pos += 2;
+            return result;
+        }
+
+        private short readShort() {
+            return (short) readUShort();
+        }
+
+        private int readInt() {
+            checkRecordPosition(4);
+            int result = LittleEndian.getInt(_data, _pos);
+            _pos += 4;
+            return result;
+        }
+
+        /** skips data that is read byte by byte, and hence may roll over CONTINUE records */
+        private void skipBytes(int count) {
+            for (int remaining = count; remaining > 0; ) {
+                if (_pos == _recordEnd) {
+                    nextRecord();
+                }
+                int n = Math.min(remaining, _recordEnd - _pos);
+                _pos += n;
+                remaining -= n;
+            }
+        }
+
+        private void skipChars(int charCount, boolean isCompressed) {
+            int remaining = charCount;
+            while (true) {
+                int availableChars = isCompressed ? _recordEnd - _pos : (_recordEnd - _pos) / 2;
+                if (remaining <= availableChars) {
+                    _pos += isCompressed ? remaining : remaining * 2;
+                    return;
+                }
+                _pos += isCompressed ? availableChars : availableChars * 2;
+                remaining -= availableChars;
+                if (_pos != _recordEnd) {
+                    throw new RecordFormatException("Odd number of bytes(" + (_recordEnd - _pos) + ") left behind");
+                }
+                nextRecord();
+                // the compressed flag is repeated at the start of each CONTINUE record
+                isCompressed = readUByte() == 0;
+            }
+        }
+
+        public void skipString() {
+            int charCount = readUShort();
+            int optionFlags = readUByte();
+            int runCount = (optionFlags & 0x08) != 0 ? readUShort() : 0;
+            int extensionLength = (optionFlags & 0x04) != 0 ? readInt() : 0;
+            skipChars(charCount, (optionFlags & 0x01) == 0);
+            for (int i = 0; i < runCount; i++) {
+                readUShort();
+                readUShort();
+            }
+            if (extensionLength > 0) {
+                skipExtRst(extensionLength);
+            }
+        }
+
+        /**
+         * Mirrors the number of bytes consumed by <tt>UnicodeString.ExtRst</tt>, which does
+         * not always agree with the length declared in the string header.
+         */
+        private void skipExtRst(int expectedLength) {
+            short reserved = readShort();
+            if (reserved == -1) {
+                return;
+            }
+            if (reserved != 1) {
+                skipBytes(expectedLength - 2);
+                return;
+            }
+            short stringDataSize = readShort();
+            skipBytes(2 + 2 + 2); // formattingFontIndex, formattingOptions, numberOfRuns
+            short length1 = readShort();
+            readShort(); // length2 - same as length1 in valid data
+            skipBytes(2 * length1);
+            int runData = stringDataSize - 4 - 6 - (2 * length1);
+            if (runData > 0) {
+                skipBytes(runData);
+            }
+        }
+
+        /**
+         * @return a stream positioned at the current scan position
+         */
+        public RecordInputStream createRecordInputStream() {
+            byte[] header = new byte[4];
+            LittleEndian.putShort(header, 0, ContinueRecord.sid);
+            LittleEndian.putUShort(header, 2, _recordEnd - _pos);
+            RecordInputStream result = new RecordInputStream(new HeaderedInputStream(
+                    header, new ByteArrayInputStream(_data, _pos, _data.length - _pos)));
+            result.nextRecord();
+            return result;
+        }
+    }
+
+    /**
+     * Prepends a synthetic record header to the raw data. Unlike <tt>SequenceInputStream</tt>
+     * this reports the combined {@link #available()} count, which {@link RecordInputStream}
+     * relies on to detect the end of the stream.
+     */
+    private static final class HeaderedInputStream extends InputStream {
+        private final byte[] _header;
+        private int _headerPos;
+        private final ByteArrayInputStream _body;
+
+        HeaderedInputStream(byte[] header, ByteArrayInputStream body) {
+            _header = header;
+            _body = body;
+        }
+
+        public int read() {
+            if (_headerPos < _header.length) {
+                return _header[_headerPos++] & 0xFF;
+            }
+            return _body.read();
+        }
+
+        public int read(byte[] b, int off, int len) {
+            if (_headerPos < _header.length) {
+                int n = Math.min(len, _header.length - _headerPos);
+                System.arraycopy(_header, _headerPos, b, off, n);
+                _headerPos += n;
+                return n;
+            }
+            return _body.read(b, off, len);
+        }
+
+        public int available() {
+            return _header.length - _headerPos + _body.available();
+        }
+    }
+}
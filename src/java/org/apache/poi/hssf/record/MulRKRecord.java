@@ -25,7 +25,8 @@ import org.apache.poi.util.LittleEndianOutput;
  * MULRK (0x00BD) <p/>
  * 
  * Used to store multiple RK numbers on a row.  1 MulRk = Multiple Cell values.
- * HSSF just converts this into multiple NUMBER records.  READ-ONLY SUPPORT!<P>
+ * HSSF just converts this into multiple NUMBER records when reading, and writes
+ * runs of NUMBER records whose values can be encoded as RK numbers as MULRK.<P>
  * REFERENCE:  PG 330 Microsoft Excel 97 Developer's Kit (ISBN: 1-57231-498-2)<P>
  * @author Andrew C. Oliver (acoliver at apache dot org)
  * @version 2.0-pre
@@ -82,6 +83,20 @@ public final class MulRKRecord extends StandardRecord {
 		return RKUtil.decodeNumber(field_3_rks[coffset].rk);
 	}
 
+	/**
+	 * @param xfs the XF index of each cell
+	 * @param rks the encoded value of each cell, see {@link RKUtil#encodeNumber(double)}
+	 */
+	public MulRKRecord(int row, int firstCol, short[] xfs, int[] rks) {
+		field_1_row = row;
+		field_2_first_col = (short)firstCol;
+		field_3_rks = new RkRec[rks.length];
+		for (int i = 0; i < rks.length; i++) {
+			field_3_rks[i] = new RkRec(xfs[i], rks[i]);
+		}
+		field_4_last_col = (short)(firstCol + rks.length - 1);
+	}
+
 	/**
 	 * @param in the RecordInputstream to read the record from
 	 */
@@ -115,10 +130,28 @@ public final class MulRKRecord extends StandardRecord {
 	}
 
 	public void serialize(LittleEndianOutput out) {
-		throw new RecordFormatException( "Sorry, you can't serialize MulRK in this release");
+		out.writeShort(field_1_row);
+		out.writeShort(field_2_first_col);
+		for (int i = 0; i < field_3_rks.length; i++) {
+			out.writeShort(field_3_rks[i].xf);
+			out.writeInt(field_3_rks[i].rk);
+		}
+		out.writeShort(field_4_last_col);
 	}
 	protected int getDataSize() {
-		throw new RecordFormatException( "Sorry, you can't serialize MulRK in this release");
+		return 6 + field_3_rks.length * RkRec.ENCODED_SIZE;
+	}
+
+	public Object clone() {
+		// the RK entries are immutable
+		return new MulRKRecord(field_1_row, field_2_first_col, field_3_rks.clone(), field_4_last_col);
+	}
+
+	private MulRKRecord(int row, short firstCol, RkRec[] rks, short lastCol) {
+		field_1_row = row;
+		field_2_first_col = firstCol;
+		field_3_rks = rks;
+		field_4_last_col = lastCol;
 	}
 
 	private static final class RkRec {
@@ -126,6 +159,11 @@ public final class MulRKRecord extends StandardRecord {
 		public final short xf;
 		public final int   rk;
 
+		RkRec(short xf, int rk) {
+			this.xf = xf;
+			this.rk = rk;
+		}
+
 		private RkRec(RecordInputStream in) {
 			xf = in.readShort();
 			rk = in.readInt();
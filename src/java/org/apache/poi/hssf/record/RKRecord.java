@@ -27,7 +27,8 @@ import org.apache.poi.util.LittleEndianOutput;
  *               space and memory (gee look at all the other whole records that
  *               are in the file just "cause"..,far better to waste processor
  *               cycles on this then leave on of those "valuable" records out).<p/>
- * We support this in READ-ONLY mode.  HSSF converts these to NUMBER records<p/>
+ * HSSF converts these to NUMBER records when reading, and writes NUMBER records
+ *  whose value can be encoded as RK records<p/>
  *
  *
  *
@@ -48,6 +49,16 @@ public final class RKRecord extends CellRecord {
     	// fields uninitialised
     }
 
+    /**
+     * @param rkNumber the encoded value, see {@link RKUtil#encodeNumber(double)}
+     */
+    public RKRecord(int row, short col, short xfIndex, int rkNumber) {
+        setRow(row);
+        setColumn(col);
+        setXFIndex(xfIndex);
+        field_4_rk_number = rkNumber;
+    }
+
     public RKRecord(RecordInputStream in) {
         super(in);
         field_4_rk_number = in.readInt();
@@ -25,6 +25,7 @@ import java.lang.reflect.Modifier;
 import java.util.*;
 
 import org.apache.poi.hssf.record.chart.*;
+import org.apache.poi.hssf.record.crypto.Biff8EncryptionKey;
 import org.apache.poi.hssf.record.pivottable.*;
 
 /**
@@ -434,10 +435,26 @@ public final class RecordFactory {
 	 * @exception RecordFormatException on error processing the InputStream
 	 */
 	public static List<Record> createRecords(InputStream in) throws RecordFormatException {
+		return createRecords(in, Biff8EncryptionKey.getCurrentUserPassword());
+	}
+
+	/**
+	 * Create an array of records from an input stream, decrypting it (if necessary)
+	 * with the specified password
+	 *
+	 * @param in the InputStream from which the records will be obtained
+	 * @param password the password for decrypting the stream, or <code>null</code>
+	 * to use the default password
+	 *
+	 * @return an array of Records created from the InputStream
+	 *
+	 * @exception RecordFormatException on error processing the InputStream
+	 */
+	public static List<Record> createRecords(InputStream in, String password) throws RecordFormatException {
 
 		List<Record> records = new ArrayList<Record>(NUM_RECORDS);
 
-		RecordFactoryInputStream recStream = new RecordFactoryInputStream(in, true);
+		RecordFactoryInputStream recStream = new RecordFactoryInputStream(in, true, password);
 
 		Record record;
 		while ((record = recStream.nextRecord())!=null) {
@@ -102,9 +102,8 @@ public final class RecordFactoryInputStream {
 			_lastRecord = rec;
 		}
 
-		public RecordInputStream createDecryptingStream(InputStream original) {
+		public RecordInputStream createDecryptingStream(InputStream original, String userPassword) {
 			FilePassRecord fpr = _filePassRec;
-			String userPassword = Biff8EncryptionKey.getCurrentUserPassword();
 
 			Biff8EncryptionKey key;
 			if (userPassword == null) {
@@ -177,11 +176,24 @@ public final class RecordFactoryInputStream {
 	 * processing).
 	 */
 	public RecordFactoryInputStream(InputStream in, boolean shouldIncludeContinueRecords) {
+		this(in, shouldIncludeContinueRecords, Biff8EncryptionKey.getCurrentUserPassword());
+	}
+
+	/**
+	 * @param shouldIncludeContinueRecords caller can pass <code>false</code> if loose
+	 * {@link ContinueRecord}s should be skipped (this is sometimes useful in event based
+	 * processing).
+	 * @param password the password for decrypting the stream (if it is encrypted), or
+	 * <code>null</code> to use the default password.  Unlike
+	 * {@link Biff8EncryptionKey#setCurrentUserPassword(String)} this does not depend on
+	 * the current thread.
+	 */
+	public RecordFactoryInputStream(InputStream in, boolean shouldIncludeContinueRecords, String password) {
 		RecordInputStream rs = new RecordInputStream(in);
 		List<Record> records = new ArrayList<Record>();
 		StreamEncryptionInfo sei = new StreamEncryptionInfo(rs, records);
 		if (sei.hasEncryption()) {
-			rs = sei.createDecryptingStream(in);
+			rs = sei.createDecryptingStream(in, password);
 		} else {
 			// typical case - non-encrypted stream
 		}
@@ -26,6 +26,7 @@ import org.apache.poi.hssf.record.crypto.Biff8EncryptionKey;
 import org.apache.poi.util.LittleEndian;
 import org.apache.poi.util.LittleEndianInput;
 import org.apache.poi.util.LittleEndianInputStream;
+import org.apache.poi.util.StringUtil;
 
 /**
  * Title:  Record Input Stream<P>
@@ -80,6 +81,8 @@ public final class RecordInputStream implements LittleEndianInput {
 	 * index within the data section of the current BIFF record
 	 */
 	private int _currentDataOffset;
+	/** scratch buffer for decoding strings, see {@link #readStringBytes(int)} */
+	private byte[] _stringBuffer;
 
 	private static final class SimpleHeaderInput implements BiffHeaderInput {
 
@@ -320,38 +323,31 @@ public final class RecordInputStream implements LittleEndianInput {
 		if (requestedLength < 0 || requestedLength > 0x100000) { // 16 million chars?
 			throw new IllegalArgumentException("Bad requested string length (" + requestedLength + ")");
 		}
-		char[] buf = new char[requestedLength];
 		boolean isCompressedEncoding = pIsCompressedEncoding;
+		int availableChars = isCompressedEncoding ?  remaining() : remaining() / LittleEndian.SHORT_SIZE;
+		if (requestedLength <= availableChars) {
+			// fast path: the whole string is in the current record
+			if (isCompressedEncoding) {
+				byte[] data = readStringBytes(requestedLength);
+				return StringUtil.getFromCompressedUnicode(data, 0, requestedLength);
+			}
+			char[] buf = new char[requestedLength];
+			readChars(buf, 0, requestedLength, false);
+			return new String(buf);
+		}
+		char[] buf = new char[requestedLength];
 		int curLen = 0;
 		while(true) {
-			int availableChars =isCompressedEncoding ?  remaining() : remaining() / LittleEndian.SHORT_SIZE;
+			availableChars = isCompressedEncoding ?  remaining() : remaining() / LittleEndian.SHORT_SIZE;
 			if (requestedLength - curLen <= availableChars) {
 				// enough space in current record, so just read it out
-				while(curLen < requestedLength) {
-					char ch;
-					if (isCompressedEncoding) {
-						ch = (char)readUByte();
-					} else {
-						ch = (char)readShort();
-					}
-					buf[curLen] = ch;
-					curLen++;
-				}
+				readChars(buf, curLen, requestedLength - curLen, isCompressedEncoding);
 				return new String(buf);
 			}
 			// else string has been spilled into next continue record
 			// so read what's left of the current record
-			while(availableChars > 0) {
-				char ch;
-				if (isCompressedEncoding) {
-					ch = (char)readUByte();
-				} else {
-					ch = (char)readShort();
-				}
-				buf[curLen] = ch;
-				curLen++;
-				availableChars--;
-			}
+			readChars(buf, curLen, availableChars, isCompressedEncoding);
+			curLen += availableChars;
 			if (!isContinueNext()) {
 				throw new RecordFormatException("Expected to find a ContinueRecord in order to read remaining "
 						+ (requestedLength-curLen) + " of " + requestedLength + " chars");
@@ -366,6 +362,38 @@ public final class RecordInputStream implements LittleEndianInput {
 		}
 	}
 
+	/**
+	 * Decodes <tt>nChars</tt> characters of the current record into <tt>buf</tt>, reading
+	 * the data in one go rather than one character at a time
+	 */
+	private void readChars(char[] buf, int offset, int nChars, boolean isCompressedEncoding) {
+		if (isCompressedEncoding) {
+			byte[] data = readStringBytes(nChars);
+			for (int i = 0; i < nChars; i++) {
+				buf[offset + i] = (char) (data[i] & 0xFF);
+			}
+		} else {
+			byte[] data = readStringBytes(nChars * LittleEndian.SHORT_SIZE);
+			for (int i = 0, j = 0; i < nChars; i++, j += 2) {
+				buf[offset + i] = (char) ((data[j] & 0xFF) | (data[j + 1] & 0xFF) << 8);
+			}
+		}
+	}
+
+	/**
+	 * Reads the encoded characters of a string into a buffer which is reused for all strings.
+	 * The amount never exceeds the size of one record.
+	 */
+	private byte[] readStringBytes(int len) {
+		byte[] data = _stringBuffer;
+		if (data == null || data.length < len) {
+			data = new byte[Math.max(len, 256)];
+			_stringBuffer = data;
+		}
+		readFully(data, 0, len);
+		return data;
+	}
+
 	/** Returns the remaining bytes for the current record.
 	 *
 	  * @return The remaining bytes of the current record.
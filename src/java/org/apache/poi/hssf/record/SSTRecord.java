@@ -61,6 +61,11 @@ public final class SSTRecord extends ContinuableRecord {
     /** according to docs ONLY SST */
     private int field_2_num_unique_strings;
     private IntMapper<UnicodeString> field_3_strings;
+    /**
+     * Strings of an SST read from a file, decoded on demand. <code>null</code> once the
+     * table has been modified, from then on {@link #field_3_strings} holds all strings.
+     */
+    private LazySSTStrings _lazyStrings;
 
     private SSTDeserializer deserializer;
 
@@ -90,6 +95,7 @@ public final class SSTRecord extends ContinuableRecord {
         UnicodeString ucs = ( string == null ) ? EMPTY_STRING
                 : string;
         int rval;
+        materializeStrings();
         int index = field_3_strings.getIndex(ucs);
 
         if ( index != -1 ) {
@@ -130,9 +136,24 @@ public final class SSTRecord extends ContinuableRecord {
      */
     public UnicodeString getString(int id )
     {
+        if (_lazyStrings != null) {
+            return _lazyStrings.get( id );
+        }
         return field_3_strings.get( id );
     }
 
+    /**
+     * Decodes all lazily read strings, so that the table can be searched and modified.
+     */
+    private void materializeStrings() {
+        if (_lazyStrings == null) {
+            return;
+        }
+        field_3_strings = _lazyStrings.toIntMapper();
+        deserializer = new SSTDeserializer(field_3_strings);
+        _lazyStrings = null;
+    }
+
 
     /**
      * Return a debugging string representation
@@ -147,9 +168,10 @@ public final class SSTRecord extends ContinuableRecord {
                 .append( Integer.toHexString( getNumStrings() ) ).append( "\n" );
         buffer.append( "    .uniquestrings  = " )
                 .append( Integer.toHexString( getNumUniqueStrings() ) ).append( "\n" );
-        for ( int k = 0; k < field_3_strings.size(); k++ )
+        Iterator<UnicodeString> it = getStrings();
+        for ( int k = 0; it.hasNext(); k++ )
         {
-          UnicodeString s = field_3_strings.get( k );
+          UnicodeString s = it.next();
             buffer.append( "    .string_" + k + "      = " )
                     .append( s.getDebugInfo() ).append( "\n" );
         }
@@ -236,6 +258,9 @@ public final class SSTRecord extends ContinuableRecord {
      * (or both) being set, but we have no idea what to do with the
      * associated data. The UnicodeString class can handle the byte[]
      * vs short[] nature of the actual string data
+     * <P>
+     * The strings are not decoded here. Only their positions are recorded, and
+     * each string is decoded when first requested (see {@link LazySSTStrings}).
      *
      * @param in the RecordInputstream to read the record from
      */
@@ -245,9 +270,7 @@ public final class SSTRecord extends ContinuableRecord {
         // we initialize our fields
         field_1_num_strings = in.readInt();
         field_2_num_unique_strings = in.readInt();
-        field_3_strings = new IntMapper<UnicodeString>();
-        deserializer = new SSTDeserializer(field_3_strings);
-        deserializer.manufactureStrings( field_2_num_unique_strings, in );
+        _lazyStrings = new LazySSTStrings(field_2_num_unique_strings, in);
     }
 
 
@@ -257,6 +280,9 @@ public final class SSTRecord extends ContinuableRecord {
      */
     Iterator<UnicodeString> getStrings()
     {
+        if (_lazyStrings != null) {
+            return _lazyStrings.iterator();
+        }
         return field_3_strings.iterator();
     }
 
@@ -264,17 +290,21 @@ public final class SSTRecord extends ContinuableRecord {
      * @return count of the strings we hold.
      */
     int countStrings() {
+        if (_lazyStrings != null) {
+            return _lazyStrings.size();
+        }
         return field_3_strings.size();
     }
 
     protected void serialize(ContinuableRecordOutput out) {
-        SSTSerializer serializer = new SSTSerializer(field_3_strings, getNumStrings(), getNumUniqueStrings() );
+        SSTSerializer serializer = new SSTSerializer(getStrings(), countStrings(), getNumStrings(), getNumUniqueStrings() );
         serializer.serialize(out);
         bucketAbsoluteOffsets = serializer.getBucketAbsoluteOffsets();
         bucketRelativeOffsets = serializer.getBucketRelativeOffsets();
     }
 
     SSTDeserializer getDeserializer() {
+        materializeStrings();
         return deserializer;
     }
 
@@ -312,6 +342,6 @@ public final class SSTRecord extends ContinuableRecord {
      * @return  The size of the ExtSST record in bytes.
      */
     public int calcExtSSTRecordSize() {
-      return ExtSSTRecord.getRecordSizeForStrings(field_3_strings.size());
+      return ExtSSTRecord.getRecordSizeForStrings(countStrings());
     }
 }
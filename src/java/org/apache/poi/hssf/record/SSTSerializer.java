@@ -17,6 +17,8 @@
 
 package org.apache.poi.hssf.record;
 
+import java.util.Iterator;
+
 import org.apache.poi.hssf.record.common.UnicodeString;
 import org.apache.poi.hssf.record.cont.ContinuableRecordOutput;
 import org.apache.poi.util.IntMapper;
@@ -32,7 +34,8 @@ final class SSTSerializer {
 	private final int _numStrings;
 	private final int _numUniqueStrings;
 
-    private final IntMapper<UnicodeString> strings;
+    private final Iterator<UnicodeString> strings;
+    private final int _stringCount;
 
     /** Offsets from the beginning of the SST record (even across continuations) */
     private final int[] bucketAbsoluteOffsets;
@@ -40,12 +43,18 @@ final class SSTSerializer {
     private final int[] bucketRelativeOffsets;
 
     public SSTSerializer( IntMapper<UnicodeString> strings, int numStrings, int numUniqueStrings )
+    {
+        this(strings.iterator(), strings.size(), numStrings, numUniqueStrings);
+    }
+
+    public SSTSerializer( Iterator<UnicodeString> strings, int stringCount, int numStrings, int numUniqueStrings )
     {
         this.strings = strings;
+        _stringCount = stringCount;
 		_numStrings = numStrings;
 		_numUniqueStrings = numUniqueStrings;
 
-        int infoRecs = ExtSSTRecord.getNumberOfInfoRecsForStrings(strings.size());
+        int infoRecs = ExtSSTRecord.getNumberOfInfoRecsForStrings(stringCount);
         this.bucketAbsoluteOffsets = new int[infoRecs];
         this.bucketRelativeOffsets = new int[infoRecs];
     }
@@ -54,7 +63,7 @@ final class SSTSerializer {
         out.writeInt(_numStrings);
         out.writeInt(_numUniqueStrings);
 
-        for ( int k = 0; k < strings.size(); k++ )
+        for ( int k = 0; k < _stringCount; k++ )
         {
             if (k % ExtSSTRecord.DEFAULT_BUCKET_SIZE == 0)
             {
@@ -66,22 +75,11 @@ final class SSTSerializer {
                  bucketRelativeOffsets[index] = rOff;
               }
           }
-          UnicodeString s = getUnicodeString(k);
+          UnicodeString s = strings.next();
           s.serialize(out);
         }
     }
 
-
-    private UnicodeString getUnicodeString( int index )
-    {
-        return getUnicodeString(strings, index);
-    }
-
-    private static UnicodeString getUnicodeString( IntMapper<UnicodeString> strings, int index )
-    {
-        return ( strings.get( index ) );
-    }
-
     public int[] getBucketAbsoluteOffsets()
     {
         return bucketAbsoluteOffsets;
@@ -24,6 +24,9 @@ import org.apache.poi.hssf.model.RecordStream;
 import org.apache.poi.hssf.record.DVALRecord;
 import org.apache.poi.hssf.record.DVRecord;
 import org.apache.poi.hssf.record.Record;
+import org.apache.poi.ss.formula.FormulaShifter;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellRangeAddressList;
 
 /**
  * Manages the DVALRecord and DVRecords for a single sheet<br/>
@@ -67,4 +70,33 @@ public final class DataValidityTable extends RecordAggregate {
 		_validationList.add(dvRecord);
 		_headerRec.setDVRecNo(_validationList.size());
 	}
+
+	/**
+	 * Moves the cell ranges of the data validations after rows or columns have been shifted.
+	 * Data validations whose ranges have all been deleted are removed.
+	 */
+	public void updateFormulasAfterCellShift(FormulaShifter shifter, int externSheetIndex) {
+		boolean removed = false;
+		for (int i = _validationList.size() - 1; i >= 0; i--) {
+			DVRecord dvRecord = (DVRecord) _validationList.get(i);
+			CellRangeAddressList regions = dvRecord.getCellRangeAddress();
+			CellRangeAddress[] cellRanges = regions.getCellRangeAddresses();
+			for (int j = cellRanges.length - 1; j >= 0; j--) {
+				regions.remove(j);
+			}
+			for (int j = 0; j < cellRanges.length; j++) {
+				CellRangeAddress craNew = CFRecordsAggregate.shiftRange(shifter, cellRanges[j], externSheetIndex);
+				if (craNew != null) {
+					regions.addCellRangeAddress(craNew);
+				}
+			}
+			if (regions.countRanges() == 0) {
+				_validationList.remove(i);
+				removed = true;
+			}
+		}
+		if (removed) {
+			_headerRec.setDVRecNo(_validationList.size());
+		}
+	}
 }
@@ -45,6 +45,12 @@ public final class FormulaRecordAggregate extends RecordAggregate implements Cel
 	/** caches the calculated result of the formula */
 	private StringRecord _stringRecord;
 	private SharedFormulaRecord _sharedFormulaRecord;
+	/**
+	 * <code>true</code> while a formula flagged as shared has not yet been linked to its
+	 * {@link SharedFormulaRecord}.  Linking is deferred until the formula tokens are needed
+	 * (or the record is written) so that value-only reads don't pay for it.
+	 */
+	private boolean _sharedFormulaLinkPending;
 
 	/**
 	 * @param stringRec may be <code>null</code> if this formula does not have a cached text
@@ -69,14 +75,24 @@ public final class FormulaRecordAggregate extends RecordAggregate implements Cel
 
 		_formulaRecord = formulaRec;
 		_sharedValueManager = svm;
-		if (formulaRec.isSharedFormula()) {
-			CellReference firstCell = formulaRec.getFormula().getExpReference();
+		_sharedFormulaLinkPending = formulaRec.isSharedFormula();
+	}
+
+	/**
+	 * Links this formula to its {@link SharedFormulaRecord} on first use.
+	 * @return <code>null</code> if this is not a shared formula
+	 */
+	private SharedFormulaRecord getSharedFormulaRecord() {
+		if (_sharedFormulaLinkPending) {
+			_sharedFormulaLinkPending = false;
+			CellReference firstCell = _formulaRecord.getFormula().getExpReference();
 			if (firstCell == null) {
-				handleMissingSharedFormulaRecord(formulaRec);
+				handleMissingSharedFormulaRecord(_formulaRecord);
 			} else {
-				_sharedFormulaRecord = svm.linkSharedFormulaRecord(firstCell, this);
+				_sharedFormulaRecord = _sharedValueManager.linkSharedFormulaRecord(firstCell, this);
 			}
 		}
+		return _sharedFormulaRecord;
 	}
 	/**
 	 * Sometimes the shared formula flag "seems" to be erroneously set (because the corresponding
@@ -101,6 +117,17 @@ public final class FormulaRecordAggregate extends RecordAggregate implements Cel
 		formula.setSharedFormula(false); // no point leaving the flag erroneously set
 	}
 
+	/**
+	 * Creates a copy of this formula for a cloned sheet.  A shared formula of the copy
+	 * is linked to the shared formula records of <tt>svm</tt> on first use.
+	 *
+	 * @param svm the {@link SharedValueManager} of the cloned sheet
+	 */
+	FormulaRecordAggregate copy(SharedValueManager svm) {
+		StringRecord stringRec = _stringRecord == null ? null : (StringRecord) _stringRecord.clone();
+		return new FormulaRecordAggregate((FormulaRecord) _formulaRecord.clone(), stringRec, svm);
+	}
+
 	public FormulaRecord getFormulaRecord() {
 		return _formulaRecord;
 	}
@@ -142,6 +169,8 @@ public final class FormulaRecordAggregate extends RecordAggregate implements Cel
 	}
 
 	public void visitContainedRecords(RecordVisitor rv) {
+		 // the shared formula may have been unlinked since this formula was read
+		 getSharedFormulaRecord();
 		 rv.visitRecord(_formulaRecord);
 		 Record sharedFormulaRecord = _sharedValueManager.getRecordForFirstCell(this);
 		 if (sharedFormulaRecord != null) {
@@ -186,8 +215,9 @@ public final class FormulaRecordAggregate extends RecordAggregate implements Cel
 	}
 
 	public Ptg[] getFormulaTokens() {
-		if (_sharedFormulaRecord != null) {
-			return _sharedFormulaRecord.getFormulaTokens(_formulaRecord);
+		SharedFormulaRecord sfr = getSharedFormulaRecord();
+		if (sfr != null) {
+			return sfr.getFormulaTokens(_formulaRecord);
 		}
 		CellReference expRef = _formulaRecord.getFormula().getExpReference();
 		if (expRef != null) {
@@ -206,10 +236,17 @@ public final class FormulaRecordAggregate extends RecordAggregate implements Cel
 	}
 
 	public void unlinkSharedFormula() {
-		SharedFormulaRecord sfr = _sharedFormulaRecord;
+		SharedFormulaRecord sfr = getSharedFormulaRecord();
 		if (sfr == null) {
 			throw new IllegalStateException("Formula not linked to shared formula");
 		}
+		convertToUnsharedFormula(sfr);
+	}
+
+	/**
+	 * Replaces the shared formula reference with the tokens from <tt>sfr</tt>
+	 */
+	void convertToUnsharedFormula(SharedFormulaRecord sfr) {
 		Ptg[] ptgs = sfr.getFormulaTokens(_formulaRecord);
 		_formulaRecord.setParsedExpression(ptgs);
 		//Now its not shared!
@@ -222,12 +259,13 @@ public final class FormulaRecordAggregate extends RecordAggregate implements Cel
 	 * that may be involved with this cell formula.
 	 */
 	public void notifyFormulaChanging() {
-		if (_sharedFormulaRecord != null) {
-			_sharedValueManager.unlink(_sharedFormulaRecord);
+		SharedFormulaRecord sfr = getSharedFormulaRecord();
+		if (sfr != null) {
+			_sharedValueManager.unlink(sfr);
 		}
 	}
 	public boolean isPartOfArrayFormula() {
-		if (_sharedFormulaRecord != null) {
+		if (getSharedFormulaRecord() != null) {
 			return false;
 		}
         CellReference expRef = _formulaRecord.getFormula().getExpReference();
@@ -236,7 +274,7 @@ public final class FormulaRecordAggregate extends RecordAggregate implements Cel
 	}
 
 	public CellRangeAddress getArrayFormulaRange() {
-		if (_sharedFormulaRecord != null) {
+		if (getSharedFormulaRecord() != null) {
 			throw new IllegalStateException("not an array formula cell.");
 		}
 		CellReference expRef = _formulaRecord.getFormula().getExpReference();
@@ -18,6 +18,7 @@
 package org.apache.poi.hssf.record.aggregates;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.poi.hssf.model.RecordStream;
@@ -32,13 +33,13 @@ import org.apache.poi.ss.util.CellRangeAddressList;
 public final class MergedCellsTable extends RecordAggregate {
 	private static int MAX_MERGED_REGIONS = 1027; // enforced by the 8224 byte limit
 
-	private final List _mergedRegions;
+	private final List<CellRangeAddress> _mergedRegions;
 
 	/**
 	 * Creates an empty aggregate
 	 */
 	public MergedCellsTable() {
-		_mergedRegions = new ArrayList();
+		_mergedRegions = new ArrayList<CellRangeAddress>();
 	}
 
 	/**
@@ -46,7 +47,7 @@ public final class MergedCellsTable extends RecordAggregate {
 	 * @param rs
 	 */
 	public void read(RecordStream rs) {
-		List temp = _mergedRegions;
+		List<CellRangeAddress> temp = _mergedRegions;
 		while (rs.peekNextClass() == MergeCellsRecord.class) {
 			MergeCellsRecord mcr = (MergeCellsRecord) rs.getNext();
 			int nRegions = mcr.getNumAreas();
@@ -110,7 +111,7 @@ public final class MergedCellsTable extends RecordAggregate {
 
 	public CellRangeAddress get(int index) {
 		checkIndex(index);
-		return (CellRangeAddress) _mergedRegions.get(index);
+		return _mergedRegions.get(index);
 	}
 
 	public void remove(int index) {
@@ -118,6 +119,27 @@ public final class MergedCellsTable extends RecordAggregate {
 		_mergedRegions.remove(index);
 	}
 
+	/**
+	 * Removes the merged regions at all of the specified indexes in a single pass
+	 */
+	public void removeAll(Collection<Integer> indexes) {
+		if (indexes.isEmpty()) {
+			return;
+		}
+		boolean[] toRemove = new boolean[_mergedRegions.size()];
+		for (Integer index : indexes) {
+			checkIndex(index.intValue());
+			toRemove[index.intValue()] = true;
+		}
+		int nKept = 0;
+		for (int i = 0; i < toRemove.length; i++) {
+			if (!toRemove[i]) {
+				_mergedRegions.set(nKept++, _mergedRegions.get(i));
+			}
+		}
+		_mergedRegions.subList(nKept, toRemove.length).clear();
+	}
+
 	private void checkIndex(int index) {
 		if (index < 0 || index >= _mergedRegions.size()) {
 			throw new IllegalArgumentException("Specified CF index " + index
@@ -0,0 +1,258 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hssf.record.aggregates;
+
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+
+/**
+ * Stores the plain value cells (NUMBER, LABELSST and BLANK) of one row in parallel
+ * primitive arrays, sorted by column.  The record objects are only created
+ * when the cells are accessed or written.<p/>
+ *
+ * Used by {@link ValueRecordsAggregate} for cells read from a file.  Each packed
+ * cell costs 13 bytes instead of a record object plus its reference.
+ */
+final class PackedCellRow {
+	private static final byte TYPE_NUMBER = 1;
+	private static final byte TYPE_LABEL_SST = 2;
+	private static final byte TYPE_BLANK = 3;
+
+	private short[] _columns;
+	private short[] _xfIndexes;
+	private byte[] _types;
+	/** raw bits of the double value, or the SST index */
+	private long[] _values;
+	private int _size;
+	/** <code>true</code> if the arrays may also be used by another row, see {@link #copy()} */
+	private boolean _shared;
+
+	public PackedCellRow() {
+		_columns = new short[10];
+		_xfIndexes = new short[10];
+		_types = new byte[10];
+		_values = new long[10];
+	}
+
+	private PackedCellRow(PackedCellRow other) {
+		_columns = other._columns;
+		_xfIndexes = other._xfIndexes;
+		_types = other._types;
+		_values = other._values;
+		_size = other._size;
+		_shared = true;
+	}
+
+	/**
+	 * @return a row with the same cells.  The arrays are shared by both rows until
+	 * either of them is changed
+	 */
+	public PackedCellRow copy() {
+		_shared = true;
+		return new PackedCellRow(this);
+	}
+
+	/**
+	 * @return <code>true</code> if the specified cell record can be stored in a {@link PackedCellRow}
+	 */
+	public static boolean isPackable(CellValueRecordInterface cell) {
+		Class<?> c = cell.getClass();
+		return c == NumberRecord.class || c == LabelSSTRecord.class || c == BlankRecord.class;
+	}
+
+	public void add(CellValueRecordInterface cell) {
+		if (cell instanceof NumberRecord) {
+			add(cell.getColumn(), cell.getXFIndex(), TYPE_NUMBER,
+					Double.doubleToRawLongBits(((NumberRecord) cell).getValue()));
+		} else if (cell instanceof LabelSSTRecord) {
+			add(cell.getColumn(), cell.getXFIndex(), TYPE_LABEL_SST, ((LabelSSTRecord) cell).getSSTIndex());
+		} else if (cell instanceof BlankRecord) {
+			addBlank(cell.getColumn(), cell.getXFIndex());
+		} else {
+			throw new IllegalArgumentException("Unexpected cell type (" + cell.getClass().getName() + ")");
+		}
+	}
+
+	public void addBlank(int column, short xfIndex) {
+		add(column, xfIndex, TYPE_BLANK, 0);
+	}
+
+	public void addNumber(int column, short xfIndex, double value) {
+		add(column, xfIndex, TYPE_NUMBER, Double.doubleToRawLongBits(value));
+	}
+
+	public void addLabelSST(int column, short xfIndex, int sstIndex) {
+		add(column, xfIndex, TYPE_LABEL_SST, sstIndex);
+	}
+
+	private void add(int column, short xfIndex, byte type, long value) {
+		unshare();
+		int i = indexOf(column);
+		if (i < 0) {
+			i = -(i + 1);
+			ensureCapacity(_size + 1);
+			int nToMove = _size - i;
+			if (nToMove > 0) {
+				System.arraycopy(_columns, i, _columns, i + 1, nToMove);
+				System.arraycopy(_xfIndexes, i, _xfIndexes, i + 1, nToMove);
+				System.arraycopy(_types, i, _types, i + 1, nToMove);
+				System.arraycopy(_values, i, _values, i + 1, nToMove);
+			}
+			_size++;
+		}
+		_columns[i] = (short) column;
+		_xfIndexes[i] = xfIndex;
+		_types[i] = type;
+		_values[i] = value;
+	}
+
+	/**
+	 * Gives this row its own arrays, if they are shared with another row.
+	 */
+	private void unshare() {
+		if (!_shared) {
+			return;
+		}
+		_shared = false;
+		int size = _columns.length;
+		short[] columns = new short[size];
+		short[] xfIndexes = new short[size];
+		byte[] types = new byte[size];
+		long[] values = new long[size];
+		System.arraycopy(_columns, 0, columns, 0, _size);
+		System.arraycopy(_xfIndexes, 0, xfIndexes, 0, _size);
+		System.arraycopy(_types, 0, types, 0, _size);
+		System.arraycopy(_values, 0, values, 0, _size);
+		_columns = columns;
+		_xfIndexes = xfIndexes;
+		_types = types;
+		_values = values;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= _columns.length) {
+			return;
+		}
+		int newSize = Math.max(capacity, _columns.length * 2);
+		short[] columns = new short[newSize];
+		short[] xfIndexes = new short[newSize];
+		byte[] types = new byte[newSize];
+		long[] values = new long[newSize];
+		System.arraycopy(_columns, 0, columns, 0, _size);
+		System.arraycopy(_xfIndexes, 0, xfIndexes, 0, _size);
+		System.arraycopy(_types, 0, types, 0, _size);
+		System.arraycopy(_values, 0, values, 0, _size);
+		_columns = columns;
+		_xfIndexes = xfIndexes;
+		_types = types;
+		_values = values;
+	}
+
+	/**
+	 * @return the index of the cell for the specified column, or <tt>-(insertionPoint + 1)</tt>
+	 * if there is none
+	 */
+	public int indexOf(int column) {
+		// cells are nearly always read in column order
+		if (_size == 0 || column > (_columns[_size - 1] & 0xFFFF)) {
+			return -(_size + 1);
+		}
+		int low = 0;
+		int high = _size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midCol = _columns[mid] & 0xFFFF;
+			if (midCol < column) {
+				low = mid + 1;
+			} else if (midCol > column) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	public int getColumn(int index) {
+		return _columns[index] & 0xFFFF;
+	}
+
+	public void remove(int index) {
+		unshare();
+		int nToMove = _size - index - 1;
+		if (nToMove > 0) {
+			System.arraycopy(_columns, index + 1, _columns, index, nToMove);
+			System.arraycopy(_xfIndexes, index + 1, _xfIndexes, index, nToMove);
+			System.arraycopy(_types, index + 1, _types, index, nToMove);
+			System.arraycopy(_values, index + 1, _values, index, nToMove);
+		}
+		_size--;
+	}
+
+	/**
+	 * Creates a new record object for the packed cell at the specified index.
+	 */
+	public CellValueRecordInterface createRecord(int rowIndex, int index) {
+		switch (_types[index]) {
+			case TYPE_NUMBER:
+				return fillRecord(rowIndex, index, new NumberRecord(), null, null);
+			case TYPE_LABEL_SST:
+				return fillRecord(rowIndex, index, null, new LabelSSTRecord(), null);
+			case TYPE_BLANK:
+				return fillRecord(rowIndex, index, null, null, new BlankRecord());
+		}
+		throw new IllegalStateException("Unexpected cell type (" + _types[index] + ")");
+	}
+
+	/**
+	 * Copies the packed cell at the specified index into the supplied record of the
+	 * matching type, instead of creating a new record object.  Only the record for the
+	 * type of the cell is used, the others may be <code>null</code>.
+	 *
+	 * @return the record which was filled in
+	 */
+	public CellValueRecordInterface fillRecord(int rowIndex, int index,
+			NumberRecord nr, LabelSSTRecord lr, BlankRecord br) {
+		CellValueRecordInterface result;
+		switch (_types[index]) {
+			case TYPE_NUMBER:
+				nr.setValue(Double.longBitsToDouble(_values[index]));
+				result = nr;
+				break;
+			case TYPE_LABEL_SST:
+				lr.setSSTIndex((int) _values[index]);
+				result = lr;
+				break;
+			case TYPE_BLANK:
+				result = br;
+				break;
+			default:
+				throw new IllegalStateException("Unexpected cell type (" + _types[index] + ")");
+		}
+		result.setRow(rowIndex);
+		result.setColumn(_columns[index]);
+		result.setXFIndex(_xfIndexes[index]);
+		return result;
+	}
+}
@@ -33,7 +33,11 @@ import org.apache.poi.hssf.record.FormulaRecord;
 import org.apache.poi.hssf.record.IndexRecord;
 import org.apache.poi.hssf.record.MergeCellsRecord;
 import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RKRecord;
 import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactory;
 import org.apache.poi.hssf.record.RowRecord;
 import org.apache.poi.hssf.record.SharedFormulaRecord;
 import org.apache.poi.hssf.record.TableRecord;
@@ -63,15 +67,36 @@ public final class RowRecordsAggregate extends RecordAggregate {
 		this(SharedValueManager.createEmpty());
 	}
 	private RowRecordsAggregate(SharedValueManager svm) {
+		this(svm, new ValueRecordsAggregate());
+	}
+	private RowRecordsAggregate(SharedValueManager svm, ValueRecordsAggregate valuesAgg) {
 		if (svm == null) {
 			throw new IllegalArgumentException("SharedValueManager must be provided.");
 		}
 		_rowRecords = new TreeMap<Integer, RowRecord>();
-		_valuesAgg = new ValueRecordsAggregate();
+		_valuesAgg = valuesAgg;
 		_unknownRecords = new ArrayList<Record>();
 		_sharedValueManager = svm;
 	}
 
+	/**
+	 * Creates a deep copy of the rows and cells, for a cloned sheet.  This is much faster
+	 * than cloning the records written by {@link #visitContainedRecords(RecordVisitor)} and
+	 * reading them back, as the plain value cells are copied in bulk, without creating
+	 * record objects, and the shared formulas are not re-encoded.
+	 */
+	public RowRecordsAggregate cloneRowsAggregate() {
+		SharedValueManager svm = _sharedValueManager.copy();
+		RowRecordsAggregate result = new RowRecordsAggregate(svm, _valuesAgg.copy(svm));
+		for (RowRecord row : _rowRecords.values()) {
+			result.insertRow((RowRecord) row.clone());
+		}
+		for (Record rec : _unknownRecords) {
+			result._unknownRecords.add((Record) rec.clone());
+		}
+		return result;
+	}
+
 	/**
 	 * @param rs record stream with all {@link SharedFormulaRecord}
 	 * {@link ArrayRecord}, {@link TableRecord} {@link MergeCellsRecord} Records removed
@@ -103,6 +128,18 @@ public final class RowRecordsAggregate extends RecordAggregate {
 				_valuesAgg.addMultipleBlanks((MulBlankRecord) rec);
 				continue;
 			}
+			// RecordFactory converts these when reading, but they are written (and cloned) as is
+			if (rec instanceof MulRKRecord) {
+				NumberRecord[] nrs = RecordFactory.convertRKRecords((MulRKRecord) rec);
+				for (int i = 0; i < nrs.length; i++) {
+					_valuesAgg.construct(nrs[i], rs, svm);
+				}
+				continue;
+			}
+			if (rec instanceof RKRecord) {
+				_valuesAgg.construct(RecordFactory.convertToNumberRecord((RKRecord) rec), rs, svm);
+				continue;
+			}
 			if (!(rec instanceof CellValueRecordInterface)) {
 				throw new RuntimeException("Unexpected record type (" + rec.getClass().getName() + ")");
 			}
@@ -160,6 +197,20 @@ public final class RowRecordsAggregate extends RecordAggregate {
 		return _rowRecords.get(Integer.valueOf(rowIndex));
 	}
 
+	/**
+	 * @return the index of the first row which has cells but no row record,
+	 *  or <code>-1</code> if every row with cells has a row record
+	 */
+	public int findRowWithoutRecord() {
+		int limit = _valuesAgg.getRowIndexLimit();
+		for (int row = 0; row < limit; row++) {
+			if (_valuesAgg.rowHasCells(row) && !_rowRecords.containsKey(Integer.valueOf(row))) {
+				return row;
+			}
+		}
+		return -1;
+	}
+
 	public int getPhysicalNumberOfRows()
 	{
 		return _rowRecords.size();
@@ -455,6 +506,44 @@ public final class RowRecordsAggregate extends RecordAggregate {
 		return _valuesAgg.iterator();
 	}
 
+	/**
+	 * @return the cell record at the specified position, or <code>null</code> if there is none
+	 */
+	public CellValueRecordInterface getCellValueRecord(int rowIndex, int columnIndex) {
+		return _valuesAgg.getCell(rowIndex, columnIndex);
+	}
+
+	/**
+	 * @return the cell record at the specified position, or <code>null</code> if there is none.
+	 *  The record of a packed cell is only valid until the next call,
+	 *  see {@link ValueRecordsAggregate#peekCell(int, int)}
+	 */
+	public CellValueRecordInterface peekCellValueRecord(int rowIndex, int columnIndex) {
+		return _valuesAgg.peekCell(rowIndex, columnIndex);
+	}
+
+	/**
+	 * @return the cell records of the specified row in column order
+	 */
+	public List<CellValueRecordInterface> getCellValueRecords(int rowIndex) {
+		return _valuesAgg.getRowCells(rowIndex);
+	}
+
+	/**
+	 * Moves the cell records of the specified rows by <code>n</code> rows, replacing the
+	 * cells of the destination rows.  The row records are not changed.
+	 */
+	public void shiftRowCells(int startRow, int endRow, int n) {
+		_valuesAgg.shiftRows(startRow, endRow, n);
+	}
+
+	/**
+	 * @return the formula cell records of the specified rows
+	 */
+	public List<FormulaRecordAggregate> getFormulaCellRecords(int startRow, int endRow) {
+		return _valuesAgg.getFormulaCells(startRow, endRow);
+	}
+
 	/**
 	 * @deprecated use {@link #getCellValueIterator()} instead
 	 */
@@ -499,6 +588,12 @@ public final class RowRecordsAggregate extends RecordAggregate {
 	public void insertCell(CellValueRecordInterface cvRec) {
 		_valuesAgg.insertCell(cvRec);
 	}
+	public void insertNumberCell(int rowIndex, int column, short xfIndex, double value) {
+		_valuesAgg.insertNumberCell(rowIndex, column, xfIndex, value);
+	}
+	public void insertLabelSSTCell(int rowIndex, int column, short xfIndex, int sstIndex) {
+		_valuesAgg.insertLabelSSTCell(rowIndex, column, xfIndex, sstIndex);
+	}
 	public void removeCell(CellValueRecordInterface cvRec) {
 		if (cvRec instanceof FormulaRecordAggregate) {
 			((FormulaRecordAggregate)cvRec).notifyFormulaChanging();
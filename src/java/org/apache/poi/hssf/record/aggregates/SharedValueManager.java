@@ -47,8 +47,8 @@ public final class SharedValueManager {
 
 	private static final class SharedFormulaGroup {
 		private final SharedFormulaRecord _sfr;
-		private final FormulaRecordAggregate[] _frAggs;
-		private int _numberOfFormulas;
+		/** the formulas linked so far - formulas are linked on first use, in no particular order */
+		private final List<FormulaRecordAggregate> _frAggs;
 		/**
 		 * Coordinates of the first cell having a formula that uses this shared formula.
 		 * This is often <i>but not always</i> the top left cell in the range covered by
@@ -63,28 +63,22 @@ public final class SharedValueManager {
 			}
 			_sfr = sfr;
 			_firstCell = firstCell;
-			int width = sfr.getLastColumn() - sfr.getFirstColumn() + 1;
-			int height = sfr.getLastRow() - sfr.getFirstRow() + 1;
-			_frAggs = new FormulaRecordAggregate[width * height];
-			_numberOfFormulas = 0;
+			_frAggs = new ArrayList<FormulaRecordAggregate>();
 		}
 
 		public void add(FormulaRecordAggregate agg) {
-			if (_numberOfFormulas == 0) {
-				if (_firstCell.getRow() != agg.getRow() || _firstCell.getCol() != agg.getColumn()) {
-					throw new IllegalStateException("shared formula coding error: "+_firstCell.getCol()+'/'+_firstCell.getRow()+" != "+agg.getColumn()+'/'+agg.getRow());
-				}
+			if (!_sfr.isInRange(agg.getRow(), agg.getColumn())) {
+				throw new IllegalStateException("shared formula coding error: "+agg.getColumn()+'/'+agg.getRow()
+						+ " is not in range " + _sfr.getRange().toString());
 			}
-			if (_numberOfFormulas >= _frAggs.length) {
-				throw new RuntimeException("Too many formula records for shared formula group");
-			}
-			_frAggs[_numberOfFormulas++] = agg;
+			_frAggs.add(agg);
 		}
 
 		public void unlinkSharedFormulas() {
-			for (int i = 0; i < _numberOfFormulas; i++) {
-				_frAggs[i].unlinkSharedFormula();
+			for (FormulaRecordAggregate agg : _frAggs) {
+				agg.unlinkSharedFormula();
 			}
+			_frAggs.clear();
 		}
 
 		public SharedFormulaRecord getSFR() {
@@ -113,6 +107,11 @@ public final class SharedValueManager {
 	private final Map<SharedFormulaRecord, SharedFormulaGroup> _groupsBySharedFormulaRecord;
 	/** cached for optimization purposes */
     private Map<Integer,SharedFormulaGroup> _groupsCache;
+	/**
+	 * Groups removed by {@link #unlink(SharedFormulaRecord)}, keyed like {@link #_groupsCache}.
+	 * Formulas of these groups which had not been linked yet are converted when they are first used.
+	 */
+	private Map<Integer,SharedFormulaGroup> _unlinkedGroups;
 
 	private SharedValueManager(SharedFormulaRecord[] sharedFormulaRecords,
 			CellReference[] firstCells, ArrayRecord[] arrayRecords, TableRecord[] tableRecords) {
@@ -130,6 +129,41 @@ public final class SharedValueManager {
 		_groupsBySharedFormulaRecord = m;
 	}
 
+	/**
+	 * Creates the manager for a cloned sheet, with copies of the shared formula, array
+	 * and table records.  The formulas of the cloned sheet are linked to them on first
+	 * use, like formulas read from a file.
+	 */
+	SharedValueManager copy() {
+		int nShF = _groupsBySharedFormulaRecord.size();
+		SharedFormulaRecord[] sfrs = new SharedFormulaRecord[nShF];
+		CellReference[] firstCells = new CellReference[nShF];
+		int i = 0;
+		for (SharedFormulaGroup group : _groupsBySharedFormulaRecord.values()) {
+			sfrs[i] = (SharedFormulaRecord) group._sfr.clone();
+			firstCells[i] = group._firstCell;
+			i++;
+		}
+		ArrayRecord[] arrayRecords = new ArrayRecord[_arrayRecords.size()];
+		for (i = 0; i < arrayRecords.length; i++) {
+			arrayRecords[i] = (ArrayRecord) _arrayRecords.get(i).cloneViaReserialise();
+		}
+		TableRecord[] tableRecords = new TableRecord[_tableRecords.length];
+		for (i = 0; i < tableRecords.length; i++) {
+			tableRecords[i] = (TableRecord) _tableRecords[i].cloneViaReserialise();
+		}
+		SharedValueManager result = new SharedValueManager(sfrs, firstCells, arrayRecords, tableRecords);
+		if (_unlinkedGroups != null) {
+			// only used to convert the formulas, the records are not written
+			result._unlinkedGroups = new HashMap<Integer,SharedFormulaGroup>(_unlinkedGroups.size() * 3 / 2);
+			for (Map.Entry<Integer,SharedFormulaGroup> e : _unlinkedGroups.entrySet()) {
+				SharedFormulaGroup group = e.getValue();
+				result._unlinkedGroups.put(e.getKey(), new SharedFormulaGroup(group._sfr, group._firstCell));
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * @return a modifiable list, independent of the supplied array
 	 */
@@ -154,11 +188,17 @@ public final class SharedValueManager {
 
 	/**
 	 * @param firstCell as extracted from the {@link ExpPtg} from the cell's formula.
-	 * @return never <code>null</code>
+	 * @return <code>null</code> if the shared formula has already been unlinked, in which case
+	 * <tt>agg</tt> has been converted to a plain unshared formula
 	 */
 	public SharedFormulaRecord linkSharedFormulaRecord(CellReference firstCell, FormulaRecordAggregate agg) {
 		SharedFormulaGroup result = findFormulaGroupForCell(firstCell);
         if(null == result) {
+            SharedFormulaGroup unlinked = _unlinkedGroups == null ? null : _unlinkedGroups.get(getKeyForCache(firstCell));
+            if (unlinked != null) {
+                agg.convertToUnsharedFormula(unlinked.getSFR());
+                return null;
+            }
             throw new RuntimeException("Failed to find a matching shared formula record");
         }
 		result.add(agg);
@@ -244,6 +284,10 @@ public final class SharedValueManager {
 			throw new IllegalStateException("Failed to find formulas for shared formula");
 		}
 		_groupsCache = null; // be sure to reset cached value
+		if (_unlinkedGroups == null) {
+			_unlinkedGroups = new HashMap<Integer,SharedFormulaGroup>();
+		}
+		_unlinkedGroups.put(getKeyForCache(svg._firstCell), svg);
 		svg.unlinkSharedFormulas();
 	}
 
@@ -25,11 +25,16 @@ import org.apache.poi.hssf.model.RecordStream;
 import org.apache.poi.hssf.record.BlankRecord;
 import org.apache.poi.hssf.record.CellValueRecordInterface;
 import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
 import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RKRecord;
 import org.apache.poi.hssf.record.Record;
 import org.apache.poi.hssf.record.RecordBase;
 import org.apache.poi.hssf.record.StringRecord;
 import org.apache.poi.hssf.record.aggregates.RecordAggregate.RecordVisitor;
+import org.apache.poi.hssf.util.RKUtil;
 import org.apache.poi.ss.formula.FormulaShifter;
 import org.apache.poi.ss.formula.ptg.Ptg;
 
@@ -47,6 +52,15 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 	private int firstcell = INDEX_NOT_SET;
 	private int lastcell  = INDEX_NOT_SET;
 	private CellValueRecordInterface[][] records;
+	/**
+	 * Plain value cells read from a file which have not been accessed yet. A cell is
+	 * either here or in {@link #records}, never in both.
+	 */
+	private PackedCellRow[] packedRows;
+	/** reused by {@link #peekCell(int, int)} */
+	private NumberRecord _peekNumber;
+	private LabelSSTRecord _peekLabel;
+	private BlankRecord _peekBlank;
 
 	/** Creates a new instance of ValueRecordsAggregate */
 
@@ -60,6 +74,17 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 	}
 
 	public void insertCell(CellValueRecordInterface cell) {
+		PackedCellRow packedRow = getPackedRow(cell.getRow());
+		if (packedRow != null) {
+			int i = packedRow.indexOf(cell.getColumn());
+			if (i >= 0) {
+				packedRow.remove(i);
+			}
+		}
+		storeCell(cell);
+	}
+
+	private void storeCell(CellValueRecordInterface cell) {
 		short column = cell.getColumn();
 		int row = cell.getRow();
 		if (row >= records.length) {
@@ -89,7 +114,10 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 			records[row] = rowCells;
 		}
 		rowCells[column] = cell;
+		updateColumnRange(column);
+	}
 
+	private void updateColumnRange(int column) {
 		if (column < firstcell || firstcell == INDEX_NOT_SET) {
 			firstcell = column;
 		}
@@ -98,6 +126,202 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 		}
 	}
 
+	private PackedCellRow getPackedRow(int rowIndex) {
+		if (packedRows == null || rowIndex >= packedRows.length) {
+			return null;
+		}
+		return packedRows[rowIndex];
+	}
+
+	private PackedCellRow getOrCreatePackedRow(int rowIndex) {
+		ensurePackedRowsCapacity(rowIndex);
+		PackedCellRow result = packedRows[rowIndex];
+		if (result == null) {
+			result = new PackedCellRow();
+			packedRows[rowIndex] = result;
+		}
+		return result;
+	}
+
+	private void ensurePackedRowsCapacity(int rowIndex) {
+		if (packedRows == null) {
+			packedRows = new PackedCellRow[Math.max(records.length, rowIndex + 1)];
+		} else if (rowIndex >= packedRows.length) {
+			PackedCellRow[] oldRows = packedRows;
+			int newSize = Math.max(oldRows.length * 2, rowIndex + 1);
+			packedRows = new PackedCellRow[newSize];
+			System.arraycopy(oldRows, 0, packedRows, 0, oldRows.length);
+		}
+	}
+
+	/**
+	 * Removes the record object (if any) at the specified position, so that a packed
+	 * cell can take its place.
+	 */
+	private void clearStoredCell(int rowIndex, int column) {
+		if (rowIndex < records.length) {
+			CellValueRecordInterface[] rowCells = records[rowIndex];
+			if (rowCells != null && column < rowCells.length) {
+				rowCells[column] = null;
+			}
+		}
+	}
+
+	private void insertPackedCell(CellValueRecordInterface cell) {
+		int column = cell.getColumn();
+		getOrCreatePackedRow(cell.getRow()).add(cell);
+		clearStoredCell(cell.getRow(), column);
+		updateColumnRange(column);
+	}
+
+	/**
+	 * Sets a numeric cell, replacing any cell at the same position, without creating a
+	 * record object for it
+	 */
+	public void insertNumberCell(int rowIndex, int column, short xfIndex, double value) {
+		getOrCreatePackedRow(rowIndex).addNumber(column, xfIndex, value);
+		clearStoredCell(rowIndex, column);
+		updateColumnRange(column);
+	}
+
+	/**
+	 * Sets a string cell, replacing any cell at the same position, without creating a
+	 * record object for it
+	 */
+	public void insertLabelSSTCell(int rowIndex, int column, short xfIndex, int sstIndex) {
+		getOrCreatePackedRow(rowIndex).addLabelSST(column, xfIndex, sstIndex);
+		clearStoredCell(rowIndex, column);
+		updateColumnRange(column);
+	}
+
+	/**
+	 * Creates the record objects for any packed cells of the specified row.
+	 */
+	private void unpackRow(int rowIndex) {
+		PackedCellRow packedRow = getPackedRow(rowIndex);
+		if (packedRow == null) {
+			return;
+		}
+		packedRows[rowIndex] = null;
+		for (int i = 0; i < packedRow.size(); i++) {
+			storeCell(packedRow.createRecord(rowIndex, i));
+		}
+	}
+
+	private void unpackAllRows() {
+		if (packedRows == null) {
+			return;
+		}
+		for (int rowIx = 0; rowIx < packedRows.length; rowIx++) {
+			unpackRow(rowIx);
+		}
+		packedRows = null;
+	}
+
+	/**
+	 * @return the cell record at the specified position or <code>null</code> if there is none.
+	 * The returned record is the one that will be written, so it may be modified.  A packed
+	 * cell is converted to its record object, after which {@link #peekCell(int, int)} returns
+	 * that object for it
+	 */
+	public CellValueRecordInterface getCell(int rowIndex, int columnIndex) {
+		PackedCellRow packedRow = getPackedRow(rowIndex);
+		if (packedRow != null) {
+			int i = packedRow.indexOf(columnIndex);
+			if (i >= 0) {
+				CellValueRecordInterface result = packedRow.createRecord(rowIndex, i);
+				packedRow.remove(i);
+				storeCell(result);
+				return result;
+			}
+		}
+		if (rowIndex >= records.length) {
+			return null;
+		}
+		CellValueRecordInterface[] rowCells = records[rowIndex];
+		if (rowCells == null || columnIndex >= rowCells.length) {
+			return null;
+		}
+		return rowCells[columnIndex];
+	}
+
+	/**
+	 * Gives read access to a cell without converting a packed cell to a record object,
+	 * so that many cells can be read cheaply.<p/>
+	 *
+	 * For a packed cell the result is a temporary record owned by this aggregate.  The next
+	 * call of this method overwrites it with the value of the cell asked for then, whichever
+	 * cell the record was for before, so the values must be read from it before the next
+	 * call.  Changing it does not change the cell, use {@link #getCell(int, int)} to get
+	 * a record which can be kept or modified.
+	 *
+	 * @return the cell record at the specified position or <code>null</code> if there is none.
+	 */
+	public CellValueRecordInterface peekCell(int rowIndex, int columnIndex) {
+		PackedCellRow packedRow = getPackedRow(rowIndex);
+		if (packedRow != null) {
+			int i = packedRow.indexOf(columnIndex);
+			if (i >= 0) {
+				if (_peekNumber == null) {
+					_peekNumber = new NumberRecord();
+					_peekLabel = new LabelSSTRecord();
+					_peekBlank = new BlankRecord();
+				}
+				return packedRow.fillRecord(rowIndex, i, _peekNumber, _peekLabel, _peekBlank);
+			}
+		}
+		if (rowIndex >= records.length) {
+			return null;
+		}
+		CellValueRecordInterface[] rowCells = records[rowIndex];
+		if (rowCells == null || columnIndex >= rowCells.length) {
+			return null;
+		}
+		return rowCells[columnIndex];
+	}
+
+	/**
+	 * @return all cell records of the specified row in column order.
+	 * The returned records are the ones that will be written, so they may be modified.
+	 */
+	public List<CellValueRecordInterface> getRowCells(int rowIndex) {
+		unpackRow(rowIndex);
+		List<CellValueRecordInterface> result = new ArrayList<CellValueRecordInterface>();
+		if (rowIndex < records.length && records[rowIndex] != null) {
+			CellValueRecordInterface[] rowCells = records[rowIndex];
+			for (int i = 0; i < rowCells.length; i++) {
+				if (rowCells[i] != null) {
+					result.add(rowCells[i]);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the cells of the specified row indexed by column, with any packed cells
+	 * converted to temporary record objects. <code>null</code> if the row has no cells
+	 */
+	private CellValueRecordInterface[] getRowCellsForWriting(int rowIndex) {
+		CellValueRecordInterface[] rowCells = rowIndex < records.length ? records[rowIndex] : null;
+		PackedCellRow packedRow = getPackedRow(rowIndex);
+		if (packedRow == null || packedRow.size() == 0) {
+			return rowCells;
+		}
+		int nCols = packedRow.getColumn(packedRow.size() - 1) + 1;
+		if (rowCells != null && rowCells.length > nCols) {
+			nCols = rowCells.length;
+		}
+		CellValueRecordInterface[] result = new CellValueRecordInterface[nCols];
+		if (rowCells != null) {
+			System.arraycopy(rowCells, 0, result, 0, rowCells.length);
+		}
+		for (int i = 0; i < packedRow.size(); i++) {
+			result[packedRow.getColumn(i)] = packedRow.createRecord(rowIndex, i);
+		}
+		return result;
+	}
+
 	public void removeCell(CellValueRecordInterface cell) {
 		if (cell == null) {
 			throw new IllegalArgumentException("cell must not be null");
@@ -122,6 +346,9 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 			throw new IllegalArgumentException("Specified rowIndex " + rowIndex
 					+ " is outside the allowable range (0.." +MAX_ROW_INDEX + ")");
 		}
+		if (packedRows != null && rowIndex < packedRows.length) {
+			packedRows[rowIndex] = null;
+		}
 		if (rowIndex >= records.length) {
 			// this can happen when the client code has created a row,
 			// and then removes/replaces it before adding any cells. (see bug 46312)
@@ -132,8 +359,103 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 	}
 
 
+	/**
+	 * Moves the cells of the rows from <code>startRow</code> to <code>endRow</code> by
+	 * <code>n</code> rows, replacing the cells of the destination rows.  Each row is moved
+	 * as a whole: packed cells stay packed, and the record objects only get their new
+	 * row index.  The formula cells moved or replaced leave their shared formulas first,
+	 * see {@link FormulaRecordAggregate#notifyFormulaChanging()}.
+	 */
+	public void shiftRows(int startRow, int endRow, int n) {
+		int destStart = startRow + n;
+		int destEnd = endRow + n;
+		if (startRow < 0 || startRow > endRow || destStart < 0 || destEnd > MAX_ROW_INDEX) {
+			throw new IllegalArgumentException("Cannot shift rows " + startRow + ".." + endRow
+					+ " by " + n + " rows within the allowable range (0.." + MAX_ROW_INDEX + ")");
+		}
+		// the shared formulas are resolved while all cells are still at their old positions
+		for (FormulaRecordAggregate fra : getFormulaCells(startRow, endRow)) {
+			fra.notifyFormulaChanging();
+		}
+		for (FormulaRecordAggregate fra : getFormulaCells(destStart, destEnd)) {
+			fra.notifyFormulaChanging();
+		}
+
+		int nRows = endRow - startRow + 1;
+		CellValueRecordInterface[][] movedCells = new CellValueRecordInterface[nRows][];
+		PackedCellRow[] movedPackedRows = new PackedCellRow[nRows];
+		for (int i = 0; i < nRows; i++) {
+			int rowIx = startRow + i;
+			if (rowIx < records.length) {
+				movedCells[i] = records[rowIx];
+				records[rowIx] = null;
+			}
+			movedPackedRows[i] = getPackedRow(rowIx);
+			if (movedPackedRows[i] != null) {
+				packedRows[rowIx] = null;
+			}
+		}
+		for (int rowIx = destStart; rowIx <= destEnd; rowIx++) {
+			if (rowIx < records.length) {
+				records[rowIx] = null;
+			}
+			if (getPackedRow(rowIx) != null) {
+				packedRows[rowIx] = null;
+			}
+		}
+
+		if (destEnd >= records.length) {
+			CellValueRecordInterface[][] oldRecords = records;
+			records = new CellValueRecordInterface[Math.max(oldRecords.length * 2, destEnd + 1)][];
+			System.arraycopy(oldRecords, 0, records, 0, oldRecords.length);
+		}
+		for (int i = 0; i < nRows; i++) {
+			int rowIx = destStart + i;
+			CellValueRecordInterface[] rowCells = movedCells[i];
+			if (rowCells != null) {
+				for (int j = 0; j < rowCells.length; j++) {
+					if (rowCells[j] != null) {
+						rowCells[j].setRow(rowIx);
+					}
+				}
+				records[rowIx] = rowCells;
+			}
+			if (movedPackedRows[i] != null) {
+				ensurePackedRowsCapacity(rowIx);
+				packedRows[rowIx] = movedPackedRows[i];
+			}
+		}
+	}
+
+	/**
+	 * @return the formula cells of the rows from <code>startRow</code> to <code>endRow</code>,
+	 * found without converting any packed cells (which are never formulas)
+	 */
+	public List<FormulaRecordAggregate> getFormulaCells(int startRow, int endRow) {
+		List<FormulaRecordAggregate> result = new ArrayList<FormulaRecordAggregate>();
+		for (int rowIx = Math.max(startRow, 0); rowIx <= endRow && rowIx < records.length; rowIx++) {
+			CellValueRecordInterface[] rowCells = records[rowIx];
+			if (rowCells == null) {
+				continue;
+			}
+			for (int i = 0; i < rowCells.length; i++) {
+				if (rowCells[i] instanceof FormulaRecordAggregate) {
+					result.add((FormulaRecordAggregate) rowCells[i]);
+				}
+			}
+		}
+		return result;
+	}
+
 	public int getPhysicalNumberOfCells() {
 		int count = 0;
+		if (packedRows != null) {
+			for (int r = 0; r < packedRows.length; r++) {
+				if (packedRows[r] != null) {
+					count += packedRows[r].size();
+				}
+			}
+		}
 		for (int r = 0; r < records.length; r++) {
 			CellValueRecordInterface[] rowCells = records[r];
 			if (rowCells != null) {
@@ -155,13 +477,12 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 	}
 
 	public void addMultipleBlanks(MulBlankRecord mbr) {
+		PackedCellRow packedRow = getOrCreatePackedRow(mbr.getRow());
 		for (int j = 0; j < mbr.getNumColumns(); j++) {
-			BlankRecord br = new BlankRecord();
-
-			br.setColumn(( short ) (j + mbr.getFirstColumn()));
-			br.setRow(mbr.getRow());
-			br.setXFIndex(mbr.getXFAt(j));
-			insertCell(br);
+			int column = j + mbr.getFirstColumn();
+			packedRow.addBlank(column, mbr.getXFAt(j));
+			clearStoredCell(mbr.getRow(), column);
+			updateColumnRange(column);
 		}
 	}
 
@@ -181,6 +502,8 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 				cachedText = null;
 			}
 			insertCell(new FormulaRecordAggregate(formulaRec, cachedText, sfh));
+		} else if (PackedCellRow.isPackable(rec)) {
+			insertPackedCell(rec);
 		} else {
 			insertCell(rec);
 		}
@@ -191,14 +514,25 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 	 */
 	public int getRowCellBlockSize(int startRow, int endRow) {
 		int result = 0;
-		for(int rowIx=startRow; rowIx<=endRow && rowIx<records.length; rowIx++) {
-			result += getRowSerializedSize(records[rowIx]);
+		for(int rowIx=startRow; rowIx<=endRow; rowIx++) {
+			result += getRowSerializedSize(getRowCellsForWriting(rowIx));
 		}
 		return result;
 	}
 
+	/**
+	 * @return one more than the highest index of a row that may have cells attached to it
+	 */
+	public int getRowIndexLimit() {
+		return packedRows == null ? records.length : Math.max(records.length, packedRows.length);
+	}
+
 	/** Returns true if the row has cells attached to it */
 	public boolean rowHasCells(int row) {
+		PackedCellRow packedRow = getPackedRow(row);
+		if (packedRow != null && packedRow.size() > 0) {
+			return true;
+		}
 		if (row >= records.length) {
 			return false;
 		}
@@ -221,9 +555,15 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 				continue;
 			}
 			int nBlank = countBlanks(rowCells, i);
+			int nRK = countRKs(rowCells, i);
 			if (nBlank > 1) {
 				result += (10 + 2*nBlank);
 				i+=nBlank-1;
+			} else if (nRK > 1) {
+				result += (10 + 6*nRK);
+				i+=nRK-1;
+			} else if (nRK == 1) {
+				result += 14;
 			} else {
 				result += cvr.getRecordSize();
 			}
@@ -233,7 +573,7 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 
 	public void visitCellsForRow(int rowIndex, RecordVisitor rv) {
 
-		CellValueRecordInterface[] rowCells = records[rowIndex];
+		CellValueRecordInterface[] rowCells = getRowCellsForWriting(rowIndex);
 		if(rowCells == null) {
 			throw new IllegalArgumentException("Row [" + rowIndex + "] is empty");
 		}
@@ -245,9 +585,17 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 				continue;
 			}
 			int nBlank = countBlanks(rowCells, i);
+			int nRK = countRKs(rowCells, i);
 			if (nBlank > 1) {
 				rv.visitRecord(createMBR(rowCells, i, nBlank));
 				i+=nBlank-1;
+			} else if (nRK > 1) {
+				rv.visitRecord(createMulRK(rowCells, i, nRK));
+				i+=nRK-1;
+			} else if (nRK == 1) {
+				NumberRecord nr = (NumberRecord) cvr;
+				int rk = (int) RKUtil.encodeNumber(nr.getValue());
+				rv.visitRecord(new RKRecord(nr.getRow(), nr.getColumn(), nr.getXFIndex(), rk));
 			} else if (cvr instanceof RecordAggregate) {
 				RecordAggregate agg = (RecordAggregate) cvr;
 				agg.visitContainedRecords(rv);
@@ -273,6 +621,38 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 		return i - startIx;
 	}
 
+	/**
+	 * @return the number of <em>consecutive</em> {@link NumberRecord}s in the specified row
+	 * starting from startIx, whose values can be written as RK numbers.
+	 */
+	private static int countRKs(CellValueRecordInterface[] rowCellValues, int startIx) {
+		int i = startIx;
+		while(i < rowCellValues.length) {
+			CellValueRecordInterface cvr = rowCellValues[i];
+			if (!(cvr instanceof NumberRecord)) {
+				break;
+			}
+			if (RKUtil.encodeNumber(((NumberRecord)cvr).getValue()) == -1) {
+				break;
+			}
+			i++;
+		}
+		return i - startIx;
+	}
+
+	private MulRKRecord createMulRK(CellValueRecordInterface[] cellValues, int startIx, int nRK) {
+
+		short[] xfs = new short[nRK];
+		int[] rks = new int[nRK];
+		for (int i = 0; i < xfs.length; i++) {
+			NumberRecord nr = (NumberRecord)cellValues[startIx + i];
+			xfs[i] = nr.getXFIndex();
+			rks[i] = (int) RKUtil.encodeNumber(nr.getValue());
+		}
+		int rowIx = cellValues[startIx].getRow();
+		return new MulRKRecord(rowIx, startIx, xfs, rks);
+	}
+
 	private MulBlankRecord createMBR(CellValueRecordInterface[] cellValues, int startIx, int nBlank) {
 
 		short[] xfs = new short[nBlank];
@@ -354,6 +734,7 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 
 	/** value iterator */
 	public Iterator<CellValueRecordInterface> iterator() {
+		unpackAllRows();
 		return new ValueIterator();
 	}
 
@@ -364,6 +745,7 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 	 */
 	@Deprecated
 	public CellValueRecordInterface[] getValueRecords() {
+		unpackAllRows();
 		List<CellValueRecordInterface> temp = new ArrayList<CellValueRecordInterface>();
 
 		for (int rowIx = 0; rowIx < records.length; rowIx++) {
@@ -387,4 +769,44 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 	public Object clone() {
 		throw new RuntimeException("clone() should not be called.  ValueRecordsAggregate should be copied via Sheet.cloneSheet()");
 	}
+
+	/**
+	 * Creates a deep copy of the cells for a cloned sheet.  The packed cells are copied
+	 * (sharing their arrays until changed) and plain value cells are packed, so no
+	 * record objects are created for them.  The other cells are cloned.
+	 *
+	 * @param svm the {@link SharedValueManager} of the cloned sheet
+	 */
+	ValueRecordsAggregate copy(SharedValueManager svm) {
+		ValueRecordsAggregate result = new ValueRecordsAggregate(firstcell, lastcell,
+				new CellValueRecordInterface[records.length][]);
+		if (packedRows != null) {
+			result.packedRows = new PackedCellRow[packedRows.length];
+			for (int rowIx = 0; rowIx < packedRows.length; rowIx++) {
+				if (packedRows[rowIx] != null) {
+					result.packedRows[rowIx] = packedRows[rowIx].copy();
+				}
+			}
+		}
+		for (int rowIx = 0; rowIx < records.length; rowIx++) {
+			CellValueRecordInterface[] rowCells = records[rowIx];
+			if (rowCells == null) {
+				continue;
+			}
+			for (int colIx = 0; colIx < rowCells.length; colIx++) {
+				CellValueRecordInterface cell = rowCells[colIx];
+				if (cell == null) {
+					continue;
+				}
+				if (PackedCellRow.isPackable(cell)) {
+					result.getOrCreatePackedRow(rowIx).add(cell);
+				} else if (cell instanceof FormulaRecordAggregate) {
+					result.storeCell(((FormulaRecordAggregate) cell).copy(svm));
+				} else {
+					result.storeCell((CellValueRecordInterface) ((Record) cell).clone());
+				}
+			}
+		}
+		return result;
+	}
 }
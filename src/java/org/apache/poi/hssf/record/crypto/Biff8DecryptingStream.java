@@ -20,20 +20,31 @@ package org.apache.poi.hssf.record.crypto;
 import java.io.InputStream;
 
 import org.apache.poi.hssf.record.BiffHeaderInput;
+import org.apache.poi.util.LittleEndian;
 import org.apache.poi.util.LittleEndianInput;
 import org.apache.poi.util.LittleEndianInputStream;
 
 /**
+ * Reads and decrypts a BIFF8 stream.  The raw stream is read ahead in chunks of up to
+ * {@link #BUFFER_SIZE} bytes (as far as the underlying stream reports them available),
+ * and the RC4 key stream is generated a whole 1024 byte block at a time.
  *
  * @author Josh Micich
  */
 public final class Biff8DecryptingStream implements BiffHeaderInput, LittleEndianInput {
 
+	private static final int BUFFER_SIZE = 4096;
+
 	private final LittleEndianInput _le;
 	private final Biff8RC4 _rc4;
+	/** raw (still encrypted) bytes read ahead from <tt>_le</tt> */
+	private final byte[] _buf;
+	private int _bufPos;
+	private int _bufLimit;
 
 	public Biff8DecryptingStream(InputStream in, int initialOffset, Biff8EncryptionKey key) {
 		_rc4 = new Biff8RC4(initialOffset, key);
+		_buf = new byte[BUFFER_SIZE];
 
 		if (in instanceof LittleEndianInput) {
 			// accessing directly is an optimisation
@@ -45,14 +56,41 @@ public final class Biff8DecryptingStream implements BiffHeaderInput, LittleEndia
 	}
 
 	public int available() {
-		return _le.available();
+		return _bufLimit - _bufPos + _le.available();
+	}
+
+	/**
+	 * Makes sure that at least <tt>nBytes</tt> (at most {@link #BUFFER_SIZE}) raw bytes
+	 * are buffered.  Reads ahead only as far as the underlying stream reports available,
+	 * so that the position of the underlying stream stays predictable.
+	 */
+	private void fillBuffer(int nBytes) {
+		int nBuffered = _bufLimit - _bufPos;
+		if (nBuffered >= nBytes) {
+			return;
+		}
+		if (nBuffered > 0) {
+			System.arraycopy(_buf, _bufPos, _buf, 0, nBuffered);
+		}
+		_bufPos = 0;
+		_bufLimit = nBuffered;
+		int nToRead = Math.max(nBytes - nBuffered, Math.min(BUFFER_SIZE - nBuffered, _le.available()));
+		_le.readFully(_buf, _bufLimit, nToRead);
+		_bufLimit += nToRead;
+	}
+
+	private int readRawUShort() {
+		fillBuffer(2);
+		int result = LittleEndian.getUShort(_buf, _bufPos);
+		_bufPos += 2;
+		return result;
 	}
 
 	/**
 	 * Reads an unsigned short value without decrypting
 	 */
 	public int readRecordSID() {
-		int sid = _le.readUShort();
+		int sid = readRawUShort();
 		_rc4.skipTwoBytes();
 		_rc4.startRecord(sid);
 		return sid;
@@ -62,7 +100,7 @@ public final class Biff8DecryptingStream implements BiffHeaderInput, LittleEndia
 	 * Reads an unsigned short value without decrypting
 	 */
 	public int readDataSize() {
-		int dataSize = _le.readUShort();
+		int dataSize = readRawUShort();
 		_rc4.skipTwoBytes();
 		return dataSize;
 	}
@@ -81,31 +119,52 @@ public final class Biff8DecryptingStream implements BiffHeaderInput, LittleEndia
 	}
 
 	public void readFully(byte[] buf, int off, int len) {
-		_le.readFully(buf, off, len);
+		int nBuffered = Math.min(len, _bufLimit - _bufPos);
+		if (nBuffered > 0) {
+			System.arraycopy(_buf, _bufPos, buf, off, nBuffered);
+			_bufPos += nBuffered;
+		}
+		int nRemaining = len - nBuffered;
+		if (nRemaining > 0) {
+			if (nRemaining < BUFFER_SIZE) {
+				fillBuffer(nRemaining);
+				System.arraycopy(_buf, _bufPos, buf, off + nBuffered, nRemaining);
+				_bufPos += nRemaining;
+			} else {
+				_le.readFully(buf, off + nBuffered, nRemaining);
+			}
+		}
 		_rc4.xor(buf, off, len);
 	}
 
 
 	public int readUByte() {
-		return _rc4.xorByte(_le.readUByte());
+		fillBuffer(1);
+		return _rc4.xorByte(_buf[_bufPos++] & 0xFF);
 	}
 	public byte readByte() {
-		return (byte) _rc4.xorByte(_le.readUByte());
+		return (byte) readUByte();
 	}
 
 
 	public int readUShort() {
-		return _rc4.xorShort(_le.readUShort());
+		return _rc4.xorShort(readRawUShort());
 	}
 	public short readShort() {
-		return (short) _rc4.xorShort(_le.readUShort());
+		return (short) readUShort();
 	}
 
 	public int readInt() {
-		return _rc4.xorInt(_le.readInt());
+		fillBuffer(4);
+		int result = LittleEndian.getInt(_buf, _bufPos);
+		_bufPos += 4;
+		return _rc4.xorInt(result);
 	}
 
 	public long readLong() {
-		return _rc4.xorLong(_le.readLong());
+		fillBuffer(8);
+		long result = LittleEndian.getLong(_buf, _bufPos);
+		_bufPos += 8;
+		return _rc4.xorLong(result);
 	}
 }
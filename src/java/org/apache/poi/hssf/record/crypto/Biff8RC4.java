@@ -22,8 +22,9 @@ import org.apache.poi.hssf.record.FilePassRecord;
 import org.apache.poi.hssf.record.InterfaceHdrRecord;
 
 /**
- * Used for both encrypting and decrypting BIFF8 streams. The internal
- * {@link RC4} instance is renewed (re-keyed) every 1024 bytes.
+ * Used for both encrypting and decrypting BIFF8 streams. The {@link RC4} key stream is
+ * renewed (re-keyed) every 1024 bytes.  The key stream of the current 1024 byte block
+ * is generated in one go and kept in a buffer.
  *
  * @author Josh Micich
  */
@@ -31,7 +32,8 @@ final class Biff8RC4 {
 
 	private static final int RC4_REKEYING_INTERVAL = 1024;
 
-	private RC4 _rc4;
+	/** key stream bytes for the current block */
+	private final byte[] _keyStream;
 	/**
 	 * This field is used to keep track of when to change the {@link RC4}
 	 * instance. The change occurs every 1024 bytes. Every byte passed over is
@@ -45,23 +47,16 @@ final class Biff8RC4 {
 	private final Biff8EncryptionKey _key;
 
 	public Biff8RC4(int initialOffset, Biff8EncryptionKey key) {
-		if (initialOffset >= RC4_REKEYING_INTERVAL) {
-			throw new RuntimeException("initialOffset (" + initialOffset + ")>"
-					+ RC4_REKEYING_INTERVAL + " not supported yet");
-		}
 		_key = key;
-		_streamPos = 0;
-		rekeyForNextBlock();
+		_keyStream = new byte[RC4_REKEYING_INTERVAL];
 		_streamPos = initialOffset;
-		for (int i = initialOffset; i > 0; i--) {
-			_rc4.output();
-		}
+		rekeyForNextBlock();
 		_shouldSkipEncryptionOnCurrentRecord = false;
 	}
 
 	private void rekeyForNextBlock() {
 		_currentKeyIndex = _streamPos / RC4_REKEYING_INTERVAL;
-		_rc4 = _key.createRC4(_currentKeyIndex);
+		_key.createRC4(_currentKeyIndex).output(_keyStream, 0, RC4_REKEYING_INTERVAL);
 		_nextRC4BlockStart = (_currentKeyIndex + 1) * RC4_REKEYING_INTERVAL;
 	}
 
@@ -69,7 +64,7 @@ final class Biff8RC4 {
 		if (_streamPos >= _nextRC4BlockStart) {
 			rekeyForNextBlock();
 		}
-		byte mask = _rc4.output();
+		byte mask = _keyStream[_streamPos % RC4_REKEYING_INTERVAL];
 		_streamPos++;
 		if (_shouldSkipEncryptionOnCurrentRecord) {
 			return 0;
@@ -118,39 +113,22 @@ final class Biff8RC4 {
 	}
 
 	public void xor(byte[] buf, int pOffset, int pLen) {
-		int nLeftInBlock;
-		nLeftInBlock = _nextRC4BlockStart - _streamPos;
-		if (pLen <= nLeftInBlock) {
-			// simple case - this read does not cross key blocks
-			_rc4.encrypt(buf, pOffset, pLen);
-			_streamPos += pLen;
-			return;
-		}
-
 		int offset = pOffset;
 		int len = pLen;
-
-		// start by using the rest of the current block
-		if (len > nLeftInBlock) {
-			if (nLeftInBlock > 0) {
-				_rc4.encrypt(buf, offset, nLeftInBlock);
-				_streamPos += nLeftInBlock;
-				offset += nLeftInBlock;
-				len -= nLeftInBlock;
+		while (len > 0) {
+			if (_streamPos >= _nextRC4BlockStart) {
+				rekeyForNextBlock();
 			}
-			rekeyForNextBlock();
-		}
-		// all full blocks following
-		while (len > RC4_REKEYING_INTERVAL) {
-			_rc4.encrypt(buf, offset, RC4_REKEYING_INTERVAL);
-			_streamPos += RC4_REKEYING_INTERVAL;
-			offset += RC4_REKEYING_INTERVAL;
-			len -= RC4_REKEYING_INTERVAL;
-			rekeyForNextBlock();
+			int keyOffset = _streamPos % RC4_REKEYING_INTERVAL;
+			int n = Math.min(len, RC4_REKEYING_INTERVAL - keyOffset);
+			byte[] keyStream = _keyStream;
+			for (int i = 0; i < n; i++) {
+				buf[offset + i] ^= keyStream[keyOffset + i];
+			}
+			_streamPos += n;
+			offset += n;
+			len -= n;
 		}
-		// finish with incomplete block
-		_rc4.encrypt(buf, offset, len);
-		_streamPos += len;
 	}
 
 	public int xorByte(int rawVal) {
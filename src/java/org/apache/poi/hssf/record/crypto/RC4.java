@@ -63,9 +63,7 @@ final class RC4 {
 	}
 
 	public void encrypt(byte[] in) {
-		for (int i = 0; i < in.length; i++) {
-			in[i] = (byte) (in[i] ^ output());
-		}
+		encrypt(in, 0, in.length);
 	}
 	public void encrypt(byte[] in, int offset, int len) {
 		int end = offset+len;
@@ -74,6 +72,27 @@ final class RC4 {
 		}
 
 	}
+
+	/**
+	 * Writes the next <tt>len</tt> key stream bytes to <tt>out</tt>
+	 */
+	public void output(byte[] out, int offset, int len) {
+		byte[] s = _s;
+		int i = _i;
+		int j = _j;
+		int end = offset + len;
+		for (int k = offset; k < end; k++) {
+			i = (i + 1) & 255;
+			byte si = s[i];
+			j = (j + si) & 255;
+			byte sj = s[j];
+			s[i] = sj;
+			s[j] = si;
+			out[k] = s[(si + sj) & 255];
+		}
+		_i = i;
+		_j = j;
+	}
 	@Override
 	public String toString() {
 		StringBuffer sb = new StringBuffer();
@@ -74,19 +74,12 @@ public class HSSFOptimiser {
 		// Note - don't change built in fonts (those before 5)
 		for(int i=5; i<newPos.length; i++) {
 			// Check this one for being a duplicate
-			//  of an earlier one
-			int earlierDuplicate = -1;
-			for(int j=0; j<i && earlierDuplicate == -1; j++) {
-				if(j == 4) continue;
-				
-				FontRecord frCheck = workbook.getWorkbook().getFontRecordAt(j);
-				if(frCheck.sameProperties(frecs[i])) {
-					earlierDuplicate = j;
-				}
-			}
+			//  of an earlier one (hashed lookup)
+			int earlierDuplicate = 
+				workbook.getWorkbook().internFont(i);
 			
 			// If we got a duplicate, mark it as such
-			if(earlierDuplicate != -1) {
+			if(earlierDuplicate != i) {
 				newPos[i] = (short)earlierDuplicate;
 				zapRecords[i] = true;
 			}
@@ -184,13 +177,6 @@ public class HSSFOptimiser {
 			zapRecords[i] = false;
 		}
 		
-		// Get each style record, so we can do deletes
-		//  without getting confused
-		ExtendedFormatRecord[] xfrs = new ExtendedFormatRecord[newPos.length]; 
-		for(int i=0; i<newPos.length; i++) {
-			xfrs[i] = workbook.getWorkbook().getExFormatAt(i);
-		}
-		
 		// Loop over each style, seeing if it is the same
 		//  as an earlier one. If it is, point users of the
 		//  later duplicate copy to the earlier one, and 
@@ -199,16 +185,10 @@ public class HSSFOptimiser {
 		for(int i=21; i<newPos.length; i++) {
 			// Check this one for being a duplicate
 			//  of an earlier one
-			int earlierDuplicate = -1;
-			for(int j=0; j<i && earlierDuplicate == -1; j++) {
-				ExtendedFormatRecord xfCheck = workbook.getWorkbook().getExFormatAt(j);
-				if(xfCheck.equals(xfrs[i])) {
-					earlierDuplicate = j;
-				}
-			}
+			int earlierDuplicate = workbook.getWorkbook().internExFormat(i);
 			
 			// If we got a duplicate, mark it as such
-			if(earlierDuplicate != -1) {
+			if(earlierDuplicate != i) {
 				newPos[i] = (short)earlierDuplicate;
 				zapRecords[i] = true;
 			}
@@ -217,26 +197,25 @@ public class HSSFOptimiser {
 		// Update the new positions based on
 		//  deletes that have occurred between
 		//  the start and them
+		int[] numDeletedBefore = new int[newPos.length];
+		for(int i=1; i<newPos.length; i++) {
+			numDeletedBefore[i] = numDeletedBefore[i-1] + (zapRecords[i-1] ? 1 : 0);
+		}
 		// Only work on user added ones, which come after 20
 		for(int i=21; i<newPos.length; i++) {
 			// Find the number deleted to that
 			//  point, and adjust
 			short preDeletePos = newPos[i];
-			short newPosition = preDeletePos;
-			for(int j=0; j<preDeletePos; j++) {
-				if(zapRecords[j]) newPosition--;
-			}
 			
 			// Update the new position
-			newPos[i] = newPosition;
+			newPos[i] = (short)(preDeletePos - numDeletedBefore[preDeletePos]);
 		}
 		
-		// Zap the un-needed user style records
-		for(int i=21; i<newPos.length; i++) {
+		// Zap the un-needed user style records, last
+		//  first so that the indexes stay valid
+		for(int i=newPos.length-1; i>=21; i--) {
 			if(zapRecords[i]) {
-				workbook.getWorkbook().removeExFormatRecord(
-						xfrs[i]
-				);
+				workbook.getWorkbook().removeExFormatRecord(i);
 			}
 		}
 		
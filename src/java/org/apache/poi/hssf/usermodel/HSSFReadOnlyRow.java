@@ -0,0 +1,319 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hssf.usermodel;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Cell;
+
+/**
+ * A row of a {@link HSSFReadOnlyWorkbook}. Instances are immutable and thread-safe.<p/>
+ *
+ * The cells are stored in parallel arrays sorted by column, and are accessed by
+ * their 0-based column index.  The value getters behave like the ones of
+ * {@link HSSFCell}, with a missing cell being treated as a blank one.
+ */
+public final class HSSFReadOnlyRow {
+    private final HSSFReadOnlyWorkbook _workbook;
+    private final int _rowNum;
+    private final short _height;
+    private final short[] _columns;
+    private final short[] _xfIndexes;
+    /** the cell type, and for formula cells also the cached result type */
+    private final byte[] _types;
+    /** numeric values, booleans as 0/1 and error codes */
+    private final double[] _numbers;
+    private final String[] _strings;
+    /** <code>null</code> if the row has no formula cells */
+    private final String[] _formulas;
+
+    HSSFReadOnlyRow(HSSFReadOnlyWorkbook workbook, HSSFRow row, Map<String, String> strings) {
+        _workbook = workbook;
+        _rowNum = row.getRowNum();
+        _height = row.getHeight();
+
+        int nCells = row.getPhysicalNumberOfCells();
+        short[] columns = new short[nCells];
+        short[] xfIndexes = new short[nCells];
+        byte[] types = new byte[nCells];
+        double[] numbers = new double[nCells];
+        String[] stringValues = new String[nCells];
+        String[] formulas = null;
+
+        // the cell iterator goes in column order
+        int i = 0;
+        for (Iterator<Cell> it = row.cellIterator(); it.hasNext(); i++) {
+            HSSFCell cell = (HSSFCell) it.next();
+            columns[i] = (short) cell.getColumnIndex();
+            xfIndexes[i] = cell.getCellValueRecord().getXFIndex();
+            int cellType = cell.getCellType();
+            int valueType = cellType;
+            if (cellType == Cell.CELL_TYPE_FORMULA) {
+                if (formulas == null) {
+                    formulas = new String[nCells];
+                }
+                formulas[i] = cell.getCellFormula();
+                valueType = cell.getCachedFormulaResultType();
+            }
+            types[i] = (byte) (cellType | valueType << 4);
+            switch (valueType) {
+                case Cell.CELL_TYPE_NUMERIC:
+                    numbers[i] = cell.getNumericCellValue();
+                    break;
+                case Cell.CELL_TYPE_STRING:
+                    stringValues[i] = share(strings, cell.getStringCellValue());
+                    break;
+                case Cell.CELL_TYPE_BOOLEAN:
+                    numbers[i] = cell.getBooleanCellValue() ? 1 : 0;
+                    break;
+                case Cell.CELL_TYPE_ERROR:
+                    numbers[i] = cell.getErrorCellValue();
+                    break;
+            }
+        }
+        _columns = columns;
+        _xfIndexes = xfIndexes;
+        _types = types;
+        _numbers = numbers;
+        _strings = stringValues;
+        _formulas = formulas;
+    }
+
+    private static String share(Map<String, String> strings, String value) {
+        String shared = strings.get(value);
+        if (shared == null) {
+            strings.put(value, value);
+            return value;
+        }
+        return shared;
+    }
+
+    /**
+     * @return the index of the cell in the specified column, or a negative value if there is none
+     */
+    private int indexOf(int column) {
+        int low = 0;
+        int high = _columns.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midCol = _columns[mid];
+            if (midCol < column) {
+                low = mid + 1;
+            } else if (midCol > column) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the 0-based row number
+     */
+    public int getRowNum() {
+        return _rowNum;
+    }
+
+    /**
+     * @return the row height in twips (1/20 of a point)
+     */
+    public short getHeight() {
+        return _height;
+    }
+
+    /**
+     * @return the column index of the first cell, <code>-1</code> if the row has no cells
+     */
+    public short getFirstCellNum() {
+        return _columns.length == 0 ? -1 : _columns[0];
+    }
+
+    /**
+     * @return the column index of the last cell <b>plus one</b>, <code>-1</code> if the row has no cells
+     * @see HSSFRow#getLastCellNum()
+     */
+    public short getLastCellNum() {
+        return _columns.length == 0 ? -1 : (short) (_columns[_columns.length - 1] + 1);
+    }
+
+    /**
+     * @return the number of defined cells
+     */
+    public int getPhysicalNumberOfCells() {
+        return _columns.length;
+    }
+
+    /**
+     * @return <code>true</code> if there is a cell in the specified column
+     */
+    public boolean hasCell(int column) {
+        return indexOf(column) >= 0;
+    }
+
+    /**
+     * @return the type of the cell, one of the <tt>Cell.CELL_TYPE_*</tt> constants.
+     *  {@link Cell#CELL_TYPE_BLANK} if there is no cell in the column
+     */
+    public int getCellType(int column) {
+        int i = indexOf(column);
+        return i < 0 ? Cell.CELL_TYPE_BLANK : _types[i] & 0x0F;
+    }
+
+    /**
+     * @return the type of the cached result of a formula cell
+     * @throws IllegalStateException if the cell is not a formula cell
+     */
+    public int getCachedFormulaResultType(int column) {
+        int i = indexOf(column);
+        if (i < 0 || (_types[i] & 0x0F) != Cell.CELL_TYPE_FORMULA) {
+            throw new IllegalStateException("Only formula cells have cached results");
+        }
+        return _types[i] >> 4;
+    }
+
+    private int getValueIndex(int column, int requestedType) {
+        int i = indexOf(column);
+        int valueType = i < 0 ? Cell.CELL_TYPE_BLANK : _types[i] >> 4;
+        if (valueType == requestedType) {
+            return i;
+        }
+        if (valueType == Cell.CELL_TYPE_BLANK
+                && (requestedType == Cell.CELL_TYPE_NUMERIC || requestedType == Cell.CELL_TYPE_STRING
+                        || requestedType == Cell.CELL_TYPE_BOOLEAN)) {
+            return -1;
+        }
+        throw new IllegalStateException("Cannot get a " + getCellTypeName(requestedType)
+                + " value from a " + getCellTypeName(valueType) + " cell");
+    }
+
+    private static String getCellTypeName(int cellTypeCode) {
+        switch (cellTypeCode) {
+            case Cell.CELL_TYPE_BLANK:   return "blank";
+            case Cell.CELL_TYPE_STRING:  return "text";
+            case Cell.CELL_TYPE_BOOLEAN: return "boolean";
+            case Cell.CELL_TYPE_ERROR:   return "error";
+            case Cell.CELL_TYPE_NUMERIC: return "numeric";
+            case Cell.CELL_TYPE_FORMULA: return "formula";
+        }
+        return "#unknown cell type (" + cellTypeCode + ")#";
+    }
+
+    /**
+     * @return the numeric value of the cell (or of the cached formula result),
+     *  <code>0</code> for blank cells
+     * @throws IllegalStateException if the cell does not have a numeric value
+     */
+    public double getNumericCellValue(int column) {
+        int i = getValueIndex(column, Cell.CELL_TYPE_NUMERIC);
+        return i < 0 ? 0 : _numbers[i];
+    }
+
+    /**
+     * @return the numeric value of the cell as a date, <code>null</code> for blank cells
+     * @throws IllegalStateException if the cell does not have a numeric value
+     */
+    public Date getDateCellValue(int column) {
+        int i = getValueIndex(column, Cell.CELL_TYPE_NUMERIC);
+        if (i < 0) {
+            return null;
+        }
+        return HSSFDateUtil.getJavaDate(_numbers[i], _workbook.isUsing1904DateWindowing());
+    }
+
+    /**
+     * @return the text of the cell (or of the cached formula result), an empty string for blank cells
+     * @throws IllegalStateException if the cell does not have a text value
+     */
+    public String getStringCellValue(int column) {
+        int i = getValueIndex(column, Cell.CELL_TYPE_STRING);
+        return i < 0 ? "" : _strings[i];
+    }
+
+    /**
+     * @return the boolean value of the cell (or of the cached formula result),
+     *  <code>false</code> for blank cells
+     * @throws IllegalStateException if the cell does not have a boolean value
+     */
+    public boolean getBooleanCellValue(int column) {
+        int i = getValueIndex(column, Cell.CELL_TYPE_BOOLEAN);
+        return i < 0 ? false : _numbers[i] != 0;
+    }
+
+    /**
+     * @return the error code of the cell (or of the cached formula result)
+     * @throws IllegalStateException if the cell does not have an error value
+     * @see HSSFErrorConstants
+     */
+    public byte getErrorCellValue(int column) {
+        int i = getValueIndex(column, Cell.CELL_TYPE_ERROR);
+        return (byte) _numbers[i];
+    }
+
+    /**
+     * @return the formula of the cell, without the leading '='
+     * @throws IllegalStateException if the cell is not a formula cell
+     */
+    public String getCellFormula(int column) {
+        int i = indexOf(column);
+        if (i < 0 || _formulas == null || _formulas[i] == null) {
+            throw new IllegalStateException("Cannot get a formula value from a "
+                    + getCellTypeName(getCellType(column)) + " cell");
+        }
+        return _formulas[i];
+    }
+
+    /**
+     * @return the index of the cell style (XF record) of the cell, <code>-1</code> if there is no cell
+     * @see HSSFWorkbook#getCellStyleAt(short)
+     */
+    public short getCellStyleIndex(int column) {
+        int i = indexOf(column);
+        return i < 0 ? -1 : _xfIndexes[i];
+    }
+
+    /**
+     * @return the index of the data format of the cell, <code>-1</code> if there is no cell
+     */
+    public short getDataFormat(int column) {
+        int i = indexOf(column);
+        return i < 0 ? -1 : _workbook.getDataFormat(_xfIndexes[i]);
+    }
+
+    /**
+     * @return the data format string of the cell, <code>null</code> if there is no cell
+     */
+    public String getDataFormatString(int column) {
+        int i = indexOf(column);
+        return i < 0 ? null : _workbook.getDataFormatString(_xfIndexes[i]);
+    }
+
+    /**
+     * @return <code>true</code> if the cell has a numeric value, a date format and a valid date value
+     * @see HSSFDateUtil#isCellDateFormatted(Cell)
+     */
+    public boolean isCellDateFormatted(int column) {
+        int i = indexOf(column);
+        if (i < 0 || _types[i] >> 4 != Cell.CELL_TYPE_NUMERIC) {
+            return false;
+        }
+        return _workbook.isDateFormatted(_xfIndexes[i]) && HSSFDateUtil.isValidExcelDate(_numbers[i]);
+    }
+}
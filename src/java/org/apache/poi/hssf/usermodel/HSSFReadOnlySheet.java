@@ -0,0 +1,97 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hssf.usermodel;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Row;
+
+/**
+ * A sheet of a {@link HSSFReadOnlyWorkbook}. Instances are immutable and thread-safe.
+ */
+public final class HSSFReadOnlySheet {
+    private final HSSFReadOnlyWorkbook _workbook;
+    private final String _sheetName;
+    private final int _firstRow;
+    private final int _nRows;
+    /** indexed by row number - first row number */
+    private final HSSFReadOnlyRow[] _rows;
+
+    HSSFReadOnlySheet(HSSFReadOnlyWorkbook workbook, HSSFSheet sheet, String sheetName,
+            Map<String, String> strings) {
+        _workbook = workbook;
+        _sheetName = sheetName;
+
+        int firstRow = 0;
+        int nRows = 0;
+        HSSFReadOnlyRow[] rows = new HSSFReadOnlyRow[0];
+        if (sheet.getPhysicalNumberOfRows() > 0) {
+            firstRow = sheet.getFirstRowNum();
+            rows = new HSSFReadOnlyRow[sheet.getLastRowNum() - firstRow + 1];
+        }
+        for (Iterator<Row> it = sheet.rowIterator(); it.hasNext(); ) {
+            HSSFRow row = (HSSFRow) it.next();
+            rows[row.getRowNum() - firstRow] = new HSSFReadOnlyRow(workbook, row, strings);
+            nRows++;
+        }
+        _firstRow = firstRow;
+        _nRows = nRows;
+        _rows = rows;
+    }
+
+    public HSSFReadOnlyWorkbook getWorkbook() {
+        return _workbook;
+    }
+
+    public String getSheetName() {
+        return _sheetName;
+    }
+
+    /**
+     * @return the row with the specified 0-based row number, or <code>null</code> if it is not defined
+     */
+    public HSSFReadOnlyRow getRow(int rowNum) {
+        int index = rowNum - _firstRow;
+        if (index < 0 || index >= _rows.length) {
+            return null;
+        }
+        return _rows[index];
+    }
+
+    /**
+     * @return the number of the first defined row, <code>0</code> if there are no rows
+     */
+    public int getFirstRowNum() {
+        return _firstRow;
+    }
+
+    /**
+     * @return the number of the last defined row, <code>0</code> if there are no rows
+     */
+    public int getLastRowNum() {
+        return _rows.length == 0 ? 0 : _firstRow + _rows.length - 1;
+    }
+
+    /**
+     * @return the number of defined rows
+     */
+    public int getPhysicalNumberOfRows() {
+        return _nRows;
+    }
+}
@@ -0,0 +1,135 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hssf.usermodel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable, read-only snapshot of the cell contents of a {@link HSSFWorkbook}.<p/>
+ *
+ * The usermodel classes create their cell objects on demand and so are not safe
+ * for concurrent use, even when only reading.  All of the data of this view is
+ * loaded when it is created, and it is never changed afterwards, so one instance
+ * can be shared by any number of threads without locking.<p/>
+ *
+ * The view is independent of the workbook it was created from: changes to the
+ * workbook are not reflected, and the workbook can be discarded once the view
+ * has been created.  Cells are not represented by objects, their values are
+ * accessed through {@link HSSFReadOnlyRow} by column index.
+ */
+public final class HSSFReadOnlyWorkbook {
+    private final HSSFReadOnlySheet[] _sheets;
+    private final boolean _use1904Windowing;
+    /** indexed by XF index */
+    private final short[] _dataFormats;
+    private final String[] _dataFormatStrings;
+    private final boolean[] _dateFormatted;
+
+    /**
+     * Creates the read-only view of a workbook. The workbook must not be changed
+     *  by other threads while this is running.
+     */
+    public HSSFReadOnlyWorkbook(HSSFWorkbook workbook) {
+        _use1904Windowing = workbook.getWorkbook().isUsing1904DateWindowing();
+
+        int nStyles = workbook.getNumCellStyles();
+        _dataFormats = new short[nStyles];
+        _dataFormatStrings = new String[nStyles];
+        _dateFormatted = new boolean[nStyles];
+        for (int i = 0; i < nStyles; i++) {
+            HSSFCellStyle style = workbook.getCellStyleAt((short) i);
+            _dataFormats[i] = style.getDataFormat();
+            _dataFormatStrings[i] = style.getDataFormatString();
+            _dateFormatted[i] = HSSFDateUtil.isADateFormat(_dataFormats[i], _dataFormatStrings[i]);
+        }
+
+        // the same text is often used by many cells, only keep one copy
+        Map<String, String> strings = new HashMap<String, String>();
+        _sheets = new HSSFReadOnlySheet[workbook.getNumberOfSheets()];
+        for (int i = 0; i < _sheets.length; i++) {
+            _sheets[i] = new HSSFReadOnlySheet(this, workbook.getSheetAt(i),
+                    workbook.getSheetName(i), strings);
+        }
+    }
+
+    /**
+     * @return the number of sheets in the workbook
+     */
+    public int getNumberOfSheets() {
+        return _sheets.length;
+    }
+
+    /**
+     * @param index the 0-based index of the sheet
+     */
+    public HSSFReadOnlySheet getSheetAt(int index) {
+        if (index < 0 || index >= _sheets.length) {
+            throw new IllegalArgumentException("Sheet index (" + index
+                    + ") is out of range (0.." + (_sheets.length - 1) + ")");
+        }
+        return _sheets[index];
+    }
+
+    /**
+     * @return the sheet with the given name (case insensitive match), or <code>null</code>
+     */
+    public HSSFReadOnlySheet getSheet(String name) {
+        int index = getSheetIndex(name);
+        return index < 0 ? null : _sheets[index];
+    }
+
+    /**
+     * @return the index of the sheet with the given name (case insensitive match),
+     *  or <code>-1</code> if there is none
+     */
+    public int getSheetIndex(String name) {
+        for (int i = 0; i < _sheets.length; i++) {
+            if (_sheets[i].getSheetName().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param index the 0-based index of the sheet
+     */
+    public String getSheetName(int index) {
+        return getSheetAt(index).getSheetName();
+    }
+
+    /**
+     * @return <code>true</code> if the dates in this workbook are based on 1904
+     */
+    public boolean isUsing1904DateWindowing() {
+        return _use1904Windowing;
+    }
+
+    short getDataFormat(int xfIndex) {
+        return _dataFormats[xfIndex];
+    }
+
+    String getDataFormatString(int xfIndex) {
+        return _dataFormatStrings[xfIndex];
+    }
+
+    boolean isDateFormatted(int xfIndex) {
+        return _dateFormatted[xfIndex];
+    }
+}
@@ -18,6 +18,7 @@
 package org.apache.poi.hssf.usermodel;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.apache.poi.hssf.record.CellValueRecordInterface;
@@ -43,6 +44,11 @@ public final class HSSFRow implements Row {
 
     private int rowNum;
     private HSSFCell[] cells;
+    /**
+     * <code>true</code> for a row read from a file until the high level cells have been
+     * created for all of its value records, see {@link #loadCells()}
+     */
+    private boolean cellsPending;
 
     /**
      * reference to low level representation
@@ -69,6 +75,8 @@ public final class HSSFRow implements Row {
      */
     HSSFRow(HSSFWorkbook book, HSSFSheet sheet, int rowNum) {
         this(book, sheet, new RowRecord(rowNum));
+        // a new row has no value records yet
+        cellsPending = false;
     }
 
     /**
@@ -85,16 +93,50 @@ public final class HSSFRow implements Row {
         this.sheet = sheet;
         row = record;
         setRowNum(record.getRowNumber());
-        
-        // Size the initial cell list such that a read only case won't waste
-        //  lots of memory, and a create/read followed by adding new cells can
-        //  add a bit without needing a resize
-        cells = new HSSFCell[record.getLastCol()+INITIAL_CAPACITY];
-        
+
+        // The cells are only created when first accessed. Until then a cell lookup goes
+        //  straight to the sheet's value records, and the colIx boundaries read from the
+        //  file are kept so that an untouched row is written back unchanged.
+        cells = new HSSFCell[INITIAL_CAPACITY];
+        cellsPending = true;
+    }
+
+    /**
+     * Creates the high level cells for all value records of this row, if not done yet.
+     */
+    private void loadCells() {
+        if (!cellsPending) {
+            return;
+        }
+        cellsPending = false;
+        sheet.checkCellRows();
+
+        List<CellValueRecordInterface> cellRecords = sheet.getSheet().getRowsAggregate().getCellValueRecords(rowNum);
+        if (!cellRecords.isEmpty()) {
+            // Size the cell list such that a read only case won't waste
+            //  lots of memory, and a create/read followed by adding new cells can
+            //  add a bit without needing a resize
+            int lastColumn = cellRecords.get(cellRecords.size() - 1).getColumn();
+            if (lastColumn + INITIAL_CAPACITY > cells.length) {
+                HSSFCell[] oldCells = cells;
+                cells = new HSSFCell[lastColumn + INITIAL_CAPACITY];
+                System.arraycopy(oldCells, 0, cells, 0, oldCells.length);
+            }
+        }
+
         // Don't trust colIx boundaries as read by other apps
         // set the RowRecord empty for the moment
-        record.setEmpty();
+        row.setEmpty();
         // subsequent calls to createCellFromRecord() will update the colIx boundaries properly
+        for (CellValueRecordInterface cval : cellRecords) {
+            int colIx = cval.getColumn();
+            if (colIx < cells.length && cells[colIx] != null) {
+                // already created by an earlier lookup of this cell
+                addCell(cells[colIx]);
+            } else {
+                createCellFromRecord(cval);
+            }
+        }
     }
 
     /**
@@ -162,6 +204,7 @@ public final class HSSFRow implements Row {
         removeCell((HSSFCell)cell, true);
     }
     private void removeCell(HSSFCell cell, boolean alsoRemoveRecords) {
+        loadCells();
 
         int column=cell.getColumnIndex();
         if(column < 0) {
@@ -193,6 +236,7 @@ public final class HSSFRow implements Row {
      *  records too.
      */
     protected void removeAllCells() {
+        loadCells();
         for(int i=0; i<cells.length; i++) {
             if(cells[i] != null) {
                 removeCell(cells[i], true);
@@ -239,6 +283,8 @@ public final class HSSFRow implements Row {
           throw new IllegalArgumentException("Invalid row number (" + rowIndex
                   + ") outside allowable range (0.." + maxrow + ")");
         }
+        // the value records are looked up by row number
+        loadCells();
         rowNum = rowIndex;
         if (row != null) {
             row.setRowNumber(rowIndex);   // used only for KEY comparison (HSSFRow)
@@ -281,6 +327,7 @@ public final class HSSFRow implements Row {
      * @param newColumn The new column number (0 based)
      */
     public void moveCell(HSSFCell cell, short newColumn) {
+        loadCells();
         // Ensure the destination is free
         if(cells.length > newColumn && cells[newColumn] != null) {
             throw new IllegalArgumentException("Asked to move cell to column " + newColumn + " but there's already a cell there");
@@ -327,6 +374,54 @@ public final class HSSFRow implements Row {
         }
     }
 
+    /**
+     * @return the cell of the specified column if its object has been created, without
+     *  creating one for a value record
+     */
+    HSSFCell getCreatedCell(int column) {
+        return column < cells.length ? cells[column] : null;
+    }
+
+    /**
+     * Prepares this row for cells being added by storing their value records in the
+     *  sheet directly, see {@link HSSFSheet#writeNumericBlock(int, int, int, int, double[])}.
+     *  The cell objects of those records are created when first accessed, like for a row
+     *  read from a file.
+     *
+     * @param firstColumn the first column of the cells which are added
+     * @param lastColumn the last column of the cells which are added (inclusive)
+     */
+    void prepareForValueRecords(int firstColumn, int lastColumn) {
+        cellsPending = true;
+        if (row.isEmpty() || firstColumn < row.getFirstCol()) {
+            row.setFirstCol(firstColumn);
+        }
+        if (row.isEmpty() || lastColumn >= row.getLastCol()) {
+            row.setLastCol(lastColumn + 1);
+        }
+    }
+
+    /**
+     * Drops the cell objects of this row after its value records have been replaced by
+     *  those of <code>source</code>, see {@link HSSFSheet#shiftRows(int, int, int, boolean, boolean, boolean)}.
+     *  The cell objects of the moved records are created when first accessed, like for a
+     *  row read from a file.
+     *
+     * @param source the row whose cells were moved to this row, or <code>null</code> if
+     *  this row is now empty
+     */
+    void cellsShifted(HSSFRow source) {
+        cells = new HSSFCell[INITIAL_CAPACITY];
+        if (source == null || source.row.isEmpty()) {
+            row.setEmpty();
+            cellsPending = false;
+        } else {
+            row.setFirstCol(source.row.getFirstCol());
+            row.setLastCol(source.row.getLastCol());
+            cellsPending = true;
+        }
+    }
+
     /**
      * Get the hssfcell representing a given column (logical cell)
      *  0-based. If you ask for a cell that is not defined, then
@@ -337,10 +432,23 @@ public final class HSSFRow implements Row {
      * @return HSSFCell representing that column or null if undefined.
      */
     private HSSFCell retrieveCell(int cellIndex) {
-        if(cellIndex<0||cellIndex>=cells.length) {
+        if(cellIndex<0) {
             return null;
         }
-        return cells[cellIndex];
+        if(cellIndex<cells.length && cells[cellIndex] != null) {
+            return cells[cellIndex];
+        }
+        if(cellsPending) {
+            // create just this one cell
+            sheet.checkCellRows();
+            CellValueRecordInterface cval = sheet.getSheet().getRowsAggregate().getCellValueRecord(rowNum, cellIndex);
+            if(cval != null) {
+                HSSFCell hcell = new HSSFCell(book, sheet, cval);
+                addCell(hcell);
+                return hcell;
+            }
+        }
+        return null;
     }
 
     /**
@@ -399,6 +507,7 @@ public final class HSSFRow implements Row {
      * @return short representing the first logical cell in the row, or -1 if the row does not contain any cells.
      */
     public short getFirstCellNum() {
+        loadCells();
         if (row.isEmpty()) {
             return -1;
         }
@@ -425,6 +534,7 @@ public final class HSSFRow implements Row {
      *  row does not contain any cells.
      */
     public short getLastCellNum() {
+        loadCells();
         if (row.isEmpty()) {
             return -1;
         }
@@ -440,6 +550,7 @@ public final class HSSFRow implements Row {
 
     public int getPhysicalNumberOfCells()
     {
+      loadCells();
       int count=0;
       for(int i=0;i<cells.length;i++)
       {
@@ -611,6 +722,7 @@ public final class HSSFRow implements Row {
      */
     public Iterator<Cell> cellIterator()
     {
+      loadCells();
       return new CellIterator();
     }
     /**
@@ -19,8 +19,11 @@ package org.apache.poi.hssf.usermodel;
 
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
 
 import org.apache.poi.ddf.EscherRecord;
@@ -28,8 +31,10 @@ import org.apache.poi.hssf.model.HSSFFormulaParser;
 import org.apache.poi.hssf.model.InternalSheet;
 import org.apache.poi.hssf.model.InternalWorkbook;
 import org.apache.poi.hssf.record.*;
+import org.apache.poi.hssf.record.common.UnicodeString;
 import org.apache.poi.hssf.record.aggregates.DataValidityTable;
 import org.apache.poi.hssf.record.aggregates.FormulaRecordAggregate;
+import org.apache.poi.hssf.record.aggregates.RowRecordsAggregate;
 import org.apache.poi.hssf.record.aggregates.WorksheetProtectionBlock;
 import org.apache.poi.ss.formula.FormulaShifter;
 import org.apache.poi.ss.formula.ptg.Ptg;
@@ -61,7 +66,8 @@ import org.apache.poi.util.POILogger;
  * @author  Josh Micich
  * @author  Petr Udalau(Petr.Udalau at exigenservices.com) - set/remove array formulas
  */
-public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
+public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet,
+        org.apache.poi.ss.usermodel.CellBlockAccess {
     private static final POILogger log = POILogFactory.getLogger(HSSFSheet.class);
     private static final int DEBUG = POILogger.DEBUG;
 
@@ -83,6 +89,8 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
     private HSSFPatriarch _patriarch;
     private int _firstrow;
     private int _lastrow;
+    /** <code>false</code> until {@link #checkCellRows()} has checked the rows read from a file */
+    private boolean _cellRowsChecked = true;
 
     /**
      * Creates new HSSFSheet   - called by HSSFWorkbook to create a sheet from
@@ -140,6 +148,12 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
 
             row = sheet.getNextRow();
         }
+        if (rowRecordsAlreadyPresent) {
+            // The cells of each row are created from its value records on first access,
+            //  and so is the check that all rows with cells have a row record
+            _cellRowsChecked = false;
+            return;
+        }
 
         Iterator<CellValueRecordInterface> iter = sheet.getCellValueIterator();
         long timestart = System.currentTimeMillis();
@@ -162,10 +176,6 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
                 if (hrow == null) {
                     // Some tools (like Perl module Spreadsheet::WriteExcel - bug 41187) skip the RowRecords
                     // Excel, OpenOffice.org and GoogleDocs are all OK with this, so POI should be too.
-                    if (rowRecordsAlreadyPresent) {
-                        // if at least one row record is present, all should be present.
-                        throw new RuntimeException("Unexpected missing row when some rows already present");
-                    }
                     // create the row record on the fly now.
                     RowRecord rowRec = new RowRecord(cval.getRow());
                     sheet.addRow(rowRec);
@@ -185,6 +195,21 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
                 Long.valueOf(System.currentTimeMillis() - timestart));
     }
 
+    /**
+     * Checks, on the first access to the cells read from the file, that every row with cells
+     *  has a row record.  Some tools skip the row records, but if at least one row record is
+     *  present then all should be present.
+     */
+    void checkCellRows() {
+        if (_cellRowsChecked) {
+            return;
+        }
+        if (_sheet.getRowsAggregate().findRowWithoutRecord() >= 0) {
+            throw new RuntimeException("Unexpected missing row when some rows already present");
+        }
+        _cellRowsChecked = true;
+    }
+
     /**
      * Create a new row within the sheet and return the high level representation
      *
@@ -359,6 +384,217 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
         return _lastrow;
     }
 
+    /**
+     * Reads the numeric values of a block of cells in one go, see
+     *  {@link org.apache.poi.ss.usermodel.CellBlockAccess#readNumericBlock(int, int, int, int, double[])}.  The values are read from
+     *  the value records without creating row or cell objects.
+     */
+    public void readNumericBlock(int firstRow, int lastRow, int firstCol, int lastCol, double[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL97, firstRow, lastRow, firstCol, lastCol, values.length);
+        checkCellRows();
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            for (int colIx = firstCol; colIx <= lastCol; colIx++) {
+                CellValueRecordInterface cval = _sheet.peekCellValueRecord(rowIx, colIx);
+                if (cval == null || cval instanceof BlankRecord) {
+                    values[i] = 0.0;
+                } else if (cval instanceof NumberRecord) {
+                    values[i] = ((NumberRecord) cval).getValue();
+                } else if (getCachedResultType(cval) == Cell.CELL_TYPE_NUMERIC) {
+                    values[i] = ((FormulaRecordAggregate) cval).getFormulaRecord().getValue();
+                } else {
+                    throw blockTypeMismatch(Cell.CELL_TYPE_NUMERIC, cval);
+                }
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Reads the text values of a block of cells in one go, without creating row or cell objects
+     */
+    public void readStringBlock(int firstRow, int lastRow, int firstCol, int lastCol, String[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL97, firstRow, lastRow, firstCol, lastCol, values.length);
+        checkCellRows();
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            for (int colIx = firstCol; colIx <= lastCol; colIx++) {
+                CellValueRecordInterface cval = _sheet.peekCellValueRecord(rowIx, colIx);
+                if (cval == null || cval instanceof BlankRecord) {
+                    values[i] = "";
+                } else if (cval instanceof LabelSSTRecord) {
+                    values[i] = _book.getSSTString(((LabelSSTRecord) cval).getSSTIndex()).getString();
+                } else if (getCachedResultType(cval) == Cell.CELL_TYPE_STRING) {
+                    String value = ((FormulaRecordAggregate) cval).getStringValue();
+                    values[i] = value == null ? "" : value;
+                } else {
+                    throw blockTypeMismatch(Cell.CELL_TYPE_STRING, cval);
+                }
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Reads the boolean values of a block of cells in one go, without creating row or cell objects
+     */
+    public void readBooleanBlock(int firstRow, int lastRow, int firstCol, int lastCol, boolean[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL97, firstRow, lastRow, firstCol, lastCol, values.length);
+        checkCellRows();
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            for (int colIx = firstCol; colIx <= lastCol; colIx++) {
+                CellValueRecordInterface cval = _sheet.peekCellValueRecord(rowIx, colIx);
+                if (cval == null || cval instanceof BlankRecord) {
+                    values[i] = false;
+                } else if (cval instanceof BoolErrRecord && ((BoolErrRecord) cval).isBoolean()) {
+                    values[i] = ((BoolErrRecord) cval).getBooleanValue();
+                } else if (getCachedResultType(cval) == Cell.CELL_TYPE_BOOLEAN) {
+                    values[i] = ((FormulaRecordAggregate) cval).getFormulaRecord().getCachedBooleanValue();
+                } else {
+                    throw blockTypeMismatch(Cell.CELL_TYPE_BOOLEAN, cval);
+                }
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Sets the values of a block of cells in one go, see
+     *  {@link org.apache.poi.ss.usermodel.CellBlockAccess#writeNumericBlock(int, int, int, int, double[])}.
+     *  The cells are stored directly in the sheet without creating cell objects, which are only
+     *  created when the cells are next accessed.  Like {@link HSSFCell#setCellValue(double)}, infinite and NaN
+     *  values are stored as errors.
+     */
+    public void writeNumericBlock(int firstRow, int lastRow, int firstCol, int lastCol, double[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL97, firstRow, lastRow, firstCol, lastCol, values.length);
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            HSSFRow row = getRowForBlock(rowIx, firstCol, lastCol);
+            for (int colIx = firstCol; colIx <= lastCol; colIx++) {
+                double value = values[i++];
+                int xfIndex = getXFIndexForBlock(row, colIx);
+                if (xfIndex < 0 || Double.isInfinite(value) || Double.isNaN(value)) {
+                    // needs the handling of HSSFCell
+                    row.getCell(colIx, Row.CREATE_NULL_AS_BLANK).setCellValue(value);
+                } else {
+                    _sheet.addNumberValue(rowIx, colIx, (short) xfIndex, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the text values of a block of cells in one go, without creating cell objects
+     */
+    public void writeStringBlock(int firstRow, int lastRow, int firstCol, int lastCol, String[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL97, firstRow, lastRow, firstCol, lastCol, values.length);
+        int maxTextLength = SpreadsheetVersion.EXCEL97.getMaxTextLength();
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            HSSFRow row = getRowForBlock(rowIx, firstCol, lastCol);
+            for (int colIx = firstCol; colIx <= lastCol; colIx++) {
+                String value = values[i++];
+                int xfIndex = getXFIndexForBlock(row, colIx);
+                if (xfIndex < 0 || value == null) {
+                    row.getCell(colIx, Row.CREATE_NULL_AS_BLANK).setCellValue(value);
+                } else {
+                    if (value.length() > maxTextLength) {
+                        throw new IllegalArgumentException("The maximum length of cell contents (text) is "
+                                + maxTextLength + " characters");
+                    }
+                    int sstIndex = _book.addSSTString(new UnicodeString(value));
+                    _sheet.addLabelSSTValue(rowIx, colIx, (short) xfIndex, sstIndex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the boolean values of a block of cells in one go, without creating cell objects
+     */
+    public void writeBooleanBlock(int firstRow, int lastRow, int firstCol, int lastCol, boolean[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL97, firstRow, lastRow, firstCol, lastCol, values.length);
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            HSSFRow row = getRowForBlock(rowIx, firstCol, lastCol);
+            for (int colIx = firstCol; colIx <= lastCol; colIx++) {
+                boolean value = values[i++];
+                int xfIndex = getXFIndexForBlock(row, colIx);
+                if (xfIndex < 0) {
+                    row.getCell(colIx, Row.CREATE_NULL_AS_BLANK).setCellValue(value);
+                } else {
+                    BoolErrRecord rec = new BoolErrRecord();
+                    rec.setRow(rowIx);
+                    rec.setColumn((short) colIx);
+                    rec.setXFIndex((short) xfIndex);
+                    rec.setValue(value);
+                    _sheet.addValueRecord(rowIx, rec);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @return the row, which is created if missing, prepared for its value records
+     *  being written directly
+     */
+    private HSSFRow getRowForBlock(int rowIndex, int firstCol, int lastCol) {
+        HSSFRow row = getRow(rowIndex);
+        if (row == null) {
+            row = createRow(rowIndex);
+        }
+        row.prepareForValueRecords(firstCol, lastCol);
+        return row;
+    }
+
+    /**
+     * Checks whether the value of a cell can be set by storing a new value record directly.
+     *
+     * @return the style index of the existing cell, or the default style of the column if
+     *  there is no cell.  <code>-1</code> if the value must be set through the cell object,
+     *  because it exists already or the cell has a formula
+     */
+    private int getXFIndexForBlock(HSSFRow row, int colIx) {
+        if (row.getCreatedCell(colIx) != null) {
+            return -1;
+        }
+        CellValueRecordInterface cval = _sheet.peekCellValueRecord(row.getRowNum(), colIx);
+        if (cval == null) {
+            return _sheet.getXFIndexForColAt((short) colIx) & 0xFFFF;
+        }
+        return cval instanceof FormulaRecordAggregate ? -1 : cval.getXFIndex() & 0xFFFF;
+    }
+
+    /**
+     * @return the type of the cached result if the cell has a formula, otherwise <code>-1</code>
+     */
+    private static int getCachedResultType(CellValueRecordInterface cval) {
+        if (cval instanceof FormulaRecordAggregate) {
+            return ((FormulaRecordAggregate) cval).getFormulaRecord().getCachedResultType();
+        }
+        return -1;
+    }
+
+    private static IllegalStateException blockTypeMismatch(int expectedType, CellValueRecordInterface cval) {
+        String actual;
+        if (cval instanceof LabelSSTRecord) {
+            actual = "text";
+        } else if (cval instanceof NumberRecord) {
+            actual = "numeric";
+        } else if (cval instanceof BoolErrRecord) {
+            actual = ((BoolErrRecord) cval).isBoolean() ? "boolean" : "error";
+        } else {
+            actual = "formula";
+        }
+        String expected = expectedType == Cell.CELL_TYPE_NUMERIC ? "numeric"
+                : expectedType == Cell.CELL_TYPE_STRING ? "text" : "boolean";
+        CellReference ref = new CellReference(cval.getRow(), cval.getColumn());
+        return new IllegalStateException("Cannot get a " + expected + " value from the "
+                + actual + " cell " + ref.formatAsString());
+    }
+
     /**
      * Creates a data validation object
      * @param dataValidation The Data validation object settings
@@ -751,6 +987,16 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
         _sheet.removeMergedRegion(index);
     }
 
+    /**
+     * Removes a number of merged regions of cells (hence letting them free)
+     *
+     * @param indices A set of the regions to unmerge
+     */
+    public void removeMergedRegions(Collection<Integer> indices)
+    {
+        _sheet.removeMergedRegions(indices);
+    }
+
     /**
      * returns the number of merged regions
      * @return number of merged regions
@@ -1191,6 +1437,7 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
      */
     protected void shiftMerged(int startRow, int endRow, int n, boolean isRow) {
         List<CellRangeAddress> shiftedRegions = new ArrayList<CellRangeAddress>();
+        List<Integer> shiftedIndices = new ArrayList<Integer>();
         //move merged regions completely if they fall within the new region boundaries when they are shifted
         for (int i = 0; i < getNumMergedRegions(); i++) {
              CellRangeAddress merged = getMergedRegion(i);
@@ -1210,10 +1457,11 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
                  merged.setLastRow(merged.getLastRow()+n);
                  //have to remove/add it back
                  shiftedRegions.add(merged);
-                 removeMergedRegion(i);
-                 i = i -1; // we have to back up now since we removed one
+                 shiftedIndices.add(Integer.valueOf(i));
              }
         }
+        // all in one go, rather than one by one
+        removeMergedRegions(shiftedIndices);
 
         //read so it doesn't get shifted again
         Iterator<CellRangeAddress> iterator = shiftedRegions.iterator();
@@ -1271,13 +1519,13 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
      * Additionally shifts merged regions that are completely defined in these
      * rows (ie. merged 2 cells on a row to be shifted).
      * <p>
-     * TODO Might want to add bounds checking here
      * @param startRow the row to start shifting
      * @param endRow the row to end shifting
      * @param n the number of rows to shift
      * @param copyRowHeight whether to copy the row height during the shift
      * @param resetOriginalRowHeight whether to set the original row's height to the default
      * @param moveComments whether to move comments at the same time as the cells they are attached to
+     * @throws IllegalArgumentException if a row would be moved outside the sheet
      */
     public void shiftRows(int startRow, int endRow, int n,
             boolean copyRowHeight, boolean resetOriginalRowHeight, boolean moveComments) {
@@ -1292,35 +1540,85 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
            // Nothing to do
            return;
         }
-        
-        NoteRecord[] noteRecs;
+        int lastRowIndex = SpreadsheetVersion.EXCEL97.getLastRowIndex();
+        if (startRow < 0 || startRow > endRow || startRow + n < 0 || endRow + n > lastRowIndex) {
+            throw new IllegalArgumentException("Cannot shift rows " + startRow + ".." + endRow
+                    + " by " + n + " rows within the allowable range (0.." + lastRowIndex + ")");
+        }
+        checkCellRows();
+        RowRecordsAggregate rowsAgg = _sheet.getRowsAggregate();
+
+        // Check the array formulas before anything is changed: a single-cell array
+        //  formula is removed like when its cell is changed, a cell of a multi-cell
+        //  array formula cannot be moved or overwritten
+        for (FormulaRecordAggregate fra : rowsAgg.getFormulaCellRecords(startRow, endRow)) {
+            if (fra.isPartOfArrayFormula()) {
+                HSSFCell cell = getRow(fra.getRow()).getCell(fra.getColumn());
+                cell.notifyArrayFormulaChanging("Row[rownum=" + fra.getRow()
+                        + "] contains cell(s) included in a multi-cell array formula. "
+                        + "You cannot change part of an array.");
+            }
+        }
+        for (FormulaRecordAggregate fra : rowsAgg.getFormulaCellRecords(startRow + n, endRow + n)) {
+            if (fra.getRow() >= startRow && fra.getRow() <= endRow) {
+                continue;
+            }
+            if (fra.isPartOfArrayFormula()) {
+                getRow(fra.getRow()).getCell(fra.getColumn()).notifyArrayFormulaChanging();
+            }
+        }
+
+        // Find the comments and hyperlinks of the shifted rows up front,
+        //  rather than searching the sheet records for every row and cell
+        Map<Integer, List<NoteRecord>> noteRecsByRow = new HashMap<Integer, List<NoteRecord>>();
         if (moveComments) {
-            noteRecs = _sheet.getNoteRecords();
-        } else {
-            noteRecs = NoteRecord.EMPTY_ARRAY;
+            NoteRecord[] noteRecs = _sheet.getNoteRecords();
+            for(int i=noteRecs.length-1; i>=0; i--) {
+                NoteRecord nr = noteRecs[i];
+                if (nr.getRow() < startRow || nr.getRow() > endRow) {
+                    continue;
+                }
+                Integer key = Integer.valueOf(nr.getRow());
+                List<NoteRecord> rowNoteRecs = noteRecsByRow.get(key);
+                if (rowNoteRecs == null) {
+                    rowNoteRecs = new ArrayList<NoteRecord>();
+                    noteRecsByRow.put(key, rowNoteRecs);
+                }
+                rowNoteRecs.add(nr);
+            }
+        }
+        Map<Integer, HyperlinkRecord> hyperlinks = new HashMap<Integer, HyperlinkRecord>();
+        for (RecordBase rec : _sheet.getRecords()) {
+            if (rec instanceof HyperlinkRecord) {
+                HyperlinkRecord link = (HyperlinkRecord) rec;
+                if (link.getFirstRow() < startRow || link.getFirstRow() > endRow) {
+                    continue;
+                }
+                // only the first hyperlink of an existing cell is found by HSSFCell.getHyperlink()
+                if (rowsAgg.peekCellValueRecord(link.getFirstRow(), link.getFirstColumn()) == null) {
+                    continue;
+                }
+                Integer key = Integer.valueOf(link.getFirstRow() << 16 | link.getFirstColumn());
+                if (!hyperlinks.containsKey(key)) {
+                    hyperlinks.put(key, link);
+                }
+            }
         }
 
         shiftMerged(startRow, endRow, n, true);
         _sheet.getPageSettings().shiftRowBreaks(startRow, endRow, n);
 
-        for ( int rowNum = s; rowNum >= startRow && rowNum <= endRow && rowNum >= 0 && rowNum < 65536; rowNum += inc ) {
-            HSSFRow row = getRow( rowNum );
-            // notify all cells in this row that we are going to shift them,
-            // it can throw IllegalStateException if the operation is not allowed, for example,
-            // if the row contains cells included in a multi-cell array formula
-            if(row != null) notifyRowShifting(row);
+        // Move the value records of all rows in one go, the row objects only drop
+        //  their cells and create them again from the moved records when accessed
+        rowsAgg.shiftRowCells(startRow, endRow, n);
 
-            HSSFRow row2Replace = getRow( rowNum + n );
-            if ( row2Replace == null )
-                row2Replace = createRow( rowNum + n );
-
-
-            // Remove all the old cells from the row we'll
-            //  be writing too, before we start overwriting
-            //  any cells. This avoids issues with cells
-            //  changing type, and records not being correctly
-            //  overwritten
-            row2Replace.removeAllCells();
+        for (int rowNum = s; rowNum >= startRow && rowNum <= endRow; rowNum += inc) {
+            HSSFRow row = getRow(rowNum);
+            HSSFRow row2Replace = getRow(rowNum + n);
+            if (row2Replace == null) {
+                row2Replace = createRow(rowNum + n);
+            }
+            row2Replace.cellsShifted(row);
 
             // If this row doesn't exist, nothing needs to
             //  be done for the now empty destination row
@@ -1333,43 +1631,23 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
             if (resetOriginalRowHeight) {
                 row.setHeight((short)0xff);
             }
-
-            // Copy each cell from the source row to
-            //  the destination row
-            for(Iterator<Cell> cells = row.cellIterator(); cells.hasNext(); ) {
-                HSSFCell cell = (HSSFCell)cells.next();
-                row.removeCell( cell );
-                CellValueRecordInterface cellRecord = cell.getCellValueRecord();
-                cellRecord.setRow( rowNum + n );
-                row2Replace.createCellFromRecord( cellRecord );
-                _sheet.addValueRecord( rowNum + n, cellRecord );
-
-                HSSFHyperlink link = cell.getHyperlink();
-                if(link != null){
-                    link.setFirstRow(link.getFirstRow() + n);
-                    link.setLastRow(link.getLastRow() + n);
-                }
-            }
-            // Now zap all the cells in the source row
-            row.removeAllCells();
+            // The source row is empty now, unless it is the destination of a later row
+            row.cellsShifted(null);
 
             // Move comments from the source row to the
             //  destination row. Note that comments can
             //  exist for cells which are null
-            if(moveComments) {
-                // This code would get simpler if NoteRecords could be organised by HSSFRow.
-                for(int i=noteRecs.length-1; i>=0; i--) {
-                    NoteRecord nr = noteRecs[i];
-                    if (nr.getRow() != rowNum) {
-                        continue;
-                    }
-                    HSSFComment comment = getCellComment(rowNum, nr.getColumn());
-                    if (comment != null) {
-                       comment.setRow(rowNum + n);
-                    }
+            List<NoteRecord> rowNoteRecs = noteRecsByRow.get(Integer.valueOf(rowNum));
+            if(rowNoteRecs != null) {
+                for (NoteRecord nr : rowNoteRecs) {
+                    nr.setRow(rowNum + n);
                 }
             }
         }
+        for (HyperlinkRecord link : hyperlinks.values()) {
+            link.setFirstRow(link.getFirstRow() + n);
+            link.setLastRow(link.getLastRow() + n);
+        }
         
         // Re-compute the first and last rows of the sheet as needed
         if(n > 0) {
@@ -1428,17 +1706,6 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
         _sheet.getRecords().addAll(window2Loc, records);
     }
 
-    private void notifyRowShifting(HSSFRow row){
-        String msg = "Row[rownum="+row.getRowNum()+"] contains cell(s) included in a multi-cell array formula. " +
-                "You cannot change part of an array.";
-        for(Cell cell : row){
-            HSSFCell hcell = (HSSFCell)cell;
-            if(hcell.isPartOfArrayFormulaGroup()){
-                hcell.notifyArrayFormulaChanging(msg);
-            }
-        }
-    }
-
     /**
      * Creates a split (freezepane). Any existing freezepane or split pane is overwritten.
      *
@@ -1698,6 +1965,12 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
      *  certainly be lost or corrupted when written out.
      */
     public EscherAggregate getDrawingEscherAggregate() {
+        // Look at this sheet first, so that the workbook drawing
+        //  group is only decoded when there is something to aggregate
+        if(_sheet.findFirstRecordLocBySid(DrawingRecord.sid) == -1) {
+            return null;
+        }
+
         _book.findDrawingGroup();
 
         // If there's now no drawing manager, then there's
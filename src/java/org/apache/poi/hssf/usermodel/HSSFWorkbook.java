@@ -43,6 +43,7 @@ import org.apache.poi.hssf.model.DrawingManager2;
 import org.apache.poi.hssf.record.*;
 import org.apache.poi.hssf.record.aggregates.RecordAggregate.RecordVisitor;
 import org.apache.poi.hssf.record.common.UnicodeString;
+import org.apache.poi.hssf.record.crypto.Biff8EncryptionKey;
 import org.apache.poi.hssf.util.CellReference;
 import org.apache.poi.poifs.filesystem.DirectoryNode;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
@@ -263,6 +264,31 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
      */
     public HSSFWorkbook(DirectoryNode directory, boolean preserveNodes)
             throws IOException
+    {
+        this(directory, preserveNodes, Biff8EncryptionKey.getCurrentUserPassword());
+    }
+
+    /**
+     * given a POI POIFSFileSystem object, and a specific directory
+     *  within it, read in its Workbook and populate the high and
+     *  low level models, decrypting the Workbook stream (if it is
+     *  encrypted) with the specified password.  Unlike
+     *  {@link Biff8EncryptionKey#setCurrentUserPassword(String)} the
+     *  password only applies to this workbook, so several encrypted
+     *  workbooks may be opened concurrently.
+     *
+     * @param directory the POI filesystem directory to process from
+     * @param preserveNodes whether to preseve other nodes, such as
+     *        macros.  This takes more memory, so only say yes if you
+     *        need to. If set, will store all of the POIFSFileSystem
+     *        in memory
+     * @param password the password of the workbook, or <code>null</code>
+     *        to use the default password
+     * @see org.apache.poi.poifs.filesystem.POIFSFileSystem
+     * @exception IOException if the stream cannot be read
+     */
+    public HSSFWorkbook(DirectoryNode directory, boolean preserveNodes, String password)
+            throws IOException
     {
         super(directory);
         String workbookName = getWorkbookDirEntryName(directory);
@@ -282,7 +308,7 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
         //  it happens to be spelled.
         InputStream stream = directory.createDocumentInputStream(workbookName);
 
-        List<Record> records = RecordFactory.createRecords(stream);
+        List<Record> records = RecordFactory.createRecords(stream, password);
 
         workbook = InternalWorkbook.createWorkbook(records);
         setPropertiesFromWorkbook(workbook);
@@ -1101,6 +1127,37 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
         return null;
     }
 
+    /**
+     * Returns the first font of the workbook with the same properties as the supplied
+     * one.  The lookup is hashed, so like {@link #internCellStyle(HSSFCellStyle)} this
+     * is meant to be called each time a font has been created and set up.
+     * If an equal font already exists and <code>font</code> is the most recently
+     * created one, <code>font</code> is removed from the workbook again.  In that case
+     * <code>font</code> must not be used afterwards.
+     *
+     * @param font a font of this workbook that is not yet used by any style or string
+     * @return the first font equal to <code>font</code>, or <code>font</code> itself
+     */
+    public HSSFFont internFont(HSSFFont font)
+    {
+        short index = font.getIndex();
+        int existingIndex = workbook.internFont(index);
+        if (existingIndex == index) {
+            return font;
+        }
+        int lastIndex = getNumberOfFonts() - 1;
+        if (lastIndex > 3) {
+            lastIndex++;   // THERE IS NO FOUR!!
+        }
+        if (index == lastIndex) {
+            workbook.removeFontRecord(workbook.getFontRecordAt(index));
+            if (fonts != null) {
+                fonts.remove(Short.valueOf(index));
+            }
+        }
+        return getFontAt((short) existingIndex);
+    }
+
     /**
      * get the number of fonts in the font table
      * @return number of fonts
@@ -1165,6 +1222,37 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
         return style;
     }
 
+    /**
+     * Returns the first cell style of the workbook with the same formatting
+     * (font, data format, alignment, borders, fill ...) as the supplied one.
+     * The lookup is hashed, so this is meant to be called each time a style has
+     * been created and set up:
+     * <pre>
+     * HSSFCellStyle style = workbook.createCellStyle();
+     * style.setDataFormat(format);
+     * style = workbook.internCellStyle(style);
+     * </pre>
+     * If an equal style already exists and <code>style</code> is the most recently
+     * created one, <code>style</code> is removed from the workbook again, so repeatedly
+     * creating the same style does not run into the limit of 4000 styles.  In that
+     * case <code>style</code> must not be used afterwards.
+     *
+     * @param style a style of this workbook that is not yet used by any cell
+     * @return the first style equal to <code>style</code>, or <code>style</code> itself
+     */
+    public HSSFCellStyle internCellStyle(HSSFCellStyle style)
+    {
+        int index = style.getIndex();
+        int existingIndex = workbook.internExFormat(index);
+        if (existingIndex == index) {
+            return style;
+        }
+        if (index == workbook.getNumExFormats() - 1) {
+            workbook.removeExFormatRecord(index);
+        }
+        return getCellStyleAt((short) existingIndex);
+    }
+
     /**
      * get the number of styles the workbook contains
      * @return count of cell styles
@@ -28,6 +28,11 @@ package org.apache.poi.hssf.util;
  * @see org.apache.poi.hssf.record.RKRecord
  */
 public final class RKUtil {
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+    private static final long LOW_34_BITS = 0x3FFFFFFFFL;
+    private static final int MIN_RK_INT = -0x20000000;
+    private static final int MAX_RK_INT = 0x1FFFFFFF;
+
     private RKUtil() {
         // no instances of this class
     }
@@ -69,4 +74,51 @@ public final class RKUtil {
 
         return rvalue;
     }
+
+    /**
+     * Finds the RK number which decodes to exactly the specified value.
+     *
+     * @return the RK number (in the low 32 bits), or <code>-1</code> if the value
+     *  cannot be stored as an RK number (which includes infinities and NaN)
+     */
+    public static long encodeNumber(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return -1;
+        }
+        long bits = Double.doubleToRawLongBits(value);
+        if (bits != NEGATIVE_ZERO_BITS && value >= MIN_RK_INT && value <= MAX_RK_INT) {
+            int intValue = (int) value;
+            if (intValue == value) {
+                return ((intValue << 2) | 0x02) & 0xFFFFFFFFL;
+            }
+        }
+        if ((bits & LOW_34_BITS) == 0) {
+            return bits >>> 32;
+        }
+
+        // try again, with the value multiplied by 100.
+        // The multiplication may be inexact (3.3 * 100 is not 330), so round it
+        double value100 = value * 100;
+        if (value100 >= MIN_RK_INT && value100 <= MAX_RK_INT) {
+            long rk = checkEncoding(value, ((int) Math.round(value100) << 2) | 0x03);
+            if (rk != -1) {
+                return rk;
+            }
+        }
+        long bits100 = Double.doubleToRawLongBits(value100);
+        if ((bits100 & LOW_34_BITS) == 0) {
+            return checkEncoding(value, (int) (bits100 >>> 32) | 0x01);
+        }
+        return -1;
+    }
+
+    /**
+     * The division by 100 on decoding may be inexact, so make sure we get the value back
+     */
+    private static long checkEncoding(double value, int rk) {
+        if (Double.doubleToRawLongBits(decodeNumber(rk)) != Double.doubleToRawLongBits(value)) {
+            return -1;
+        }
+        return rk & 0xFFFFFFFFL;
+    }
 }
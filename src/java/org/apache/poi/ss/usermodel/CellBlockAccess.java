@@ -0,0 +1,97 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.usermodel;
+
+/**
+ * Reads and writes the values of a rectangular block of cells in one go, which is faster
+ *  than going through the {@link Row}s and {@link Cell}s of a large block.
+ * <p>
+ * This is implemented by the HSSF, XSSF and SXSSF sheets.  It is not part of {@link Sheet},
+ *  so other implementations of <tt>Sheet</tt> do not have to provide it.
+ * </p>
+ */
+public interface CellBlockAccess {
+
+    /**
+     * Reads the numeric values of a block of cells in one go.  The values are stored row
+     *  by row, so the value of the cell in row <tt>r</tt> and column <tt>c</tt> is at index
+     *  <tt>(r - firstRow) * (lastCol - firstCol + 1) + c - firstCol</tt>.  Like
+     *  {@link Cell#getNumericCellValue()}, missing and blank cells are read as 0 and for
+     *  formula cells the cached result is read.
+     *
+     * @param firstRow the 0-based index of the first row of the block
+     * @param lastRow the 0-based index of the last row of the block (inclusive)
+     * @param firstCol the 0-based index of the first column of the block
+     * @param lastCol the 0-based index of the last column of the block (inclusive)
+     * @param values receives the values, must be large enough for the whole block
+     * @throws IllegalArgumentException if the block is invalid or the array is too small
+     * @throws IllegalStateException if a cell does not have a numeric value
+     */
+    void readNumericBlock(int firstRow, int lastRow, int firstCol, int lastCol, double[] values);
+
+    /**
+     * Reads the text values of a block of cells in one go.  Missing and blank cells are
+     *  read as an empty string, and for formula cells the cached result is read.  The text
+     *  formatting is not read.
+     *
+     * @param values receives the values, must be large enough for the whole block
+     * @throws IllegalStateException if a cell does not have a text value
+     * @see #readNumericBlock(int, int, int, int, double[])
+     */
+    void readStringBlock(int firstRow, int lastRow, int firstCol, int lastCol, String[] values);
+
+    /**
+     * Reads the boolean values of a block of cells in one go.  Missing and blank cells are
+     *  read as <code>false</code>, and for formula cells the cached result is read.
+     *
+     * @param values receives the values, must be large enough for the whole block
+     * @throws IllegalStateException if a cell does not have a boolean value
+     * @see #readNumericBlock(int, int, int, int, double[])
+     */
+    void readBooleanBlock(int firstRow, int lastRow, int firstCol, int lastCol, boolean[] values);
+
+    /**
+     * Sets the values of a block of cells in one go.  Missing rows and cells are created,
+     *  and existing cells keep their style.  Like {@link Cell#setCellValue(double)}, for
+     *  formula cells the cached result is set.
+     *
+     * @param values the values stored row by row,
+     *  see {@link #readNumericBlock(int, int, int, int, double[])}
+     * @throws IllegalArgumentException if the block is invalid or the array is too small
+     */
+    void writeNumericBlock(int firstRow, int lastRow, int firstCol, int lastCol, double[] values);
+
+    /**
+     * Sets the text values of a block of cells in one go.  A <code>null</code> value makes
+     *  the cell blank.
+     *
+     * @param values the values stored row by row,
+     *  see {@link #readNumericBlock(int, int, int, int, double[])}
+     * @see #writeNumericBlock(int, int, int, int, double[])
+     */
+    void writeStringBlock(int firstRow, int lastRow, int firstCol, int lastCol, String[] values);
+
+    /**
+     * Sets the boolean values of a block of cells in one go.
+     *
+     * @param values the values stored row by row,
+     *  see {@link #readNumericBlock(int, int, int, int, double[])}
+     * @see #writeNumericBlock(int, int, int, int, double[])
+     */
+    void writeBooleanBlock(int firstRow, int lastRow, int firstCol, int lastCol, boolean[] values);
+}
@@ -17,6 +17,7 @@
 
 package org.apache.poi.ss.util;
 
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.*;
 
 import java.text.AttributedString;
@@ -272,6 +273,30 @@ public class SheetUtil {
         if (font.getUnderline() == Font.U_SINGLE ) str.addAttribute(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_ON, startIdx, endIdx);
     }
 
+    /**
+     * Checks the arguments of the block value methods of a sheet, like
+     *  {@link CellBlockAccess#readNumericBlock(int, int, int, int, double[])}
+     *
+     * @param version the spreadsheet version, which limits the rows and columns
+     * @param nValues the length of the array of values
+     * @throws IllegalArgumentException if the row or column range is invalid, or the array
+     *  is too small for the block
+     */
+    public static void validateBlock(SpreadsheetVersion version,
+            int firstRow, int lastRow, int firstCol, int lastCol, int nValues) {
+        if (firstRow < 0 || lastRow < firstRow || lastRow > version.getLastRowIndex()) {
+            throw new IllegalArgumentException("Invalid row range (" + firstRow + ".." + lastRow + ")");
+        }
+        if (firstCol < 0 || lastCol < firstCol || lastCol > version.getLastColumnIndex()) {
+            throw new IllegalArgumentException("Invalid column range (" + firstCol + ".." + lastCol + ")");
+        }
+        long nCells = (long) (lastRow - firstRow + 1) * (lastCol - firstCol + 1);
+        if (nValues < nCells) {
+            throw new IllegalArgumentException("The array has room for " + nValues
+                    + " values, but the block has " + nCells + " cells");
+        }
+    }
+
     public static boolean containsCell(CellRangeAddress cr, int rowIx, int colIx) {
         if (cr.getFirstRow() <= rowIx && cr.getLastRow() >= rowIx
                 && cr.getFirstColumn() <= colIx && cr.getLastColumn() >= colIx)
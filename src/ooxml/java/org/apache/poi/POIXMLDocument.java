@@ -25,6 +25,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
@@ -32,6 +33,7 @@ import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.openxml4j.opc.PackagePart;
 import org.apache.poi.openxml4j.opc.PackageRelationship;
 import org.apache.poi.openxml4j.opc.PackageRelationshipCollection;
+import org.apache.poi.openxml4j.util.ParallelZipOutputStream;
 import org.apache.poi.poifs.common.POIFSConstants;
 import org.apache.poi.util.IOUtils;
 
@@ -178,4 +180,25 @@ public abstract class POIXMLDocument extends POIXMLDocumentPart{
 
         getPackage().save(stream);
     }
+
+    /**
+     * Write out this document to an Outputstream, compressing the parts of
+     *  the package concurrently.
+     * The parts are serialized as by {@link #write(OutputStream)}, and each
+     *  of them is deflated by a task run by the executor while the following
+     *  parts are added to the package.
+     *
+     * @param stream - the java OutputStream you wish to write the file to
+     * @param executor - runs the tasks which deflate the parts
+     * @param compressionLevel - the compression level, 0-9 or
+     *  <code>Deflater.DEFAULT_COMPRESSION</code>
+     *
+     * @exception IOException if anything can't be written.
+     * @see ParallelZipOutputStream
+     */
+    public final void write(OutputStream stream, Executor executor, int compressionLevel) throws IOException {
+        ParallelZipOutputStream zos = new ParallelZipOutputStream(stream, executor);
+        zos.setLevel(compressionLevel);
+        write(zos);
+    }
 }
@@ -0,0 +1,458 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.openxml4j.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.util.LittleEndianByteArrayOutputStream;
+
+/**
+ * A <code>ZipOutputStream</code> which deflates its entries concurrently.<p/>
+ *
+ * The data of each entry is collected in memory, and when the entry is closed a task
+ * that computes its CRC and deflates it into a buffer of its own is given to an
+ * <code>Executor</code>.  The compressed entries are written to the underlying stream in
+ * the order in which they were added, as soon as the entries before them are done, and
+ * {@link #finish()} waits for the last ones and writes the central directory.<p/>
+ *
+ * The ZIP64 extensions are used for the entries and archives which need them, that is
+ * for sizes or offsets of 4GB or more and for more than 65534 entries.<p/>
+ *
+ * As the stream is a <code>ZipOutputStream</code>, it can be given to
+ * {@link org.apache.poi.POIXMLDocument#write(OutputStream)} or
+ * {@link org.apache.poi.openxml4j.opc.OPCPackage#save(OutputStream)}, which then add the
+ * parts of the package to it.  Each entry is held in memory twice until it is written,
+ * once as it is and once compressed.
+ */
+public class ParallelZipOutputStream extends ZipOutputStream {
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int ZIP64_EXTRA_ID = 0x0001;
+	/** the value of a field which is given in the ZIP64 extra field */
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+	private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+	private static final int VERSION = 20;
+	private static final int VERSION_ZIP64 = 45;
+	/** the names of the entries are encoded as UTF-8 */
+	private static final int FLAG_UTF8 = 0x800;
+
+	private final Executor executor;
+	private final List<Entry> entries = new ArrayList<Entry>();
+	private final Set<String> names = new HashSet<String>();
+	private final byte[] header = new byte[128];
+	private int level = Deflater.DEFAULT_COMPRESSION;
+	private int method = DEFLATED;
+	private byte[] comment = new byte[0];
+	/** the entry being written, <code>null</code> if there is none */
+	private Entry current;
+	/** the index of the first entry which has not been written to the stream yet */
+	private int nextToWrite;
+	/** the number of bytes written to the stream */
+	private long written;
+	private boolean finished;
+	private boolean closed;
+
+	/**
+	 * @param out the stream to write the archive to
+	 * @param executor runs the tasks which compress the entries
+	 */
+	public ParallelZipOutputStream(OutputStream out, Executor executor) {
+		super(out);
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets the compression level of the entries added afterwards
+	 *
+	 * @param level the compression level, 0-9 or <code>Deflater.DEFAULT_COMPRESSION</code>
+	 */
+	public void setLevel(int level) {
+		if ((level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+				&& level != Deflater.DEFAULT_COMPRESSION) {
+			throw new IllegalArgumentException("invalid compression level: " + level);
+		}
+		this.level = level;
+	}
+
+	/**
+	 * Sets the method of the entries added afterwards which do not specify their own
+	 *
+	 * @param method <code>DEFLATED</code> or <code>STORED</code>
+	 */
+	public void setMethod(int method) {
+		if (method != DEFLATED && method != STORED) {
+			throw new IllegalArgumentException("invalid compression method: " + method);
+		}
+		this.method = method;
+	}
+
+	public void setComment(String comment) {
+		this.comment = comment == null ? new byte[0] : getBytes(comment);
+		if (this.comment.length > 0xFFFF) {
+			throw new IllegalArgumentException("ZIP file comment too long.");
+		}
+	}
+
+	public void putNextEntry(ZipEntry e) throws IOException {
+		ensureOpen();
+		if (current != null) {
+			closeEntry();
+		}
+		if (!names.add(e.getName())) {
+			throw new ZipException("duplicate entry: " + e.getName());
+		}
+		current = new Entry(e, e.getMethod() == -1 ? method : e.getMethod(), level);
+		entries.add(current);
+	}
+
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if (current == null) {
+			throw new ZipException("no current ZIP entry");
+		}
+		current.append(b, off, len);
+	}
+
+	/**
+	 * Closes the current entry and starts to compress it
+	 */
+	public void closeEntry() throws IOException {
+		ensureOpen();
+		if (current == null) {
+			return;
+		}
+		final Entry entry = current;
+		current = null;
+		entry.task = new FutureTask<byte[]>(new Callable<byte[]>() {
+			public byte[] call() {
+				return entry.compress();
+			}
+		});
+		executor.execute(entry.task);
+		writeEntries(false);
+	}
+
+	/**
+	 * Writes the remaining entries and the central directory, without closing the
+	 * underlying stream
+	 */
+	public void finish() throws IOException {
+		ensureOpen();
+		if (finished) {
+			return;
+		}
+		closeEntry();
+		writeEntries(true);
+
+		long centralOffset = written;
+		for (Entry entry : entries) {
+			writeCentralHeader(entry);
+		}
+		writeEnd(centralOffset, written - centralOffset);
+		out.flush();
+		finished = true;
+	}
+
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			finish();
+		} finally {
+			closed = true;
+			// the deflater of the superclass is never used
+			def.end();
+			out.close();
+		}
+	}
+
+	public void flush() throws IOException {
+		ensureOpen();
+		out.flush();
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	/**
+	 * Writes the entries which have been compressed, in the order in which they were added
+	 *
+	 * @param wait whether to wait for all of the entries to be compressed
+	 */
+	private void writeEntries(boolean wait) throws IOException {
+		while (nextToWrite < entries.size()) {
+			Entry entry = entries.get(nextToWrite);
+			if (entry.task == null || (!wait && !entry.task.isDone())) {
+				return;
+			}
+			byte[] data;
+			try {
+				data = entry.task.get();
+			} catch (InterruptedException e) {
+				IOException ioe = new InterruptedIOException("Interrupted while compressing " + entry.name);
+				ioe.initCause(e);
+				throw ioe;
+			} catch (ExecutionException e) {
+				IOException ioe = new ZipException("Failed to compress " + entry.name);
+				ioe.initCause(e.getCause());
+				throw ioe;
+			}
+			entry.task = null;
+			entry.offset = written;
+			writeLocalHeader(entry);
+			writeBytes(data, 0, (int) entry.compressedSize);
+			nextToWrite++;
+		}
+	}
+
+	private void writeLocalHeader(Entry entry) throws IOException {
+		boolean zip64 = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+		LittleEndianByteArrayOutputStream h = new LittleEndianByteArrayOutputStream(header, 0);
+		h.writeInt(LOCAL_HEADER_SIGNATURE);
+		h.writeShort(zip64 ? VERSION_ZIP64 : VERSION);
+		h.writeShort(entry.flags);
+		h.writeShort(entry.method);
+		h.writeInt(entry.time);
+		h.writeInt((int) entry.crc);
+		h.writeInt((int) (zip64 ? ZIP64_MAGIC : entry.compressedSize));
+		h.writeInt((int) (zip64 ? ZIP64_MAGIC : entry.size));
+		h.writeShort(entry.name.length);
+		h.writeShort(zip64 ? 20 : 0);
+		writeBytes(header, 0, h.getWriteIndex());
+		writeBytes(entry.name, 0, entry.name.length);
+		if (zip64) {
+			h = new LittleEndianByteArrayOutputStream(header, 0);
+			h.writeShort(ZIP64_EXTRA_ID);
+			h.writeShort(16);
+			h.writeLong(entry.size);
+			h.writeLong(entry.compressedSize);
+			writeBytes(header, 0, h.getWriteIndex());
+		}
+	}
+
+	private void writeCentralHeader(Entry entry) throws IOException {
+		// only the values which do not fit are given in the ZIP64 extra field
+		boolean size64 = entry.size >= ZIP64_MAGIC;
+		boolean compressedSize64 = entry.compressedSize >= ZIP64_MAGIC;
+		boolean offset64 = entry.offset >= ZIP64_MAGIC;
+		int extraLength = (size64 ? 8 : 0) + (compressedSize64 ? 8 : 0) + (offset64 ? 8 : 0);
+		int version = extraLength > 0 ? VERSION_ZIP64 : VERSION;
+		LittleEndianByteArrayOutputStream h = new LittleEndianByteArrayOutputStream(header, 0);
+		h.writeInt(CENTRAL_HEADER_SIGNATURE);
+		h.writeShort(version);
+		h.writeShort(version);
+		h.writeShort(entry.flags);
+		h.writeShort(entry.method);
+		h.writeInt(entry.time);
+		h.writeInt((int) entry.crc);
+		h.writeInt((int) (compressedSize64 ? ZIP64_MAGIC : entry.compressedSize));
+		h.writeInt((int) (size64 ? ZIP64_MAGIC : entry.size));
+		h.writeShort(entry.name.length);
+		h.writeShort(extraLength > 0 ? extraLength + 4 : 0);
+		h.writeShort(0); // comment length
+		h.writeShort(0); // disk number
+		h.writeShort(0); // internal attributes
+		h.writeInt(0);   // external attributes
+		h.writeInt((int) (offset64 ? ZIP64_MAGIC : entry.offset));
+		writeBytes(header, 0, h.getWriteIndex());
+		writeBytes(entry.name, 0, entry.name.length);
+		if (extraLength > 0) {
+			h = new LittleEndianByteArrayOutputStream(header, 0);
+			h.writeShort(ZIP64_EXTRA_ID);
+			h.writeShort(extraLength);
+			if (size64) {
+				h.writeLong(entry.size);
+			}
+			if (compressedSize64) {
+				h.writeLong(entry.compressedSize);
+			}
+			if (offset64) {
+				h.writeLong(entry.offset);
+			}
+			writeBytes(header, 0, h.getWriteIndex());
+		}
+	}
+
+	private void writeEnd(long centralOffset, long centralSize) throws IOException {
+		int count = entries.size();
+		boolean zip64 = count >= ZIP64_MAGIC_COUNT || centralOffset >= ZIP64_MAGIC
+				|| centralSize >= ZIP64_MAGIC;
+		LittleEndianByteArrayOutputStream h = new LittleEndianByteArrayOutputStream(header, 0);
+		if (zip64) {
+			long zip64EndOffset = written;
+			h.writeInt(ZIP64_END_SIGNATURE);
+			h.writeLong(44); // the size of the rest of the record
+			h.writeShort(VERSION_ZIP64);
+			h.writeShort(VERSION_ZIP64);
+			h.writeInt(0); // disk number
+			h.writeInt(0); // disk of the central directory
+			h.writeLong(count);
+			h.writeLong(count);
+			h.writeLong(centralSize);
+			h.writeLong(centralOffset);
+			h.writeInt(ZIP64_LOCATOR_SIGNATURE);
+			h.writeInt(0); // disk of the ZIP64 end record
+			h.writeLong(zip64EndOffset);
+			h.writeInt(1); // number of disks
+		}
+		h.writeInt(END_SIGNATURE);
+		h.writeShort(0); // disk number
+		h.writeShort(0); // disk of the central directory
+		h.writeShort(zip64 ? ZIP64_MAGIC_COUNT : count);
+		h.writeShort(zip64 ? ZIP64_MAGIC_COUNT : count);
+		h.writeInt((int) (zip64 ? ZIP64_MAGIC : centralSize));
+		h.writeInt((int) (zip64 ? ZIP64_MAGIC : centralOffset));
+		h.writeShort(comment.length);
+		writeBytes(header, 0, h.getWriteIndex());
+		writeBytes(comment, 0, comment.length);
+	}
+
+	private void writeBytes(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		written += len;
+	}
+
+	private static byte[] getBytes(String s) {
+		try {
+			return s.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return the date and time in MS-DOS format
+	 */
+	private static int toDosTime(long time) {
+		Calendar cal = Calendar.getInstance();
+		cal.setTimeInMillis(time);
+		int year = cal.get(Calendar.YEAR);
+		if (year < 1980) {
+			return (1 << 21) | (1 << 16);
+		}
+		return (year - 1980) << 25 | (cal.get(Calendar.MONTH) + 1) << 21
+				| cal.get(Calendar.DAY_OF_MONTH) << 16 | cal.get(Calendar.HOUR_OF_DAY) << 11
+				| cal.get(Calendar.MINUTE) << 5 | cal.get(Calendar.SECOND) >> 1;
+	}
+
+	/**
+	 * An entry of the archive, with its data until it has been compressed
+	 */
+	private static final class Entry {
+		final byte[] name;
+		final int flags;
+		final int method;
+		final int level;
+		final int time;
+		byte[] data = new byte[8192];
+		/** the length of the data, and the uncompressed size once compressed */
+		long size;
+		long compressedSize;
+		long crc;
+		long offset;
+		/** compresses the data, <code>null</code> while the entry is written or after it has been */
+		FutureTask<byte[]> task;
+
+		Entry(ZipEntry e, int method, int level) {
+			this.name = getBytes(e.getName());
+			this.flags = this.name.length == e.getName().length() ? 0 : FLAG_UTF8;
+			this.method = method;
+			this.level = level;
+			this.time = toDosTime(e.getTime() == -1 ? System.currentTimeMillis() : e.getTime());
+		}
+
+		void append(byte[] b, int off, int len) throws ZipException {
+			long newSize = size + len;
+			if (newSize > Integer.MAX_VALUE - 8) {
+				throw new ZipException("the entry is too large to be held in memory: " + new String(name));
+			}
+			if (newSize > data.length) {
+				byte[] grown = new byte[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(newSize, data.length * 2L))];
+				System.arraycopy(data, 0, grown, 0, (int) size);
+				data = grown;
+			}
+			System.arraycopy(b, off, data, (int) size, len);
+			size = newSize;
+		}
+
+		/**
+		 * @return the compressed data, which is {@link #compressedSize} bytes long
+		 */
+		byte[] compress() {
+			int length = (int) size;
+			CRC32 checksum = new CRC32();
+			checksum.update(data, 0, length);
+			crc = checksum.getValue();
+			byte[] uncompressed = data;
+			data = null;
+			if (method == STORED) {
+				compressedSize = size;
+				return uncompressed;
+			}
+
+			Deflater deflater = new Deflater(level, true);
+			try {
+				deflater.setInput(uncompressed, 0, length);
+				deflater.finish();
+				// XML usually shrinks to a tenth or less, the buffer grows when needed
+				byte[] buf = new byte[(length >> 3) + 64];
+				int n = 0;
+				while (!deflater.finished()) {
+					if (n == buf.length) {
+						byte[] grown = new byte[(int) Math.min(Integer.MAX_VALUE - 8, buf.length * 2L)];
+						System.arraycopy(buf, 0, grown, 0, n);
+						buf = grown;
+					}
+					n += deflater.deflate(buf, n, buf.length - n);
+				}
+				compressedSize = n;
+				return buf;
+			} finally {
+				deflater.end();
+			}
+		}
+	}
+}
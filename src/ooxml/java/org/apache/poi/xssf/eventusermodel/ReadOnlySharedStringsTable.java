@@ -103,6 +103,18 @@ public class ReadOnlySharedStringsTable extends DefaultHandler {
      */
     public ReadOnlySharedStringsTable(OPCPackage pkg)
             throws IOException, SAXException {
+        this(pkg, null);
+    }
+
+    /**
+     * @param pkg
+     * @param strings the list to add the strings to, <code>null</code> for an <code>ArrayList</code>
+     * @throws IOException
+     * @throws SAXException
+     */
+    protected ReadOnlySharedStringsTable(OPCPackage pkg, List<String> strings)
+            throws IOException, SAXException {
+        this.strings = strings;
         ArrayList<PackagePart> parts =
                 pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
 
@@ -122,6 +134,18 @@ public class ReadOnlySharedStringsTable extends DefaultHandler {
      */
     public ReadOnlySharedStringsTable(PackagePart part, PackageRelationship rel_ignored)
             throws IOException, SAXException {
+        this(part, rel_ignored, null);
+    }
+
+    /**
+     * @param part
+     * @param rel_ignored
+     * @param strings the list to add the strings to, <code>null</code> for an <code>ArrayList</code>
+     * @throws IOException
+     */
+    protected ReadOnlySharedStringsTable(PackagePart part, PackageRelationship rel_ignored, List<String> strings)
+            throws IOException, SAXException {
+        this.strings = strings;
         readFrom(part.getInputStream());
     }
 
@@ -195,7 +219,9 @@ public class ReadOnlySharedStringsTable extends DefaultHandler {
             String uniqueCount = attributes.getValue("uniqueCount");
             if(uniqueCount != null) this.uniqueCount = Integer.parseInt(uniqueCount);
 
-            this.strings = new ArrayList<String>(this.uniqueCount);
+            if (this.strings == null) {
+                this.strings = new ArrayList<String>(this.uniqueCount);
+            }
 
             characters = new StringBuffer();
         } else if ("si".equals(name)) {
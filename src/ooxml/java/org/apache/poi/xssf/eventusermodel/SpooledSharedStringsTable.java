@@ -0,0 +1,241 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.eventusermodel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.poi.POIXMLException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.util.TempFile;
+import org.xml.sax.SAXException;
+
+/**
+ * A {@link ReadOnlySharedStringsTable} for workbooks with very large shared strings tables.<p/>
+ *
+ * The strings are spooled into a temporary file while the table is read, and served from a
+ * memory mapping of that file, so that the heap used does not depend on the size of the table.
+ * The most recently used strings are cached on the heap.<p/>
+ *
+ * Call {@link #close()} to release the temporary files when the table is no longer needed.
+ */
+public class SpooledSharedStringsTable extends ReadOnlySharedStringsTable {
+    /**
+     * the default number of strings cached on the heap
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+
+    /**
+     * @param pkg the package to read the shared strings table of
+     */
+    public SpooledSharedStringsTable(OPCPackage pkg) throws IOException, SAXException {
+        this(pkg, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param pkg the package to read the shared strings table of
+     * @param cacheSize the number of strings to cache on the heap
+     */
+    public SpooledSharedStringsTable(OPCPackage pkg, int cacheSize) throws IOException, SAXException {
+        super(pkg, new SpooledStringList(cacheSize));
+    }
+
+    /**
+     * Like POIXMLDocumentPart constructor
+     */
+    public SpooledSharedStringsTable(PackagePart part, PackageRelationship rel_ignored)
+            throws IOException, SAXException {
+        super(part, rel_ignored, new SpooledStringList(DEFAULT_CACHE_SIZE));
+    }
+
+    /**
+     * Releases the temporary files of this table. The strings cannot be read afterwards.
+     */
+    public void close() throws IOException {
+        ((SpooledStringList) getItems()).close();
+    }
+
+    /**
+     * A list of strings, which are appended to a data file as UTF-8 while the list is
+     * written, with the offset after each string in an index file. When the first string
+     * is read both files are mapped into memory and no more strings can be added.
+     */
+    private static final class SpooledStringList extends AbstractList<String> {
+        /** the files are mapped in segments of 1GB, as a mapping is limited to 2GB */
+        private static final int SEGMENT_SHIFT = 30;
+        private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+        private final Map<Integer, String> _cache;
+        private File _dataFile;
+        private File _indexFile;
+        private DataOutputStream _data;
+        private DataOutputStream _index;
+        private ByteBuffer[] _dataSegments;
+        private ByteBuffer[] _indexSegments;
+        private long _dataLength;
+        private int _size;
+        private boolean _closed;
+
+        SpooledStringList(final int cacheSize) {
+            _cache = new LinkedHashMap<Integer, String>(16, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                    return size() > cacheSize;
+                }
+            };
+        }
+
+        public int size() {
+            return _size;
+        }
+
+        public synchronized boolean add(String s) {
+            if (_dataSegments != null || _closed) {
+                throw new IllegalStateException("Strings cannot be added after the list has been read");
+            }
+            try {
+                if (_data == null) {
+                    _dataFile = TempFile.createTempFile("poi-sst-", ".dat");
+                    _indexFile = TempFile.createTempFile("poi-sst-", ".idx");
+                    _data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_dataFile)));
+                    _index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_indexFile)));
+                }
+                byte[] bytes = s.getBytes("UTF-8");
+                _data.write(bytes);
+                _dataLength += bytes.length;
+                _index.writeLong(_dataLength);
+            } catch (IOException e) {
+                throw new POIXMLException(e);
+            }
+            _size++;
+            modCount++;
+            return true;
+        }
+
+        public synchronized String get(int index) {
+            if (index < 0 || index >= _size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+            }
+            if (_closed) {
+                throw new IllegalStateException("The shared strings table has been closed");
+            }
+            Integer key = Integer.valueOf(index);
+            String s = _cache.get(key);
+            if (s != null) {
+                return s;
+            }
+            if (_dataSegments == null) {
+                map();
+            }
+            long start = index == 0 ? 0 : readLong(_indexSegments, (long) (index - 1) << 3);
+            long end = readLong(_indexSegments, (long) index << 3);
+            byte[] bytes = new byte[(int) (end - start)];
+            read(_dataSegments, start, bytes);
+            try {
+                s = new String(bytes, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e);
+            }
+            _cache.put(key, s);
+            return s;
+        }
+
+        private void map() {
+            try {
+                _data.close();
+                _index.close();
+                _dataSegments = map(_dataFile);
+                _indexSegments = map(_indexFile);
+            } catch (IOException e) {
+                throw new POIXMLException(e);
+            }
+            _data = null;
+            _index = null;
+            // the mappings stay valid, on most platforms the files can go now
+            deleteFiles();
+        }
+
+        private static ByteBuffer[] map(File file) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                long length = channel.size();
+                ByteBuffer[] segments = new ByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+                for (int i = 0; i < segments.length; i++) {
+                    long pos = (long) i << SEGMENT_SHIFT;
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, pos,
+                            Math.min(SEGMENT_MASK + 1, length - pos));
+                }
+                return segments;
+            } finally {
+                raf.close();
+            }
+        }
+
+        private static long readLong(ByteBuffer[] segments, long pos) {
+            // a segment holds a whole number of longs
+            return segments[(int) (pos >>> SEGMENT_SHIFT)].getLong((int) (pos & SEGMENT_MASK));
+        }
+
+        private static void read(ByteBuffer[] segments, long pos, byte[] dst) {
+            int off = 0;
+            while (off < dst.length) {
+                ByteBuffer segment = segments[(int) (pos >>> SEGMENT_SHIFT)];
+                segment.position((int) (pos & SEGMENT_MASK));
+                int n = Math.min(dst.length - off, segment.remaining());
+                segment.get(dst, off, n);
+                off += n;
+                pos += n;
+            }
+        }
+
+        synchronized void close() throws IOException {
+            if (_data != null) {
+                _data.close();
+                _index.close();
+                _data = null;
+                _index = null;
+            }
+            _dataSegments = null;
+            _indexSegments = null;
+            _cache.clear();
+            _closed = true;
+            deleteFiles();
+        }
+
+        private void deleteFiles() {
+            if (_dataFile != null && _dataFile.delete()) {
+                _dataFile = null;
+            }
+            if (_indexFile != null && _indexFile.delete()) {
+                _indexFile = null;
+            }
+        }
+    }
+}
@@ -21,7 +21,15 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 
 import org.apache.poi.POIXMLException;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
@@ -38,10 +46,14 @@ import org.apache.poi.xssf.model.SharedStringsTable;
 import org.apache.poi.xssf.model.StylesTable;
 import org.apache.poi.xssf.model.ThemesTable;
 import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.TypedSheetContentsHandler;
 import org.apache.xmlbeans.XmlException;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheet;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorkbook;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.WorkbookDocument;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 /**
  * This class makes it easy to get at individual parts
@@ -160,6 +172,105 @@ public class XSSFReader {
         return new SheetIterator(workbookPart);
     }
 
+    /**
+     * Processes all of the sheets concurrently, each sheet as one task of the executor.
+     * <p>
+     * The sheets are independent parts of the package, so they can be read in parallel.
+     * Each task gets its own input stream, which is closed when the task is done.
+     * A {@link ReadOnlySharedStringsTable} and a {@link StylesTable} can be shared by
+     * the tasks, as they are only read, but each task needs its own parser, handler
+     * and <code>DataFormatter</code>, see {@link SheetContentsProcessor}.
+     * </p>
+     *
+     * @param executor runs the tasks
+     * @param processor processes one sheet
+     * @return the results of the sheets in their logical order. {@link Future#get()}
+     *  throws an <code>ExecutionException</code> if the processing of the sheet failed.
+     */
+    public <T> List<Future<T>> processSheets(Executor executor, final SheetProcessor<T> processor)
+            throws IOException, InvalidFormatException {
+        SheetIterator iter = new SheetIterator(workbookPart);
+        List<Future<T>> results = new ArrayList<Future<T>>();
+        for (int i = 0; iter.hasNext(); i++) {
+            final PackagePart part = iter.nextSheetPart();
+            final String sheetName = iter.getSheetName();
+            final int sheetIndex = i;
+            FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+                public T call() throws Exception {
+                    InputStream is;
+                    // opening a part is not thread-safe, reading it is
+                    synchronized (pkg) {
+                        is = part.getInputStream();
+                    }
+                    try {
+                        return processor.processSheet(sheetIndex, sheetName, is);
+                    } finally {
+                        is.close();
+                    }
+                }
+            });
+            results.add(task);
+            executor.execute(task);
+        }
+        return results;
+    }
+
+    /**
+     * Processes one sheet for {@link XSSFReader#processSheets(Executor, SheetProcessor)}.
+     * The sheets are processed concurrently, so implementations must be thread-safe.
+     */
+    public interface SheetProcessor<T> {
+        /**
+         * @param sheetIndex the 0-based index of the sheet, in logical order
+         * @param sheetName the name of the sheet
+         * @param sheetData the contents of the sheet
+         * @return the result for the sheet
+         */
+        T processSheet(int sheetIndex, String sheetName, InputStream sheetData) throws Exception;
+    }
+
+    /**
+     * A {@link SheetProcessor} which parses each sheet with its own SAX parser and
+     *  {@link XSSFSheetXMLHandler}, reporting to a new handler for the sheet.
+     */
+    public static abstract class SheetContentsProcessor<H extends TypedSheetContentsHandler, T>
+            implements SheetProcessor<T> {
+        private final StylesTable styles;
+        private final ReadOnlySharedStringsTable strings;
+
+        /**
+         * @param styles the styles, shared by all of the sheets
+         * @param strings the shared strings, shared by all of the sheets
+         */
+        protected SheetContentsProcessor(StylesTable styles, ReadOnlySharedStringsTable strings) {
+            this.styles = styles;
+            this.strings = strings;
+        }
+
+        /**
+         * Creates the handler for a sheet, on the thread that processes the sheet
+         */
+        protected abstract H createHandler(int sheetIndex, String sheetName);
+
+        /**
+         * @return the result for a sheet, once its handler has seen all of it
+         */
+        protected abstract T getResult(H handler);
+
+        public T processSheet(int sheetIndex, String sheetName, InputStream sheetData)
+                throws IOException, SAXException {
+            H handler = createHandler(sheetIndex, sheetName);
+            try {
+                XMLReader reader = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+                reader.setContentHandler(new XSSFSheetXMLHandler(styles, strings, handler));
+                reader.parse(new InputSource(sheetData));
+            } catch (ParserConfigurationException e) {
+                throw new RuntimeException("SAX parser appears to be broken - " + e.getMessage());
+            }
+            return getResult(handler);
+        }
+    }
+
     /**
      * Iterator over sheet data.
      */
@@ -228,17 +339,24 @@ public class XSSFReader {
          * @return input stream of the next sheet in the iteration
          */
         public InputStream next() {
-            ctSheet = sheetIterator.next();
-
-            String sheetId = ctSheet.getId();
             try {
-                PackagePart sheetPkg = sheetMap.get(sheetId);
+                PackagePart sheetPkg = nextSheetPart();
                 return sheetPkg.getInputStream();
             } catch(IOException e) {
                 throw new POIXMLException(e);
             }
         }
 
+        /**
+         * Moves to the next sheet without opening it
+         *
+         * @return the package part of the next sheet in the iteration
+         */
+        private PackagePart nextSheetPart() {
+            ctSheet = sheetIterator.next();
+            return sheetMap.get(ctSheet.getId());
+        }
+
         /**
          * Returns name of the current sheet
          *
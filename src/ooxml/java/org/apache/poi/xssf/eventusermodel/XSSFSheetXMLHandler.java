@@ -17,7 +17,9 @@
 package org.apache.poi.xssf.eventusermodel;
 
 import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
 import org.apache.poi.xssf.model.StylesTable;
 import org.apache.poi.xssf.usermodel.XSSFCellStyle;
 import org.apache.poi.xssf.usermodel.XSSFRichTextString;
@@ -29,6 +31,10 @@ import org.xml.sax.helpers.DefaultHandler;
  * This class handles the processing of a sheet#.xml 
  *  sheet part of a XSSF .xlsx file, and generates
  *  row and cell events for it.
+ * <p>
+ * The events go either to a {@link SheetContentsHandler}, which gets the
+ *  formatted text of each cell, or to a {@link TypedSheetContentsHandler},
+ *  which gets the raw values and only formats the cells it asks for.
  */
 public class XSSFSheetXMLHandler extends DefaultHandler {
    /**
@@ -53,10 +59,15 @@ public class XSSFSheetXMLHandler extends DefaultHandler {
    private ReadOnlySharedStringsTable sharedStringsTable;
 
    /**
-    * Where our text is going
+    * Where our text is going, <code>null</code> if the typed output is used
     */
    private final SheetContentsHandler output;
 
+   /**
+    * Where our values are going, <code>null</code> if the text output is used
+    */
+   private final TypedSheetContentsHandler typedOutput;
+
    // Set when V start element is seen
    private boolean vIsOpen;
    // Set when F start element is seen
@@ -71,16 +82,21 @@ public class XSSFSheetXMLHandler extends DefaultHandler {
    private xssfDataType nextDataType;
 
    // Used to format numeric cell values.
-   private short formatIndex;
-   private String formatString;
    private final DataFormatter formatter;
    private String cellRef;
    private boolean formulasNotResults;
 
+   // The row and column of the current cell
+   private int rowNum = -1;
+   private int column = -1;
+
+   // The current cell, reused for all cells
+   private final CellData cell = new CellData();
+
    // Gathers characters as they are seen.
-   private StringBuffer value = new StringBuffer();
-   private StringBuffer formula = new StringBuffer();
-   private StringBuffer headerFooter = new StringBuffer();
+   private StringBuilder value = new StringBuilder();
+   private StringBuilder formula = new StringBuilder();
+   private StringBuilder headerFooter = new StringBuilder();
 
    /**
     * Accepts objects needed while parsing.
@@ -97,6 +113,7 @@ public class XSSFSheetXMLHandler extends DefaultHandler {
        this.stylesTable = styles;
        this.sharedStringsTable = strings;
        this.output = sheetContentsHandler;
+       this.typedOutput = null;
        this.formulasNotResults = formulasNotResults;
        this.nextDataType = xssfDataType.NUMBER;
        this.formatter = dataFormatter;
@@ -115,6 +132,39 @@ public class XSSFSheetXMLHandler extends DefaultHandler {
        this(styles, strings, sheetContentsHandler, new DataFormatter(), formulasNotResults);
    }
 
+   /**
+    * Accepts objects needed while parsing, for typed output.
+    *
+    * @param styles  Table of styles
+    * @param strings Table of shared strings
+    * @param dataFormatter used for the cells whose formatted value is asked for
+    */
+   public XSSFSheetXMLHandler(
+           StylesTable styles,
+           ReadOnlySharedStringsTable strings,
+           TypedSheetContentsHandler sheetContentsHandler,
+           DataFormatter dataFormatter) {
+       this.stylesTable = styles;
+       this.sharedStringsTable = strings;
+       this.output = null;
+       this.typedOutput = sheetContentsHandler;
+       this.nextDataType = xssfDataType.NUMBER;
+       this.formatter = dataFormatter;
+   }
+
+   /**
+    * Accepts objects needed while parsing, for typed output.
+    *
+    * @param styles  Table of styles
+    * @param strings Table of shared strings
+    */
+   public XSSFSheetXMLHandler(
+           StylesTable styles,
+           ReadOnlySharedStringsTable strings,
+           TypedSheetContentsHandler sheetContentsHandler) {
+       this(styles, strings, sheetContentsHandler, new DataFormatter());
+   }
+
    private boolean isTextTag(String name) {
       if("v".equals(name)) {
          // Easy, normal v text tag
@@ -145,6 +195,7 @@ public class XSSFSheetXMLHandler extends DefaultHandler {
        } else if ("f".equals(name)) {
           // Clear contents cache
           formula.setLength(0);
+          cell.hasFormula = true;
           
           // Mark us as being a formula if not already
           if(nextDataType == xssfDataType.NUMBER) {
@@ -185,16 +236,23 @@ public class XSSFSheetXMLHandler extends DefaultHandler {
           headerFooter.setLength(0);
        }
        else if("row".equals(name)) {
-           int rowNum = Integer.parseInt(attributes.getValue("r")) - 1;
-           output.startRow(rowNum);
+           String r = attributes.getValue("r");
+           // the row number is optional, and then follows the previous one
+           rowNum = r == null ? rowNum + 1 : Integer.parseInt(r) - 1;
+           column = -1;
+           if (typedOutput != null) {
+              typedOutput.startRow(rowNum);
+           } else {
+              output.startRow(rowNum);
+           }
        }
        // c => cell
        else if ("c".equals(name)) {
            // Set up defaults.
            this.nextDataType = xssfDataType.NUMBER;
-           this.formatIndex = -1;
-           this.formatString = null;
            cellRef = attributes.getValue("r");
+           // the reference is optional, and then the cell follows the previous one
+           column = cellRef == null ? column + 1 : parseColumn(cellRef);
            String cellType = attributes.getValue("t");
            String cellStyleStr = attributes.getValue("s");
            if ("b".equals(cellType))
@@ -207,109 +265,227 @@ public class XSSFSheetXMLHandler extends DefaultHandler {
                nextDataType = xssfDataType.SST_STRING;
            else if ("str".equals(cellType))
                nextDataType = xssfDataType.FORMULA;
-           else if (cellStyleStr != null) {
-              // Number, but almost certainly with a special style or format
-               int styleIndex = Integer.parseInt(cellStyleStr);
-               XSSFCellStyle style = stylesTable.getStyleAt(styleIndex);
-               this.formatIndex = style.getDataFormat();
-               this.formatString = style.getDataFormatString();
-               if (this.formatString == null)
-                   this.formatString = BuiltinFormats.getBuiltinFormat(this.formatIndex);
-           }
+           cell.reset(nextDataType, cellStyleStr == null ? -1 : Integer.parseInt(cellStyleStr));
        }
    }
 
+   /**
+    * @return the 0-based column index of a cell reference like "AB12"
+    */
+   private static int parseColumn(String ref) {
+      int col = 0;
+      for (int i = 0; i < ref.length(); i++) {
+         char c = ref.charAt(i);
+         if (c >= 'A' && c <= 'Z') {
+            col = col * 26 + (c - 'A' + 1);
+         } else if (c >= 'a' && c <= 'z') {
+            col = col * 26 + (c - 'a' + 1);
+         } else if (c != '$') {
+            break;
+         }
+      }
+      return col - 1;
+   }
+
    public void endElement(String uri, String localName, String name)
            throws SAXException {
-       String thisStr = null;
-
        // v => contents of a cell
        if (isTextTag(name)) {
            vIsOpen = false;
            
-           // Process the value contents as required, now we have it all
-           switch (nextDataType) {
-               case BOOLEAN:
-                   char first = value.charAt(0);
-                   thisStr = first == '0' ? "FALSE" : "TRUE";
-                   break;
-
-               case ERROR:
-                   thisStr = "ERROR:" + value.toString();
-                   break;
-
-               case FORMULA:
-                   if(formulasNotResults) {
-                      thisStr = formula.toString();
-                   } else {
-                      String fv = value.toString();
-                      
-                      if (this.formatString != null) {
-                         try {
-                            // Try to use the value as a formattable number
-                            double d = Double.parseDouble(fv);
-                            thisStr = formatter.formatRawCellContents(d, this.formatIndex, this.formatString);
-                         } catch(NumberFormatException e) {
-                            // Formula is a String result not a Numeric one
-                            thisStr = fv;
-                         }
-                      } else {
-                         // No formating applied, just do raw value in all cases
-                         thisStr = fv;
-                      }
-                   }
-                   break;
-
-               case INLINE_STRING:
-                   // TODO: Can these ever have formatting on them?
-                   XSSFRichTextString rtsi = new XSSFRichTextString(value.toString());
-                   thisStr = rtsi.toString();
-                   break;
-
-               case SST_STRING:
-                   String sstIndex = value.toString();
-                   try {
-                       int idx = Integer.parseInt(sstIndex);
-                       XSSFRichTextString rtss = new XSSFRichTextString(sharedStringsTable.getEntryAt(idx));
-                       thisStr = rtss.toString();
-                   }
-                   catch (NumberFormatException ex) {
-                       System.err.println("Failed to parse SST index '" + sstIndex + "': " + ex.toString());
-                   }
-                   break;
-
-               case NUMBER:
-                   String n = value.toString();
-                   if (this.formatString != null)
-                       thisStr = formatter.formatRawCellContents(Double.parseDouble(n), this.formatIndex, this.formatString);
-                   else
-                       thisStr = n;
-                   break;
-
-               default:
-                   thisStr = "(TODO: Unexpected type: " + nextDataType + ")";
-                   break;
-           }
-           
            // Output
-           output.cell(cellRef, thisStr);
+           if (typedOutput != null) {
+              typedOutput.cell(cell);
+           } else {
+              output.cell(cellRef, formatValue(formulasNotResults));
+           }
+           cell.clearValues();
        } else if ("f".equals(name)) {
           fIsOpen = false;
        } else if ("is".equals(name)) {
           isIsOpen = false;
        } else if ("row".equals(name)) {
-          output.endRow();
+          if (typedOutput != null) {
+             typedOutput.endRow();
+          } else {
+             output.endRow();
+          }
        }
        else if("oddHeader".equals(name) || "evenHeader".equals(name) ||
              "firstHeader".equals(name)) {
           hfIsOpen = false;
-          output.headerFooter(headerFooter.toString(), true, name);
+          headerFooter(headerFooter.toString(), true, name);
        }
        else if("oddFooter".equals(name) || "evenFooter".equals(name) ||
              "firstFooter".equals(name)) {
           hfIsOpen = false;
-          output.headerFooter(headerFooter.toString(), false, name);
+          headerFooter(headerFooter.toString(), false, name);
+       }
+   }
+
+   private void headerFooter(String text, boolean isHeader, String tagName) {
+      if (typedOutput != null) {
+         typedOutput.headerFooter(text, isHeader, tagName);
+      } else {
+         output.headerFooter(text, isHeader, tagName);
+      }
+   }
+
+   /**
+    * Process the value contents as required, now we have it all
+    *
+    * @return the formatted value of the current cell
+    */
+   private String formatValue(boolean formulasNotResults) {
+       String thisStr = null;
+       switch (nextDataType) {
+           case BOOLEAN:
+               char first = value.charAt(0);
+               thisStr = first == '0' ? "FALSE" : "TRUE";
+               break;
+
+           case ERROR:
+               thisStr = "ERROR:" + value.toString();
+               break;
+
+           case FORMULA:
+               if(formulasNotResults) {
+                  thisStr = formula.toString();
+               } else {
+                  String fv = value.toString();
+                  
+                  if (cell.getFormatString() != null) {
+                     try {
+                        // Try to use the value as a formattable number
+                        double d = Double.parseDouble(fv);
+                        thisStr = formatter.formatRawCellContents(d, cell.formatIndex, cell.formatString);
+                     } catch(NumberFormatException e) {
+                        // Formula is a String result not a Numeric one
+                        thisStr = fv;
+                     }
+                  } else {
+                     // No formating applied, just do raw value in all cases
+                     thisStr = fv;
+                  }
+               }
+               break;
+
+           case INLINE_STRING:
+               // TODO: Can these ever have formatting on them?
+               thisStr = decode(value.toString());
+               break;
+
+           case SST_STRING:
+               String sstIndex = value.toString();
+               try {
+                   int idx = Integer.parseInt(sstIndex);
+                   thisStr = decode(sharedStringsTable.getEntryAt(idx));
+               }
+               catch (NumberFormatException ex) {
+                   System.err.println("Failed to parse SST index '" + sstIndex + "': " + ex.toString());
+               }
+               break;
+
+           case NUMBER:
+               if (cell.getFormatString() != null)
+                   thisStr = formatter.formatRawCellContents(parseDouble(value), cell.formatIndex, cell.formatString);
+               else
+                   thisStr = value.toString();
+               break;
+
+           default:
+               thisStr = "(TODO: Unexpected type: " + nextDataType + ")";
+               break;
        }
+       return thisStr;
+   }
+
+   /**
+    * Decodes the escaped characters (like <tt>_x000D_</tt>) in a string
+    */
+   private static String decode(String s) {
+      if (s.indexOf("_x") < 0) {
+         // nothing to decode, save creating the rich text string
+         return s;
+      }
+      return new XSSFRichTextString(s).toString();
+   }
+
+   private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+   };
+
+   /**
+    * Parses a number without creating a string for it, if it has at most 15 significant digits
+    *  and a small exponent.  The result is then exact, as both the digits and the power of ten
+    *  are exact doubles and a single multiplication or division is correctly rounded.
+    *  Other numbers are parsed by {@link Double#parseDouble(String)}.
+    */
+   static double parseDouble(CharSequence s) {
+      int len = s.length();
+      int i = 0;
+      boolean negative = false;
+      if (len > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+         negative = s.charAt(0) == '-';
+         i++;
+      }
+      long mantissa = 0;
+      int digits = 0;
+      int scale = 0;
+      boolean hasDigits = false;
+      boolean inFraction = false;
+      for (; i < len; i++) {
+         char c = s.charAt(i);
+         if (c >= '0' && c <= '9') {
+            hasDigits = true;
+            if (mantissa != 0 || c != '0') {
+               if (++digits > 15) {
+                  return Double.parseDouble(s.toString());
+               }
+               mantissa = mantissa * 10 + (c - '0');
+            }
+            if (inFraction) {
+               scale--;
+            }
+         } else if (c == '.' && !inFraction) {
+            inFraction = true;
+         } else {
+            break;
+         }
+      }
+      if (i < len) {
+         char c = s.charAt(i);
+         if (!hasDigits || (c != 'E' && c != 'e') || ++i == len) {
+            return Double.parseDouble(s.toString());
+         }
+         boolean negativeExp = false;
+         if (s.charAt(i) == '-' || s.charAt(i) == '+') {
+            negativeExp = s.charAt(i) == '-';
+            if (++i == len) {
+               return Double.parseDouble(s.toString());
+            }
+         }
+         int exp = 0;
+         for (; i < len; i++) {
+            c = s.charAt(i);
+            if (c < '0' || c > '9' || exp > 1000) {
+               return Double.parseDouble(s.toString());
+            }
+            exp = exp * 10 + (c - '0');
+         }
+         scale += negativeExp ? -exp : exp;
+      } else if (!hasDigits) {
+         return Double.parseDouble(s.toString());
+      }
+      double d = mantissa;
+      if (mantissa != 0 && scale != 0) {
+         if (scale < -22 || scale > 22) {
+            return Double.parseDouble(s.toString());
+         }
+         d = scale < 0 ? d / POWERS_OF_TEN[-scale] : d * POWERS_OF_TEN[scale];
+      }
+      return negative ? -d : d;
    }
 
    /**
@@ -343,4 +519,226 @@ public class XSSFSheetXMLHandler extends DefaultHandler {
       /** A header or footer has been encountered */
       public void headerFooter(String text, boolean isHeader, String tagName);
    }
+
+   /**
+    * Implement this to handle the raw values of the sheet, without
+    *  formatting the cells and without parsing cell references.
+    */
+   public interface TypedSheetContentsHandler {
+      /** A row with the (zero based) row number has started */
+      public void startRow(int rowNum);
+      /** A row with the (zero based) row number has ended */
+      public void endRow();
+      /**
+       * A cell with a value was encountered.  The cell object is reused
+       *  for the next cell, so it is only valid during this call.
+       */
+      public void cell(CellData cell);
+      /** A header or footer has been encountered */
+      public void headerFooter(String text, boolean isHeader, String tagName);
+   }
+
+   /**
+    * The current cell passed to a {@link TypedSheetContentsHandler}.  The raw
+    *  values are read without creating objects, the text values are created
+    *  when they are asked for.
+    */
+   public final class CellData {
+      /** the type given by the t attribute, before the formula is seen */
+      private xssfDataType dataType;
+      private int styleIndex;
+      private boolean hasFormula;
+      private boolean formatRead;
+      private short formatIndex;
+      private String formatString;
+      private String stringValue;
+      private String formattedValue;
+
+      CellData() {
+      }
+
+      void reset(xssfDataType type, int style) {
+         dataType = type;
+         styleIndex = style;
+         hasFormula = false;
+         formatRead = false;
+         formatString = null;
+         clearValues();
+      }
+
+      void clearValues() {
+         stringValue = null;
+         formattedValue = null;
+      }
+
+      /**
+       * @return the (zero based) row number
+       */
+      public int getRowNum() {
+         return rowNum;
+      }
+
+      /**
+       * @return the (zero based) column index
+       */
+      public int getColumnIndex() {
+         return column;
+      }
+
+      /**
+       * @return the cell reference, like "B3", <code>null</code> if the file has none
+       */
+      public String getReference() {
+         return cellRef;
+      }
+
+      /**
+       * @return the index of the cell style, <code>0</code> for the default style
+       * @see StylesTable#getStyleAt(int)
+       */
+      public int getStyleIndex() {
+         return styleIndex < 0 ? 0 : styleIndex;
+      }
+
+      /**
+       * @return one of <tt>Cell.CELL_TYPE_NUMERIC</tt>, <tt>CELL_TYPE_STRING</tt>,
+       *  <tt>CELL_TYPE_BOOLEAN</tt>, <tt>CELL_TYPE_ERROR</tt> or <tt>CELL_TYPE_FORMULA</tt>
+       */
+      public int getCellType() {
+         return hasFormula ? Cell.CELL_TYPE_FORMULA : getValueType();
+      }
+
+      /**
+       * @return the type of the value, for formula cells the type of the cached result
+       */
+      public int getValueType() {
+         switch (dataType) {
+            case BOOLEAN:       return Cell.CELL_TYPE_BOOLEAN;
+            case ERROR:         return Cell.CELL_TYPE_ERROR;
+            case INLINE_STRING:
+            case SST_STRING:    return Cell.CELL_TYPE_STRING;
+            // t="str", the string result of a formula
+            case FORMULA:       return Cell.CELL_TYPE_STRING;
+            default:            return Cell.CELL_TYPE_NUMERIC;
+         }
+      }
+
+      /**
+       * @return the value as it is stored in the file, e.g. the index of a shared string
+       */
+      public String getRawValue() {
+         return value.toString();
+      }
+
+      /**
+       * @return the numeric value, for numeric cells and formulas with a numeric result
+       * @throws NumberFormatException if the value is not a number
+       */
+      public double getNumericValue() {
+         return parseDouble(value);
+      }
+
+      /**
+       * @return the boolean value, for boolean cells and formulas with a boolean result
+       */
+      public boolean getBooleanValue() {
+         return value.length() > 0 && value.charAt(0) != '0';
+      }
+
+      /**
+       * @return the error code, for error cells and formulas with an error result
+       * @see FormulaError
+       */
+      public byte getErrorValue() {
+         return FormulaError.forString(value.toString()).getCode();
+      }
+
+      /**
+       * @return the index of the string in the shared strings table, <code>-1</code> if the
+       *  value is not a shared string
+       */
+      public int getSharedStringIndex() {
+         if (dataType != xssfDataType.SST_STRING) {
+            return -1;
+         }
+         int idx = 0;
+         for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+               throw new NumberFormatException("Invalid shared string index '" + value + "'");
+            }
+            idx = idx * 10 + (c - '0');
+         }
+         return idx;
+      }
+
+      /**
+       * @return the text of string cells and formulas with a string result,
+       *  <code>null</code> for other cells
+       */
+      public String getStringValue() {
+         if (stringValue == null && getValueType() == Cell.CELL_TYPE_STRING) {
+            if (dataType == xssfDataType.SST_STRING) {
+               stringValue = decode(sharedStringsTable.getEntryAt(getSharedStringIndex()));
+            } else if (dataType == xssfDataType.INLINE_STRING) {
+               stringValue = decode(value.toString());
+            } else {
+               stringValue = value.toString();
+            }
+         }
+         return stringValue;
+      }
+
+      /**
+       * @return the formula, <code>null</code> if the cell has none or if it uses
+       *  a shared formula
+       */
+      public String getFormula() {
+         return hasFormula && formula.length() > 0 ? formula.toString() : null;
+      }
+
+      /**
+       * @return the index of the data format of the cell, <code>-1</code> if it
+       *  is not formatted as a number
+       */
+      public short getDataFormat() {
+         return getFormatString() == null ? -1 : formatIndex;
+      }
+
+      /**
+       * @return the data format string of the cell, <code>null</code> if it is not
+       *  formatted as a number
+       */
+      public String getDataFormatString() {
+         return getFormatString();
+      }
+
+      /**
+       * @return the value formatted as the {@link SheetContentsHandler} gets it,
+       *  with the result of formulas instead of the formula
+       */
+      public String getFormattedValue() {
+         if (formattedValue == null) {
+            formattedValue = formatValue(false);
+         }
+         return formattedValue;
+      }
+
+      /**
+       * Numbers, but not the other types, are formatted with the format of their style
+       */
+      String getFormatString() {
+         if (!formatRead) {
+            formatRead = true;
+            if (styleIndex >= 0 && dataType == xssfDataType.NUMBER) {
+               XSSFCellStyle style = stylesTable.getStyleAt(styleIndex);
+               formatIndex = style.getDataFormat();
+               formatString = style.getDataFormatString();
+               if (formatString == null)
+                  formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+            }
+         }
+         return formatString;
+      }
+   }
 }
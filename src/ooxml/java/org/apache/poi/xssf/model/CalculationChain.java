@@ -21,6 +21,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 import org.apache.poi.POIXMLDocumentPart;
+import org.apache.poi.ss.util.CellReference;
 import org.apache.xmlbeans.XmlException;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.*;
 import org.apache.poi.openxml4j.opc.PackagePart;
@@ -97,4 +98,40 @@ public class CalculationChain extends POIXMLDocumentPart {
             }
         }
     }
+
+    /**
+     * Remove the formula references of a block of rows from the calculation chain
+     *
+     * @param sheetId  the sheet Id of a sheet the formulas belong to.
+     * @param firstRow the first row (0-based) to remove the formula references for
+     * @param lastRow the last row (0-based) to remove the formula references for
+     */
+    @SuppressWarnings("deprecation") //  getXYZArray() array accessors are deprecated
+    public void removeItems(int sheetId, int firstRow, int lastRow){
+        CTCalcCell[] c = chain.getCArray();
+        boolean[] toRemove = new boolean[c.length];
+        //sheet Id of a sheet the cell belongs to
+        int id = -1;
+        //sheet Id of the last cell we keep
+        int keptId = -1;
+        for (int i = 0; i < c.length; i++){
+            //If sheet Id  is omitted, it is assumed to be the same as the value of the previous cell.
+            if(c[i].isSetI()) id = c[i].getI();
+
+            if(id == sheetId) {
+                int row = new CellReference(c[i].getR()).getRow();
+                if(row >= firstRow && row <= lastRow) {
+                    toRemove[i] = true;
+                    continue;
+                }
+            }
+            if(!c[i].isSetI() && id != keptId) {
+                c[i].setI(id);
+            }
+            keptId = id;
+        }
+        for (int i = c.length - 1; i >= 0; i--){
+            if(toRemove[i]) chain.removeC(i);
+        }
+    }
 }
\ No newline at end of file
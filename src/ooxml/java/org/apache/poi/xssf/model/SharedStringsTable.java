@@ -17,19 +17,35 @@
 
 package org.apache.poi.xssf.model;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.*;
 
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlOptions;
 import org.apache.poi.POIXMLDocumentPart;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRElt;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRst;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSst;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.SstDocument;
 import org.apache.poi.openxml4j.opc.PackagePart;
 import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 
 /**
@@ -52,22 +68,36 @@ import org.apache.poi.openxml4j.opc.PackageRelationship;
  * The shared string table contains all the necessary information for displaying the string: the text, formatting
  * properties, and phonetic properties (for East Asian languages).
  * </p>
+ * <p>
+ * Plain strings, which are the vast majority, are kept as <code>String</code>s and the
+ * table is read and written with SAX, so that only the rich text entries are held as
+ * <code>CTRst</code> beans.
+ * </p>
  *
  * @author Nick Birch
  * @author Yegor Kozlov
  */
 public class SharedStringsTable extends POIXMLDocumentPart {
 
+    private static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String XML_NS = "http://www.w3.org/XML/1998/namespace";
+
     /**
-     *  Array of individual string items in the Shared String table.
+     *  Array of individual string items in the Shared String table, a <code>String</code>
+     *  for plain text and a <code>CTRst</code> for rich text
      */
-    private final List<CTRst> strings = new ArrayList<CTRst>();
+    private final List<Object> strings = new ArrayList<Object>();
 
     /**
-     *  Maps strings and their indexes in the <code>strings</code> arrays
+     *  Maps plain strings and their indexes in the <code>strings</code> arrays
      */
     private final Map<String, Integer> stmap = new HashMap<String, Integer>();
 
+    /**
+     *  Maps the XML text of rich text entries and their indexes in the <code>strings</code> arrays
+     */
+    private final Map<String, Integer> richmap = new HashMap<String, Integer>();
+
     /**
      * An integer representing the total count of strings in the workbook. This count does not
      * include any numbers, it counts only the total of text strings in the workbook.
@@ -81,20 +111,34 @@ public class SharedStringsTable extends POIXMLDocumentPart {
      */
     private int uniqueCount;
 
-    private SstDocument _sstDoc;
+    /**
+     * holds the rich text entries, so that they are saved as <tt>si</tt> elements
+     */
+    private final CTSst _richSst = SstDocument.Factory.newInstance().addNewSst();
 
     private final static XmlOptions options = new XmlOptions();
     static {
         options.put( XmlOptions.SAVE_INNER );
      	options.put( XmlOptions.SAVE_AGGRESSIVE_NAMESPACES );
      	options.put( XmlOptions.SAVE_USE_DEFAULT_NAMESPACE );
-        options.setSaveImplicitNamespaces(Collections.singletonMap("", "http://schemas.openxmlformats.org/spreadsheetml/2006/main"));
+        options.setSaveImplicitNamespaces(Collections.singletonMap("", MAIN_NS));
+        // the following two lines turn off writing CDATA
+        // see Bugzilla 48936
+        options.setSaveCDataLengthThreshold(1000000);
+        options.setSaveCDataEntityCountThreshold(-1);
+    }
+
+    /**
+     * writes an entry as a <tt>si</tt> element of the default namespace
+     */
+    private final static XmlOptions writeOptions = new XmlOptions(options);
+    static {
+        writeOptions.remove( XmlOptions.SAVE_INNER );
+        writeOptions.setSaveOuter();
     }
 
     public SharedStringsTable() {
         super();
-        _sstDoc = SstDocument.Factory.newInstance();
-        _sstDoc.addNewSst();
     }
 
     public SharedStringsTable(PackagePart part, PackageRelationship rel) throws IOException {
@@ -108,20 +152,17 @@ public class SharedStringsTable extends POIXMLDocumentPart {
      * @param is The input stream containing the XML document.
      * @throws IOException if an error occurs while reading.
      */
-    @SuppressWarnings("deprecation") //YK: getXYZArray() array accessors are deprecated in xmlbeans with JDK 1.5 support
     public void readFrom(InputStream is) throws IOException {
+        SAXParserFactory saxFactory = SAXParserFactory.newInstance();
+        saxFactory.setNamespaceAware(true);
         try {
-            int cnt = 0;
-            _sstDoc = SstDocument.Factory.parse(is);
-            CTSst sst = _sstDoc.getSst();
-            count = (int)sst.getCount();
-            uniqueCount = (int)sst.getUniqueCount();
-            for (CTRst st : sst.getSiArray()) {
-                stmap.put(getKey(st), cnt);
-                strings.add(st);
-                cnt++;
-            }
-        } catch (XmlException e) {
+            SAXParser saxParser = saxFactory.newSAXParser();
+            XMLReader sstParser = saxParser.getXMLReader();
+            sstParser.setContentHandler(new SstReader());
+            sstParser.parse(new InputSource(is));
+        } catch (ParserConfigurationException e) {
+            throw new RuntimeException("SAX parser appears to be broken - " + e.getMessage());
+        } catch (SAXException e) {
             throw new IOException(e.getLocalizedMessage());
         }
     }
@@ -130,14 +171,75 @@ public class SharedStringsTable extends POIXMLDocumentPart {
         return st.xmlText(options);
     }
 
+    /**
+     * @return <code>true</code> if the entry has no formatting runs and no phonetic properties
+     */
+    private static boolean isPlain(CTRst st) {
+        return st.sizeOfRArray() == 0 && st.sizeOfRPhArray() == 0 && !st.isSetPhoneticPr();
+    }
+
     /**
      * Return a string item by index
      *
+     * <p>
+     * Plain strings are kept as <code>String</code>s until their bean is asked for, use
+     * {@link #getStringAt(int)} if the formatting is not needed.
+     * </p>
+     *
      * @param idx index of item to return.
      * @return the item at the specified position in this Shared String table.
      */
     public CTRst getEntryAt(int idx) {
-        return strings.get(idx);
+        Object entry = strings.get(idx);
+        if (entry instanceof CTRst) {
+            return (CTRst) entry;
+        }
+        // the bean may be changed, which changes the entry
+        String text = (String) entry;
+        CTRst st = _richSst.addNewSi();
+        st.setT(text);
+        if (isSpacePreserved(text)) {
+            XmlCursor c = st.xgetT().newCursor();
+            c.toNextToken();
+            c.insertAttributeWithValue(new QName(XML_NS, "space"), "preserve");
+            c.dispose();
+        }
+        strings.set(idx, st);
+        return st;
+    }
+
+    /**
+     * Return the text of a string item by index, without creating a bean for plain strings.
+     * Formatting is ignored and the text is returned as stored, see
+     * {@link org.apache.poi.xssf.usermodel.XSSFRichTextString#getString()} for decoding it.
+     *
+     * @param idx index of item to return.
+     * @return the text of the item at the specified position in this Shared String table.
+     */
+    @SuppressWarnings("deprecation") //YK: getXYZArray() array accessors are deprecated in xmlbeans with JDK 1.5 support
+    public String getStringAt(int idx) {
+        Object entry = strings.get(idx);
+        if (entry instanceof String) {
+            return (String) entry;
+        }
+        CTRst st = (CTRst) entry;
+        if (st.sizeOfRArray() == 0) {
+            return st.getT();
+        }
+        StringBuffer buf = new StringBuffer();
+        for (CTRElt r : st.getRArray()) {
+            buf.append(r.getT());
+        }
+        return buf.toString();
+    }
+
+    /**
+     * @return <code>true</code> if the text starts or ends with whitespace, which must then
+     *  be preserved explicitly
+     */
+    private static boolean isSpacePreserved(String text) {
+        return text.length() > 0 && (Character.isWhitespace(text.charAt(0))
+                || Character.isWhitespace(text.charAt(text.length() - 1)));
     }
 
     /**
@@ -173,28 +275,79 @@ public class SharedStringsTable extends POIXMLDocumentPart {
      * @return index the index of added entry
      */
     public int addEntry(CTRst st) {
-        String s = getKey(st);
         count++;
-        if (stmap.containsKey(s)) {
-            return stmap.get(s);
+        if (isPlain(st)) {
+            String text = st.isSetT() ? st.getT() : "";
+            Integer idx = stmap.get(text);
+            if (idx != null) {
+                return idx;
+            }
+            return add(stmap, text, text);
         }
 
+        String s = getKey(st);
+        Integer idx = richmap.get(s);
+        if (idx != null) {
+            return idx;
+        }
+        //create a CTRst bean attached to this table and copy the argument CTRst into it
+        return add(richmap, s, copyOf(st));
+    }
+
+    private int add(Map<String, Integer> map, String key, Object entry) {
         uniqueCount++;
-        //create a CTRst bean attached to this SstDocument and copy the argument CTRst into it
-        CTRst newSt = _sstDoc.getSst().addNewSi();
-        newSt.set(st);
         int idx = strings.size();
-        stmap.put(s, idx);
-        strings.add(newSt);
+        map.put(key, idx);
+        strings.add(entry);
         return idx;
     }
+
     /**
      * Provide low-level access to the underlying array of CTRst beans
      *
+     * <p>
+     * The list is backed by this table, so beans added or set through it are written out.
+     * A copy of such a bean is stored, and it is not looked up by {@link #addEntry(CTRst)}.
+     * Getting an item creates the bean of a plain string, see {@link #getEntryAt(int)}.
+     * </p>
+     *
      * @return array of CTRst beans
      */
     public List<CTRst> getItems() {
-        return strings;
+        return new AbstractList<CTRst>() {
+            public CTRst get(int index) {
+                return getEntryAt(index);
+            }
+
+            public int size() {
+                return strings.size();
+            }
+
+            public CTRst set(int index, CTRst element) {
+                CTRst old = getEntryAt(index);
+                strings.set(index, copyOf(element));
+                return old;
+            }
+
+            public void add(int index, CTRst element) {
+                strings.add(index, copyOf(element));
+            }
+
+            public CTRst remove(int index) {
+                CTRst old = getEntryAt(index);
+                strings.remove(index);
+                return old;
+            }
+        };
+    }
+
+    /**
+     * @return a copy of the entry attached to this table, so that it is written as a <tt>si</tt> element
+     */
+    private CTRst copyOf(CTRst st) {
+        CTRst newSt = _richSst.addNewSi();
+        newSt.set(st);
+        return newSt;
     }
 
     /**
@@ -204,18 +357,58 @@ public class SharedStringsTable extends POIXMLDocumentPart {
      * @throws IOException if an error occurs while writing.
      */
     public void writeTo(OutputStream out) throws IOException {
-        XmlOptions options = new XmlOptions(DEFAULT_XML_OPTIONS);
-        // the following two lines turn off writing CDATA
-        // see Bugzilla 48936
-        options.setSaveCDataLengthThreshold(1000000);
-        options.setSaveCDataEntityCountThreshold(-1);
-
-        //re-create the sst table every time saving a workbook
-        CTSst sst = _sstDoc.getSst();
-        sst.setCount(count);
-        sst.setUniqueCount(uniqueCount);
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        w.write("<sst xmlns=\"" + MAIN_NS + "\" count=\"" + count
+                + "\" uniqueCount=\"" + uniqueCount + "\">");
+        for (Object entry : strings) {
+            if (entry instanceof CTRst) {
+                // rich text entries are written as they are now, they might have been changed
+                w.write(((CTRst) entry).xmlText(writeOptions));
+            } else {
+                String text = (String) entry;
+                if (isSpacePreserved(text)) {
+                    w.write("<si><t xml:space=\"preserve\">");
+                } else {
+                    w.write("<si><t>");
+                }
+                writeEscaped(w, text);
+                w.write("</t></si>");
+            }
+        }
+        w.write("</sst>");
+        w.flush();
+    }
 
-        _sstDoc.save(out, options);
+    /**
+     * Writes text content.  Characters which are not allowed in XML are written as '?',
+     * as XMLBeans does.
+     */
+    private static void writeEscaped(Writer w, String text) throws IOException {
+        int start = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            String replacement;
+            switch (c) {
+                case '&': replacement = "&amp;"; break;
+                case '<': replacement = "&lt;"; break;
+                case '>': replacement = "&gt;"; break;
+                case '\r': replacement = "&#13;"; break;
+                case '\t':
+                case '\n':
+                    continue;
+                default:
+                    if (c >= 0x20 && c < 0xFFFE) {
+                        continue;
+                    }
+                    replacement = "?";
+            }
+            w.write(text, start, i - start);
+            w.write(replacement);
+            start = i + 1;
+        }
+        w.write(text, start, length - start);
     }
 
     @Override
@@ -225,4 +418,136 @@ public class SharedStringsTable extends POIXMLDocumentPart {
         writeTo(out);
         out.close();
     }
+
+    /**
+     * Keeps the text of plain entries, and collects the XML of rich text entries
+     * to parse them into beans.
+     */
+    private final class SstReader extends DefaultHandler {
+        /** the content of the current si element */
+        private final StringBuilder _xml = new StringBuilder();
+        /** the text of the t element of the current si element */
+        private final StringBuilder _text = new StringBuilder();
+        /** the depth of the current element in the current si element, -1 outside of si */
+        private int _depth = -1;
+        private boolean _inText;
+        private boolean _hasText;
+        private boolean _rich;
+
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (_depth >= 0) {
+                if (_depth == 0 && !_hasText && "t".equals(localName) && MAIN_NS.equals(uri)) {
+                    _hasText = true;
+                    _inText = true;
+                } else {
+                    _rich = true;
+                }
+                _depth++;
+                writeStartTag(uri, localName, qName, attributes);
+            } else if ("si".equals(localName)) {
+                _depth = 0;
+                _xml.setLength(0);
+                _text.setLength(0);
+                _hasText = false;
+                _rich = false;
+            } else if ("sst".equals(localName)) {
+                String cnt = attributes.getValue("count");
+                if (cnt != null) count = Integer.parseInt(cnt);
+                String unique = attributes.getValue("uniqueCount");
+                if (unique != null) uniqueCount = Integer.parseInt(unique);
+            }
+        }
+
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (_depth > 0) {
+                _depth--;
+                _inText = false;
+                _xml.append("</").append(MAIN_NS.equals(uri) ? localName : qName).append('>');
+            } else if (_depth == 0) {
+                _depth = -1;
+                Integer idx = strings.size();
+                if (_rich) {
+                    CTRst st = parseRichText();
+                    richmap.put(getKey(st), idx);
+                    strings.add(st);
+                } else {
+                    String text = _text.toString();
+                    if (!stmap.containsKey(text)) {
+                        stmap.put(text, idx);
+                    }
+                    strings.add(text);
+                }
+            }
+        }
+
+        public void characters(char[] ch, int start, int length) {
+            if (_depth < 0) {
+                return;
+            }
+            if (_inText) {
+                _text.append(ch, start, length);
+            }
+            for (int i = start; i < start + length; i++) {
+                appendEscaped(ch[i]);
+            }
+        }
+
+        private void writeStartTag(String uri, String localName, String qName, Attributes attributes) {
+            _xml.append('<');
+            if (MAIN_NS.equals(uri)) {
+                _xml.append(localName);
+            } else {
+                _xml.append(qName);
+                int colon = qName.indexOf(':');
+                _xml.append(colon < 0 ? " xmlns" : " xmlns:" + qName.substring(0, colon));
+                _xml.append("=\"").append(uri).append('"');
+            }
+            for (int i = 0; i < attributes.getLength(); i++) {
+                String attUri = attributes.getURI(i);
+                _xml.append(' ');
+                if (attUri.length() == 0) {
+                    _xml.append(attributes.getLocalName(i));
+                } else if (XML_NS.equals(attUri)) {
+                    _xml.append("xml:").append(attributes.getLocalName(i));
+                } else {
+                    _xml.append(attributes.getQName(i));
+                }
+                _xml.append("=\"");
+                String value = attributes.getValue(i);
+                for (int j = 0; j < value.length(); j++) {
+                    char c = value.charAt(j);
+                    if (c == '"') {
+                        _xml.append("&quot;");
+                    } else {
+                        appendEscaped(c);
+                    }
+                }
+                _xml.append('"');
+            }
+            _xml.append('>');
+        }
+
+        private void appendEscaped(char c) {
+            switch (c) {
+                case '&': _xml.append("&amp;"); break;
+                case '<': _xml.append("&lt;"); break;
+                case '>': _xml.append("&gt;"); break;
+                case '\r': _xml.append("&#13;"); break;
+                default: _xml.append(c);
+            }
+        }
+
+        private CTRst parseRichText() throws SAXException {
+            XmlOptions loadOptions = new XmlOptions();
+            loadOptions.setLoadReplaceDocumentElement(null);
+            try {
+                CTRst st = CTRst.Factory.parse("<si xmlns=\"" + MAIN_NS + "\">" + _xml + "</si>", loadOptions);
+                CTRst newSt = _richSst.addNewSi();
+                newSt.set(st);
+                return newSt;
+            } catch (XmlException e) {
+                throw new SAXException(e);
+            }
+        }
+    }
 }
@@ -34,9 +34,13 @@ import org.apache.poi.POIXMLDocumentPart;
 import org.apache.xmlbeans.XmlException;
 import org.apache.xmlbeans.XmlOptions;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTBorder;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTBorderPr;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTBorders;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellAlignment;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellProtection;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellStyleXfs;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellXfs;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTColor;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTDxf;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTDxfs;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFill;
@@ -45,6 +49,7 @@ import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFont;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFonts;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTNumFmt;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTNumFmts;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTPatternFill;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTStylesheet;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTXf;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.STPatternType;
@@ -68,6 +73,46 @@ public class StylesTable extends POIXMLDocumentPart {
 
 	private final List<CTDxf> dxfs = new ArrayList<CTDxf>();
 
+	/*
+	 * Hashed indexes of the lists above, so that registering a font, fill, border or style
+	 * does not need a linear search.  Built on demand.
+	 */
+	private final StyleIndex<XSSFFont> fontIndex = new StyleIndex<XSSFFont>(fonts) {
+		Object getKey(XSSFFont font) {
+			return getFontKey(font.getCTFont());
+		}
+		int getChangeCount(XSSFFont font) {
+			return font.getChangeCount();
+		}
+	};
+	private final StyleIndex<XSSFCellFill> fillIndex = new StyleIndex<XSSFCellFill>(fills) {
+		Object getKey(XSSFCellFill fill) {
+			return getFillKey(fill.getCTFill());
+		}
+		int getChangeCount(XSSFCellFill fill) {
+			return fill.getChangeCount();
+		}
+	};
+	private final StyleIndex<XSSFCellBorder> borderIndex = new StyleIndex<XSSFCellBorder>(borders) {
+		Object getKey(XSSFCellBorder border) {
+			return getBorderKey(border.getCTBorder());
+		}
+		int getChangeCount(XSSFCellBorder border) {
+			return border.getChangeCount();
+		}
+	};
+	private final StyleIndex<CTXf> xfIndex = new StyleIndex<CTXf>(xfs) {
+		Object getKey(CTXf xf) {
+			return getCellXfKey(xf);
+		}
+		int getChangeCount(CTXf xf) {
+			// changes of the xf beans are not tracked, see internCellXf
+			return 0;
+		}
+	};
+	/** position of each of the {@link #xfs} objects, see {@link #putStyle(XSSFCellStyle)} */
+	private Map<CTXf, Integer> xfPositions;
+
 	/**
 	 * The first style id available for use as a custom style
 	 */
@@ -213,7 +258,7 @@ public class StylesTable extends POIXMLDocumentPart {
 	public int putFont(XSSFFont font, boolean forceRegistration) {
 		int idx = -1;
 		if(!forceRegistration) {
-			idx = fonts.indexOf(font);
+			idx = fontIndex.indexOf(font);
 		}
 
 		if (idx != -1) {
@@ -241,10 +286,21 @@ public class StylesTable extends POIXMLDocumentPart {
 	public int putStyle(XSSFCellStyle style) {
 		CTXf mainXF = style.getCoreXf();
 
-		if(! xfs.contains(mainXF)) {
-			xfs.add(mainXF);
+		// CTXf objects are compared by identity
+		if (xfPositions == null) {
+			xfPositions = new IdentityHashMap<CTXf, Integer>();
+			for (int i = 0; i < xfs.size(); i++) {
+				if (!xfPositions.containsKey(xfs.get(i))) {
+					xfPositions.put(xfs.get(i), i);
+				}
+			}
+		}
+		Integer idx = xfPositions.get(mainXF);
+		if (idx == null) {
+			putCellXf(mainXF);
+			idx = xfPositions.get(mainXF);
 		}
-		return xfs.indexOf(mainXF);
+		return idx;
 	}
 
 	public XSSFCellBorder getBorderAt(int idx) {
@@ -252,7 +308,7 @@ public class StylesTable extends POIXMLDocumentPart {
 	}
 
 	public int putBorder(XSSFCellBorder border) {
-		int idx = borders.indexOf(border);
+		int idx = borderIndex.indexOf(border);
 		if (idx != -1) {
 			return idx;
 		}
@@ -282,7 +338,7 @@ public class StylesTable extends POIXMLDocumentPart {
 	}
 
 	public int putFill(XSSFCellFill fill) {
-		int idx = fills.indexOf(fill);
+		int idx = fillIndex.indexOf(fill);
 		if (idx != -1) {
 			return idx;
 		}
@@ -295,12 +351,89 @@ public class StylesTable extends POIXMLDocumentPart {
 	}
 	public int putCellXf(CTXf cellXf) {
 		xfs.add(cellXf);
+		if (xfPositions != null && !xfPositions.containsKey(cellXf)) {
+			xfPositions.put(cellXf, xfs.size() - 1);
+		}
 		return xfs.size();
 	}
    public void replaceCellXfAt(int idx, CTXf cellXf) {
       xfs.set(idx, cellXf);
+      xfPositions = null;
+      xfIndex.reset();
    }
 
+	/**
+	 * Returns the first cell style with the same formatting (font, fill, border,
+	 *  number format, alignment ...) as the supplied one.  The lookup is hashed.
+	 * If an equal style already exists and <code>style</code> is the most recently
+	 *  created one, <code>style</code> is removed again, so that creating the same style
+	 *  over and over does not grow the styles table.  In that case <code>style</code>
+	 *  must not be used afterwards.
+	 *
+	 * @param style a style of this table that is not yet used by any cell
+	 * @return the first style equal to <code>style</code>, or <code>style</code> itself
+	 */
+	public XSSFCellStyle internCellStyle(XSSFCellStyle style) {
+		int idx = style.getIndex();
+		int existingIdx = internCellXf(idx);
+		if (existingIdx == idx) {
+			return style;
+		}
+		if (idx == xfs.size() - 1) {
+			CTXf xf = xfs.remove(idx);
+			xfIndex.removed(idx);
+			if (xfPositions != null && Integer.valueOf(idx).equals(xfPositions.get(xf))) {
+				xfPositions.remove(xf);
+			}
+		}
+		return getStyleAt(existingIdx);
+	}
+
+	/**
+	 * Finds a cell xf with the same contents as the one at the given index.
+	 * The xfs are indexed by their contents when they are first looked up, so an
+	 *  xf changed after that (e.g. through the setters of its {@link XSSFCellStyle})
+	 *  is still found by its former contents, until {@link #mergeDuplicateCellXfs()}
+	 *  re-indexes them all.  The xf at <code>idx</code> itself is always checked
+	 *  with its current contents.
+	 *
+	 * @return the index of an earlier cell xf with the same contents, or <code>idx</code>
+	 *  if there is none
+	 */
+	public int internCellXf(int idx) {
+		CTXf xf = xfs.get(idx);
+		xfIndex.update(idx);
+		return xfIndex.indexOf(xf);
+	}
+
+	/**
+	 * Removes all cell xfs which have the same contents as an earlier one.
+	 *
+	 * @return the new index of each of the former cell xfs, for updating the
+	 *  cells, rows and columns using them
+	 */
+	public int[] mergeDuplicateCellXfs() {
+		xfIndex.reset();
+		int[] newPos = new int[xfs.size()];
+		List<CTXf> merged = new ArrayList<CTXf>(xfs.size());
+		for (int i = 0; i < newPos.length; i++) {
+			int existingIdx = internCellXf(i);
+			if (existingIdx == i) {
+				newPos[i] = merged.size();
+				merged.add(xfs.get(i));
+			} else {
+				newPos[i] = newPos[existingIdx];
+			}
+		}
+		if (merged.size() < xfs.size()) {
+			xfs.clear();
+			xfs.addAll(merged);
+			xfPositions = null;
+			xfIndex.reset();
+		}
+		return newPos;
+	}
+
 	public CTXf getCellStyleXfAt(int idx) {
 		return styleXfs.get(idx);
 	}
@@ -540,4 +673,304 @@ public class StylesTable extends POIXMLDocumentPart {
 		}
 		return null;
 	}
+
+	/**
+	 * Key of a font for {@link #fontIndex}, made of the values of its elements.
+	 *  Fonts with repeated elements are keyed by their XML.
+	 */
+	private static Object getFontKey(CTFont font) {
+		if (font.sizeOfNameArray() > 1 || font.sizeOfCharsetArray() > 1
+				|| font.sizeOfFamilyArray() > 1 || font.sizeOfBArray() > 1
+				|| font.sizeOfIArray() > 1 || font.sizeOfStrikeArray() > 1
+				|| font.sizeOfOutlineArray() > 1 || font.sizeOfShadowArray() > 1
+				|| font.sizeOfCondenseArray() > 1 || font.sizeOfExtendArray() > 1
+				|| font.sizeOfColorArray() > 1 || font.sizeOfSzArray() > 1
+				|| font.sizeOfUArray() > 1 || font.sizeOfVertAlignArray() > 1
+				|| font.sizeOfSchemeArray() > 1) {
+			return font.toString();
+		}
+		StringBuilder key = new StringBuilder();
+		appendKey(key, font.sizeOfNameArray() > 0, font.sizeOfNameArray() > 0 ? font.getNameArray(0).getVal() : null);
+		appendKey(key, font.sizeOfCharsetArray() > 0, font.sizeOfCharsetArray() > 0 ? font.getCharsetArray(0).getVal() : 0);
+		appendKey(key, font.sizeOfFamilyArray() > 0, font.sizeOfFamilyArray() > 0 ? font.getFamilyArray(0).getVal() : 0);
+		appendKey(key, font.sizeOfBArray() > 0, font.sizeOfBArray() > 0 && font.getBArray(0).getVal());
+		appendKey(key, font.sizeOfIArray() > 0, font.sizeOfIArray() > 0 && font.getIArray(0).getVal());
+		appendKey(key, font.sizeOfStrikeArray() > 0, font.sizeOfStrikeArray() > 0 && font.getStrikeArray(0).getVal());
+		appendKey(key, font.sizeOfOutlineArray() > 0, font.sizeOfOutlineArray() > 0 && font.getOutlineArray(0).getVal());
+		appendKey(key, font.sizeOfShadowArray() > 0, font.sizeOfShadowArray() > 0 && font.getShadowArray(0).getVal());
+		appendKey(key, font.sizeOfCondenseArray() > 0, font.sizeOfCondenseArray() > 0 && font.getCondenseArray(0).getVal());
+		appendKey(key, font.sizeOfExtendArray() > 0, font.sizeOfExtendArray() > 0 && font.getExtendArray(0).getVal());
+		appendColorKey(key, font.sizeOfColorArray() > 0 ? font.getColorArray(0) : null);
+		appendKey(key, font.sizeOfSzArray() > 0, font.sizeOfSzArray() > 0 ? font.getSzArray(0).getVal() : 0);
+		appendKey(key, font.sizeOfUArray() > 0, font.sizeOfUArray() > 0 ? font.getUArray(0).getVal() : null);
+		appendKey(key, font.sizeOfVertAlignArray() > 0, font.sizeOfVertAlignArray() > 0 ? font.getVertAlignArray(0).getVal() : null);
+		appendKey(key, font.sizeOfSchemeArray() > 0, font.sizeOfSchemeArray() > 0 ? font.getSchemeArray(0).getVal() : null);
+		return key.toString();
+	}
+
+	/**
+	 * Key of a fill for {@link #fillIndex}, made of its pattern and colours.
+	 *  Gradient fills are keyed by their XML.
+	 */
+	private static Object getFillKey(CTFill fill) {
+		if (fill.isSetGradientFill()) {
+			return fill.toString();
+		}
+		StringBuilder key = new StringBuilder();
+		CTPatternFill pattern = fill.getPatternFill();
+		if (pattern != null) {
+			appendKey(key, pattern.isSetPatternType(), pattern.getPatternType());
+			appendColorKey(key, pattern.getFgColor());
+			appendColorKey(key, pattern.getBgColor());
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Key of a border for {@link #borderIndex}, made of the style and colour of each side.
+	 */
+	private static Object getBorderKey(CTBorder border) {
+		StringBuilder key = new StringBuilder();
+		appendBorderKey(key, border.getLeft());
+		appendBorderKey(key, border.getRight());
+		appendBorderKey(key, border.getTop());
+		appendBorderKey(key, border.getBottom());
+		appendBorderKey(key, border.getDiagonal());
+		appendBorderKey(key, border.getVertical());
+		appendBorderKey(key, border.getHorizontal());
+		appendKey(key, border.isSetDiagonalUp(), border.getDiagonalUp());
+		appendKey(key, border.isSetDiagonalDown(), border.getDiagonalDown());
+		appendKey(key, border.isSetOutline(), border.getOutline());
+		return key.toString();
+	}
+
+	/**
+	 * Key of a cell xf for {@link #xfIndex}, made of its attributes, alignment and protection.
+	 *  Xfs with extensions are keyed by their XML.
+	 */
+	private static Object getCellXfKey(CTXf xf) {
+		if (xf.isSetExtLst()) {
+			return xf.toString();
+		}
+		StringBuilder key = new StringBuilder();
+		appendKey(key, xf.isSetNumFmtId(), xf.getNumFmtId());
+		appendKey(key, xf.isSetFontId(), xf.getFontId());
+		appendKey(key, xf.isSetFillId(), xf.getFillId());
+		appendKey(key, xf.isSetBorderId(), xf.getBorderId());
+		appendKey(key, xf.isSetXfId(), xf.getXfId());
+		appendKey(key, xf.isSetQuotePrefix(), xf.getQuotePrefix());
+		appendKey(key, xf.isSetPivotButton(), xf.getPivotButton());
+		appendKey(key, xf.isSetApplyNumberFormat(), xf.getApplyNumberFormat());
+		appendKey(key, xf.isSetApplyFont(), xf.getApplyFont());
+		appendKey(key, xf.isSetApplyFill(), xf.getApplyFill());
+		appendKey(key, xf.isSetApplyBorder(), xf.getApplyBorder());
+		appendKey(key, xf.isSetApplyAlignment(), xf.getApplyAlignment());
+		appendKey(key, xf.isSetApplyProtection(), xf.getApplyProtection());
+		CTCellAlignment alignment = xf.getAlignment();
+		if (alignment != null) {
+			key.append('a');
+			appendKey(key, alignment.isSetHorizontal(), alignment.getHorizontal());
+			appendKey(key, alignment.isSetVertical(), alignment.getVertical());
+			appendKey(key, alignment.isSetTextRotation(), alignment.getTextRotation());
+			appendKey(key, alignment.isSetWrapText(), alignment.getWrapText());
+			appendKey(key, alignment.isSetIndent(), alignment.getIndent());
+			appendKey(key, alignment.isSetRelativeIndent(), alignment.getRelativeIndent());
+			appendKey(key, alignment.isSetJustifyLastLine(), alignment.getJustifyLastLine());
+			appendKey(key, alignment.isSetShrinkToFit(), alignment.getShrinkToFit());
+			appendKey(key, alignment.isSetReadingOrder(), alignment.getReadingOrder());
+		}
+		CTCellProtection protection = xf.getProtection();
+		if (protection != null) {
+			key.append('p');
+			appendKey(key, protection.isSetLocked(), protection.getLocked());
+			appendKey(key, protection.isSetHidden(), protection.getHidden());
+		}
+		return key.toString();
+	}
+
+	private static void appendBorderKey(StringBuilder key, CTBorderPr side) {
+		if (side != null) {
+			key.append('=');
+			appendKey(key, side.isSetStyle(), side.getStyle());
+			appendColorKey(key, side.getColor());
+		}
+		key.append('|');
+	}
+
+	private static void appendColorKey(StringBuilder key, CTColor color) {
+		if (color != null) {
+			key.append('=');
+			appendKey(key, color.isSetAuto(), color.getAuto());
+			appendKey(key, color.isSetIndexed(), color.getIndexed());
+			if (color.isSetRgb()) {
+				for (byte b : color.getRgb()) {
+					key.append(Integer.toHexString(b & 0xFF)).append(',');
+				}
+			}
+			key.append('|');
+			appendKey(key, color.isSetTheme(), color.getTheme());
+			appendKey(key, color.isSetTint(), color.getTint());
+		}
+		key.append('|');
+	}
+
+	private static void appendKey(StringBuilder key, boolean isSet, Object value) {
+		if (isSet) {
+			key.append('=').append(value);
+		}
+		key.append('|');
+	}
+
+	/**
+	 * Hashed index of the entries of one of the style lists, keyed by the values of
+	 *  their fields (see {@link #getKey(Object)}).  Entries added to the list are indexed
+	 *  on the next lookup.  Entries changed after they have been indexed are noticed
+	 *  through their change count, and re-indexed before a lookup is given up.
+	 */
+	private static abstract class StyleIndex<T> {
+		private final List<T> _list;
+		/** the first indexed entry with each key */
+		private Map<Object, Integer> _indexes;
+		/** the entries of the list as they were indexed */
+		private final List<IndexedEntry<T>> _entries = new ArrayList<IndexedEntry<T>>();
+
+		StyleIndex(List<T> list) {
+			_list = list;
+		}
+
+		abstract Object getKey(T entry);
+
+		/**
+		 * @return a number which changes whenever <code>entry</code> is changed
+		 */
+		abstract int getChangeCount(T entry);
+
+		/**
+		 * @return the index of an entry with the same contents as <code>entry</code>, or -1
+		 */
+		int indexOf(T entry) {
+			Object key = getKey(entry);
+			catchUp();
+			Integer idx = _indexes.get(key);
+			if (idx != null && isCurrent(idx.intValue())) {
+				return idx.intValue();
+			}
+			if (refresh()) {
+				idx = _indexes.get(key);
+			}
+			return idx == null ? -1 : idx.intValue();
+		}
+
+		/**
+		 * Re-indexes the entry at the given index with its current contents.
+		 */
+		void update(int idx) {
+			catchUp();
+			reindex(idx);
+		}
+
+		/**
+		 * Called after the last entry of the list has been removed.
+		 */
+		void removed(int idx) {
+			if (_indexes == null) {
+				return;
+			}
+			if (idx != _entries.size() - 1) {
+				reset();
+				return;
+			}
+			IndexedEntry<T> indexed = _entries.remove(idx);
+			if (Integer.valueOf(idx).equals(_indexes.get(indexed.key))) {
+				_indexes.remove(indexed.key);
+			}
+		}
+
+		void reset() {
+			_indexes = null;
+			_entries.clear();
+		}
+
+		/**
+		 * Indexes the entries added to the list since the last lookup.
+		 */
+		private void catchUp() {
+			if (_indexes == null || _entries.size() > _list.size()) {
+				_indexes = new HashMap<Object, Integer>();
+				_entries.clear();
+			}
+			for (int i = _entries.size(); i < _list.size(); i++) {
+				T entry = _list.get(i);
+				IndexedEntry<T> indexed = new IndexedEntry<T>(entry, getKey(entry), getChangeCount(entry));
+				_entries.add(indexed);
+				if (!_indexes.containsKey(indexed.key)) {
+					_indexes.put(indexed.key, Integer.valueOf(i));
+				}
+			}
+		}
+
+		private boolean isCurrent(int idx) {
+			T entry = _list.get(idx);
+			IndexedEntry<T> indexed = _entries.get(idx);
+			return indexed.entry == entry && indexed.changeCount == getChangeCount(entry);
+		}
+
+		/**
+		 * Re-indexes the entries which have been replaced or changed since they were indexed.
+		 *
+		 * @return whether the key of any entry has changed
+		 */
+		private boolean refresh() {
+			boolean changed = false;
+			for (int i = 0; i < _entries.size(); i++) {
+				if (!isCurrent(i) && reindex(i)) {
+					changed = true;
+				}
+			}
+			return changed;
+		}
+
+		/**
+		 * @return whether the key of the entry at <code>idx</code> has changed
+		 */
+		private boolean reindex(int idx) {
+			T entry = _list.get(idx);
+			IndexedEntry<T> indexed = _entries.get(idx);
+			Object oldKey = indexed.key;
+			Object key = getKey(entry);
+			indexed.entry = entry;
+			indexed.changeCount = getChangeCount(entry);
+			if (key.equals(oldKey)) {
+				return false;
+			}
+			indexed.key = key;
+			if (Integer.valueOf(idx).equals(_indexes.get(oldKey))) {
+				// the next entry with the old key becomes the first one
+				_indexes.remove(oldKey);
+				for (int i = idx + 1; i < _entries.size(); i++) {
+					if (_entries.get(i).key.equals(oldKey)) {
+						_indexes.put(oldKey, Integer.valueOf(i));
+						break;
+					}
+				}
+			}
+			Integer first = _indexes.get(key);
+			if (first == null || first.intValue() > idx) {
+				_indexes.put(key, Integer.valueOf(idx));
+			}
+			return true;
+		}
+	}
+
+	private static final class IndexedEntry<T> {
+		T entry;
+		Object key;
+		int changeCount;
+
+		IndexedEntry(T entry, Object key, int changeCount) {
+			this.entry = entry;
+			this.key = key;
+			this.changeCount = changeCount;
+		}
+	}
 }
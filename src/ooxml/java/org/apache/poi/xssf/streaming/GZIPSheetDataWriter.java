@@ -23,6 +23,8 @@ import java.io.*;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
+import org.apache.poi.xssf.model.SharedStringsTable;
+
 /**
  * Sheet writer that supports gzip compression of the temp files.
  */
@@ -32,6 +34,14 @@ public class GZIPSheetDataWriter extends SheetDataWriter {
         super();
     }
 
+    /**
+     * @param sharedStringsTable the shared strings of the workbook, or <code>null</code>
+     *  to write the strings inline
+     */
+    public GZIPSheetDataWriter(SharedStringsTable sharedStringsTable) throws IOException{
+        super(sharedStringsTable);
+    }
+
     /**
      * @return temp file to write sheet data
      */
@@ -415,7 +415,7 @@ public class SXSSFCell implements Cell
      */
     public void setCellErrorValue(byte value)
     {
-        ensureType(CELL_TYPE_ERROR);
+        ensureTypeOrFormulaType(CELL_TYPE_ERROR);
         if(_value.getType()==CELL_TYPE_FORMULA)
             ((ErrorFormulaValue)_value).setPreEvaluatedValue(value);
         else
@@ -742,7 +742,9 @@ public class SXSSFCell implements Cell
         {
             if(((FormulaValue)_value).getFormulaType()==type)
                 return;
+            String formula = ((FormulaValue)_value).getValue();
             setFormulaType(type); // once a formula, always a formula
+            ((FormulaValue)_value).setValue(formula);
             return;
         }
         setType(type);
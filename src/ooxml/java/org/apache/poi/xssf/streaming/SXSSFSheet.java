@@ -38,13 +38,15 @@ import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorksheet;
  *
  * @author Alex Geller, Four J's Development Tools
 */
-public class SXSSFSheet implements Sheet, Cloneable
+public class SXSSFSheet implements Sheet, CellBlockAccess, Cloneable
 {
     SXSSFWorkbook _workbook;
     XSSFSheet _sh;
     TreeMap<Integer,SXSSFRow> _rows=new TreeMap<Integer,SXSSFRow>();
     SheetDataWriter _writer;
     int _randomAccessWindowSize = SXSSFWorkbook.DEFAULT_WINDOW_SIZE;
+    /** the number of the last row which has been written to disk, -1 if there is none */
+    private int _lastFlushedRowNum = -1;
     int outlineLevelRow = 0;
 
     public SXSSFSheet(SXSSFWorkbook workbook, XSSFSheet xSheet) throws IOException
@@ -187,6 +189,127 @@ public class SXSSFSheet implements Sheet, Cloneable
         return _rows.size() == 0 ? 0 : _rows.lastKey();
     }
 
+    /**
+     * Reads the numeric values of a block of cells in one go, see
+     *  {@link CellBlockAccess#readNumericBlock(int, int, int, int, double[])}.  Only the rows
+     *  in the window can be read.
+     *
+     * @throws IllegalArgumentException if the block starts in a row which has been flushed to disk
+     */
+    public void readNumericBlock(int firstRow, int lastRow, int firstCol, int lastCol, double[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL2007, firstRow, lastRow, firstCol, lastCol, values.length);
+        checkBlockNotFlushed(firstRow);
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            SXSSFRow row = _rows.get(rowIx);
+            for (int colIx = firstCol; colIx <= lastCol; colIx++) {
+                Cell cell = row == null ? null : getBlockCell(row, colIx);
+                values[i++] = cell == null ? 0.0 : cell.getNumericCellValue();
+            }
+        }
+    }
+
+    public void readStringBlock(int firstRow, int lastRow, int firstCol, int lastCol, String[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL2007, firstRow, lastRow, firstCol, lastCol, values.length);
+        checkBlockNotFlushed(firstRow);
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            SXSSFRow row = _rows.get(rowIx);
+            for (int colIx = firstCol; colIx <= lastCol; colIx++) {
+                Cell cell = row == null ? null : getBlockCell(row, colIx);
+                values[i++] = cell == null ? "" : cell.getStringCellValue();
+            }
+        }
+    }
+
+    public void readBooleanBlock(int firstRow, int lastRow, int firstCol, int lastCol, boolean[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL2007, firstRow, lastRow, firstCol, lastCol, values.length);
+        checkBlockNotFlushed(firstRow);
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            SXSSFRow row = _rows.get(rowIx);
+            for (int colIx = firstCol; colIx <= lastCol; colIx++) {
+                Cell cell = row == null ? null : getBlockCell(row, colIx);
+                values[i++] = cell != null && cell.getBooleanCellValue();
+            }
+        }
+    }
+
+    /**
+     * Sets the values of a block of cells in one go, see
+     *  {@link CellBlockAccess#writeNumericBlock(int, int, int, int, double[])}.  Rows which have
+     *  been flushed to disk cannot be written, and creating rows may flush others, see
+     *  {@link #createRow(int)}.
+     *
+     * @throws IllegalArgumentException if the block starts in a row which has been flushed to disk
+     */
+    public void writeNumericBlock(int firstRow, int lastRow, int firstCol, int lastCol, double[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL2007, firstRow, lastRow, firstCol, lastCol, values.length);
+        checkBlockNotFlushed(firstRow);
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            SXSSFRow row = getRowForBlock(rowIx);
+            for (int colIx = firstCol; colIx <= lastCol; colIx++) {
+                getOrCreateBlockCell(row, colIx).setCellValue(values[i++]);
+            }
+        }
+    }
+
+    public void writeStringBlock(int firstRow, int lastRow, int firstCol, int lastCol, String[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL2007, firstRow, lastRow, firstCol, lastCol, values.length);
+        checkBlockNotFlushed(firstRow);
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            SXSSFRow row = getRowForBlock(rowIx);
+            for (int colIx = firstCol; colIx <= lastCol; colIx++) {
+                String value = values[i++];
+                Cell cell = getOrCreateBlockCell(row, colIx);
+                if (value == null) {
+                    cell.setCellType(Cell.CELL_TYPE_BLANK);
+                } else {
+                    cell.setCellValue(value);
+                }
+            }
+        }
+    }
+
+    public void writeBooleanBlock(int firstRow, int lastRow, int firstCol, int lastCol, boolean[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL2007, firstRow, lastRow, firstCol, lastCol, values.length);
+        checkBlockNotFlushed(firstRow);
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            SXSSFRow row = getRowForBlock(rowIx);
+            for (int colIx = firstCol; colIx <= lastCol; colIx++) {
+                getOrCreateBlockCell(row, colIx).setCellValue(values[i++]);
+            }
+        }
+    }
+
+
+    /**
+     * The rows up to the last flushed one are no longer in memory
+     */
+    private void checkBlockNotFlushed(int firstRow) {
+        if (firstRow <= _lastFlushedRowNum) {
+            throw new IllegalArgumentException("Attempting to access a row[" + firstRow + "] in the range [0,"
+                    + _lastFlushedRowNum + "] that is already written to disk.");
+        }
+    }
+
+    private SXSSFRow getRowForBlock(int rowIndex) {
+        SXSSFRow row = _rows.get(rowIndex);
+        return row == null ? (SXSSFRow) createRow(rowIndex) : row;
+    }
+
+    private static SXSSFCell getBlockCell(SXSSFRow row, int colIx) {
+        return colIx < row._cells.length ? row._cells[colIx] : null;
+    }
+
+    private static Cell getOrCreateBlockCell(SXSSFRow row, int colIx) {
+        Cell cell = getBlockCell(row, colIx);
+        return cell == null ? row.createCell(colIx) : cell;
+    }
+
     /**
      * Get the visibility state for a given column
      *
@@ -1313,6 +1436,7 @@ public class SXSSFSheet implements Sheet, Cloneable
             SXSSFRow row = _rows.get(firstRowNum);
             _writer.writeRow(rowIndex, row);
             _rows.remove(firstRowNum);
+            _lastFlushedRowNum = rowIndex;
         }
     }
     public void changeRowNum(SXSSFRow row, int newRowNum)
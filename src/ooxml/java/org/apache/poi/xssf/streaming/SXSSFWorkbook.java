@@ -26,7 +26,9 @@ import org.apache.poi.ss.usermodel.DataFormat;
 import org.apache.poi.ss.usermodel.PictureData;
 import org.apache.poi.ss.usermodel.CreationHelper;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.model.SharedStringsTable;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -71,6 +73,12 @@ public class SXSSFWorkbook implements Workbook
      */
     private boolean _compressTmpFiles = false;
 
+    /**
+     * shared string table - a cache of strings in this workbook, <code>null</code>
+     * if the strings are written inline
+     */
+    private SharedStringsTable _sharedStringSource;
+
     /**
      * Construct a new workbook
      */
@@ -164,6 +172,34 @@ public class SXSSFWorkbook implements Workbook
      * @param compressTmpFiles whether to use gzip compression for temporary files
      */
     public SXSSFWorkbook(XSSFWorkbook workbook, int rowAccessWindowSize, boolean compressTmpFiles){
+    	this(workbook, rowAccessWindowSize, compressTmpFiles, false);
+    }
+
+    /**
+     * Constructs an workbook from an existing workbook.
+     * <p>
+     * When a new node is created via createRow() and the total number
+     * of unflushed records would exceed the specified value, then the
+     * row with the lowest index value is flushed and cannot be accessed
+     * via getRow() anymore.
+     * </p>
+     * <p>
+     * A value of -1 indicates unlimited access. In this case all
+     * records that have not been flushed by a call to flush() are available
+     * for random access.
+     * <p>
+     * <p></p>
+     * A value of 0 is not allowed because it would flush any newly created row
+     * without having a chance to specify any cells.
+     * </p>
+     *
+     * @param rowAccessWindowSize
+     * @param compressTmpFiles whether to use gzip compression for temporary files
+     * @param useSharedStringsTable whether to use a shared strings table, rather than
+     *  writing the strings inline. The table is kept in memory, so this is best
+     *  suited to files with many repeated strings
+     */
+    public SXSSFWorkbook(XSSFWorkbook workbook, int rowAccessWindowSize, boolean compressTmpFiles, boolean useSharedStringsTable){
     	setRandomAccessWindowSize(rowAccessWindowSize);
     	setCompressTempFiles(compressTmpFiles);
     	if (workbook == null)
@@ -173,6 +209,13 @@ public class SXSSFWorkbook implements Workbook
     	else
     	{
     		_wb=workbook;
+    	}
+    	if (useSharedStringsTable)
+    	{
+    		_sharedStringSource = _wb.getSharedStringSource();
+    	}
+    	if (workbook != null)
+    	{
             for ( int i = 0; i < _wb.getNumberOfSheets(); i++ )
             {
                 XSSFSheet sheet = _wb.getSheetAt( i );
@@ -235,9 +278,9 @@ public class SXSSFWorkbook implements Workbook
 
     SheetDataWriter createSheetDataWriter() throws IOException {
         if(_compressTmpFiles) {
-            return new GZIPSheetDataWriter();
+            return new GZIPSheetDataWriter(_sharedStringSource);
         } else {
-            return new SheetDataWriter();
+            return new SheetDataWriter(_sharedStringSource);
         }
     }
 
@@ -722,6 +765,18 @@ public class SXSSFWorkbook implements Workbook
         return _wb.createCellStyle();
     }
 
+    /**
+     * Returns the first cell style of the workbook with the same formatting as the
+     * supplied one, see {@link XSSFWorkbook#internCellStyle(XSSFCellStyle)}
+     *
+     * @param style a style of this workbook that is not yet used by any cell
+     * @return the first style equal to <code>style</code>, or <code>style</code> itself
+     */
+    public CellStyle internCellStyle(CellStyle style)
+    {
+        return _wb.internCellStyle((XSSFCellStyle)style);
+    }
+
     /**
      * Get the number of styles the workbook contains
      *
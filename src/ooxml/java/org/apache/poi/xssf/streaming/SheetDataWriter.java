@@ -23,6 +23,9 @@ import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.FormulaError;
 import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
 
 import java.io.*;
 import java.util.Iterator;
@@ -42,11 +45,26 @@ public class SheetDataWriter {
     int _lowestIndexOfFlushedRows; // meaningful only of _numberOfFlushedRows>0
     int _numberOfCellsOfLastFlushedRow; // meaningful only of _numberOfFlushedRows>0
 
+    /**
+     * Table of strings shared across this workbook.
+     * If two cells contain the same string, then the cell value is the same index into SharedStringsTable
+     */
+    private SharedStringsTable _sharedStringSource;
+
     public SheetDataWriter() throws IOException {
         _fd = createTempFile();
         _out = createWriter(_fd);
     }
 
+    /**
+     * @param sharedStringsTable the shared strings of the workbook, or <code>null</code>
+     *  to write the strings inline
+     */
+    public SheetDataWriter(SharedStringsTable sharedStringsTable) throws IOException{
+        this();
+        this._sharedStringSource = sharedStringsTable;
+    }
+
     /**
      * Create a temp file to write sheet data. 
      * By default, temp files are created in the default temporary-file directory
@@ -165,25 +183,58 @@ public class SheetDataWriter {
                 break;
             }
             case Cell.CELL_TYPE_FORMULA: {
+                int resultType = cell.getCachedFormulaResultType();
+                switch (resultType) {
+                    case Cell.CELL_TYPE_STRING:
+                        _out.write(" t=\"str\"");
+                        break;
+                    case Cell.CELL_TYPE_BOOLEAN:
+                        _out.write(" t=\"b\"");
+                        break;
+                    case Cell.CELL_TYPE_ERROR:
+                        _out.write(" t=\"e\"");
+                        break;
+                }
                 _out.write(">");
                 _out.write("<f>");
                 outputQuotedString(cell.getCellFormula());
                 _out.write("</f>");
-                switch (cell.getCachedFormulaResultType()) {
+                switch (resultType) {
                     case Cell.CELL_TYPE_NUMERIC:
                         double nval = cell.getNumericCellValue();
                         if (!Double.isNaN(nval)) {
                             _out.write("<v>" + nval + "</v>");
                         }
                         break;
+                    case Cell.CELL_TYPE_STRING:
+                        String sval = cell.getStringCellValue();
+                        if (sval != null) {
+                            _out.write("<v>");
+                            outputQuotedString(sval);
+                            _out.write("</v>");
+                        }
+                        break;
+                    case Cell.CELL_TYPE_BOOLEAN:
+                        _out.write("<v>" + (cell.getBooleanCellValue() ? "1" : "0") + "</v>");
+                        break;
+                    case Cell.CELL_TYPE_ERROR:
+                        _out.write("<v>" + FormulaError.forInt(cell.getErrorCellValue()).getString() + "</v>");
+                        break;
                 }
                 break;
             }
             case Cell.CELL_TYPE_STRING: {
-                _out.write(" t=\"inlineStr\">");
-                _out.write("<is><t>");
-                outputQuotedString(cell.getStringCellValue());
-                _out.write("</t></is>");
+                if (_sharedStringSource != null) {
+                    XSSFRichTextString rt = new XSSFRichTextString(cell.getStringCellValue());
+                    int sRef = _sharedStringSource.addEntry(rt.getCTRst());
+                    _out.write(" t=\"" + STCellType.S + "\">");
+                    _out.write("<v>" + sRef + "</v>");
+                } else {
+                    _out.write(" t=\"inlineStr\">");
+                    _out.write("<is><t>");
+                    outputQuotedString(cell.getStringCellValue());
+                    _out.write("</t></is>");
+                }
                 break;
             }
             case Cell.CELL_TYPE_NUMERIC: {
@@ -0,0 +1,591 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.hssf.eventusermodel.EventWorkbookBuilder.SheetRecordCollectingListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.model.HSSFFormulaParser;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.ColumnInfoRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.ExtendedFormatRecord;
+import org.apache.poi.hssf.record.FontRecord;
+import org.apache.poi.hssf.record.FormatRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MergeCellsRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.PaletteRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.SharedFormulaRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.formula.ptg.ExpPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FontScheme;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.util.POILogFactory;
+import org.apache.poi.util.POILogger;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+
+/**
+ * Converts a BIFF8 (.xls) file to an Office Open XML (.xlsx) file without
+ * building the usermodel of either format.<p/>
+ *
+ * The records of the .xls file are read with {@link HSSFEventFactory}, and the
+ * cells are written to a {@link SXSSFWorkbook}, so the memory needed for a sheet
+ * does not depend on its number of rows.  The fonts, number formats and cell
+ * formats of the .xls file are converted to the styles of the target workbook
+ * as they are first used.<p/>
+ *
+ * Cell values, formulas with their cached results, styles, row heights, column
+ * widths and merged regions are converted.  Hyperlinks, comments, drawings, charts
+ * and rich text formatting within cells are not.  Formulas which cannot be
+ * rendered to text (for example array formulas or references to defined names)
+ * are replaced by their cached values.
+ */
+public class XLS2XLSXConverter {
+    private static final POILogger logger = POILogFactory.getLogger(XLS2XLSXConverter.class);
+    private static final PaletteRecord STANDARD_PALETTE = new PaletteRecord();
+
+    private final SXSSFWorkbook _target;
+
+    /**
+     * @param target the workbook to add the converted sheets to. To use a shared
+     *  strings table for the cell text, like Excel does, create it with
+     *  {@link SXSSFWorkbook#SXSSFWorkbook(org.apache.poi.xssf.usermodel.XSSFWorkbook, int, boolean, boolean)}
+     */
+    public XLS2XLSXConverter(SXSSFWorkbook target) {
+        _target = target;
+    }
+
+    /**
+     * Converts a .xls file to a .xlsx file.
+     *
+     * @param xls the .xls file, which is not closed
+     * @param xlsx the stream to write the .xlsx file to, which is not closed
+     */
+    public static void convert(InputStream xls, OutputStream xlsx) throws IOException {
+        SXSSFWorkbook target = new SXSSFWorkbook(null, SXSSFWorkbook.DEFAULT_WINDOW_SIZE, false, true);
+        new XLS2XLSXConverter(target).convert(new POIFSFileSystem(xls));
+        target.write(xlsx);
+    }
+
+    /**
+     * Adds the worksheets of the .xls file to the target workbook. Chart sheets
+     *  and macro sheets are skipped.
+     */
+    public void convert(POIFSFileSystem fs) throws IOException {
+        ConvertingListener listener = new ConvertingListener();
+        SheetRecordCollectingListener collectingListener = new SheetRecordCollectingListener(listener);
+        listener._sheetRecords = collectingListener;
+
+        HSSFRequest request = new HSSFRequest();
+        request.addListenerForAllRecords(collectingListener);
+        new HSSFEventFactory().processWorkbookEvents(request, fs);
+    }
+
+    private final class ConvertingListener implements HSSFListener {
+        SheetRecordCollectingListener _sheetRecords;
+
+        // workbook globals
+        private final List<FontRecord> _fontRecords = new ArrayList<FontRecord>();
+        private final Map<Integer, String> _formatStrings = new HashMap<Integer, String>();
+        private final List<ExtendedFormatRecord> _xfRecords = new ArrayList<ExtendedFormatRecord>();
+        private PaletteRecord _palette;
+        private SSTRecord _sst;
+        private HSSFWorkbook _stubWorkbook;
+        private BoundSheetRecord[] _boundSheets;
+        /** indexed by HSSF font index and XF index, created as they are first used */
+        private XSSFFont[] _fonts;
+        private CellStyle[] _styles;
+
+        /** the number of open BOF records */
+        private int _depth;
+        /** the index of the current substream in the bound sheets, <code>-1</code> while in the globals */
+        private int _sheetIndex = -1;
+
+        // the worksheet being converted, null when in any other substream
+        private Sheet _sheet;
+        /** the row records not yet converted, rows are created in ascending order */
+        private final LinkedList<RowRecord> _rowRecords = new LinkedList<RowRecord>();
+        private Row _row;
+        private final List<SharedFormulaRecord> _sharedFormulas = new ArrayList<SharedFormulaRecord>();
+        /** a formula waiting for the records which follow it */
+        private FormulaRecord _pendingFormula;
+
+        public void processRecord(Record record) {
+            short sid = record.getSid();
+            if (sid == BOFRecord.sid) {
+                _depth++;
+                if (_depth == 1 && ((BOFRecord) record).getType() != BOFRecord.TYPE_WORKBOOK) {
+                    startSheet(((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET);
+                }
+                return;
+            }
+            if (sid == EOFRecord.sid) {
+                if (_depth == 1 && _sheet != null) {
+                    endSheet();
+                }
+                _depth--;
+                return;
+            }
+            if (_depth != 1) {
+                // embedded chart
+                return;
+            }
+            if (_sheetIndex < 0) {
+                processGlobalsRecord(record);
+            } else if (_sheet != null) {
+                processSheetRecord(record);
+            }
+        }
+
+        private void processGlobalsRecord(Record record) {
+            switch (record.getSid()) {
+                case FontRecord.sid:
+                    _fontRecords.add((FontRecord) record);
+                    break;
+                case FormatRecord.sid:
+                    FormatRecord fr = (FormatRecord) record;
+                    _formatStrings.put(Integer.valueOf(fr.getIndexCode()), fr.getFormatString());
+                    break;
+                case ExtendedFormatRecord.sid:
+                    _xfRecords.add((ExtendedFormatRecord) record);
+                    break;
+                case PaletteRecord.sid:
+                    _palette = (PaletteRecord) record;
+                    break;
+            }
+        }
+
+        private void startSheet(boolean isWorksheet) {
+            if (_sheetIndex < 0) {
+                // the workbook globals are complete
+                _sst = _sheetRecords.getSSTRecord();
+                _stubWorkbook = _sheetRecords.getStubHSSFWorkbook();
+                _boundSheets = BoundSheetRecord.orderByBofPosition(
+                        Arrays.asList(_sheetRecords.getBoundSheetRecords()));
+                _fonts = new XSSFFont[_fontRecords.size() + 1];
+                _styles = new CellStyle[_xfRecords.size()];
+                convertDefaultFont();
+            }
+            _sheetIndex++;
+            if (!isWorksheet || _sheetIndex >= _boundSheets.length) {
+                return;
+            }
+            BoundSheetRecord bsr = _boundSheets[_sheetIndex];
+            _sheet = _target.createSheet(bsr.getSheetname());
+            if (bsr.isHidden() || bsr.isVeryHidden()) {
+                _target.setSheetHidden(_target.getSheetIndex(_sheet),
+                        bsr.isVeryHidden() ? 2 : 1);
+            }
+        }
+
+        private void endSheet() {
+            flushPendingFormula(null);
+            createRows(Integer.MAX_VALUE);
+            _sheet = null;
+            _row = null;
+            _sharedFormulas.clear();
+        }
+
+        private void processSheetRecord(Record record) {
+            short sid = record.getSid();
+            if (_pendingFormula != null) {
+                switch (sid) {
+                    case SharedFormulaRecord.sid:
+                        _sharedFormulas.add((SharedFormulaRecord) record);
+                        return;
+                    case StringRecord.sid:
+                        flushPendingFormula(((StringRecord) record).getString());
+                        return;
+                    default:
+                        flushPendingFormula(null);
+                }
+            }
+
+            switch (sid) {
+                case RowRecord.sid:
+                    _rowRecords.add((RowRecord) record);
+                    break;
+                case NumberRecord.sid: {
+                    NumberRecord nr = (NumberRecord) record;
+                    createCell(nr.getRow(), nr.getColumn(), nr.getXFIndex()).setCellValue(nr.getValue());
+                    break;
+                }
+                case LabelSSTRecord.sid: {
+                    LabelSSTRecord lsr = (LabelSSTRecord) record;
+                    createCell(lsr.getRow(), lsr.getColumn(), lsr.getXFIndex())
+                            .setCellValue(_sst.getString(lsr.getSSTIndex()).getString());
+                    break;
+                }
+                case LabelRecord.sid: {
+                    LabelRecord lr = (LabelRecord) record;
+                    createCell(lr.getRow(), lr.getColumn(), lr.getXFIndex()).setCellValue(lr.getValue());
+                    break;
+                }
+                case BoolErrRecord.sid: {
+                    BoolErrRecord ber = (BoolErrRecord) record;
+                    Cell cell = createCell(ber.getRow(), ber.getColumn(), ber.getXFIndex());
+                    if (ber.isBoolean()) {
+                        cell.setCellValue(ber.getBooleanValue());
+                    } else {
+                        cell.setCellErrorValue(ber.getErrorValue());
+                    }
+                    break;
+                }
+                case BlankRecord.sid: {
+                    BlankRecord br = (BlankRecord) record;
+                    createCell(br.getRow(), br.getColumn(), br.getXFIndex());
+                    break;
+                }
+                case MulBlankRecord.sid: {
+                    MulBlankRecord mbr = (MulBlankRecord) record;
+                    for (int i = 0; i < mbr.getNumColumns(); i++) {
+                        createCell(mbr.getRow(), mbr.getFirstColumn() + i, mbr.getXFAt(i));
+                    }
+                    break;
+                }
+                case FormulaRecord.sid:
+                    // the shared formula and string result records follow it
+                    _pendingFormula = (FormulaRecord) record;
+                    break;
+                case ColumnInfoRecord.sid: {
+                    ColumnInfoRecord cir = (ColumnInfoRecord) record;
+                    int lastColumn = Math.min(cir.getLastColumn(), 0x3FFF);
+                    for (int col = cir.getFirstColumn(); col <= lastColumn; col++) {
+                        _sheet.setColumnWidth(col, cir.getColumnWidth());
+                        if (cir.getHidden()) {
+                            _sheet.setColumnHidden(col, true);
+                        }
+                    }
+                    break;
+                }
+                case MergeCellsRecord.sid: {
+                    MergeCellsRecord mcr = (MergeCellsRecord) record;
+                    for (int i = 0; i < mcr.getNumAreas(); i++) {
+                        _sheet.addMergedRegion(mcr.getAreaAt(i));
+                    }
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Creates the rows up to and including <code>rowNum</code> which have row records.
+         */
+        private void createRows(int rowNum) {
+            while (!_rowRecords.isEmpty() && _rowRecords.getFirst().getRowNumber() <= rowNum) {
+                RowRecord rr = _rowRecords.removeFirst();
+                if (_row != null && _row.getRowNum() >= rr.getRowNumber()) {
+                    continue;
+                }
+                _row = _sheet.createRow(rr.getRowNumber());
+                if (rr.getBadFontHeight()) {
+                    // the height was set explicitly
+                    _row.setHeight((short) (rr.getHeight() & 0x7FFF));
+                }
+                if (rr.getZeroHeight()) {
+                    _row.setZeroHeight(true);
+                }
+                if (rr.getFormatted()) {
+                    _row.setRowStyle(getStyle(rr.getXFIndex()));
+                }
+            }
+        }
+
+        private Cell createCell(int rowNum, int column, int xfIndex) {
+            createRows(rowNum);
+            if (_row == null || _row.getRowNum() != rowNum) {
+                _row = _sheet.createRow(rowNum);
+            }
+            Cell cell = _row.createCell(column);
+            cell.setCellStyle(getStyle(xfIndex));
+            return cell;
+        }
+
+        /**
+         * Converts the formula which was waiting for the records following it.
+         *
+         * @param stringResult the cached result of a formula returning text
+         */
+        private void flushPendingFormula(String stringResult) {
+            FormulaRecord fr = _pendingFormula;
+            if (fr == null) {
+                return;
+            }
+            _pendingFormula = null;
+
+            Cell cell = createCell(fr.getRow(), fr.getColumn(), fr.getXFIndex());
+            String formula = toFormulaString(fr);
+            if (formula != null) {
+                cell.setCellFormula(formula);
+            }
+            switch (fr.getCachedResultType()) {
+                case Cell.CELL_TYPE_NUMERIC:
+                    cell.setCellValue(fr.getValue());
+                    break;
+                case Cell.CELL_TYPE_STRING:
+                    cell.setCellValue(stringResult == null ? "" : stringResult);
+                    break;
+                case Cell.CELL_TYPE_BOOLEAN:
+                    cell.setCellValue(fr.getCachedBooleanValue());
+                    break;
+                case Cell.CELL_TYPE_ERROR:
+                    cell.setCellErrorValue((byte) fr.getCachedErrorValue());
+                    break;
+            }
+        }
+
+        /**
+         * @return the text of the formula, or <code>null</code> if it cannot be rendered
+         */
+        private String toFormulaString(FormulaRecord fr) {
+            Ptg[] ptgs = fr.getParsedExpression();
+            if (ptgs.length > 0 && ptgs[0] instanceof ExpPtg) {
+                ptgs = null;
+                for (SharedFormulaRecord sfr : _sharedFormulas) {
+                    if (sfr.isInRange(fr.getRow(), fr.getColumn())) {
+                        ptgs = sfr.getFormulaTokens(fr);
+                        break;
+                    }
+                }
+                if (ptgs == null) {
+                    // array formula or data table
+                    logger.log(POILogger.WARN, "Cannot convert the formula of cell "
+                            + new CellRangeAddress(fr.getRow(), fr.getRow(), fr.getColumn(), fr.getColumn())
+                                    .formatAsString() + ", using its cached value");
+                    return null;
+                }
+            }
+            try {
+                return HSSFFormulaParser.toFormulaString(_stubWorkbook, ptgs);
+            } catch (RuntimeException e) {
+                logger.log(POILogger.WARN, "Cannot convert the formula of cell "
+                        + new CellRangeAddress(fr.getRow(), fr.getRow(), fr.getColumn(), fr.getColumn())
+                                .formatAsString() + ", using its cached value", e);
+                return null;
+            }
+        }
+
+        private CellStyle getStyle(int xfIndex) {
+            if (xfIndex < 0 || xfIndex >= _styles.length) {
+                return _target.getCellStyleAt((short) 0);
+            }
+            CellStyle style = _styles[xfIndex];
+            if (style == null) {
+                style = _target.internCellStyle(convertStyle(_xfRecords.get(xfIndex)));
+                _styles[xfIndex] = style;
+            }
+            return style;
+        }
+
+        /**
+         * Only the properties which differ from the defaults are set, so that
+         *  the default format of the .xls file becomes the default style.
+         */
+        private XSSFCellStyle convertStyle(ExtendedFormatRecord xf) {
+            XSSFCellStyle style = (XSSFCellStyle) _target.createCellStyle();
+            XSSFFont font = getFont(xf.getFontIndex());
+            if (font.getIndex() != 0) {
+                style.setFont(font);
+            }
+            short dataFormat = getDataFormat(xf.getFormatIndex());
+            if (dataFormat != 0) {
+                style.setDataFormat(dataFormat);
+            }
+            if (xf.getAlignment() != CellStyle.ALIGN_GENERAL) {
+                style.setAlignment(xf.getAlignment());
+            }
+            if (xf.getVerticalAlignment() != CellStyle.VERTICAL_BOTTOM) {
+                style.setVerticalAlignment(xf.getVerticalAlignment());
+            }
+            if (xf.getWrapText()) {
+                style.setWrapText(true);
+            }
+            if (xf.getIndent() != 0) {
+                style.setIndention(xf.getIndent());
+            }
+            if (xf.getRotation() != 0) {
+                // both formats store the rotation the same way
+                style.setRotation(xf.getRotation());
+            }
+            if (!xf.isLocked()) {
+                style.setLocked(false);
+            }
+            if (xf.isHidden()) {
+                style.setHidden(true);
+            }
+
+            if (xf.getBorderLeft() != CellStyle.BORDER_NONE) {
+                style.setBorderLeft(xf.getBorderLeft());
+                XSSFColor color = getCustomColor(xf.getLeftBorderPaletteIdx());
+                if (color != null) {
+                    style.setLeftBorderColor(color);
+                } else {
+                    style.setLeftBorderColor(xf.getLeftBorderPaletteIdx());
+                }
+            }
+            if (xf.getBorderRight() != CellStyle.BORDER_NONE) {
+                style.setBorderRight(xf.getBorderRight());
+                XSSFColor color = getCustomColor(xf.getRightBorderPaletteIdx());
+                if (color != null) {
+                    style.setRightBorderColor(color);
+                } else {
+                    style.setRightBorderColor(xf.getRightBorderPaletteIdx());
+                }
+            }
+            if (xf.getBorderTop() != CellStyle.BORDER_NONE) {
+                style.setBorderTop(xf.getBorderTop());
+                XSSFColor color = getCustomColor(xf.getTopBorderPaletteIdx());
+                if (color != null) {
+                    style.setTopBorderColor(color);
+                } else {
+                    style.setTopBorderColor(xf.getTopBorderPaletteIdx());
+                }
+            }
+            if (xf.getBorderBottom() != CellStyle.BORDER_NONE) {
+                style.setBorderBottom(xf.getBorderBottom());
+                XSSFColor color = getCustomColor(xf.getBottomBorderPaletteIdx());
+                if (color != null) {
+                    style.setBottomBorderColor(color);
+                } else {
+                    style.setBottomBorderColor(xf.getBottomBorderPaletteIdx());
+                }
+            }
+
+            short fillPattern = xf.getAdtlFillPattern();
+            if (fillPattern != CellStyle.NO_FILL) {
+                style.setFillPattern(fillPattern);
+                XSSFColor fg = getCustomColor(xf.getFillForeground());
+                if (fg != null) {
+                    style.setFillForegroundColor(fg);
+                } else {
+                    style.setFillForegroundColor(xf.getFillForeground());
+                }
+                XSSFColor bg = getCustomColor(xf.getFillBackground());
+                if (bg != null) {
+                    style.setFillBackgroundColor(bg);
+                } else {
+                    style.setFillBackgroundColor(xf.getFillBackground());
+                }
+            }
+            return style;
+        }
+
+        private short getDataFormat(int formatIndex) {
+            String formatString = _formatStrings.get(Integer.valueOf(formatIndex));
+            if (formatString == null || formatIndex < BuiltinFormats.FIRST_USER_DEFINED_FORMAT_INDEX) {
+                // the built-in formats have the same index in both formats
+                return (short) formatIndex;
+            }
+            return _target.createDataFormat().getFormat(formatString);
+        }
+
+        /**
+         * The default font of the .xls file replaces the one of the target workbook,
+         *  so that cells without explicit formatting look the same.
+         */
+        private void convertDefaultFont() {
+            if (_fontRecords.isEmpty()) {
+                return;
+            }
+            XSSFFont font = (XSSFFont) _target.getFontAt((short) 0);
+            font.setScheme(FontScheme.NONE);
+            convertFont(_fontRecords.get(0), font);
+            _fonts[0] = font;
+        }
+
+        private XSSFFont getFont(int fontIndex) {
+            // there is no font with index 4 in .xls files
+            int recordIndex = fontIndex > 4 ? fontIndex - 1 : fontIndex;
+            if (recordIndex >= _fontRecords.size()) {
+                recordIndex = 0;
+            }
+            XSSFFont font = _fonts[recordIndex];
+            if (font == null) {
+                font = (XSSFFont) _target.createFont();
+                convertFont(_fontRecords.get(recordIndex), font);
+                _fonts[recordIndex] = font;
+            }
+            return font;
+        }
+
+        private void convertFont(FontRecord fr, XSSFFont font) {
+            font.setFontName(fr.getFontName());
+            font.setFontHeight(fr.getFontHeight());
+            font.setBoldweight(fr.getBoldWeight());
+            font.setItalic(fr.isItalic());
+            font.setStrikeout(fr.isStruckout());
+            font.setUnderline(fr.getUnderline());
+            font.setTypeOffset(fr.getSuperSubScript());
+            if (fr.getCharset() != 0) {
+                font.setCharSet(fr.getCharset() & 0xFF);
+            }
+            XSSFColor color = getCustomColor(fr.getColorPaletteIndex());
+            if (color != null) {
+                font.setColor(color);
+            } else {
+                font.setColor(fr.getColorPaletteIndex());
+            }
+        }
+
+        /**
+         * @return the color of the palette of the .xls file if it has been changed
+         *  from the standard one, otherwise <code>null</code>
+         */
+        private XSSFColor getCustomColor(short index) {
+            if (_palette == null) {
+                return null;
+            }
+            byte[] rgb = _palette.getColor(index);
+            if (rgb == null || Arrays.equals(rgb, STANDARD_PALETTE.getColor(index))) {
+                return null;
+            }
+            return new XSSFColor(rgb);
+        }
+    }
+}
@@ -0,0 +1,1087 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import org.apache.poi.POIXMLException;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlOptions;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheetData;
+
+/**
+ * The rows of a worksheet that have been read from its package part, but have not been
+ * turned into {@link XSSFRow} objects yet.<p/>
+ *
+ * Parsing a whole worksheet with XMLBeans builds an object tree in which every cell takes
+ * about a kilobyte of memory.  The worksheet is therefore read with a StAX parser, and XMLBeans
+ * only gets to see the worksheet without the rows of <tt>sheetData</tt>.  The rows are kept in a
+ * compact form instead: for each cell its column, style index, type and value, which is a number,
+ * an index into the shared strings table, or the index of a text in a table of this sheet.  The
+ * formulas and the attributes of the rows are kept in such tables as well, so that all cells of
+ * a shared formula, or all rows with the same attributes, use one entry.<p/>
+ *
+ * {@link XSSFSheet} builds the bean of a row only when the row is accessed through an
+ * {@link XSSFRow}, which may change it.  The values of the packed rows can be read in blocks
+ * without building beans, and the rows that are still packed when the sheet is written are
+ * written from the compact form.<p/>
+ *
+ * A row that does not fit the compact form, for example because of inline strings, of elements
+ * or attributes which are rarely used, or of comments or processing instructions, is kept as
+ * its UTF-8 encoded XML instead.  The comments and processing instructions between the rows are
+ * kept with the row after them, as long as that row is packed.  They are lost when that row is
+ * turned into a bean, and those after the last row are lost as well.<p/>
+ *
+ * In the XML written for the packed rows the elements of the SpreadsheetML namespace have no
+ * prefix, and the other namespaces used in the rows get a prefix that is declared on
+ * <tt>sheetData</tt>.
+ */
+final class PackedSheetData {
+    private static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String XML_NS = "http://www.w3.org/XML/1998/namespace";
+
+    /** the values of the <tt>t</tt> attribute of the cells, a cell stores the index of its type */
+    private static final String[] CELL_TYPES = { null, "b", "n", "e", "s", "str", "inlineStr", "d" };
+    private static final int TYPE_NONE = 0;
+    private static final int TYPE_BOOLEAN = 1;
+    private static final int TYPE_NUMBER = 2;
+    private static final int TYPE_SHARED_STRING = 4;
+    private static final int TYPE_STRING = 5;
+    private static final int TYPE_INLINE_STRING = 6;
+
+    /** the cell has no value */
+    private static final int VALUE_NONE = 0;
+    /** a number written like {@link Double#toString(double)} does, stored as the bits of the double */
+    private static final int VALUE_NUMBER = 1;
+    /** a number written without a fraction, stored as the bits of the double */
+    private static final int VALUE_WHOLE_NUMBER = 2;
+    /** an integer, the index of a shared string or a boolean */
+    private static final int VALUE_INTEGER = 3;
+    /** any other value, stored as the index of its text in {@link #_texts} */
+    private static final int VALUE_TEXT = 4;
+
+    /** the ints stored for each cell: column, style index, type and kind of value, formula index */
+    private static final int CELL_INTS = 4;
+
+    /** the row numbers, in the order of the rows in the file */
+    private int[] _rowNums = new int[64];
+    /** the rows, <code>null</code> for the rows that have been unpacked */
+    private PackedRow[] _rows = new PackedRow[64];
+    private int _size;
+    private int _packedCount;
+    /** indexes of the first and last packed entries */
+    private int _first;
+    private int _last = -1;
+    private boolean _sorted = true;
+    /** namespace URI to prefix, for the namespaces other than the main one used by the rows */
+    private final Map<String, String> _prefixes = new LinkedHashMap<String, String>();
+    /** the rows with the master cells of shared formulas, or with array formulas */
+    private final List<Integer> _formulaRows = new ArrayList<Integer>();
+    /** the attributes of the rows other than their numbers, as name and value pairs */
+    private final SharedTable<String[]> _rowAttributes = new SharedTable<String[]>();
+    /** the formulas, as their text followed by the name and value pairs of their attributes */
+    private final SharedTable<String[]> _formulas = new SharedTable<String[]>();
+    /** the values of the cells which are neither numbers nor integers */
+    private final SharedTable<String> _texts = new SharedTable<String>();
+
+    /**
+     * Starts reading a worksheet.  The rows are read when XMLBeans has parsed the worksheet
+     *  from the returned reader.
+     *
+     * @param is the worksheet XML
+     * @return a reader of the worksheet XML which leaves out the rows
+     */
+    XMLStreamReader read(InputStream is) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // the text of a value comes in one piece
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return new SheetReader(factory.createXMLStreamReader(is));
+    }
+
+    /**
+     * @return <code>true</code> if all of the rows have been unpacked
+     */
+    boolean isEmpty() {
+        return _packedCount == 0;
+    }
+
+    /**
+     * @return the number of rows that are still packed
+     */
+    int size() {
+        return _packedCount;
+    }
+
+    /**
+     * @return <code>false</code> if the rows in the file are not in ascending order,
+     *  in which case only {@link #unpackAll()} may be used
+     */
+    boolean isSorted() {
+        return _sorted;
+    }
+
+    /**
+     * @return the rows which must be unpacked right away because they hold the master
+     *  cells of shared formulas or array formulas
+     */
+    List<Integer> getFormulaRows() {
+        return _formulaRows;
+    }
+
+    /**
+     * @return the number of the first packed row
+     */
+    int getFirstRowNum() {
+        return _rowNums[_first];
+    }
+
+    /**
+     * @return the number of the last packed row
+     */
+    int getLastRowNum() {
+        return _rowNums[_last];
+    }
+
+    /**
+     * Discards a packed row, if there is one with the specified number
+     */
+    void remove(int rownum) {
+        int i = indexOf(rownum);
+        if (i >= 0 && _rows[i] != null) {
+            removeAt(i);
+        }
+    }
+
+    /**
+     * Unpacks the rows in the given range
+     *
+     * @param maxRows the maximum number of rows to unpack, the rest of the range stays packed
+     * @return the unpacked rows, <code>null</code> if there were none in the range
+     */
+    CTSheetData unpack(int firstRow, int lastRow, int maxRows) {
+        if (_packedCount == 0 || firstRow > _rowNums[_last] || lastRow < _rowNums[_first]) {
+            return null;
+        }
+        int from = indexOf(firstRow);
+        if (from < 0) {
+            from = -from - 1;
+        }
+        int to = indexOf(lastRow);
+        if (to < 0) {
+            to = -to - 2;
+        }
+        return unpackEntries(Math.max(from, _first), Math.min(to, _last), maxRows, false);
+    }
+
+    /**
+     * Unpacks all of the rows, in the order of the file
+     *
+     * @return the unpacked rows, <code>null</code> if there were none
+     */
+    CTSheetData unpackAll() {
+        if (_packedCount == 0) {
+            return null;
+        }
+        return unpackEntries(_first, _last, _packedCount, false);
+    }
+
+    /**
+     * Unpacks the rows which have cells with formulas, the other rows stay packed
+     *
+     * @param maxRows the maximum number of rows to unpack
+     * @return the unpacked rows, <code>null</code> if there were none
+     */
+    CTSheetData unpackFormulaRows(int maxRows) {
+        if (_packedCount == 0) {
+            return null;
+        }
+        return unpackEntries(_first, _last, maxRows, true);
+    }
+
+    private CTSheetData unpackEntries(int from, int to, int maxRows, boolean formulasOnly) {
+        StringBuilder sb = new StringBuilder("<sheetData");
+        appendDeclarations(sb);
+        XmlWriter xml = new XmlWriter(null);
+        xml.write(sb.append('>').toString());
+        int count = 0;
+        for (int i = from; i <= to && count < maxRows; i++) {
+            if (_rows[i] != null && (!formulasOnly || _rows[i].hasFormulas)) {
+                writeRow(xml, i);
+                count++;
+                removeAt(i);
+            }
+        }
+        xml.write("</sheetData>");
+        if (count == 0) {
+            return null;
+        }
+        try {
+            // the content of the sheetData element becomes the content of the bean
+            XmlOptions options = new XmlOptions();
+            options.setLoadReplaceDocumentElement(null);
+            return CTSheetData.Factory.parse(xml.toInputStream(), options);
+        } catch (XmlException e) {
+            throw new POIXMLException(e);
+        } catch (IOException e) {
+            throw new POIXMLException(e);
+        }
+    }
+
+    /**
+     * @return namespace URI to prefix, for the namespaces other than the SpreadsheetML one
+     *  used by the packed rows, which must be declared on <tt>sheetData</tt>
+     */
+    Map<String, String> getPrefixes() {
+        return _prefixes;
+    }
+
+    /**
+     * Writes the packed rows in the given range
+     */
+    void writeRows(XmlWriter out, int firstRow, int lastRow) {
+        if (_packedCount == 0 || firstRow > _rowNums[_last] || lastRow < _rowNums[_first]) {
+            return;
+        }
+        int i = indexOf(firstRow);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        for (; i <= _last && _rowNums[i] <= lastRow; i++) {
+            if (_rows[i] != null) {
+                writeRow(out, i);
+            }
+        }
+    }
+
+    /**
+     * Reads the numeric values of cells of a packed row, like {@link XSSFCell#getNumericCellValue()}
+     *  does, with 0 for the missing cells
+     *
+     * @param values receives the values of the columns from <tt>firstCol</tt> on, from <tt>offset</tt> on
+     * @return <code>false</code> if the row is not packed, or if a value cannot be read from the
+     *  compact form, in which case the row must be unpacked to read it
+     */
+    boolean readNumbers(int rownum, int firstCol, double[] values, int offset, int count) {
+        PackedRow row = getPackedRow(rownum);
+        if (row == null) {
+            return false;
+        }
+        int j = row.indexOf(firstCol);
+        if (j < 0) {
+            j = -j - 1;
+        }
+        for (int k = 0; k < count; k++) {
+            double value = 0.0;
+            if (j < row.cellCount && row.getColumn(j) == firstCol + k) {
+                int type = row.getType(j);
+                int kind = row.getValueKind(j);
+                if (row.getFormula(j) < 0 && type != TYPE_NONE && type != TYPE_NUMBER) {
+                    return false;
+                }
+                if (kind == VALUE_NUMBER || kind == VALUE_WHOLE_NUMBER) {
+                    value = Double.longBitsToDouble(row.values[j]);
+                } else if (kind == VALUE_INTEGER) {
+                    value = row.values[j];
+                } else if (kind != VALUE_NONE) {
+                    return false;
+                }
+                j++;
+            }
+            values[offset + k] = value;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the string values of cells of a packed row, like {@link XSSFCell#getStringCellValue()}
+     *  does, with "" for the missing cells
+     *
+     * @see #readNumbers(int, int, double[], int, int)
+     */
+    boolean readStrings(int rownum, int firstCol, String[] values, int offset, int count,
+            SharedStringsTable sst) {
+        PackedRow row = getPackedRow(rownum);
+        if (row == null) {
+            return false;
+        }
+        int j = row.indexOf(firstCol);
+        if (j < 0) {
+            j = -j - 1;
+        }
+        for (int k = 0; k < count; k++) {
+            String value = "";
+            if (j < row.cellCount && row.getColumn(j) == firstCol + k) {
+                int type = row.getType(j);
+                int kind = row.getValueKind(j);
+                if (kind == VALUE_NONE) {
+                    if (row.getFormula(j) >= 0 && type != TYPE_SHARED_STRING && type != TYPE_STRING
+                            && type != TYPE_INLINE_STRING) {
+                        return false;
+                    }
+                } else if (type == TYPE_SHARED_STRING && row.getFormula(j) < 0) {
+                    if (kind != VALUE_INTEGER) {
+                        return false;
+                    }
+                    value = XSSFRichTextString.utfDecode(sst.getStringAt((int) row.values[j]));
+                } else if (type == TYPE_SHARED_STRING || type == TYPE_STRING || type == TYPE_INLINE_STRING) {
+                    // the cached value of a formula, or an inline string
+                    value = XSSFRichTextString.utfDecode(getValueText(row, j));
+                } else {
+                    return false;
+                }
+                j++;
+            }
+            values[offset + k] = value;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the boolean values of cells of a packed row, like {@link XSSFCell#getBooleanCellValue()}
+     *  does, with <code>false</code> for the missing cells
+     *
+     * @see #readNumbers(int, int, double[], int, int)
+     */
+    boolean readBooleans(int rownum, int firstCol, boolean[] values, int offset, int count) {
+        PackedRow row = getPackedRow(rownum);
+        if (row == null) {
+            return false;
+        }
+        int j = row.indexOf(firstCol);
+        if (j < 0) {
+            j = -j - 1;
+        }
+        for (int k = 0; k < count; k++) {
+            boolean value = false;
+            if (j < row.cellCount && row.getColumn(j) == firstCol + k) {
+                int type = row.getType(j);
+                int kind = row.getValueKind(j);
+                if (row.getFormula(j) < 0 && type != TYPE_BOOLEAN
+                        && !(kind == VALUE_NONE && (type == TYPE_NONE || type == TYPE_NUMBER))) {
+                    return false;
+                }
+                value = kind != VALUE_NONE && "1".equals(getValueText(row, j));
+                j++;
+            }
+            values[offset + k] = value;
+        }
+        return true;
+    }
+
+    /**
+     * @return the packed row with the specified number, <code>null</code> if there is none
+     *  or if it is not in the compact form
+     */
+    private PackedRow getPackedRow(int rownum) {
+        int i = indexOf(rownum);
+        if (i < 0 || _rows[i] == null || _rows[i].xml != null) {
+            return null;
+        }
+        return _rows[i];
+    }
+
+    /**
+     * @return the index of the entry of the row with the specified number, which may have been
+     *  unpacked, or <code>-(insertion point) - 1</code> if there is none
+     */
+    private int indexOf(int rownum) {
+        int low = 0;
+        int high = _size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midRow = _rowNums[mid];
+            if (midRow < rownum) {
+                low = mid + 1;
+            } else if (midRow > rownum) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void removeAt(int i) {
+        _rows[i] = null;
+        _packedCount--;
+        if (_packedCount == 0) {
+            _first = 0;
+            _last = -1;
+            return;
+        }
+        while (_rows[_first] == null) {
+            _first++;
+        }
+        while (_rows[_last] == null) {
+            _last--;
+        }
+    }
+
+    private void add(int rownum, PackedRow row) {
+        if (_size == _rowNums.length) {
+            int[] rowNums = new int[_size * 2];
+            System.arraycopy(_rowNums, 0, rowNums, 0, _size);
+            _rowNums = rowNums;
+            PackedRow[] rows = new PackedRow[_size * 2];
+            System.arraycopy(_rows, 0, rows, 0, _size);
+            _rows = rows;
+        }
+        if (_packedCount > 0 && rownum <= _rowNums[_last]) {
+            _sorted = false;
+        }
+        _rowNums[_size] = rownum;
+        _rows[_size] = row;
+        _last = _size++;
+        _packedCount++;
+    }
+
+    private void writeRow(XmlWriter out, int i) {
+        PackedRow row = _rows[i];
+        if (row.xml != null) {
+            out.write(row.xml);
+            return;
+        }
+        String rowRef = Integer.toString(_rowNums[i] + 1);
+        out.write("<row r=\"");
+        out.write(rowRef);
+        out.write('"');
+        if (row.attributes >= 0) {
+            writeAttributes(out, _rowAttributes.get(row.attributes), 0);
+        }
+        if (row.cellCount == 0) {
+            out.write("/>");
+            return;
+        }
+        out.write('>');
+        for (int j = 0; j < row.cellCount; j++) {
+            out.write("<c r=\"");
+            out.write(CellReference.convertNumToColString(row.getColumn(j)));
+            out.write(rowRef);
+            out.write('"');
+            int style = row.getStyle(j);
+            if (style >= 0) {
+                out.write(" s=\"");
+                out.write(Integer.toString(style));
+                out.write('"');
+            }
+            int type = row.getType(j);
+            if (type != TYPE_NONE) {
+                out.write(" t=\"");
+                out.write(CELL_TYPES[type]);
+                out.write('"');
+            }
+            int formula = row.getFormula(j);
+            if (formula < 0 && row.getValueKind(j) == VALUE_NONE) {
+                out.write("/>");
+                continue;
+            }
+            out.write('>');
+            if (formula >= 0) {
+                String[] f = _formulas.get(formula);
+                out.write("<f");
+                writeAttributes(out, f, 1);
+                if (f[0].length() == 0) {
+                    out.write("/>");
+                } else {
+                    out.write('>');
+                    out.writeEscaped(f[0], false);
+                    out.write("</f>");
+                }
+            }
+            if (row.getValueKind(j) != VALUE_NONE) {
+                out.write("<v>");
+                out.writeEscaped(getValueText(row, j), false);
+                out.write("</v>");
+            }
+            out.write("</c>");
+        }
+        out.write("</row>");
+    }
+
+    /**
+     * @return the value of a cell as it is written in the file
+     */
+    private String getValueText(PackedRow row, int j) {
+        switch (row.getValueKind(j)) {
+            case VALUE_NUMBER:
+                return Double.toString(Double.longBitsToDouble(row.values[j]));
+            case VALUE_WHOLE_NUMBER:
+                return Long.toString((long) Double.longBitsToDouble(row.values[j]));
+            case VALUE_INTEGER:
+                return Long.toString(row.values[j]);
+            case VALUE_TEXT:
+                return _texts.get((int) row.values[j]);
+            default:
+                return null;
+        }
+    }
+
+    private static void writeAttributes(XmlWriter out, String[] attributes, int start) {
+        for (int i = start; i < attributes.length; i += 2) {
+            writeAttribute(out, attributes[i], attributes[i + 1]);
+        }
+    }
+
+    private static void writeAttribute(XmlWriter out, String name, String value) {
+        out.write(' ');
+        out.write(name);
+        out.write("=\"");
+        out.writeEscaped(value, true);
+        out.write('"');
+    }
+
+    /**
+     * Appends the namespace declarations that the packed rows need to the start tag of <tt>sheetData</tt>
+     */
+    private void appendDeclarations(StringBuilder sb) {
+        sb.append(" xmlns=\"").append(MAIN_NS).append('"');
+        for (Map.Entry<String, String> e : _prefixes.entrySet()) {
+            sb.append(" xmlns:").append(e.getValue()).append("=\"").append(e.getKey()).append('"');
+        }
+    }
+
+    /**
+     * @return the prefix of the namespace in the packed rows
+     */
+    private String getPrefix(String uri, String prefix) {
+        String result = _prefixes.get(uri);
+        if (result == null) {
+            result = prefix == null || prefix.length() == 0 ? null : prefix;
+            for (int i = _prefixes.size() + 1; result == null || result.equals("xml")
+                    || _prefixes.containsValue(result); i++) {
+                result = "ns" + i;
+            }
+            _prefixes.put(uri, result);
+        }
+        return result;
+    }
+
+    private String getRowName(String uri, String localName, String prefix) {
+        if (uri == null || uri.length() == 0 || MAIN_NS.equals(uri)) {
+            return localName;
+        }
+        if (XML_NS.equals(uri)) {
+            return "xml:" + localName;
+        }
+        return getPrefix(uri, prefix) + ":" + localName;
+    }
+
+    /**
+     * @return the index that a text stands for, -1 if it is not a non-negative int
+     *  written the usual way
+     */
+    private static int parseIndex(String text) {
+        int len = text.length();
+        if (len == 0 || len > 9 || (len > 1 && text.charAt(0) == '0')) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = 0; i < len; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /**
+     * @return the column of a cell reference in the specified row, -1 if the reference is
+     *  not of that form
+     */
+    private static int parseColumn(String ref, int rownum) {
+        int column = 0;
+        int i = 0;
+        for (; i < ref.length() && i < 3; i++) {
+            char c = ref.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        if (i == 0 || parseIndex(ref.substring(i)) != rownum + 1) {
+            return -1;
+        }
+        return column - 1;
+    }
+
+    /**
+     * A packed row in the compact form, or its XML if it does not fit that form
+     */
+    private static final class PackedRow {
+        /** the index of the attributes of the row other than its number, -1 if there are none */
+        int attributes = -1;
+        int cellCount;
+        /** {@link PackedSheetData#CELL_INTS} ints for each cell, in column order */
+        int[] cells;
+        /** the value of each cell, see {@link #getValueKind(int)} */
+        long[] values;
+        /** whether the row has cells with formulas */
+        boolean hasFormulas;
+        /** the XML of a row which does not fit the compact form, <code>null</code> for the others */
+        byte[] xml;
+
+        void addCell(int column, int style, int type, int valueKind, long value, int formula) {
+            if (cells == null || cellCount == values.length) {
+                int capacity = cells == null ? 8 : cellCount * 2;
+                int[] newCells = new int[capacity * CELL_INTS];
+                long[] newValues = new long[capacity];
+                if (cells != null) {
+                    System.arraycopy(cells, 0, newCells, 0, cellCount * CELL_INTS);
+                    System.arraycopy(values, 0, newValues, 0, cellCount);
+                }
+                cells = newCells;
+                values = newValues;
+            }
+            int p = cellCount * CELL_INTS;
+            cells[p] = column;
+            cells[p + 1] = style;
+            cells[p + 2] = type | valueKind << 4;
+            cells[p + 3] = formula;
+            values[cellCount++] = value;
+        }
+
+        /**
+         * Drops the unused capacity, once all cells have been added
+         */
+        void trim() {
+            if (cells != null && cellCount < values.length) {
+                int[] newCells = new int[cellCount * CELL_INTS];
+                long[] newValues = new long[cellCount];
+                System.arraycopy(cells, 0, newCells, 0, newCells.length);
+                System.arraycopy(values, 0, newValues, 0, cellCount);
+                cells = newCells;
+                values = newValues;
+            }
+        }
+
+        int getColumn(int i) {
+            return cells[i * CELL_INTS];
+        }
+
+        /**
+         * @return the style index, -1 if it is not set
+         */
+        int getStyle(int i) {
+            return cells[i * CELL_INTS + 1];
+        }
+
+        /**
+         * @return the index of the type in {@link PackedSheetData#CELL_TYPES}
+         */
+        int getType(int i) {
+            return cells[i * CELL_INTS + 2] & 0xF;
+        }
+
+        /**
+         * @return one of the <tt>VALUE_</tt> constants of {@link PackedSheetData}
+         */
+        int getValueKind(int i) {
+            return cells[i * CELL_INTS + 2] >> 4;
+        }
+
+        /**
+         * @return the index of the formula, -1 if the cell has none
+         */
+        int getFormula(int i) {
+            return cells[i * CELL_INTS + 3];
+        }
+
+        /**
+         * @return the position of the cell in the specified column, or
+         *  <code>-(insertion point) - 1</code> if there is none
+         */
+        int indexOf(int column) {
+            int low = 0;
+            int high = cellCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midColumn = getColumn(mid);
+                if (midColumn < column) {
+                    low = mid + 1;
+                } else if (midColumn > column) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+
+    /**
+     * A table which stores equal entries once, the rows refer to the entries by their index
+     */
+    private static final class SharedTable<T> {
+        private final List<T> _entries = new ArrayList<T>();
+        private final Map<Object, Integer> _indexes = new HashMap<Object, Integer>();
+
+        /**
+         * @param key equal for equal entries
+         * @return the index of the entry
+         */
+        int add(T entry, Object key) {
+            Integer index = _indexes.get(key);
+            if (index == null) {
+                index = Integer.valueOf(_entries.size());
+                _entries.add(entry);
+                _indexes.put(key, index);
+            }
+            return index.intValue();
+        }
+
+        T get(int index) {
+            return _entries.get(index);
+        }
+    }
+
+    /**
+     * Passes the worksheet XML on to XMLBeans, except for the rows, which it reads into
+     *  the compact form
+     */
+    private final class SheetReader extends StreamReaderDelegate {
+        private int _depth;
+        /** set when the start of sheetData has been passed on, its rows are read on the next call */
+        private boolean _rowsPending;
+        private int _lastRowNum = -1;
+        /** the XML of the current row, which is kept if the row does not fit the compact form */
+        private final XmlWriter _xml = new XmlWriter(null);
+        /** the comments and processing instructions before the current row */
+        private final XmlWriter _pending = new XmlWriter(null);
+        private boolean _hasPending;
+        /** the text of the <tt>f</tt> or <tt>v</tt> element being read */
+        private final StringBuilder _text = new StringBuilder();
+
+        SheetReader(XMLStreamReader reader) {
+            super(reader);
+        }
+
+        public int next() throws XMLStreamException {
+            if (_rowsPending) {
+                _rowsPending = false;
+                readRows(getParent());
+                // the parent is at the end of sheetData now
+                _depth--;
+                return END_ELEMENT;
+            }
+            int event = super.next();
+            if (event == START_ELEMENT) {
+                _depth++;
+                _rowsPending = _depth == 2 && "sheetData".equals(getLocalName())
+                        && MAIN_NS.equals(getNamespaceURI());
+            } else if (event == END_ELEMENT) {
+                _depth--;
+            }
+            return event;
+        }
+
+        public int nextTag() throws XMLStreamException {
+            int event = next();
+            while (event == SPACE || event == COMMENT || event == PROCESSING_INSTRUCTION
+                    || (event == CHARACTERS || event == CDATA) && isWhiteSpace()) {
+                event = next();
+            }
+            if (event != START_ELEMENT && event != END_ELEMENT) {
+                throw new XMLStreamException("Expected a start or end tag", getLocation());
+            }
+            return event;
+        }
+
+        private void readRows(XMLStreamReader r) throws XMLStreamException {
+            for (int event = r.next(); event != END_ELEMENT; event = r.next()) {
+                if (event == START_ELEMENT) {
+                    if ("row".equals(r.getLocalName()) && MAIN_NS.equals(r.getNamespaceURI())) {
+                        readRow(r);
+                    } else {
+                        // only rows are allowed in sheetData
+                        skipElement(r);
+                    }
+                } else if (event == COMMENT || event == PROCESSING_INSTRUCTION) {
+                    writeEvent(_pending, r, event);
+                    _hasPending = true;
+                }
+            }
+        }
+
+        private void skipElement(XMLStreamReader r) throws XMLStreamException {
+            for (int depth = 1; depth > 0; ) {
+                int event = r.next();
+                if (event == START_ELEMENT) {
+                    depth++;
+                } else if (event == END_ELEMENT) {
+                    depth--;
+                }
+            }
+        }
+
+        private void readRow(XMLStreamReader r) throws XMLStreamException {
+            String ref = r.getAttributeValue(null, "r");
+            int rownum = ref == null ? _lastRowNum + 1 : Integer.parseInt(ref) - 1;
+            _lastRowNum = rownum;
+
+            PackedRow row = new PackedRow();
+            // the comments before the row are only kept in its XML
+            boolean compact = !_hasPending;
+            _xml.reset();
+            if (_hasPending) {
+                _xml.write(_pending.toByteArray());
+                _pending.reset();
+                _hasPending = false;
+            }
+            _xml.write("<row");
+            if (ref == null) {
+                writeAttribute(_xml, "r", Integer.toString(rownum + 1));
+            }
+            List<String> attributes = new ArrayList<String>();
+            for (int i = 0; i < r.getAttributeCount(); i++) {
+                String name = getAttributeName(r, i);
+                String value = r.getAttributeValue(i);
+                writeAttribute(_xml, name, value);
+                if (!"r".equals(name)) {
+                    attributes.add(name);
+                    attributes.add(value);
+                }
+            }
+            _xml.write('>');
+            if (!attributes.isEmpty()) {
+                String[] entry = attributes.toArray(new String[attributes.size()]);
+                row.attributes = _rowAttributes.add(entry, Arrays.asList(entry));
+            }
+
+            // the cell being read
+            int column = -1;
+            int style = -1;
+            int type = TYPE_NONE;
+            int valueKind = VALUE_NONE;
+            long value = 0;
+            int formula = -1;
+            String[] formulaAttributes = null;
+            // "f" or "v" while reading the text of that element
+            String textElement = null;
+            int lastColumn = -1;
+
+            for (int depth = 1; depth > 0; ) {
+                int event = r.next();
+                writeEvent(_xml, r, event);
+                switch (event) {
+                    case START_ELEMENT:
+                        depth++;
+                        String name = r.getLocalName();
+                        boolean main = MAIN_NS.equals(r.getNamespaceURI());
+                        if (main && "f".equals(name)) {
+                            row.hasFormulas = true;
+                            String t = r.getAttributeValue(null, "t");
+                            if ("array".equals(t) || ("shared".equals(t) && r.getAttributeValue(null, "ref") != null)) {
+                                if (_formulaRows.isEmpty() || _formulaRows.get(_formulaRows.size() - 1) != rownum) {
+                                    _formulaRows.add(rownum);
+                                }
+                            }
+                        }
+                        if (!compact) {
+                            break;
+                        }
+                        if (depth == 2 && main && "c".equals(name)) {
+                            column = lastColumn + 1;
+                            style = -1;
+                            type = TYPE_NONE;
+                            valueKind = VALUE_NONE;
+                            value = 0;
+                            formula = -1;
+                            for (int i = 0; i < r.getAttributeCount() && compact; i++) {
+                                String ns = r.getAttributeNamespace(i);
+                                String attName = r.getAttributeLocalName(i);
+                                String attValue = r.getAttributeValue(i);
+                                if (ns != null && ns.length() > 0) {
+                                    compact = false;
+                                } else if ("r".equals(attName)) {
+                                    column = parseColumn(attValue, rownum);
+                                } else if ("s".equals(attName)) {
+                                    style = parseIndex(attValue);
+                                    compact = style >= 0;
+                                } else if ("t".equals(attName)) {
+                                    type = Arrays.asList(CELL_TYPES).indexOf(attValue);
+                                    compact = type > TYPE_NONE;
+                                } else {
+                                    compact = false;
+                                }
+                            }
+                            // the cells must be in column order
+                            compact &= column > lastColumn;
+                        } else if (depth == 3 && main && "f".equals(name)) {
+                            textElement = name;
+                            _text.setLength(0);
+                            List<String> fAttributes = new ArrayList<String>();
+                            fAttributes.add(null);
+                            for (int i = 0; i < r.getAttributeCount(); i++) {
+                                fAttributes.add(getAttributeName(r, i));
+                                fAttributes.add(r.getAttributeValue(i));
+                            }
+                            formulaAttributes = fAttributes.toArray(new String[fAttributes.size()]);
+                        } else if (depth == 3 && main && "v".equals(name) && r.getAttributeCount() == 0) {
+                            textElement = name;
+                            _text.setLength(0);
+                        } else {
+                            compact = false;
+                        }
+                        break;
+                    case END_ELEMENT:
+                        depth--;
+                        if (!compact) {
+                            break;
+                        }
+                        if (depth == 2 && textElement != null) {
+                            String text = _text.toString();
+                            if ("f".equals(textElement)) {
+                                formulaAttributes[0] = text;
+                                formula = _formulas.add(formulaAttributes, Arrays.asList(formulaAttributes));
+                            } else {
+                                valueKind = VALUE_TEXT;
+                                if (type == TYPE_NONE || type == TYPE_NUMBER) {
+                                    int kind = getNumberKind(text);
+                                    if (kind != VALUE_NONE) {
+                                        valueKind = kind;
+                                        value = Double.doubleToRawLongBits(Double.parseDouble(text));
+                                    }
+                                } else if (type == TYPE_BOOLEAN || type == TYPE_SHARED_STRING) {
+                                    value = parseIndex(text);
+                                    if (value >= 0) {
+                                        valueKind = VALUE_INTEGER;
+                                    }
+                                }
+                                if (valueKind == VALUE_TEXT) {
+                                    value = _texts.add(text, text);
+                                }
+                            }
+                            textElement = null;
+                        } else if (depth == 1) {
+                            row.addCell(column, style, type, valueKind, value, formula);
+                            lastColumn = column;
+                        }
+                        break;
+                    case CHARACTERS:
+                    case CDATA:
+                    case SPACE:
+                        if (textElement != null) {
+                            _text.append(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+                        } else if (event != SPACE && !r.isWhiteSpace()) {
+                            compact = false;
+                        }
+                        break;
+                    case COMMENT:
+                    case PROCESSING_INSTRUCTION:
+                        compact = false;
+                        break;
+                }
+            }
+            if (compact) {
+                row.trim();
+            } else {
+                row.xml = _xml.toByteArray();
+                row.cells = null;
+                row.values = null;
+                row.cellCount = 0;
+            }
+            add(rownum, row);
+        }
+
+        /**
+         * @return the kind of value of a number, {@link #VALUE_NUMBER} or {@link #VALUE_WHOLE_NUMBER},
+         *  if writing the number gives the same text, otherwise {@link #VALUE_NONE}
+         */
+        private int getNumberKind(String text) {
+            int len = text.length();
+            if (len == 0 || len > 25 || !(text.charAt(0) == '-' || text.charAt(0) >= '0' && text.charAt(0) <= '9')) {
+                return VALUE_NONE;
+            }
+            double d;
+            try {
+                d = Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                return VALUE_NONE;
+            }
+            if (Double.toString(d).equals(text)) {
+                return VALUE_NUMBER;
+            }
+            if (d == Math.rint(d) && Math.abs(d) < 1e18 && Long.toString((long) d).equals(text)) {
+                return VALUE_WHOLE_NUMBER;
+            }
+            return VALUE_NONE;
+        }
+
+        private String getAttributeName(XMLStreamReader r, int i) {
+            return getRowName(r.getAttributeNamespace(i), r.getAttributeLocalName(i), r.getAttributePrefix(i));
+        }
+
+        /**
+         * Writes the current event of the reader to the XML of a row
+         */
+        private void writeEvent(XmlWriter out, XMLStreamReader r, int event) {
+            switch (event) {
+                case START_ELEMENT:
+                    out.write('<');
+                    out.write(getRowName(r.getNamespaceURI(), r.getLocalName(), r.getPrefix()));
+                    for (int i = 0; i < r.getAttributeCount(); i++) {
+                        writeAttribute(out, getAttributeName(r, i), r.getAttributeValue(i));
+                    }
+                    out.write('>');
+                    break;
+                case END_ELEMENT:
+                    out.write("</");
+                    out.write(getRowName(r.getNamespaceURI(), r.getLocalName(), r.getPrefix()));
+                    out.write('>');
+                    break;
+                case CHARACTERS:
+                case CDATA:
+                case SPACE:
+                    out.writeEscaped(r.getTextCharacters(), r.getTextStart(), r.getTextLength(), false);
+                    out.endText();
+                    break;
+                case COMMENT:
+                    out.write("<!--");
+                    out.write(r.getText());
+                    out.write("-->");
+                    break;
+                case PROCESSING_INSTRUCTION:
+                    out.write("<?");
+                    out.write(r.getPITarget());
+                    String data = r.getPIData();
+                    if (data != null && data.length() > 0) {
+                        out.write(' ');
+                        out.write(data);
+                    }
+                    out.write("?>");
+                    break;
+            }
+        }
+    }
+}
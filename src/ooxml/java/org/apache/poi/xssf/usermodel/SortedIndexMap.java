@@ -0,0 +1,257 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Maps row or column indexes to the rows or cells, in ascending order of the index.<p/>
+ *
+ * The indexes and the values are kept in two parallel arrays, which takes far less memory
+ * than a <code>TreeMap&lt;Integer, V&gt;</code> with its boxed keys and tree nodes.  When the
+ * indexes have no gaps, as in most rows, a value is found directly by its position,
+ * otherwise by a binary search.  Adding values in ascending order of the index is cheap,
+ * which is the order in which they are read from a file.
+ */
+final class SortedIndexMap<V> implements Iterable<V> {
+    private int[] _keys;
+    private Object[] _values;
+    private int _size;
+    /** the number of structural changes, to make the iterators fail-fast */
+    private int _modCount;
+
+    SortedIndexMap() {
+        this(4);
+    }
+
+    /**
+     * @param capacity the number of values the map can hold before it has to grow
+     */
+    SortedIndexMap(int capacity) {
+        capacity = Math.max(capacity, 1);
+        _keys = new int[capacity];
+        _values = new Object[capacity];
+    }
+
+    int size() {
+        return _size;
+    }
+
+    boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * @return the smallest index in the map, the map must not be empty
+     */
+    int firstKey() {
+        if (_size == 0) {
+            throw new NoSuchElementException();
+        }
+        return _keys[0];
+    }
+
+    /**
+     * @return the largest index in the map, the map must not be empty
+     */
+    int lastKey() {
+        if (_size == 0) {
+            throw new NoSuchElementException();
+        }
+        return _keys[_size - 1];
+    }
+
+    int keyAt(int pos) {
+        return _keys[pos];
+    }
+
+    @SuppressWarnings("unchecked")
+    V valueAt(int pos) {
+        return (V) _values[pos];
+    }
+
+    /**
+     * @return the position of the specified index, or <code>-(insertion point) - 1</code>
+     *  if it is not in the map
+     */
+    int indexOf(int key) {
+        if (_size == 0) {
+            return -1;
+        }
+        int first = _keys[0];
+        if (_keys[_size - 1] - first == _size - 1) {
+            // no gaps
+            if (key < first) {
+                return -1;
+            }
+            return key - first < _size ? key - first : -_size - 1;
+        }
+        int low = 0;
+        int high = _size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midKey = _keys[mid];
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * @return the number of indexes in the map which are less than the specified one
+     */
+    int headSize(int key) {
+        int pos = indexOf(key);
+        return pos < 0 ? -pos - 1 : pos;
+    }
+
+    /**
+     * @return the value with the specified index, <code>null</code> if there is none
+     */
+    V get(int key) {
+        int pos = indexOf(key);
+        return pos < 0 ? null : valueAt(pos);
+    }
+
+    /**
+     * @return the value that had the specified index before, if any
+     */
+    V put(int key, V value) {
+        int pos = indexOf(key);
+        if (pos >= 0) {
+            V prev = valueAt(pos);
+            _values[pos] = value;
+            return prev;
+        }
+        pos = -pos - 1;
+        if (_size == _keys.length) {
+            int capacity = _size * 3 / 2 + 1;
+            int[] keys = new int[capacity];
+            System.arraycopy(_keys, 0, keys, 0, _size);
+            _keys = keys;
+            Object[] values = new Object[capacity];
+            System.arraycopy(_values, 0, values, 0, _size);
+            _values = values;
+        }
+        if (pos < _size) {
+            System.arraycopy(_keys, pos, _keys, pos + 1, _size - pos);
+            System.arraycopy(_values, pos, _values, pos + 1, _size - pos);
+        }
+        _keys[pos] = key;
+        _values[pos] = value;
+        _size++;
+        _modCount++;
+        return null;
+    }
+
+    /**
+     * @return the value that had the specified index, if any
+     */
+    V remove(int key) {
+        int pos = indexOf(key);
+        return pos < 0 ? null : removeAt(pos);
+    }
+
+    V removeAt(int pos) {
+        V prev = valueAt(pos);
+        int nMoved = _size - pos - 1;
+        if (nMoved > 0) {
+            System.arraycopy(_keys, pos + 1, _keys, pos, nMoved);
+            System.arraycopy(_values, pos + 1, _values, pos, nMoved);
+        }
+        _values[--_size] = null;
+        _modCount++;
+        return prev;
+    }
+
+    /**
+     * Replaces the values at the positions from <tt>fromPos</tt> (inclusive) to <tt>toPos</tt>
+     *  (exclusive) in one pass, moving the values after them at most once.
+     *
+     * @param keys the new indexes, in ascending order and between the indexes before and after
+     *  the replaced positions
+     * @param values the new values, no more than the values replaced
+     */
+    void replaceRange(int fromPos, int toPos, int[] keys, List<? extends V> values) {
+        int count = values.size();
+        if (fromPos < 0 || toPos > _size || fromPos > toPos || count > toPos - fromPos) {
+            throw new IllegalArgumentException("Cannot replace the positions " + fromPos + " to "
+                    + toPos + " of " + _size + " with " + count + " values");
+        }
+        for (int i = 0; i < count; i++) {
+            _keys[fromPos + i] = keys[i];
+            _values[fromPos + i] = values.get(i);
+        }
+        int newSize = _size - (toPos - fromPos - count);
+        if (newSize < _size) {
+            System.arraycopy(_keys, toPos, _keys, fromPos + count, _size - toPos);
+            System.arraycopy(_values, toPos, _values, fromPos + count, _size - toPos);
+            for (int i = newSize; i < _size; i++) {
+                _values[i] = null;
+            }
+            _size = newSize;
+        }
+        _modCount++;
+    }
+
+    /**
+     * @return an iterator over the values, in ascending order of their indexes
+     */
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+            private int _pos;
+            private int _expectedModCount = _modCount;
+            private boolean _canRemove;
+
+            public boolean hasNext() {
+                return _pos < _size;
+            }
+
+            public V next() {
+                if (_expectedModCount != _modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (_pos >= _size) {
+                    throw new NoSuchElementException();
+                }
+                _canRemove = true;
+                return valueAt(_pos++);
+            }
+
+            public void remove() {
+                if (!_canRemove) {
+                    throw new IllegalStateException();
+                }
+                if (_expectedModCount != _modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                removeAt(--_pos);
+                _expectedModCount = _modCount;
+                _canRemove = false;
+            }
+        };
+    }
+}
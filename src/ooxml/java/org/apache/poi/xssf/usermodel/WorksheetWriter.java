@@ -0,0 +1,304 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.apache.poi.POIXMLDocumentPart;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlCursor.TokenType;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+
+/**
+ * Writes the XML of a worksheet without saving the whole worksheet bean through XMLBeans.<p/>
+ *
+ * The rows in <tt>sheetData</tt>, which make up most of a worksheet, are written token by
+ * token from the beans of the rows straight to a UTF-8 encoded stream, merged with the rows
+ * which are still packed.  The other elements of the worksheet, such as the columns, the merged
+ * cells or the conditional formatting, are small, and each of them is saved by XMLBeans.<p/>
+ *
+ * The SpreadsheetML namespace is the default namespace of the output, and the relationships
+ * namespace gets the prefix <tt>r</tt>.  The other namespaces declared on the worksheet
+ * element keep their declarations, and a namespace that is not declared there is declared on
+ * each element that uses it.
+ */
+final class WorksheetWriter {
+    private static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String REL_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String XML_NS = "http://www.w3.org/XML/1998/namespace";
+
+    private final OutputStream _stream;
+    private final XmlWriter _out;
+    /** prefix to namespace URI, for the namespaces declared on the current element and its ancestors */
+    private final Map<String, String> _scope = new LinkedHashMap<String, String>();
+    /** namespace URI to prefix, the reverse of {@link #_scope} */
+    private final Map<String, String> _prefixes = new HashMap<String, String>();
+    /** prefix and URI pairs declared on the current element for the namespaces not in scope */
+    private final List<String> _localDeclarations = new ArrayList<String>();
+    /** the number of entries of {@link #_localDeclarations} that have been written */
+    private int _written;
+    /** the names of the open elements of the row being written */
+    private final List<String> _names = new ArrayList<String>();
+
+    WorksheetWriter(OutputStream out) {
+        _stream = out;
+        _out = new XmlWriter(out);
+    }
+
+    /**
+     * Writes a worksheet
+     *
+     * @param worksheet the worksheet bean, whose rows are ignored
+     * @param rows the rows of the sheet, in ascending order of their numbers
+     * @param packedRows the rows which are still packed, <code>null</code> if there are none
+     */
+    void write(XmlObject worksheet, Iterable<XSSFRow> rows, PackedSheetData packedRows) throws IOException {
+        XmlCursor cursor = worksheet.newCursor();
+        try {
+            cursor.getAllNamespaces(_scope);
+            _scope.remove("xml");
+            _scope.put("", MAIN_NS);
+            _scope.put("r", REL_NS);
+            for (Map.Entry<String, String> e : _scope.entrySet()) {
+                _prefixes.put(e.getValue(), e.getKey());
+            }
+            _prefixes.put(MAIN_NS, "");
+            _prefixes.put(REL_NS, "r");
+
+            _out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+            _out.write("<worksheet");
+            for (Map.Entry<String, String> e : _scope.entrySet()) {
+                writeDeclaration(e.getKey(), e.getValue());
+            }
+            clearLocalDeclarations();
+            if (cursor.toFirstAttribute()) {
+                do {
+                    writeAttribute(cursor);
+                } while (cursor.toNextAttribute());
+                cursor.toParent();
+            }
+            _out.write('>');
+
+            XmlOptions options = new XmlOptions(POIXMLDocumentPart.DEFAULT_XML_OPTIONS);
+            options.setSaveNoXmlDecl();
+            options.setSaveImplicitNamespaces(new HashMap<String, String>(_scope));
+            // the comments and processing instructions between the elements are kept, a new
+            //  worksheet bean is a fragment whose content ends with ENDDOC
+            for (TokenType token = cursor.toFirstContentToken(); !token.isEnd() && !token.isEnddoc();
+                    token = cursor.toNextToken()) {
+                if (token.isStart()) {
+                    QName name = cursor.getName();
+                    if ("sheetData".equals(name.getLocalPart()) && MAIN_NS.equals(name.getNamespaceURI())) {
+                        writeSheetData(rows, packedRows);
+                    } else {
+                        _out.flush();
+                        cursor.getObject().save(_stream, options);
+                    }
+                    cursor.toEndToken();
+                } else if (token.isComment() || token.isProcinst()) {
+                    writeCommentOrProcinst(cursor);
+                } else if (token.isText()) {
+                    _out.writeEscaped(cursor.getChars(), false);
+                }
+            }
+            _out.write("</worksheet>");
+            _out.flush();
+        } finally {
+            cursor.dispose();
+        }
+    }
+
+    private void writeSheetData(Iterable<XSSFRow> rows, PackedSheetData packedRows) {
+        _out.write("<sheetData");
+        if (packedRows != null) {
+            // the declarations of the packed rows, which are in scope for all of the rows
+            for (Map.Entry<String, String> e : packedRows.getPrefixes().entrySet()) {
+                String uri = e.getKey();
+                String prefix = e.getValue();
+                if (!uri.equals(_scope.get(prefix))) {
+                    writeDeclaration(prefix, uri);
+                    String hidden = _scope.put(prefix, uri);
+                    if (hidden != null && prefix.equals(_prefixes.get(hidden))) {
+                        _prefixes.remove(hidden);
+                    }
+                    _prefixes.put(uri, prefix);
+                }
+            }
+        }
+        _out.write('>');
+
+        int nextRow = 0;
+        for (XSSFRow row : rows) {
+            int rownum = row.getRowNum();
+            if (packedRows != null) {
+                packedRows.writeRows(_out, nextRow, rownum - 1);
+            }
+            XmlCursor cursor = row.getCTRow().newCursor();
+            try {
+                writeElement(cursor);
+            } finally {
+                cursor.dispose();
+            }
+            nextRow = rownum + 1;
+        }
+        if (packedRows != null) {
+            packedRows.writeRows(_out, nextRow, Integer.MAX_VALUE);
+        }
+        _out.write("</sheetData>");
+    }
+
+    /**
+     * Writes the element at the cursor with all of its content
+     */
+    private void writeElement(XmlCursor cursor) {
+        int depth = 0;
+        boolean inStartTag = false;
+        for (TokenType token = cursor.currentTokenType(); ; token = cursor.toNextToken()) {
+            if (token.isStart()) {
+                if (inStartTag) {
+                    _out.write('>');
+                }
+                clearLocalDeclarations();
+                String name = getName(cursor.getName(), false);
+                _out.write('<');
+                _out.write(name);
+                _names.add(name);
+                flushLocalDeclarations();
+                inStartTag = true;
+                depth++;
+            } else if (token.isAttr()) {
+                writeAttribute(cursor);
+            } else if (token.isText()) {
+                if (inStartTag) {
+                    _out.write('>');
+                    inStartTag = false;
+                }
+                _out.writeEscaped(cursor.getChars(), false);
+            } else if (token.isComment() || token.isProcinst()) {
+                if (inStartTag) {
+                    _out.write('>');
+                    inStartTag = false;
+                }
+                writeCommentOrProcinst(cursor);
+            } else if (token.isEnd()) {
+                String name = _names.remove(_names.size() - 1);
+                if (inStartTag) {
+                    _out.write("/>");
+                    inStartTag = false;
+                } else {
+                    _out.write("</");
+                    _out.write(name);
+                    _out.write('>');
+                }
+                if (--depth == 0) {
+                    return;
+                }
+            }
+            // the declarations are written as needed
+        }
+    }
+
+    /**
+     * Writes the comment or the processing instruction at the cursor
+     */
+    private void writeCommentOrProcinst(XmlCursor cursor) {
+        if (cursor.currentTokenType().isComment()) {
+            _out.write("<!--");
+            _out.write(cursor.getTextValue());
+            _out.write("-->");
+        } else {
+            _out.write("<?");
+            _out.write(cursor.getName().getLocalPart());
+            _out.write(' ');
+            _out.write(cursor.getTextValue());
+            _out.write("?>");
+        }
+    }
+
+    private void writeAttribute(XmlCursor cursor) {
+        String name = getName(cursor.getName(), true);
+        flushLocalDeclarations();
+        _out.write(' ');
+        _out.write(name);
+        _out.write("=\"");
+        _out.writeEscaped(cursor.getTextValue(), true);
+        _out.write('"');
+    }
+
+    private void writeDeclaration(String prefix, String uri) {
+        _out.write(prefix.length() == 0 ? " xmlns" : " xmlns:" + prefix);
+        _out.write("=\"");
+        _out.writeEscaped(uri, true);
+        _out.write('"');
+    }
+
+    private void clearLocalDeclarations() {
+        _localDeclarations.clear();
+        _written = 0;
+    }
+
+    /**
+     * Writes the declarations that {@link #getName(QName, boolean)} has added
+     */
+    private void flushLocalDeclarations() {
+        for (; _written < _localDeclarations.size(); _written += 2) {
+            writeDeclaration(_localDeclarations.get(_written), _localDeclarations.get(_written + 1));
+        }
+    }
+
+    /**
+     * @return the qualified name to write, a namespace which is not in scope is added
+     *  to the declarations of the current element
+     */
+    private String getName(QName qname, boolean attribute) {
+        String uri = qname.getNamespaceURI();
+        String localName = qname.getLocalPart();
+        if (uri.length() == 0) {
+            return localName;
+        }
+        if (XML_NS.equals(uri)) {
+            return "xml:" + localName;
+        }
+        String prefix = _prefixes.get(uri);
+        if (prefix != null && !(attribute && prefix.length() == 0)) {
+            return prefix.length() == 0 ? localName : prefix + ":" + localName;
+        }
+        for (int i = 0; i < _localDeclarations.size(); i += 2) {
+            if (uri.equals(_localDeclarations.get(i + 1))) {
+                return _localDeclarations.get(i) + ":" + localName;
+            }
+        }
+        prefix = qname.getPrefix();
+        for (int i = 1; prefix.length() == 0 || prefix.equals("xml") || _scope.containsKey(prefix)
+                || _localDeclarations.contains(prefix); i++) {
+            prefix = "ns" + i;
+        }
+        _localDeclarations.add(prefix);
+        _localDeclarations.add(uri);
+        return prefix + ":" + localName;
+    }
+}
@@ -93,6 +93,13 @@ public final class XSSFCell implements Cell {
      */
     private StylesTable _stylesSource;
 
+    /**
+     * The value of the cell as last read: the parsed <code>Double</code> of a numeric or formula cell,
+     * or the <code>Integer</code> index of a shared string.  <code>null</code> until the value is read,
+     * and reset whenever the value or the type of the cell is changed.
+     */
+    private Object _cachedValue;
+
     /**
      * Construct a XSSFCell.
      *
@@ -173,6 +180,7 @@ public final class XSSFCell implements Cell {
      *        will change the cell to a boolean cell and set its value.
      */
     public void setCellValue(boolean value) {
+        _cachedValue = null;
         _cell.setT(STCellType.B);
         _cell.setV(value ? TRUE_AS_STRING : FALSE_AS_STRING);
     }
@@ -195,9 +203,14 @@ public final class XSSFCell implements Cell {
                 return 0.0;
             case CELL_TYPE_FORMULA:
             case CELL_TYPE_NUMERIC:
+                if(_cachedValue instanceof Double) {
+                   return ((Double)_cachedValue).doubleValue();
+                }
                 if(_cell.isSetV()) {
                    try {
-                      return Double.parseDouble(_cell.getV());
+                      double value = Double.parseDouble(_cell.getV());
+                      _cachedValue = Double.valueOf(value);
+                      return value;
                    } catch(NumberFormatException e) {
                       throw typeMismatch(CELL_TYPE_NUMERIC, CELL_TYPE_STRING, false);
                    }
@@ -218,6 +231,7 @@ public final class XSSFCell implements Cell {
      *        will change the cell to a numeric cell and set its value.
      */
     public void setCellValue(double value) {
+        _cachedValue = null;
         if(Double.isInfinite(value)) {
             // Excel does not support positive/negative infinities,
             // rather, it gives a #DIV/0! error in these cases.
@@ -243,6 +257,16 @@ public final class XSSFCell implements Cell {
      * @return the value of the cell as a string
      */
     public String getStringCellValue() {
+        if (_cachedValue instanceof Integer) {
+            int idx = ((Integer)_cachedValue).intValue();
+            return XSSFRichTextString.utfDecode(_sharedStringSource.getStringAt(idx));
+        }
+        if (_cell.getT() == STCellType.S && _cell.isSetV() && getCellType() == CELL_TYPE_STRING) {
+            // the text of shared strings does not need a rich text string
+            int idx = Integer.parseInt(_cell.getV());
+            _cachedValue = Integer.valueOf(idx);
+            return XSSFRichTextString.utfDecode(_sharedStringSource.getStringAt(idx));
+        }
         XSSFRichTextString str = getRichStringCellValue();
         return str == null ? null : str.getString();
     }
@@ -324,6 +348,7 @@ public final class XSSFCell implements Cell {
      * If value is null then we will change the cell to a Blank cell.
      */
     public void setCellValue(RichTextString str) {
+        _cachedValue = null;
         if(str == null || str.getString() == null){
             setCellType(Cell.CELL_TYPE_BLANK);
             return;
@@ -427,6 +452,7 @@ public final class XSSFCell implements Cell {
     }
 
     private void setFormula(String formula, int formulaType) {
+        _cachedValue = null;
         XSSFWorkbook wb = _row.getSheet().getWorkbook();
         if (formula == null) {
             wb.onDeleteFormula(this);
@@ -677,6 +703,7 @@ public final class XSSFCell implements Cell {
      *        cell and set its value.
      */
     public void setCellErrorValue(FormulaError error) {
+        _cachedValue = null;
         _cell.setT(STCellType.E);
         _cell.setV(error.getString());
     }
@@ -693,6 +720,7 @@ public final class XSSFCell implements Cell {
      * This method erases all the data previously associated with this cell.
      */
     private void setBlank(){
+        _cachedValue = null;
         CTCell blank = CTCell.Factory.newInstance();
         blank.setR(_cell.getR());
         if(_cell.isSetS()) blank.setS(_cell.getS());
@@ -723,6 +751,7 @@ public final class XSSFCell implements Cell {
      * @see #CELL_TYPE_ERROR
      */
     public void setCellType(int cellType) {
+        _cachedValue = null;
         int prevType = getCellType();
        
         if(isPartOfArrayFormulaGroup()){
@@ -928,6 +957,8 @@ public final class XSSFCell implements Cell {
      */
     @Internal
     public CTCell getCTCell(){
+        // the caller may change the value in the bean
+        _cachedValue = null;
         return _cell;
     }
 
@@ -951,8 +982,7 @@ public final class XSSFCell implements Cell {
                 return TRUE_AS_STRING.equals(_cell.getV());
             case CELL_TYPE_STRING:
                 int sstIndex = Integer.parseInt(_cell.getV());
-                XSSFRichTextString rt = new XSSFRichTextString(_sharedStringSource.getEntryAt(sstIndex));
-                String text = rt.getString();
+                String text = XSSFRichTextString.utfDecode(_sharedStringSource.getStringAt(sstIndex));
                 return Boolean.parseBoolean(text);
             case CELL_TYPE_NUMERIC:
                 return Double.parseDouble(_cell.getV()) != 0;
@@ -974,8 +1004,7 @@ public final class XSSFCell implements Cell {
                 return TRUE_AS_STRING.equals(_cell.getV()) ? "TRUE" : "FALSE";
             case CELL_TYPE_STRING:
                 int sstIndex = Integer.parseInt(_cell.getV());
-                XSSFRichTextString rt = new XSSFRichTextString(_sharedStringSource.getEntryAt(sstIndex));
-                return rt.getString();
+                return XSSFRichTextString.utfDecode(_sharedStringSource.getStringAt(sstIndex));
             case CELL_TYPE_NUMERIC:
             case CELL_TYPE_ERROR:
                 return _cell.getV();
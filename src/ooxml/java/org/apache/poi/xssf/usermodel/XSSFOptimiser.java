@@ -0,0 +1,67 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+package org.apache.poi.xssf.usermodel;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCol;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCols;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRow;
+
+/**
+ * The XSSF counterpart of {@link org.apache.poi.hssf.usermodel.HSSFOptimiser}.
+ * Files written by some report generators contain the same cell style
+ *  over and over, and this class merges those.
+ * It is better not to create the duplicates in the first place,
+ *  see {@link XSSFWorkbook#internCellStyle(XSSFCellStyle)}.
+ */
+public class XSSFOptimiser {
+	/**
+	 * Goes through the Workbook, optimising the cell styles
+	 *  by removing duplicate ones, and pointing the cells,
+	 *  rows and columns that used them at the remaining ones.
+	 * @param workbook The workbook in which to optimise the cell styles
+	 */
+	public static void optimiseCellStyles(XSSFWorkbook workbook) {
+		int[] newPos = workbook.getStylesSource().mergeDuplicateCellXfs();
+
+		for(int sheetNum=0; sheetNum<workbook.getNumberOfSheets(); sheetNum++) {
+			XSSFSheet s = workbook.getSheetAt(sheetNum);
+			for(Row r : s) {
+				XSSFRow row = (XSSFRow)r;
+				CTRow ctRow = row.getCTRow();
+				if(ctRow.isSetS()) {
+					ctRow.setS(newPos[(int)ctRow.getS()]);
+				}
+				for(Cell c : row) {
+					CTCell ctCell = ((XSSFCell)c).getCTCell();
+					if(ctCell.isSetS()) {
+						ctCell.setS(newPos[(int)ctCell.getS()]);
+					}
+				}
+			}
+			for(CTCols cols : s.getCTWorksheet().getColsList()) {
+				for(CTCol col : cols.getColList()) {
+					if(col.isSetStyle()) {
+						col.setStyle(newPos[(int)col.getStyle()]);
+					}
+				}
+			}
+		}
+	}
+}
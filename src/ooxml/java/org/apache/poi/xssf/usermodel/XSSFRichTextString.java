@@ -475,7 +475,7 @@ public class XSSFRichTextString implements RichTextString {
      * @return  the decoded string
      */
     static String utfDecode(String value){
-        if(value == null) return null;
+        if(value == null || value.indexOf("_x") == -1) return value;
         
         StringBuffer buf = new StringBuffer();
         Matcher m = utfPtrn.matcher(value);
@@ -17,8 +17,8 @@
 
 package org.apache.poi.xssf.usermodel;
 
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.TreeMap;
 
 import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.Cell;
@@ -28,7 +28,6 @@ import org.apache.poi.ss.util.CellReference;
 import org.apache.poi.util.Internal;
 import org.apache.poi.util.POILogFactory;
 import org.apache.poi.util.POILogger;
-import org.apache.poi.xssf.model.CalculationChain;
 import org.apache.poi.xssf.model.StylesTable;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRow;
@@ -46,9 +45,9 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
 
     /**
      * Cells of this row keyed by their column indexes.
-     * The TreeMap ensures that the cells are ordered by columnIndex in the ascending order.
+     * The map keeps the cells ordered by columnIndex in the ascending order.
      */
-    private final TreeMap<Integer, XSSFCell> _cells;
+    private final SortedIndexMap<XSSFCell> _cells;
 
     /**
      * the parent sheet
@@ -65,8 +64,9 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
     protected XSSFRow(CTRow row, XSSFSheet sheet) {
         _row = row;
         _sheet = sheet;
-        _cells = new TreeMap<Integer, XSSFCell>();
-        for (CTCell c : row.getCArray()) {
+        CTCell[] cArray = row.getCArray();
+        _cells = new SortedIndexMap<XSSFCell>(cArray.length);
+        for (CTCell c : cArray) {
             XSSFCell cell = new XSSFCell(this, c);
             _cells.put(cell.getColumnIndex(), cell);
             sheet.onReadCell(cell);
@@ -94,7 +94,7 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
      * @return an iterator over cells in this row.
      */
     public Iterator<Cell> cellIterator() {
-        return (Iterator<Cell>)(Iterator<? extends Cell>)_cells.values().iterator();
+        return (Iterator<Cell>)(Iterator<? extends Cell>)_cells.iterator();
     }
 
     /**
@@ -202,7 +202,7 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
     public XSSFCell getCell(int cellnum, MissingCellPolicy policy) {
     	if(cellnum < 0) throw new IllegalArgumentException("Cell index must be >= 0");
 
-        XSSFCell cell = (XSSFCell)_cells.get(cellnum);
+        XSSFCell cell = _cells.get(cellnum);
     	if(policy == RETURN_NULL_AND_BLANK) {
     		return cell;
     	}
@@ -222,6 +222,24 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
     	throw new IllegalArgumentException("Illegal policy " + policy + " (" + policy.id + ")");
     }
 
+    /**
+     * Fills <tt>cells</tt> with the cells of this row from column <tt>firstCol</tt> on,
+     *  in one pass over the cells in column order
+     *
+     * @param cells receives the cells, <code>null</code> for the missing ones
+     */
+    void getCells(int firstCol, XSSFCell[] cells) {
+        Arrays.fill(cells, null);
+        int lastCol = firstCol + cells.length - 1;
+        for (int pos = _cells.headSize(firstCol); pos < _cells.size(); pos++) {
+            int col = _cells.keyAt(pos);
+            if (col > lastCol) {
+                break;
+            }
+            cells[col - firstCol] = _cells.valueAt(pos);
+        }
+    }
+
     /**
      * Get the number of the first cell contained in this row.
      *
@@ -445,7 +463,7 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
         if(_row.sizeOfCArray() != _cells.size()) isOrdered = false;
         else {
             int i = 0;
-            for (XSSFCell cell : _cells.values()) {
+            for (XSSFCell cell : _cells) {
                 CTCell c1 = cell.getCTCell();
                 CTCell c2 = _row.getCArray(i++); 
 
@@ -461,7 +479,7 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
         if(!isOrdered){
             CTCell[] cArray = new CTCell[_cells.size()];
             int i = 0;
-            for (XSSFCell c : _cells.values()) {
+            for (XSSFCell c : _cells) {
                 cArray[i++] = c.getCTCell();
             }
             _row.setCArray(cArray);
@@ -477,14 +495,14 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
     }
 
     /**
-     * update cell references when shifting rows
+     * update cell references when shifting rows.
+     * The references in the calculation chain are removed by the sheet,
+     * for all the shifted rows at once.
      *
      * @param n the number of rows to move
      */
     protected void shift(int n) {
         int rownum = getRowNum() + n;
-        CalculationChain calcChain = _sheet.getWorkbook().getCalculationChain();
-        int sheetId = (int)_sheet.sheet.getSheetId();
         String msg = "Row[rownum="+getRowNum()+"] contains cell(s) included in a multi-cell array formula. " +
                 "You cannot change part of an array.";
         for(Cell c : this){
@@ -493,9 +511,6 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
                 cell.notifyArrayFormulaChanging(msg);
             }
 
-            //remove the reference in the calculation chain
-            if(calcChain != null) calcChain.removeItem(sheetId, cell.getReference());
-
             CTCell ctCell = cell.getCTCell();
             String r = new CellReference(rownum, cell.getColumnIndex()).formatAsString();
             ctCell.setR(r);
@@ -22,13 +22,16 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
-import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
 
 import org.apache.poi.POIXMLDocumentPart;
 import org.apache.poi.POIXMLException;
@@ -51,12 +54,12 @@ import org.apache.poi.util.HexDump;
 import org.apache.poi.util.Internal;
 import org.apache.poi.util.POILogFactory;
 import org.apache.poi.util.POILogger;
+import org.apache.poi.xssf.model.CalculationChain;
 import org.apache.poi.xssf.model.CommentsTable;
 import org.apache.poi.xssf.usermodel.helpers.ColumnHelper;
 import org.apache.poi.xssf.usermodel.helpers.XSSFRowShifter;
+import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlException;
-import org.apache.xmlbeans.XmlOptions;
-import org.openxmlformats.schemas.officeDocument.x2006.relationships.STRelationshipId;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.*;
 
 /**
@@ -68,14 +71,24 @@ import org.openxmlformats.schemas.spreadsheetml.x2006.main.*;
  * contain text, numbers, dates, and formulas. Cells can also be formatted.
  * </p>
  */
-public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
+public class XSSFSheet extends POIXMLDocumentPart implements Sheet, CellBlockAccess {
     private static final POILogger logger = POILogFactory.getLogger(XSSFSheet.class);
 
+    /**
+     * the maximum number of packed rows to parse in one go
+     */
+    private static final int UNPACK_BATCH_SIZE = 1000;
+
     //TODO make the two variable below private!
     protected CTSheet sheet;
     protected CTWorksheet worksheet;
 
-    private TreeMap<Integer, XSSFRow> _rows;
+    private SortedIndexMap<XSSFRow> _rows;
+    /**
+     * rows read from the package part which are not in {@link #_rows} yet,
+     * <code>null</code> if there are none
+     */
+    private PackedSheetData _packedRows;
     private List<XSSFHyperlink> hyperlinks;
     private ColumnHelper columnHelper;
     private CommentsTable sheetComments;
@@ -87,6 +100,12 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
     private TreeMap<String,XSSFTable> tables;
     private List<CellRangeAddress> arrayFormulas;
     private XSSFDataValidationHelper dataValidationHelper;    
+    /**
+     * <code>true</code> while the package part of a sheet which is loaded lazily has not
+     * been parsed yet
+     * @see XSSFWorkbook#XSSFWorkbook(org.apache.poi.openxml4j.opc.OPCPackage, boolean)
+     */
+    private boolean _documentReadPending;
 
     /**
      * Creates new XSSFSheet   - called by XSSFWorkbook to create a sheet from scratch.
@@ -132,14 +151,51 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
         }
     }
 
+    /**
+     * Defers {@link #onDocumentRead()} until {@link #ensureDocumentRead()} is called.
+     */
+    void deferDocumentRead() {
+        _documentReadPending = true;
+    }
+
+    /**
+     * Parses the package part of this sheet if that has been deferred.
+     */
+    void ensureDocumentRead() {
+        if (_documentReadPending) {
+            _documentReadPending = false;
+            onDocumentRead();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the package part of this sheet has not been parsed yet
+     */
+    boolean isDocumentReadPending() {
+        return _documentReadPending;
+    }
+
     protected void read(InputStream is) throws IOException {
+        // the rows are kept packed until they are needed, XMLBeans only parses the rest
+        PackedSheetData packedRows = new PackedSheetData();
         try {
-            worksheet = WorksheetDocument.Factory.parse(is).getWorksheet();
+            worksheet = WorksheetDocument.Factory.parse(packedRows.read(is)).getWorksheet();
         } catch (XmlException e){
             throw new POIXMLException(e);
+        } catch (XMLStreamException e){
+            throw new POIXMLException(e);
         }
 
         initRows(worksheet);
+        _packedRows = packedRows.isEmpty() ? null : packedRows;
+        if (!packedRows.isSorted()) {
+            unpackAllRows();
+        } else {
+            // the master cells of shared and array formulas are needed by the other cells
+            for (int rownum : packedRows.getFormulaRows()) {
+                unpackRows(rownum, rownum);
+            }
+        }
         columnHelper = new ColumnHelper(worksheet);
 
         // Look for bits we're interested in
@@ -170,7 +226,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
 
     @SuppressWarnings("deprecation") //YK: getXYZArray() array accessors are deprecated in xmlbeans with JDK 1.5 support
     private void initRows(CTWorksheet worksheet) {
-        _rows = new TreeMap<Integer, XSSFRow>();
+        _rows = new SortedIndexMap<XSSFRow>();
         tables = new TreeMap<String, XSSFTable>();
         sharedFormulas = new HashMap<Integer, CTCellFormula>();
         arrayFormulas = new ArrayList<CellRangeAddress>();
@@ -178,6 +234,78 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
             XSSFRow r = new XSSFRow(row, this);
             _rows.put(r.getRowNum(), r);
         }
+        _packedRows = null;
+    }
+
+    /**
+     * Turns the packed rows in the given range into {@link XSSFRow} objects
+     *
+     * @param firstRow the 0-based index of the first row of the range
+     * @param lastRow the 0-based index of the last row of the range (inclusive)
+     */
+    private void unpackRows(int firstRow, int lastRow) {
+        while (_packedRows != null) {
+            // a limited number of rows at a time, so that the parsed and the copied rows
+            // are not all in memory at once
+            CTSheetData packed = _packedRows.unpack(firstRow, lastRow, UNPACK_BATCH_SIZE);
+            if (_packedRows.isEmpty()) {
+                _packedRows = null;
+            }
+            if (packed == null) {
+                return;
+            }
+            insertRows(packed);
+        }
+    }
+
+    /**
+     * Copies unpacked rows to the sheetData of the worksheet and creates their {@link XSSFRow} objects
+     */
+    @SuppressWarnings("deprecation") //YK: getXYZArray() array accessors are deprecated in xmlbeans with JDK 1.5 support
+    private void insertRows(CTSheetData packed) {
+        // copying with cursors is much faster than CTRow.set()
+        XmlCursor dest = null;
+        XSSFRow destRow = null;
+        for (CTRow row : packed.getRowArray()) {
+            int rownum = (int) row.getR() - 1;
+            int next = _rows.headSize(rownum);
+            XSSFRow nextRow = next < _rows.size() ? _rows.valueAt(next) : null;
+            if (dest == null || nextRow != destRow) {
+                if (dest != null) {
+                    dest.dispose();
+                }
+                if (nextRow == null) {
+                    dest = worksheet.getSheetData().newCursor();
+                    dest.toEndToken();
+                } else {
+                    dest = nextRow.getCTRow().newCursor();
+                }
+                destRow = nextRow;
+            }
+            XmlCursor src = row.newCursor();
+            src.copyXml(dest);
+            src.dispose();
+            dest.push();
+            dest.toPrevSibling();
+            CTRow ctRow = (CTRow) dest.getObject();
+            dest.pop();
+            _rows.put(rownum, new XSSFRow(ctRow, this));
+        }
+        if (dest != null) {
+            dest.dispose();
+        }
+    }
+
+    private void unpackAllRows() {
+        if (_packedRows != null && !_packedRows.isSorted()) {
+            // the rows are kept in the order of the file
+            CTSheetData packed = _packedRows.unpackAll();
+            _packedRows = null;
+            worksheet.getSheetData().set(packed);
+            initRows(worksheet);
+        } else {
+            unpackRows(0, Integer.MAX_VALUE);
+        }
     }
 
     /**
@@ -243,6 +371,19 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
      */
     @Internal
     public CTWorksheet getCTWorksheet() {
+        unpackAllRows();
+        return this.worksheet;
+    }
+
+    /**
+     * Provide access to the CTWorksheet bean holding this sheet's data, for the parts of it
+     * other than the rows.  Unlike {@link #getCTWorksheet()} this does not turn the rows read
+     * from the file into beans, so its sheetData only holds the rows accessed so far.
+     *
+     * @return the CTWorksheet bean holding this sheet's data
+     */
+    @Internal
+    public CTWorksheet getCTWorksheetWithoutRows() {
         return this.worksheet;
     }
 
@@ -518,6 +659,13 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
      * @see #removeRow(org.apache.poi.ss.usermodel.Row)
      */
     public XSSFRow createRow(int rownum) {
+        if (_packedRows != null) {
+            // the new row replaces the existing one
+            _packedRows.remove(rownum);
+            if (_packedRows.isEmpty()) {
+                _packedRows = null;
+            }
+        }
         CTRow ctRow;
         XSSFRow prev = _rows.get(rownum);
         if(prev != null){
@@ -530,7 +678,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
         	} else {
         		// get number of rows where row index < rownum
         		// --> this tells us where our row should go
-        		int idx = _rows.headMap(rownum).size();
+        		int idx = _rows.headSize(rownum);
         		ctRow = worksheet.getSheetData().insertNewRow(idx);
         	}
         }
@@ -747,7 +895,11 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
      * @return the number of the first logical row on the sheet, zero based
      */
     public int getFirstRowNum() {
-        return _rows.size() == 0 ? 0 : _rows.firstKey();
+        int firstRow = _rows.size() == 0 ? 0 : _rows.firstKey();
+        if (_packedRows != null && (_rows.size() == 0 || _packedRows.getFirstRowNum() < firstRow)) {
+            firstRow = _packedRows.getFirstRowNum();
+        }
+        return firstRow;
     }
 
     /**
@@ -860,7 +1012,161 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
     }
 
     public int getLastRowNum() {
-        return _rows.size() == 0 ? 0 : _rows.lastKey();
+        int lastRow = _rows.size() == 0 ? 0 : _rows.lastKey();
+        if (_packedRows != null && _packedRows.getLastRowNum() > lastRow) {
+            lastRow = _packedRows.getLastRowNum();
+        }
+        return lastRow;
+    }
+
+    /**
+     * Reads the numeric values of a block of cells in one go, see
+     *  {@link CellBlockAccess#readNumericBlock(int, int, int, int, double[])}.  The existing cells of
+     *  each row are walked in column order.  The values of the packed rows are read without
+     *  unpacking them, unless a cell needs the checks of {@link XSSFCell}.
+     */
+    public void readNumericBlock(int firstRow, int lastRow, int firstCol, int lastCol, double[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL2007, firstRow, lastRow, firstCol, lastCol, values.length);
+        XSSFCell[] cells = new XSSFCell[lastCol - firstCol + 1];
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            if (isPackedBlockRow(rowIx)
+                    && _packedRows.readNumbers(rowIx, firstCol, values, i, cells.length)) {
+                i += cells.length;
+                continue;
+            }
+            unpackRows(rowIx, rowIx);
+            getBlockCells(rowIx, firstCol, cells);
+            for (XSSFCell cell : cells) {
+                values[i++] = cell == null ? 0.0 : cell.getNumericCellValue();
+            }
+        }
+    }
+
+    public void readStringBlock(int firstRow, int lastRow, int firstCol, int lastCol, String[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL2007, firstRow, lastRow, firstCol, lastCol, values.length);
+        XSSFCell[] cells = new XSSFCell[lastCol - firstCol + 1];
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            if (isPackedBlockRow(rowIx) && _packedRows.readStrings(rowIx, firstCol, values, i, cells.length,
+                    getWorkbook().getSharedStringSource())) {
+                i += cells.length;
+                continue;
+            }
+            unpackRows(rowIx, rowIx);
+            getBlockCells(rowIx, firstCol, cells);
+            for (XSSFCell cell : cells) {
+                values[i++] = cell == null ? "" : cell.getStringCellValue();
+            }
+        }
+    }
+
+    public void readBooleanBlock(int firstRow, int lastRow, int firstCol, int lastCol, boolean[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL2007, firstRow, lastRow, firstCol, lastCol, values.length);
+        XSSFCell[] cells = new XSSFCell[lastCol - firstCol + 1];
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            if (isPackedBlockRow(rowIx)
+                    && _packedRows.readBooleans(rowIx, firstCol, values, i, cells.length)) {
+                i += cells.length;
+                continue;
+            }
+            unpackRows(rowIx, rowIx);
+            getBlockCells(rowIx, firstCol, cells);
+            for (XSSFCell cell : cells) {
+                values[i++] = cell != null && cell.getBooleanCellValue();
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the values of a row may be read from the packed rows, which
+     *  is not the case for the rows with cells of array formulas
+     */
+    private boolean isPackedBlockRow(int rowIndex) {
+        if (_packedRows == null) {
+            return false;
+        }
+        for (CellRangeAddress range : arrayFormulas) {
+            if (rowIndex >= range.getFirstRow() && rowIndex <= range.getLastRow()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the values of a block of cells in one go, see
+     *  {@link CellBlockAccess#writeNumericBlock(int, int, int, int, double[])}.  The existing cells of
+     *  each row are walked in column order, and the missing cells are created.
+     */
+    public void writeNumericBlock(int firstRow, int lastRow, int firstCol, int lastCol, double[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL2007, firstRow, lastRow, firstCol, lastCol, values.length);
+        unpackRows(firstRow, lastRow);
+        XSSFCell[] cells = new XSSFCell[lastCol - firstCol + 1];
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            createBlockCells(rowIx, firstCol, cells);
+            for (XSSFCell cell : cells) {
+                cell.setCellValue(values[i++]);
+            }
+        }
+    }
+
+    public void writeStringBlock(int firstRow, int lastRow, int firstCol, int lastCol, String[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL2007, firstRow, lastRow, firstCol, lastCol, values.length);
+        unpackRows(firstRow, lastRow);
+        XSSFCell[] cells = new XSSFCell[lastCol - firstCol + 1];
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            createBlockCells(rowIx, firstCol, cells);
+            for (XSSFCell cell : cells) {
+                cell.setCellValue(values[i++]);
+            }
+        }
+    }
+
+    public void writeBooleanBlock(int firstRow, int lastRow, int firstCol, int lastCol, boolean[] values) {
+        SheetUtil.validateBlock(SpreadsheetVersion.EXCEL2007, firstRow, lastRow, firstCol, lastCol, values.length);
+        unpackRows(firstRow, lastRow);
+        XSSFCell[] cells = new XSSFCell[lastCol - firstCol + 1];
+        int i = 0;
+        for (int rowIx = firstRow; rowIx <= lastRow; rowIx++) {
+            createBlockCells(rowIx, firstCol, cells);
+            for (XSSFCell cell : cells) {
+                cell.setCellValue(values[i++]);
+            }
+        }
+    }
+
+    /**
+     * Fills <tt>cells</tt> with the cells of a row from column <tt>firstCol</tt> on,
+     *  <code>null</code> for the missing cells and for all cells of a missing row
+     */
+    private void getBlockCells(int rowIndex, int firstCol, XSSFCell[] cells) {
+        XSSFRow row = _rows.get(rowIndex);
+        if (row == null) {
+            Arrays.fill(cells, null);
+        } else {
+            row.getCells(firstCol, cells);
+        }
+    }
+
+    /**
+     * Fills <tt>cells</tt> with the cells of a row from column <tt>firstCol</tt> on,
+     *  creating the row and the cells which are missing
+     */
+    private void createBlockCells(int rowIndex, int firstCol, XSSFCell[] cells) {
+        XSSFRow row = _rows.get(rowIndex);
+        if (row == null) {
+            row = createRow(rowIndex);
+        }
+        row.getCells(firstCol, cells);
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] == null) {
+                cells[i] = row.createCell(firstCol + i);
+            }
+        }
     }
 
     public short getLeftCol() {
@@ -991,7 +1297,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
      * @return the number of phsyically defined rows
      */
     public int getPhysicalNumberOfRows() {
-        return _rows.size();
+        return _rows.size() + (_packedRows == null ? 0 : _packedRows.size());
     }
 
     /**
@@ -1053,6 +1359,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
      * @return <code>XSSFRow</code> representing the rownumber or <code>null</code> if its not defined on the sheet
      */
     public XSSFRow getRow(int rownum) {
+        unpackRows(rownum, rownum);
         return _rows.get(rownum);
     }
 
@@ -1234,8 +1541,9 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
     }
 
     private short getMaxOutlineLevelRows(){
+        unpackAllRows();
         short outlineLevel=0;
-        for(XSSFRow xrow : _rows.values()){
+        for(XSSFRow xrow : _rows){
             outlineLevel=xrow.getCTRow().getOutlineLevel()>outlineLevel? xrow.getCTRow().getOutlineLevel(): outlineLevel;
         }
         return outlineLevel;
@@ -1443,6 +1751,40 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
         }
     }
 
+    /**
+     * Removes a number of merged regions of cells (hence letting them free)
+     *
+     * @param indices A set of the regions to unmerge
+     */
+    @SuppressWarnings("deprecation") //YK: getXYZArray() array accessors are deprecated in xmlbeans with JDK 1.5 support
+    public void removeMergedRegions(Collection<Integer> indices) {
+        if (indices.isEmpty()) {
+            return;
+        }
+        CTMergeCells ctMergeCells = worksheet.getMergeCells();
+        CTMergeCell[] oldArray = ctMergeCells.getMergeCellArray();
+        boolean[] toRemove = new boolean[oldArray.length];
+        int nRemoved = 0;
+        for (Integer index : indices) {
+            if (!toRemove[index]) {
+                toRemove[index] = true;
+                nRemoved++;
+            }
+        }
+        CTMergeCell[] mergeCellsArray = new CTMergeCell[oldArray.length - nRemoved];
+        int pos = 0;
+        for (int i = 0 ; i < oldArray.length ; i++) {
+            if (!toRemove[i]) {
+                mergeCellsArray[pos++] = oldArray[i];
+            }
+        }
+        if(mergeCellsArray.length > 0){
+            ctMergeCells.setMergeCellArray(mergeCellsArray);
+        } else{
+            worksheet.unsetMergeCells();
+        }
+    }
+
     /**
      * Remove a row from this sheet.  All cells contained in the row are removed as well
      *
@@ -1458,8 +1800,8 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
 
         for(XSSFCell cell : cellsToDelete) row.removeCell(cell);
 
-        int idx = _rows.headMap(row.getRowNum()).size();
-        _rows.remove(row.getRowNum());
+        int idx = _rows.headSize(row.getRowNum());
+        _rows.removeAt(idx);
         worksheet.getSheetData().removeRow(idx);
     }
 
@@ -1534,7 +1876,8 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
      * Call getRowNum() on each row if you care which one it is.
      */
     public Iterator<Row> rowIterator() {
-        return (Iterator<Row>)(Iterator<? extends Row>) _rows.values().iterator();
+        unpackAllRows();
+        return (Iterator<Row>)(Iterator<? extends Row>) _rows.iterator();
     }
 
     /**
@@ -1545,6 +1888,25 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
         return rowIterator();
     }
 
+    /**
+     * Iterates over the rows which may hold formulas, in row order.  The rows read from
+     * the file without any formula cells are skipped, and stay packed.
+     */
+    @Internal
+    public Iterator<XSSFRow> formulaRowIterator() {
+        while (_packedRows != null) {
+            CTSheetData packed = _packedRows.unpackFormulaRows(UNPACK_BATCH_SIZE);
+            if (_packedRows.isEmpty()) {
+                _packedRows = null;
+            }
+            if (packed == null) {
+                break;
+            }
+            insertRows(packed);
+        }
+        return _rows.iterator();
+    }
+
     /**
      * Flag indicating whether the sheet displays Automatic Page Breaks.
      *
@@ -2314,43 +2676,76 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
      * @param startRow the row to start shifting
      * @param endRow the row to end shifting
      * @param n the number of rows to shift
-     * @param copyRowHeight whether to copy the row height during the shift
+     * @param copyRowHeight whether to copy the row height during the shift, if not the shifted
+     *  rows get the default height.  The heights of the other rows are kept.
      * @param resetOriginalRowHeight whether to set the original row's height to the default
      */
     @SuppressWarnings("deprecation") //YK: getXYZArray() array accessors are deprecated in xmlbeans with JDK 1.5 support
     public void shiftRows(int startRow, int endRow, int n, boolean copyRowHeight, boolean resetOriginalRowHeight) {
-    	for (Iterator<Row> it = rowIterator() ; it.hasNext() ; ) {
-            XSSFRow row = (XSSFRow)it.next();
+        // only the shifted rows and the rows they overwrite are affected, the packed
+        //  rows between them keep their numbers and stay packed
+        int firstAffected = Math.min(startRow, startRow + n);
+        int lastAffected = Math.max(endRow, endRow + n);
+        unpackRows(startRow, endRow);
+        unpackRows(startRow + n, endRow + n);
+
+        CalculationChain calcChain = getWorkbook().getCalculationChain();
+        if (calcChain != null) {
+            int sheetId = (int)sheet.getSheetId();
+            calcChain.removeItems(sheetId, startRow, endRow);
+            calcChain.removeItems(sheetId, startRow + n, endRow + n);
+        }
+
+        // the affected rows are at the positions from..to-1 of _rows
+        int from = _rows.headSize(firstAffected);
+        int to = from;
+        // index of the current row in the worksheet.getSheetData row array
+        int idx = from;
+        List<XSSFRow> keptRows = new ArrayList<XSSFRow>();
+        List<XSSFRow> shiftedRows = new ArrayList<XSSFRow>();
+        for (; to < _rows.size() && _rows.keyAt(to) <= lastAffected; to++) {
+            XSSFRow row = _rows.valueAt(to);
             int rownum = row.getRowNum();
-            if(rownum < startRow) continue;
-
-            if (!copyRowHeight) {
-                row.setHeight((short)-1);
-            }
 
             if (removeRow(startRow, endRow, n, rownum)) {
-            	// remove row from worksheet.getSheetData row array
-            	int idx = _rows.headMap(row.getRowNum()).size();
+                // remove row from worksheet.getSheetData row array
                 worksheet.getSheetData().removeRow(idx);
-                // remove row from _rows
-                it.remove();
+                continue;
             }
-            else if (rownum >= startRow && rownum <= endRow) {
+            if (rownum >= startRow && rownum <= endRow) {
+                if (!copyRowHeight) {
+                    row.setHeight((short)-1);
+                }
                 row.shift(n);
+                shiftedRows.add(row);
+            } else {
+                keptRows.add(row);
             }
+            idx++;
+        }
 
-            if(sheetComments != null){
-                //TODO shift Note's anchor in the associated /xl/drawing/vmlDrawings#.vml
-                CTCommentList lst = sheetComments.getCTComments().getCommentList();
-                for (CTComment comment : lst.getCommentArray()) {
-                    CellReference ref = new CellReference(comment.getRef());
-                    if(ref.getRow() == rownum){
-                        ref = new CellReference(rownum + n, ref.getCol());
-                        comment.setRef(ref.formatAsString());
-                    }
-                }
+        // both lists are in row order, merged they replace the affected rows of _rows in one pass
+        List<XSSFRow> rows = new ArrayList<XSSFRow>(keptRows.size() + shiftedRows.size());
+        int[] rownums = new int[keptRows.size() + shiftedRows.size()];
+        int k = 0;
+        int s = 0;
+        while (k < keptRows.size() || s < shiftedRows.size()) {
+            XSSFRow row;
+            if (s == shiftedRows.size()
+                    || (k < keptRows.size() && keptRows.get(k).getRowNum() < shiftedRows.get(s).getRowNum())) {
+                row = keptRows.get(k++);
+            } else {
+                row = shiftedRows.get(s++);
             }
+            rownums[rows.size()] = row.getRowNum();
+            rows.add(row);
+        }
+        _rows.replaceRange(from, to, rownums, rows);
+
+        if(sheetComments != null){
+            shiftComments(startRow, endRow, n);
         }
+
         XSSFRowShifter rowShifter = new XSSFRowShifter(this);
 
         int sheetIndex = getWorkbook().getSheetIndex(this);
@@ -2360,13 +2755,38 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
         rowShifter.updateFormulas(shifter);
         rowShifter.shiftMerged(startRow, endRow, n);
         rowShifter.updateConditionalFormatting(shifter);
+        rowShifter.updateDataValidations(shifter);
+    }
 
-        //rebuild the _rows map
-        TreeMap<Integer, XSSFRow> map = new TreeMap<Integer, XSSFRow>();
-        for(XSSFRow r : _rows.values()) {
-            map.put(r.getRowNum(), r);
+    /**
+     * Moves the comments of the rows between startRow and endRow by n rows
+     */
+    @SuppressWarnings("deprecation") //YK: getXYZArray() array accessors are deprecated in xmlbeans with JDK 1.5 support
+    private void shiftComments(int startRow, int endRow, final int n) {
+        //TODO shift Note's anchor in the associated /xl/drawing/vmlDrawings#.vml
+        List<CTComment> shifted = new ArrayList<CTComment>();
+        final Map<CTComment, CellReference> refs = new HashMap<CTComment, CellReference>();
+        for (CTComment comment : sheetComments.getCTComments().getCommentList().getCommentArray()) {
+            CellReference ref = new CellReference(comment.getRef());
+            if (ref.getRow() >= startRow && ref.getRow() <= endRow) {
+                shifted.add(comment);
+                refs.put(comment, ref);
+            }
+        }
+        // move the comments furthest in the direction of the shift first,
+        //  so that no comment is moved onto one which is still to be moved
+        Collections.sort(shifted, new Comparator<CTComment>() {
+            public int compare(CTComment a, CTComment b) {
+                int diff = refs.get(a).getRow() - refs.get(b).getRow();
+                return n > 0 ? -diff : diff;
+            }
+        });
+        for (CTComment comment : shifted) {
+            CellReference ref = refs.get(comment);
+            String oldRef = comment.getRef();
+            comment.setRef(new CellReference(ref.getRow() + n, ref.getCol()).formatAsString());
+            sheetComments.referenceUpdated(oldRef, comment);
         }
-        _rows = map;
     }
 
     /**
@@ -2646,6 +3066,10 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
 
     @Override
     protected void commit() throws IOException {
+        if (_documentReadPending) {
+            // never loaded, so the package part is still the same
+            return;
+        }
         PackagePart part = getPackagePart();
         OutputStream out = part.getOutputStream();
         write(out);
@@ -2678,17 +3102,13 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
             worksheet.getHyperlinks().setHyperlinkArray(ctHls);
         }
 
-        for(XSSFRow row : _rows.values()){
+        for(XSSFRow row : _rows){
             row.onDocumentWrite();
         }
 
-        XmlOptions xmlOptions = new XmlOptions(DEFAULT_XML_OPTIONS);
-        xmlOptions.setSaveSyntheticDocumentElement(new QName(CTWorksheet.type.getName().getNamespaceURI(), "worksheet"));
-        Map<String, String> map = new HashMap<String, String>();
-        map.put(STRelationshipId.type.getName().getNamespaceURI(), "r");
-        xmlOptions.setSaveSuggestedPrefixes(map);
-
-        worksheet.save(out, xmlOptions);
+        // the rows are written directly rather than by saving the worksheet bean,
+        // and the rows that are still packed are copied as they are
+        new WorksheetWriter(out).write(worksheet, _rows, _packedRows);
     }
 
     /**
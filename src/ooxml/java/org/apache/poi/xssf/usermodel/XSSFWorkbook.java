@@ -162,6 +162,13 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Iterable<X
      */
     private XSSFCreationHelper _creationHelper;
 
+    /**
+     * <code>true</code> if the sheets of a workbook read from a package are only parsed
+     * when first accessed
+     * @see #XSSFWorkbook(OPCPackage, boolean)
+     */
+    private boolean _loadSheetsLazily;
+
     /**
      * Create a new SpreadsheetML workbook.
      */
@@ -177,7 +184,28 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Iterable<X
      * @param pkg the OpenXML4J <code>Package</code> object.
      */
     public XSSFWorkbook(OPCPackage pkg) throws IOException {
+        this(pkg, false);
+    }
+
+    /**
+     * Constructs a XSSFWorkbook object given a OpenXML4J <code>Package</code> object,
+     * optionally deferring the parsing of the sheets.
+     * <p>
+     *  When <code>loadSheetsLazily</code> is <code>true</code>, the XML of a sheet is only
+     *  parsed when the sheet is first obtained from this workbook, for example by
+     *  {@link #getSheetAt(int)}, {@link #getSheet(String)} or by iterating over the sheets.
+     *  The names, order and visibility of the sheets are part of the workbook and can be
+     *  used without loading them.  Sheets which have not been loaded are written back
+     *  unchanged, so opening a large workbook to update one of its sheets only costs
+     *  the parsing of that sheet.
+     * </p>
+     *
+     * @param pkg the OpenXML4J <code>Package</code> object.
+     * @param loadSheetsLazily whether to parse each sheet only when first accessed
+     */
+    public XSSFWorkbook(OPCPackage pkg, boolean loadSheetsLazily) throws IOException {
         super(pkg);
+        _loadSheetsLazily = loadSheetsLazily;
 
         //build a tree of POIXMLDocumentParts, this workbook being the root
         load(XSSFFactory.getInstance());
@@ -266,7 +294,11 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Iterable<X
                     continue;
                 }
                 sh.sheet = ctSheet;
-                sh.onDocumentRead();
+                if (_loadSheetsLazily) {
+                    sh.deferDocumentRead();
+                } else {
+                    sh.onDocumentRead();
+                }
                 sheets.add(sh);
             }
 
@@ -404,7 +436,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Iterable<X
     public XSSFSheet cloneSheet(int sheetNum) {
         validateSheetIndex(sheetNum);
 
-        XSSFSheet srcSheet = sheets.get(sheetNum);
+        XSSFSheet srcSheet = getSheetAt(sheetNum);
         String srcName = srcSheet.getSheetName();
         String clonedName = getUniqueSheetName(srcName);
 
@@ -516,6 +548,27 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Iterable<X
         return stylesSource.createCellStyle();
     }
 
+    /**
+     * Returns the first cell style of the workbook with the same formatting
+     * (font, fill, border, number format, alignment ...) as the supplied one.
+     * The lookup is hashed, so this is meant to be called each time a style
+     * has been created and set up:
+     * <pre>
+     * XSSFCellStyle style = workbook.createCellStyle();
+     * style.setDataFormat(format);
+     * style = workbook.internCellStyle(style);
+     * </pre>
+     * If an equal style already exists and <code>style</code> is the most recently
+     * created one, <code>style</code> is removed from the workbook again.  In that
+     * case <code>style</code> must not be used afterwards.
+     *
+     * @param style a style of this workbook that is not yet used by any cell
+     * @return the first style equal to <code>style</code>, or <code>style</code> itself
+     */
+    public XSSFCellStyle internCellStyle(XSSFCellStyle style) {
+        return stylesSource.internCellStyle(style);
+    }
+
     /**
      * Returns the instance of XSSFDataFormat for this workbook.
      *
@@ -808,6 +861,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Iterable<X
     public XSSFSheet getSheet(String name) {
         for (XSSFSheet sheet : sheets) {
             if (name.equalsIgnoreCase(sheet.getSheetName())) {
+                sheet.ensureDocumentRead();
                 return sheet;
             }
         }
@@ -824,7 +878,9 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Iterable<X
      */
     public XSSFSheet getSheetAt(int index) {
         validateSheetIndex(index);
-        return sheets.get(index);
+        XSSFSheet sheet = sheets.get(index);
+        sheet.ensureDocumentRead();
+        return sheet;
     }
 
     /**
@@ -879,7 +935,23 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Iterable<X
      * </code></pre>
      */
     public Iterator<XSSFSheet> iterator() {
-        return sheets.iterator();
+        if (!_loadSheetsLazily) {
+            return sheets.iterator();
+        }
+        final Iterator<XSSFSheet> it = sheets.iterator();
+        return new Iterator<XSSFSheet>() {
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+            public XSSFSheet next() {
+                XSSFSheet sheet = it.next();
+                sheet.ensureDocumentRead();
+                return sheet;
+            }
+            public void remove() {
+                it.remove();
+            }
+        };
     }
     /**
      * Are we a normal workbook (.xlsx), or a
@@ -1223,7 +1295,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Iterable<X
      */
     public void setSelectedTab(int index) {
         for (int i = 0 ; i < sheets.size() ; ++i) {
-            XSSFSheet sheet = sheets.get(i);
+            XSSFSheet sheet = getSheetAt(i);
             sheet.setSelected(i == index);
         }
     }
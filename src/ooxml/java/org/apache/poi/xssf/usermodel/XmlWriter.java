@@ -0,0 +1,183 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.poi.POIXMLException;
+
+/**
+ * Encodes XML as UTF-8, into memory or to an output stream
+ */
+final class XmlWriter {
+    private final OutputStream _stream;
+    private byte[] _buf = new byte[1024];
+    private int _len;
+    /** the high surrogate of a pair which was split between two writes */
+    private char _highSurrogate;
+
+    /**
+     * @param stream receives the bytes, <code>null</code> to keep them in memory
+     */
+    XmlWriter(OutputStream stream) {
+        _stream = stream;
+        if (stream != null) {
+            _buf = new byte[8192];
+        }
+    }
+
+    void reset() {
+        _len = 0;
+        _highSurrogate = 0;
+    }
+
+    byte[] toByteArray() {
+        endText();
+        byte[] result = new byte[_len];
+        System.arraycopy(_buf, 0, result, 0, _len);
+        return result;
+    }
+
+    InputStream toInputStream() {
+        endText();
+        return new ByteArrayInputStream(_buf, 0, _len);
+    }
+
+    void flush() throws IOException {
+        endText();
+        _stream.write(_buf, 0, _len);
+        _len = 0;
+        _stream.flush();
+    }
+
+    private void ensureCapacity(int n) {
+        if (_len + n <= _buf.length) {
+            return;
+        }
+        if (_stream != null) {
+            try {
+                _stream.write(_buf, 0, _len);
+            } catch (IOException e) {
+                throw new POIXMLException(e);
+            }
+            _len = 0;
+            if (n <= _buf.length) {
+                return;
+            }
+        }
+        byte[] buf = new byte[Math.max(_buf.length * 2, _len + n)];
+        System.arraycopy(_buf, 0, buf, 0, _len);
+        _buf = buf;
+    }
+
+    void write(byte[] b) {
+        endText();
+        ensureCapacity(b.length);
+        System.arraycopy(b, 0, _buf, _len, b.length);
+        _len += b.length;
+    }
+
+    void write(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            write(s.charAt(i));
+        }
+    }
+
+    void writeEscaped(String s, boolean attribute) {
+        for (int i = 0; i < s.length(); i++) {
+            writeEscaped(s.charAt(i), attribute);
+        }
+        endText();
+    }
+
+    /**
+     * Writes a high surrogate at the end of a text, which is not followed by its low surrogate,
+     *  as <code>'?'</code>.  A text passed in pieces, like SAX does, may have its pairs split.
+     */
+    void endText() {
+        if (_highSurrogate != 0) {
+            _highSurrogate = 0;
+            ensureCapacity(1);
+            _buf[_len++] = '?';
+        }
+    }
+
+    void writeEscaped(char[] ch, int start, int length, boolean attribute) {
+        for (int i = start; i < start + length; i++) {
+            writeEscaped(ch[i], attribute);
+        }
+    }
+
+    private void writeEscaped(char c, boolean attribute) {
+        switch (c) {
+            case '<':  write("&lt;"); break;
+            case '>':  write("&gt;"); break;
+            case '&':  write("&amp;"); break;
+            case '\r': write("&#13;"); break;
+            case '"':  write(attribute ? "&quot;" : "\""); break;
+            case '\t': write(attribute ? "&#9;" : "\t"); break;
+            case '\n': write(attribute ? "&#10;" : "\n"); break;
+            default:   write(isValid(c) ? c : '?');
+        }
+    }
+
+    /**
+     * @return <code>false</code> for the characters that XML does not allow, which are
+     *  replaced by <code>'?'</code> like XMLBeans does
+     */
+    private static boolean isValid(char c) {
+        return c >= 0x20 ? c < 0xFFFE : c == '\t' || c == '\n' || c == '\r';
+    }
+
+    /**
+     * Writes a character as UTF-8.  A surrogate which is not part of a pair is written as
+     *  <code>'?'</code>, as XMLBeans does for the other characters that XML does not allow.
+     */
+    void write(char c) {
+        if (_highSurrogate != 0 && !Character.isLowSurrogate(c)) {
+            endText();
+        }
+        ensureCapacity(4);
+        if (c < 0x80) {
+            _buf[_len++] = (byte) c;
+        } else if (c < 0x800) {
+            _buf[_len++] = (byte) (0xC0 | c >> 6);
+            _buf[_len++] = (byte) (0x80 | c & 0x3F);
+        } else if (Character.isHighSurrogate(c)) {
+            _highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            if (_highSurrogate == 0) {
+                _buf[_len++] = '?';
+                return;
+            }
+            int cp = Character.toCodePoint(_highSurrogate, c);
+            _highSurrogate = 0;
+            _buf[_len++] = (byte) (0xF0 | cp >> 18);
+            _buf[_len++] = (byte) (0x80 | cp >> 12 & 0x3F);
+            _buf[_len++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            _buf[_len++] = (byte) (0x80 | cp & 0x3F);
+        } else {
+            _buf[_len++] = (byte) (0xE0 | c >> 12);
+            _buf[_len++] = (byte) (0x80 | c >> 6 & 0x3F);
+            _buf[_len++] = (byte) (0x80 | c & 0x3F);
+        }
+    }
+}
@@ -33,6 +33,7 @@ import org.openxmlformats.schemas.spreadsheetml.x2006.main.STBorderStyle;
 public class XSSFCellBorder {
     private ThemesTable _theme;
     private CTBorder border;
+    private int changeCount;
 
     /**
      * Creates a Cell Border from the supplied XML definition
@@ -66,6 +67,14 @@ public class XSSFCellBorder {
        this._theme = themes;
     }
     
+    /**
+     * @return how often {@link #setBorderStyle} and {@link #setBorderColor} have been
+     *  called, used by the styles table to re-index borders changed after registration
+     */
+    public int getChangeCount() {
+        return changeCount;
+    }
+
     /**
      * The enumeration value indicating the side being used for a cell border.
      */
@@ -104,6 +113,7 @@ public class XSSFCellBorder {
      * @see BorderStyle
      */
     public void setBorderStyle(BorderSide side, BorderStyle style) {
+        changeCount++;
         getBorder(side, true).setStyle(STBorderStyle.Enum.forInt(style.ordinal() + 1));
     }
 
@@ -135,6 +145,7 @@ public class XSSFCellBorder {
      * @param color - the color to use
      */
     public void setBorderColor(BorderSide side, XSSFColor color) {
+        changeCount++;
         CTBorderPr borderPr = getBorder(side, true);
         if (color == null) borderPr.unsetColor();
         else
@@ -30,6 +30,8 @@ import org.apache.poi.util.Internal;
 public final class XSSFCellFill {
 
     private CTFill _fill;
+    /** the number of changes made through the setters, see {@link #getChangeCount()} */
+    private int _changeCount;
 
     /**
      * Creates a CellFill from the supplied parts
@@ -47,6 +49,14 @@ public final class XSSFCellFill {
         _fill = CTFill.Factory.newInstance();
     }
 
+    /**
+     * Returns a number which changes whenever this fill is changed through one of
+     *  its setters, so that the styles table notices changed fills.
+     */
+    public int getChangeCount() {
+        return _changeCount;
+    }
+
     /**
      * Get the background fill color.
      *
@@ -66,6 +76,7 @@ public final class XSSFCellFill {
      * @param index
      */
     public void setFillBackgroundColor(int index) {
+        _changeCount++;
         CTPatternFill ptrn = ensureCTPatternFill();
         CTColor ctColor = ptrn.isSetBgColor() ? ptrn.getBgColor() : ptrn.addNewBgColor();
         ctColor.setIndexed(index);
@@ -77,6 +88,7 @@ public final class XSSFCellFill {
      * @param color
      */
     public void setFillBackgroundColor(XSSFColor color) {
+        _changeCount++;
         CTPatternFill ptrn = ensureCTPatternFill();
         ptrn.setBgColor(color.getCTColor());
     }
@@ -100,6 +112,7 @@ public final class XSSFCellFill {
      * @param index - the color to use
      */
     public void setFillForegroundColor(int index) {
+        _changeCount++;
         CTPatternFill ptrn = ensureCTPatternFill();
         CTColor ctColor = ptrn.isSetFgColor() ? ptrn.getFgColor() : ptrn.addNewFgColor();
         ctColor.setIndexed(index);
@@ -111,6 +124,7 @@ public final class XSSFCellFill {
      * @param color - the color to use
      */
     public void setFillForegroundColor(XSSFColor color) {
+        _changeCount++;
         CTPatternFill ptrn = ensureCTPatternFill();
         ptrn.setFgColor(color.getCTColor());
     }
@@ -131,6 +145,7 @@ public final class XSSFCellFill {
      * @param patternType fill pattern to use
      */
     public void setPatternType(STPatternType.Enum patternType) {
+        _changeCount++;
         CTPatternFill ptrn = ensureCTPatternFill();
         ptrn.setPatternType(patternType);
     }
@@ -22,7 +22,6 @@ import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.ss.formula.FormulaParser;
 import org.apache.poi.ss.formula.FormulaType;
 import org.apache.poi.ss.formula.FormulaRenderer;
-import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.formula.FormulaShifter;
 import org.apache.poi.ss.formula.ptg.Ptg;
@@ -32,7 +31,10 @@ import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellFormula;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTConditionalFormatting;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCfRule;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTDataValidation;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTDataValidations;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -56,6 +58,7 @@ public final class XSSFRowShifter {
      */
     public List<CellRangeAddress> shiftMerged(int startRow, int endRow, int n) {
         List<CellRangeAddress> shiftedRegions = new ArrayList<CellRangeAddress>();
+        List<Integer> shiftedIndices = new ArrayList<Integer>();
         //move merged regions completely if they fall within the new region boundaries when they are shifted
         for (int i = 0; i < sheet.getNumMergedRegions(); i++) {
             CellRangeAddress merged = sheet.getMergedRegion(i);
@@ -74,10 +77,11 @@ public final class XSSFRowShifter {
                 merged.setLastRow(merged.getLastRow() + n);
                 //have to remove/add it back
                 shiftedRegions.add(merged);
-                sheet.removeMergedRegion(i);
-                i = i - 1; // we have to back up now since we removed one
+                shiftedIndices.add(i);
             }
         }
+        // all in one go, rather than rebuilding the merged cells once per region
+        sheet.removeMergedRegions(shiftedIndices);
 
         //read so it doesn't get shifted again
         for (CellRangeAddress region : shiftedRegions) {
@@ -138,13 +142,16 @@ public final class XSSFRowShifter {
     }
 
     private void updateSheetFormulas(XSSFSheet sh, FormulaShifter shifter) {
-        for (Row r : sh) {
-            XSSFRow row = (XSSFRow) r;
-            updateRowFormulas(row, shifter);
+        XSSFWorkbook wb = sh.getWorkbook();
+        int sheetIndex = wb.getSheetIndex(sh);
+        XSSFEvaluationWorkbook fpb = XSSFEvaluationWorkbook.create(wb);
+        // the rows read from the file without formulas are not turned into beans
+        for (Iterator<XSSFRow> it = sh.formulaRowIterator(); it.hasNext(); ) {
+            updateRowFormulas(it.next(), fpb, sheetIndex, shifter);
         }
     }
 
-    private void updateRowFormulas(XSSFRow row, FormulaShifter shifter) {
+    private void updateRowFormulas(XSSFRow row, XSSFEvaluationWorkbook fpb, int sheetIndex, FormulaShifter shifter) {
         for (Cell c : row) {
             XSSFCell cell = (XSSFCell) c;
 
@@ -153,7 +160,7 @@ public final class XSSFRowShifter {
                 CTCellFormula f = ctCell.getF();
                 String formula = f.getStringValue();
                 if (formula.length() > 0) {
-                    String shiftedFormula = shiftFormula(row, formula, shifter);
+                    String shiftedFormula = shiftFormula(formula, fpb, sheetIndex, shifter);
                     if (shiftedFormula != null) {
                         f.setStringValue(shiftedFormula);
                     }
@@ -161,7 +168,7 @@ public final class XSSFRowShifter {
 
                 if (f.isSetRef()) { //Range of cells which the formula applies to.
                     String ref = f.getRef();
-                    String shiftedRef = shiftFormula(row, ref, shifter);
+                    String shiftedRef = shiftFormula(ref, fpb, sheetIndex, shifter);
                     if (shiftedRef != null) f.setRef(shiftedRef);
                 }
             }
@@ -172,17 +179,14 @@ public final class XSSFRowShifter {
     /**
      * Shift a formula using the supplied FormulaShifter
      *
-     * @param row     the row of the cell this formula belongs to. Used to get a reference to the parent workbook.
      * @param formula the formula to shift
+     * @param fpb     the parsing workbook of the sheet this formula belongs to
+     * @param sheetIndex the index of the sheet this formula belongs to
      * @param shifter the FormulaShifter object that operates on the parsed formula tokens
      * @return the shifted formula if the formula was changed,
      *         <code>null</code> if the formula wasn't modified
      */
-    private static String shiftFormula(XSSFRow row, String formula, FormulaShifter shifter) {
-        XSSFSheet sheet = row.getSheet();
-        XSSFWorkbook wb = sheet.getWorkbook();
-        int sheetIndex = wb.getSheetIndex(sheet);
-        XSSFEvaluationWorkbook fpb = XSSFEvaluationWorkbook.create(wb);
+    private static String shiftFormula(String formula, XSSFEvaluationWorkbook fpb, int sheetIndex, FormulaShifter shifter) {
         Ptg[] ptgs = FormulaParser.parse(formula, fpb, FormulaType.CELL, sheetIndex);
         String shiftedFmla = null;
         if (shifter.adjustFormula(ptgs, sheetIndex)) {
@@ -197,7 +201,7 @@ public final class XSSFRowShifter {
 
 
         XSSFEvaluationWorkbook fpb = XSSFEvaluationWorkbook.create(wb);
-        List<CTConditionalFormatting> cfList = sheet.getCTWorksheet().getConditionalFormattingList();
+        List<CTConditionalFormatting> cfList = sheet.getCTWorksheetWithoutRows().getConditionalFormattingList();
         for(int j = 0; j< cfList.size(); j++){
             CTConditionalFormatting cf = cfList.get(j);
 
@@ -249,6 +253,46 @@ public final class XSSFRowShifter {
         }
     }
 
+    /**
+     * Update the cell ranges of the data validations
+     */
+    public void updateDataValidations(FormulaShifter shifter) {
+        CTDataValidations dataValidations = sheet.getCTWorksheetWithoutRows().getDataValidations();
+        if (dataValidations == null) {
+            return;
+        }
+        int sheetIndex = sheet.getWorkbook().getSheetIndex(sheet);
+
+        List<CTDataValidation> dvList = dataValidations.getDataValidationList();
+        for (int j = dvList.size() - 1; j >= 0; j--) {
+            CTDataValidation dv = dvList.get(j);
+
+            boolean changed = false;
+            List<String> refs = new ArrayList<String>();
+            for (Object stRef : dv.getSqref()) {
+                String[] regions = stRef.toString().split(" ");
+                for (int i = 0; i < regions.length; i++) {
+                    CellRangeAddress craOld = CellRangeAddress.valueOf(regions[i]);
+                    CellRangeAddress craNew = shiftRange(shifter, craOld, sheetIndex);
+                    if (craNew != craOld) {
+                        changed = true;
+                    }
+                    if (craNew != null) {
+                        refs.add(craNew.formatAsString());
+                    }
+                }
+            }
+            if (changed) {
+                if (refs.isEmpty()) {
+                    dvList.remove(j);
+                    continue;
+                }
+                dv.setSqref(refs);
+            }
+        }
+        dataValidations.setCount(dvList.size());
+    }
+
     private static CellRangeAddress shiftRange(FormulaShifter shifter, CellRangeAddress cra, int currentExternSheetIx) {
         // FormulaShifter works well in terms of Ptgs - so convert CellRangeAddress to AreaPtg (and back) here
         AreaPtg aptg = new AreaPtg(cra.getFirstRow(), cra.getLastRow(), cra.getFirstColumn(), cra.getLastColumn(), false, false, false, false);
@@ -0,0 +1,183 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.openxml4j.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.util.TempFile;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+public final class TestParallelZipOutputStream extends TestCase {
+	private ExecutorService executor;
+
+	protected void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	protected void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private static byte[] createData(int length, Random rnd) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			// compressible, but not trivially
+			data[i] = (byte) ('a' + rnd.nextInt(8));
+		}
+		return data;
+	}
+
+	/**
+	 * The entries are read back with the stream and the random access readers of the JDK
+	 */
+	public void testEntries() throws IOException {
+		Random rnd = new Random(12345);
+		String[] names = { "a.xml", "dir/", "dir/b.xml", "stored.bin", "empty.xml", "n\u00e4me.xml", "big.xml" };
+		byte[][] data = {
+				createData(1000, rnd), new byte[0], createData(100000, rnd), createData(5000, rnd),
+				new byte[0], createData(10, rnd), createData(3000000, rnd) };
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ParallelZipOutputStream zos = new ParallelZipOutputStream(out, executor);
+		zos.setComment("comment");
+		int total = 0;
+		for (int i = 0; i < names.length; i++) {
+			ZipEntry entry = new ZipEntry(names[i]);
+			if (names[i].startsWith("stored")) {
+				entry.setMethod(ZipEntry.STORED);
+			}
+			zos.setLevel(i % 2 == 0 ? Deflater.BEST_SPEED : Deflater.BEST_COMPRESSION);
+			zos.putNextEntry(entry);
+			total += data[i].length;
+			// in pieces, the way the marshallers copy the parts
+			for (int off = 0; off < data[i].length; off += 4096) {
+				zos.write(data[i], off, Math.min(4096, data[i].length - off));
+			}
+			if (i % 2 == 0) {
+				zos.closeEntry();
+			}
+		}
+		try {
+			zos.putNextEntry(new ZipEntry(names[0]));
+			fail("expected ZipException");
+		} catch (ZipException e) {
+			// expected
+		}
+		zos.close();
+		byte[] zip = out.toByteArray();
+		assertTrue(zip.length < total / 2);
+
+		ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip));
+		for (int i = 0; i < names.length; i++) {
+			ZipEntry entry = zis.getNextEntry();
+			assertEquals(names[i], entry.getName());
+			assertTrue(names[i], Arrays.equals(data[i], IOUtils.toByteArray(zis)));
+		}
+		assertNull(zis.getNextEntry());
+
+		File file = TempFile.createTempFile("TestParallelZipOutputStream", ".zip");
+		FileOutputStream fos = new FileOutputStream(file);
+		fos.write(zip);
+		fos.close();
+		ZipFile zipFile = new ZipFile(file);
+		try {
+			assertEquals(names.length, zipFile.size());
+			for (int i = names.length - 1; i >= 0; i--) {
+				ZipEntry entry = zipFile.getEntry(names[i]);
+				assertEquals(data[i].length, entry.getSize());
+				CRC32 crc = new CRC32();
+				crc.update(data[i]);
+				assertEquals(crc.getValue(), entry.getCrc());
+				assertEquals(names[i].startsWith("stored") ? ZipEntry.STORED : ZipEntry.DEFLATED, entry.getMethod());
+				InputStream is = zipFile.getInputStream(entry);
+				assertTrue(names[i], Arrays.equals(data[i], IOUtils.toByteArray(is)));
+				is.close();
+			}
+		} finally {
+			zipFile.close();
+			file.delete();
+		}
+	}
+
+	/**
+	 * An archive with 65535 entries or more needs the ZIP64 end of central directory record
+	 */
+	public void testZip64EntryCount() throws IOException {
+		File file = TempFile.createTempFile("TestParallelZipOutputStream", ".zip");
+		ParallelZipOutputStream zos = new ParallelZipOutputStream(new FileOutputStream(file), executor);
+		int count = 0x10000 + 10;
+		for (int i = 0; i < count; i++) {
+			zos.putNextEntry(new ZipEntry("e" + i));
+			zos.write(Integer.toString(i).getBytes("UTF-8"));
+		}
+		zos.close();
+
+		ZipFile zipFile = new ZipFile(file);
+		try {
+			assertEquals(count, zipFile.size());
+			ZipEntry entry = zipFile.getEntry("e" + (count - 1));
+			InputStream is = zipFile.getInputStream(entry);
+			assertEquals(Integer.toString(count - 1), new String(IOUtils.toByteArray(is), "UTF-8"));
+			is.close();
+		} finally {
+			zipFile.close();
+			file.delete();
+		}
+	}
+
+	public void testWriteWorkbook() throws IOException {
+		XSSFWorkbook wb = new XSSFWorkbook();
+		for (int s = 0; s < 4; s++) {
+			XSSFSheet sheet = wb.createSheet("Sheet" + s);
+			for (int r = 0; r < 500; r++) {
+				XSSFRow row = sheet.createRow(r);
+				row.createCell(0).setCellValue(s * 1000 + r);
+				row.createCell(1).setCellValue("text " + r);
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		wb.write(out, executor, Deflater.BEST_SPEED);
+
+		wb = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(4, wb.getNumberOfSheets());
+		XSSFSheet sheet = wb.getSheet("Sheet3");
+		assertEquals(499, sheet.getLastRowNum());
+		assertEquals(3499.0, sheet.getRow(499).getCell(0).getNumericCellValue(), 0.0);
+		assertEquals("text 499", sheet.getRow(499).getCell(1).getStringCellValue());
+	}
+}
@@ -55,4 +55,28 @@ public final class TestReadOnlySharedStringsTable extends TestCase {
         }
 
 	}
+
+    public void testSpooled() throws Exception {
+        OPCPackage pkg = OPCPackage.open(_ssTests.openResourceAsStream("SampleSS.xlsx"));
+        ReadOnlySharedStringsTable rtbl = new ReadOnlySharedStringsTable(pkg);
+        // a cache of one string, so that nearly every string is read from the file
+        SpooledSharedStringsTable stbl = new SpooledSharedStringsTable(pkg, 1);
+
+        assertEquals(rtbl.getCount(), stbl.getCount());
+        assertEquals(rtbl.getUniqueCount(), stbl.getUniqueCount());
+        assertEquals(rtbl.getItems().size(), stbl.getItems().size());
+        assertTrue(stbl.getUniqueCount() > 1);
+        for (int i = stbl.getUniqueCount() - 1; i >= 0; i--) {
+            assertEquals(rtbl.getEntryAt(i), stbl.getEntryAt(i));
+        }
+        assertEquals(rtbl.getItems(), stbl.getItems());
+
+        stbl.close();
+        try {
+            stbl.getEntryAt(0);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
 }
@@ -19,14 +19,25 @@ package org.apache.poi.xssf.eventusermodel;
 
 import java.io.InputStream;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import junit.framework.TestCase;
 
 import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.util.IOUtils;
 import org.apache.poi.xssf.XSSFTestDataSamples;
+import org.apache.poi.xssf.eventusermodel.XSSFReader.SheetContentsProcessor;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.CellData;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.TypedSheetContentsHandler;
 import org.apache.poi.xssf.model.CommentsTable;
 import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.POIDataSamples;
 
 /**
@@ -164,4 +175,79 @@ public final class TestXSSFReader extends TestCase {
           stream.close();
       }
    }
+
+    /**
+     * Counts the cells of a sheet and adds up their numbers
+     */
+    private static final class SumHandler implements TypedSheetContentsHandler {
+        private final String sheetName;
+        private int cells;
+        private double sum;
+
+        SumHandler(String sheetName) {
+            this.sheetName = sheetName;
+        }
+
+        public void startRow(int rowNum) {
+        }
+
+        public void endRow() {
+        }
+
+        public void cell(CellData cell) {
+            cells++;
+            if (cell.getValueType() == Cell.CELL_TYPE_NUMERIC) {
+                sum += cell.getNumericValue();
+            }
+        }
+
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+        }
+    }
+
+    public void testProcessSheets() throws Exception {
+        OPCPackage pkg = OPCPackage.open(_ssTests.openResourceAsStream("Formatting.xlsx"));
+        XSSFWorkbook wb = new XSSFWorkbook(_ssTests.openResourceAsStream("Formatting.xlsx"));
+        assertTrue(wb.getNumberOfSheets() > 1);
+
+        XSSFReader r = new XSSFReader(pkg);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<SumHandler>> results;
+        try {
+            results = r.processSheets(executor, new SheetContentsProcessor<SumHandler, SumHandler>(
+                    r.getStylesTable(), new ReadOnlySharedStringsTable(pkg)) {
+                protected SumHandler createHandler(int sheetIndex, String sheetName) {
+                    return new SumHandler(sheetName);
+                }
+
+                protected SumHandler getResult(SumHandler handler) {
+                    return handler;
+                }
+            });
+            assertEquals(wb.getNumberOfSheets(), results.size());
+            for (int i = 0; i < results.size(); i++) {
+                XSSFSheet sheet = wb.getSheetAt(i);
+                int cells = 0;
+                double sum = 0;
+                for (Row row : sheet) {
+                    for (Cell cell : row) {
+                        if (cell.getCellType() == Cell.CELL_TYPE_BLANK) {
+                            // only cells with a value are reported
+                            continue;
+                        }
+                        cells++;
+                        if (cell.getCellType() == Cell.CELL_TYPE_NUMERIC) {
+                            sum += cell.getNumericCellValue();
+                        }
+                    }
+                }
+                SumHandler result = results.get(i).get();
+                assertEquals(sheet.getSheetName(), result.sheetName);
+                assertEquals(cells, result.cells);
+                assertEquals(sum, result.sum, 0.0);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
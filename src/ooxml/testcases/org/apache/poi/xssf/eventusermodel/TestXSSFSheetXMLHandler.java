@@ -0,0 +1,186 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.eventusermodel;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.POIDataSamples;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.CellData;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.TypedSheetContentsHandler;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+/**
+ * Tests for {@link XSSFSheetXMLHandler}
+ */
+public final class TestXSSFSheetXMLHandler extends TestCase {
+    private static POIDataSamples _ssTests = POIDataSamples.getSpreadSheetInstance();
+
+    private static void parse(OPCPackage pkg, int sheetIndex, SheetContentsHandler handler,
+            TypedSheetContentsHandler typedHandler) throws Exception {
+        XSSFReader r = new XSSFReader(pkg);
+        ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+        Iterator<InputStream> it = r.getSheetsData();
+        for (int i = 0; i < sheetIndex; i++) {
+            it.next().close();
+        }
+        InputStream sheet = it.next();
+        XMLReader reader = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+        if (typedHandler != null) {
+            reader.setContentHandler(new XSSFSheetXMLHandler(r.getStylesTable(), strings, typedHandler));
+        } else {
+            reader.setContentHandler(new XSSFSheetXMLHandler(r.getStylesTable(), strings, handler, false));
+        }
+        reader.parse(new InputSource(sheet));
+        sheet.close();
+    }
+
+    /**
+     * The typed values match the ones of the usermodel, and the formatted values the ones
+     *  of the text output
+     */
+    public void testTypedValues() throws Exception {
+        String[] files = { "sample.xlsx", "Formatting.xlsx", "shared_formulas.xlsx", "WithVariousData.xlsx" };
+        int nCells = 0;
+        for (String file : files) {
+            OPCPackage pkg = OPCPackage.open(_ssTests.openResourceAsStream(file));
+            XSSFWorkbook wb = new XSSFWorkbook(_ssTests.openResourceAsStream(file));
+            for (int s = 0; s < wb.getNumberOfSheets(); s++) {
+                final XSSFSheet sheet = wb.getSheetAt(s);
+                final List<String> texts = new ArrayList<String>();
+                parse(pkg, s, new SheetContentsHandler() {
+                    public void startRow(int rowNum) {
+                    }
+                    public void endRow() {
+                    }
+                    public void cell(String cellReference, String formattedValue) {
+                        texts.add(cellReference + "=" + formattedValue);
+                    }
+                    public void headerFooter(String text, boolean isHeader, String tagName) {
+                    }
+                }, null);
+
+                final List<String> typedTexts = new ArrayList<String>();
+                final int[] rows = { 0, 0 };
+                parse(pkg, s, null, new TypedSheetContentsHandler() {
+                    public void startRow(int rowNum) {
+                        rows[0]++;
+                        assertNotNull(sheet.getRow(rowNum));
+                    }
+                    public void endRow() {
+                        rows[1]++;
+                    }
+                    public void cell(CellData cell) {
+                        typedTexts.add(cell.getReference() + "=" + cell.getFormattedValue());
+                        checkCell(sheet.getRow(cell.getRowNum()).getCell(cell.getColumnIndex()), cell);
+                    }
+                    public void headerFooter(String text, boolean isHeader, String tagName) {
+                    }
+                });
+                assertEquals(file, texts, typedTexts);
+                assertEquals(rows[0], rows[1]);
+                nCells += texts.size();
+            }
+        }
+        assertTrue(nCells > 100);
+    }
+
+    private static void checkCell(XSSFCell expected, CellData cell) {
+        String ref = expected.getReference();
+        assertEquals(ref, cell.getReference());
+        assertEquals(ref, expected.getCellType(), cell.getCellType());
+        assertEquals(ref, expected.getCellStyle().getIndex(), cell.getStyleIndex());
+        int valueType = expected.getCellType();
+        if (valueType == Cell.CELL_TYPE_FORMULA) {
+            valueType = expected.getCachedFormulaResultType();
+            // shared formulas are only given for the master cell
+            String formula = cell.getFormula();
+            if (formula != null) {
+                assertEquals(ref, expected.getCellFormula(), formula);
+            }
+        } else {
+            assertNull(cell.getFormula());
+        }
+        assertEquals(ref, valueType, cell.getValueType());
+        switch (valueType) {
+            case Cell.CELL_TYPE_NUMERIC:
+                assertEquals(ref, expected.getNumericCellValue(), cell.getNumericValue(), 0.0);
+                if (expected.getCellType() == Cell.CELL_TYPE_NUMERIC) {
+                    assertEquals(ref, new DataFormatter().formatCellValue(expected), cell.getFormattedValue());
+                }
+                break;
+            case Cell.CELL_TYPE_STRING:
+                assertEquals(ref, expected.getStringCellValue(), cell.getStringValue());
+                break;
+            case Cell.CELL_TYPE_BOOLEAN:
+                assertEquals(ref, expected.getBooleanCellValue(), cell.getBooleanValue());
+                break;
+            case Cell.CELL_TYPE_ERROR:
+                assertEquals(ref, expected.getErrorCellValue(), cell.getErrorValue());
+                break;
+        }
+        if (expected.getCellType() == Cell.CELL_TYPE_STRING
+                && expected.getCTCell().getT().toString().equals("s")) {
+            assertEquals(ref, Integer.parseInt(expected.getCTCell().getV()), cell.getSharedStringIndex());
+        } else {
+            assertEquals(ref, -1, cell.getSharedStringIndex());
+        }
+    }
+
+    public void testParseDouble() {
+        String[] values = { "0", "-0", "1", "-1", "0.1", "123.456", "1E-3", "1.5E+10", "2.2250738585072014E-308",
+                "123456789012345", "1234567890123456", "0.30000000000000004", "9.999999999999999E22",
+                "1e22", "1e23", "4.35", "-7.8E-5", "00012.5000", ".5", "5." };
+        for (String value : values) {
+            assertEquals(value, Double.parseDouble(value), XSSFSheetXMLHandler.parseDouble(value), 0.0);
+        }
+        assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(XSSFSheetXMLHandler.parseDouble("-0")));
+
+        Random rnd = new Random(12345);
+        for (int i = 0; i < 10000; i++) {
+            double d = (rnd.nextDouble() - 0.5) * Math.pow(10, rnd.nextInt(30) - 15);
+            String value = Double.toString(d);
+            assertEquals(value, d, XSSFSheetXMLHandler.parseDouble(value), 0.0);
+            // the values of cells are often rounded by Excel
+            value = String.valueOf(Math.round(d * 1000) / 1000.0);
+            assertEquals(value, Double.parseDouble(value), XSSFSheetXMLHandler.parseDouble(value), 0.0);
+        }
+
+        try {
+            XSSFSheetXMLHandler.parseDouble("1.2.3");
+            fail("expected NumberFormatException");
+        } catch (NumberFormatException e) {
+            // expected
+        }
+    }
+}
@@ -112,6 +112,36 @@ public final class TestSharedStringsTable extends TestCase {
         assertEquals("Second string", new XSSFRichTextString(sst.getEntryAt(2)).toString());
     }
 
+    /**
+     * The items can still be changed through the list
+     */
+    public void testChangeItems() throws IOException {
+        SharedStringsTable sst = new SharedStringsTable();
+        CTRst st = CTRst.Factory.newInstance();
+        st.setT("first");
+        sst.addEntry(st);
+        List<CTRst> items = sst.getItems();
+
+        CTRst second = CTRst.Factory.newInstance();
+        second.setT("second");
+        items.add(second);
+        CTRst changed = CTRst.Factory.newInstance();
+        changed.setT("changed");
+        assertEquals("first", items.set(0, changed).getT());
+        assertEquals(2, items.size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sst.writeTo(out);
+        SharedStringsTable sst2 = new SharedStringsTable();
+        sst2.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(2, sst2.getItems().size());
+        assertEquals("changed", sst2.getStringAt(0));
+        assertEquals("second", sst2.getStringAt(1));
+
+        assertEquals("second", items.remove(1).getT());
+        assertEquals(1, sst.getItems().size());
+    }
+
     public void testReadWrite() {
         XSSFWorkbook wb = XSSFTestDataSamples.openSampleWorkbook("sample.xlsx");
         SharedStringsTable sst1 = wb.getSharedStringSource();
@@ -161,6 +191,50 @@ public final class TestSharedStringsTable extends TestCase {
         }
     }
 
+    /**
+     * Plain strings are written without XMLBeans and keep their text, rich text entries
+     * keep their formatting
+     */
+    public void testWriteAndReadBack() throws IOException {
+        SharedStringsTable sst = new SharedStringsTable();
+        String[] texts = { " leading", "trailing\t", "a & b < c > d", "line\r\nbreak", "\uD83D\uDE00 emoji", "" };
+        for (String text : texts) {
+            CTRst st = CTRst.Factory.newInstance();
+            st.setT(text);
+            sst.addEntry(st);
+        }
+        CTRst rich = CTRst.Factory.newInstance();
+        CTRElt r = rich.addNewR();
+        r.addNewRPr().addNewB().setVal(true);
+        r.setT("bold");
+        rich.addNewR().setT(" plain");
+        int richIdx = sst.addEntry(rich);
+        assertEquals(texts.length, richIdx);
+        assertEquals(richIdx, sst.addEntry(rich));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sst.writeTo(out);
+        SharedStringsTable sst2 = new SharedStringsTable();
+        sst2.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(sst.getCount(), sst2.getCount());
+        assertEquals(sst.getUniqueCount(), sst2.getUniqueCount());
+        assertEquals(texts.length + 1, sst2.getItems().size());
+        for (int i = 0; i < texts.length; i++) {
+            assertEquals(texts[i], sst2.getStringAt(i));
+            assertEquals(0, sst2.getEntryAt(i).sizeOfRArray());
+        }
+        assertEquals("bold plain", sst2.getStringAt(richIdx));
+        CTRst rich2 = sst2.getEntryAt(richIdx);
+        assertEquals(2, rich2.sizeOfRArray());
+        assertTrue(rich2.getRArray(0).getRPr().getBArray(0).getVal());
+        assertEquals(" plain", rich2.getRArray(1).getT());
+
+        // changes to the bean of an entry change the table
+        sst2.getEntryAt(0).setT("changed");
+        assertEquals("changed", sst2.getStringAt(0));
+    }
+
     private List<String> readStrings(String filename) throws IOException {
         List<String> strs = new ArrayList<String>();
         POIDataSamples samples = POIDataSamples.getSpreadSheetInstance();
@@ -18,8 +18,15 @@
 package org.apache.poi.xssf.model;
 
 import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFOptimiser;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.usermodel.extensions.XSSFCellFill;
 import org.apache.poi.xssf.XSSFTestDataSamples;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFill;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFont;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STPatternType;
 
 import junit.framework.TestCase;
 
@@ -148,4 +155,77 @@ public final class TestStylesTable extends TestCase {
 		assertEquals(nf1, st.putNumberFormat("YYYY-mm-dd"));
 		assertEquals(nf2, st.putNumberFormat("YYYY-mm-DD"));
 	}
+
+	public void testInternCellStyle() {
+		XSSFWorkbook wb = new XSSFWorkbook();
+		StylesTable st = wb.getStylesSource();
+
+		XSSFCellStyle first = wb.createCellStyle();
+		first.setDataFormat((short)14);
+		assertSame(first, wb.internCellStyle(first));
+		for (int i = 0; i < 100; i++) {
+			XSSFCellStyle style = wb.createCellStyle();
+			style.setDataFormat((short)(i % 2 == 0 ? 14 : 15));
+			style = wb.internCellStyle(style);
+			assertEquals(i % 2 == 0 ? 14 : 15, style.getDataFormat());
+		}
+		assertEquals(3, st._getXfsSize());
+
+		// a new style without changes is the same as the default one
+		assertEquals(0, wb.internCellStyle(wb.createCellStyle()).getIndex());
+		assertEquals(3, st._getXfsSize());
+	}
+
+	public void testPutChangedFontAndFill() {
+		XSSFWorkbook wb = new XSSFWorkbook();
+		StylesTable st = wb.getStylesSource();
+
+		// fonts are changed after they have been registered
+		XSSFFont font = wb.createFont();
+		assertEquals(font.getIndex(), st.putFont(newFont(false)));
+		font.setBold(true);
+		assertEquals(font.getIndex(), st.putFont(newFont(true)));
+		font.setItalic(true);
+		int nFonts = st.getFonts().size();
+		assertEquals(nFonts, st.putFont(newFont(true)));
+		assertEquals(nFonts + 1, st.putFont(newFont(false)));
+		assertEquals(nFonts + 2, st.getFonts().size());
+
+		XSSFCellFill fill = new XSSFCellFill(CTFill.Factory.newInstance());
+		int idx = st.putFill(fill);
+		fill.setPatternType(STPatternType.SOLID);
+		fill.setFillForegroundColor(10);
+		XSSFCellFill other = new XSSFCellFill(CTFill.Factory.newInstance());
+		other.setFillForegroundColor(10);
+		other.setPatternType(STPatternType.SOLID);
+		assertEquals(idx, st.putFill(other));
+	}
+
+	private static XSSFFont newFont(boolean bold) {
+		XSSFFont font = new XSSFFont(CTFont.Factory.newInstance());
+		font.setFontName(XSSFFont.DEFAULT_FONT_NAME);
+		font.setFontHeight((double)XSSFFont.DEFAULT_FONT_SIZE);
+		font.setBold(bold);
+		return font;
+	}
+
+	public void testOptimiseCellStyles() {
+		XSSFWorkbook wb = new XSSFWorkbook();
+		StylesTable st = wb.getStylesSource();
+		XSSFSheet sheet = wb.createSheet();
+		for (int i = 0; i < 4; i++) {
+			XSSFCellStyle style = wb.createCellStyle();
+			style.setDataFormat((short)(i % 2 == 0 ? 14 : 15));
+			sheet.createRow(i).createCell(0).setCellStyle(style);
+		}
+		assertEquals(5, st._getXfsSize());
+
+		XSSFOptimiser.optimiseCellStyles(wb);
+		assertEquals(3, st._getXfsSize());
+		for (int i = 0; i < 4; i++) {
+			XSSFCellStyle style = sheet.getRow(i).getCell(0).getCellStyle();
+			assertEquals(i % 2 == 0 ? 1 : 2, style.getIndex());
+			assertEquals(i % 2 == 0 ? 14 : 15, style.getDataFormat());
+		}
+	}
 }
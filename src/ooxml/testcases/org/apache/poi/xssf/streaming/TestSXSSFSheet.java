@@ -19,8 +19,12 @@
 
 package org.apache.poi.xssf.streaming;
 
+import java.util.Arrays;
+
 import org.apache.poi.ss.usermodel.BaseTestSheet;
 import org.apache.poi.xssf.SXSSFITestDataProvider;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 
 public class TestSXSSFSheet extends BaseTestSheet {
@@ -83,4 +87,51 @@ public class TestSXSSFSheet extends BaseTestSheet {
     public void testDefaultColumnStyle() {
         //TODO column styles are not yet supported by XSSF
     }
+
+    public void testBlockValues() {
+        SXSSFWorkbook wb = new SXSSFWorkbook(2);
+        SXSSFSheet sh = (SXSSFSheet) wb.createSheet();
+        sh.writeNumericBlock(0, 3, 0, 1, new double[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        sh.writeStringBlock(4, 4, 0, 1, new String[] { "a", null });
+
+        // only the last two rows are still in memory
+        double[] numbers = new double[2];
+        sh.readNumericBlock(3, 3, 0, 1, numbers);
+        assertTrue(Arrays.equals(new double[] { 7, 8 }, numbers));
+        String[] strings = new String[2];
+        sh.readStringBlock(4, 4, 0, 1, strings);
+        assertTrue(Arrays.equals(new String[] { "a", "" }, strings));
+
+        // the flushed rows are not read as missing rows
+        try {
+            sh.readNumericBlock(2, 3, 0, 1, new double[4]);
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+            // the row has been flushed
+        }
+        try {
+            sh.readStringBlock(0, 0, 0, 0, new String[1]);
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+            // the row has been flushed
+        }
+        try {
+            sh.readBooleanBlock(2, 2, 0, 0, new boolean[1]);
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+            // the row has been flushed
+        }
+        try {
+            sh.writeBooleanBlock(0, 0, 0, 0, new boolean[1]);
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+            // the row has been flushed
+        }
+
+        XSSFWorkbook xwb = (XSSFWorkbook) SXSSFITestDataProvider.instance.writeOutAndReadBack(wb);
+        XSSFSheet xsh = xwb.getSheetAt(0);
+        numbers = new double[8];
+        xsh.readNumericBlock(0, 3, 0, 1, numbers);
+        assertTrue(Arrays.equals(new double[] { 1, 2, 3, 4, 5, 6, 7, 8 }, numbers));
+    }
 }
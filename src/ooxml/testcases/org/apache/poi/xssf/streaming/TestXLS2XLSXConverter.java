@@ -0,0 +1,216 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.hssf.HSSFTestDataSamples;
+import org.apache.poi.hssf.usermodel.HSSFCell;
+import org.apache.poi.hssf.usermodel.HSSFCellStyle;
+import org.apache.poi.hssf.usermodel.HSSFFont;
+import org.apache.poi.hssf.usermodel.HSSFFormulaEvaluator;
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.ErrorConstants;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+public final class TestXLS2XLSXConverter extends TestCase {
+
+    private static XSSFWorkbook convert(HSSFWorkbook wb) throws IOException {
+        ByteArrayOutputStream xls = new ByteArrayOutputStream();
+        wb.write(xls);
+        ByteArrayOutputStream xlsx = new ByteArrayOutputStream();
+        XLS2XLSXConverter.convert(new ByteArrayInputStream(xls.toByteArray()), xlsx);
+        return new XSSFWorkbook(new ByteArrayInputStream(xlsx.toByteArray()));
+    }
+
+    public void testValuesAndFormulas() throws IOException {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        HSSFSheet sheet = wb.createSheet("Values");
+        HSSFRow row = sheet.createRow(0);
+        row.createCell(0).setCellValue(1.5);
+        row.createCell(1).setCellValue("text");
+        row.createCell(2).setCellValue(true);
+        row.createCell(3).setCellErrorValue((byte) ErrorConstants.ERROR_DIV_0);
+        row.createCell(5).setCellValue("text");
+        row = sheet.createRow(2);
+        row.createCell(0).setCellFormula("A1*2");
+        row.createCell(1).setCellFormula("B1&\"!\"");
+        row.createCell(2).setCellFormula("NOT(C1)");
+        row.createCell(3).setCellFormula("1/0");
+        row.createCell(4).setCellFormula("IF(A1>1,\"\",\"x\")");
+        new HSSFFormulaEvaluator(wb).evaluateAll();
+        wb.createSheet("Empty");
+
+        XSSFWorkbook xwb = convert(wb);
+        assertEquals(2, xwb.getNumberOfSheets());
+        assertEquals("Values", xwb.getSheetName(0));
+        assertEquals("Empty", xwb.getSheetName(1));
+        assertEquals(0, xwb.getSheetAt(1).getPhysicalNumberOfRows());
+
+        XSSFSheet xsheet = xwb.getSheetAt(0);
+        Row xrow = xsheet.getRow(0);
+        assertEquals(1.5, xrow.getCell(0).getNumericCellValue(), 0.0);
+        assertEquals("text", xrow.getCell(1).getStringCellValue());
+        assertEquals(true, xrow.getCell(2).getBooleanCellValue());
+        assertEquals(ErrorConstants.ERROR_DIV_0, xrow.getCell(3).getErrorCellValue());
+        assertNull(xrow.getCell(4));
+        assertEquals("text", xrow.getCell(5).getStringCellValue());
+        assertNull(xsheet.getRow(1));
+        // the text is stored once, in the shared strings table
+        assertEquals(1, xwb.getSharedStringSource().getUniqueCount());
+
+        xrow = xsheet.getRow(2);
+        Cell cell = xrow.getCell(0);
+        assertEquals("A1*2", cell.getCellFormula());
+        assertEquals(Cell.CELL_TYPE_NUMERIC, cell.getCachedFormulaResultType());
+        assertEquals(3.0, cell.getNumericCellValue(), 0.0);
+        cell = xrow.getCell(1);
+        assertEquals("B1&\"!\"", cell.getCellFormula());
+        assertEquals(Cell.CELL_TYPE_STRING, cell.getCachedFormulaResultType());
+        assertEquals("text!", cell.getStringCellValue());
+        cell = xrow.getCell(2);
+        assertEquals("NOT(C1)", cell.getCellFormula());
+        assertEquals(Cell.CELL_TYPE_BOOLEAN, cell.getCachedFormulaResultType());
+        assertEquals(false, cell.getBooleanCellValue());
+        cell = xrow.getCell(3);
+        assertEquals("1/0", cell.getCellFormula());
+        assertEquals(Cell.CELL_TYPE_ERROR, cell.getCachedFormulaResultType());
+        assertEquals(ErrorConstants.ERROR_DIV_0, cell.getErrorCellValue());
+        cell = xrow.getCell(4);
+        assertEquals(Cell.CELL_TYPE_STRING, cell.getCachedFormulaResultType());
+        assertEquals("", cell.getStringCellValue());
+    }
+
+    public void testStylesAndLayout() throws IOException {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        HSSFSheet sheet = wb.createSheet("Styles");
+
+        HSSFFont font = wb.createFont();
+        font.setFontName("Courier New");
+        font.setFontHeightInPoints((short) 14);
+        font.setBoldweight(Font.BOLDWEIGHT_BOLD);
+        font.setItalic(true);
+        font.setColor(IndexedColors.RED.getIndex());
+        HSSFCellStyle style = wb.createCellStyle();
+        style.setFont(font);
+        style.setDataFormat(wb.createDataFormat().getFormat("0.000"));
+        style.setAlignment(CellStyle.ALIGN_CENTER);
+        style.setWrapText(true);
+        style.setBorderBottom(CellStyle.BORDER_THIN);
+        style.setBottomBorderColor(IndexedColors.BLUE.getIndex());
+        style.setFillPattern(CellStyle.SOLID_FOREGROUND);
+        style.setFillForegroundColor(IndexedColors.YELLOW.getIndex());
+        HSSFCellStyle dateStyle = wb.createCellStyle();
+        dateStyle.setDataFormat((short) 14);
+
+        HSSFRow row = sheet.createRow(0);
+        row.setHeightInPoints(30);
+        row.createCell(0).setCellValue(3.14159);
+        row.getCell(0).setCellStyle(style);
+        row.createCell(1).setCellValue(40000);
+        row.getCell(1).setCellStyle(dateStyle);
+        row.createCell(2).setCellStyle(style);
+        sheet.createRow(1).createCell(0).setCellValue("plain");
+        sheet.setColumnWidth(1, 5000);
+        sheet.setColumnHidden(3, true);
+        sheet.addMergedRegion(new CellRangeAddress(0, 1, 2, 3));
+
+        XSSFWorkbook xwb = convert(wb);
+        XSSFSheet xsheet = xwb.getSheetAt(0);
+        Row xrow = xsheet.getRow(0);
+        assertEquals(30.0f, xrow.getHeightInPoints(), 0.0f);
+
+        XSSFCellStyle xstyle = (XSSFCellStyle) xrow.getCell(0).getCellStyle();
+        assertEquals("0.000", xstyle.getDataFormatString());
+        assertEquals(CellStyle.ALIGN_CENTER, xstyle.getAlignment());
+        assertTrue(xstyle.getWrapText());
+        assertEquals(CellStyle.BORDER_THIN, xstyle.getBorderBottom());
+        assertEquals(IndexedColors.BLUE.getIndex(), xstyle.getBottomBorderColor());
+        assertEquals(CellStyle.SOLID_FOREGROUND, xstyle.getFillPattern());
+        assertEquals(IndexedColors.YELLOW.getIndex(), xstyle.getFillForegroundColor());
+        XSSFFont xfont = xstyle.getFont();
+        assertEquals("Courier New", xfont.getFontName());
+        assertEquals(14, xfont.getFontHeightInPoints());
+        assertEquals(Font.BOLDWEIGHT_BOLD, xfont.getBoldweight());
+        assertTrue(xfont.getItalic());
+        assertEquals(IndexedColors.RED.getIndex(), xfont.getColor());
+        // cells with the same format share a style
+        assertEquals(xstyle.getIndex(), xrow.getCell(2).getCellStyle().getIndex());
+        assertEquals(Cell.CELL_TYPE_BLANK, xrow.getCell(2).getCellType());
+
+        assertEquals(14, xrow.getCell(1).getCellStyle().getDataFormat());
+        assertEquals(sheet.getRow(0).getCell(1).getDateCellValue(), xrow.getCell(1).getDateCellValue());
+
+        // unformatted cells use the default style, whose font is the one of the .xls file
+        CellStyle plain = xsheet.getRow(1).getCell(0).getCellStyle();
+        assertEquals(0, plain.getIndex());
+        assertEquals(wb.getFontAt((short) 0).getFontName(), xwb.getFontAt(plain.getFontIndex()).getFontName());
+
+        assertEquals(5000, xsheet.getColumnWidth(1));
+        assertTrue(xsheet.isColumnHidden(3));
+        assertEquals(1, xsheet.getNumMergedRegions());
+        assertEquals("C1:D2", xsheet.getMergedRegion(0).formatAsString());
+    }
+
+    /**
+     * Each cell of a shared formula must get its own formula text
+     */
+    public void testSharedFormulas() throws IOException {
+        HSSFWorkbook wb = HSSFTestDataSamples.openSampleWorkbook("shared_formulas.xls");
+        XSSFWorkbook xwb = convert(wb);
+
+        assertEquals(wb.getNumberOfSheets(), xwb.getNumberOfSheets());
+        for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+            HSSFSheet sheet = wb.getSheetAt(i);
+            XSSFSheet xsheet = xwb.getSheetAt(i);
+            assertEquals(sheet.getSheetName(), xsheet.getSheetName());
+            for (Iterator<Row> it = sheet.rowIterator(); it.hasNext(); ) {
+                Row row = it.next();
+                Row xrow = xsheet.getRow(row.getRowNum());
+                for (Iterator<Cell> cit = row.cellIterator(); cit.hasNext(); ) {
+                    HSSFCell cell = (HSSFCell) cit.next();
+                    Cell xcell = xrow.getCell(cell.getColumnIndex());
+                    assertEquals(cell.getCellType(), xcell.getCellType());
+                    if (cell.getCellType() == Cell.CELL_TYPE_FORMULA) {
+                        assertEquals(cell.getCellFormula(), xcell.getCellFormula());
+                        assertEquals(cell.getCachedFormulaResultType(), xcell.getCachedFormulaResultType());
+                    }
+                    if (cell.getCellType() == Cell.CELL_TYPE_NUMERIC) {
+                        assertEquals(cell.getNumericCellValue(), xcell.getNumericCellValue(), 0.0);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRst;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheetData;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorksheet;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.WorksheetDocument;
+
+public final class TestPackedSheetData extends TestCase {
+    private static final String ROW1 = "<row r=\"1\" spans=\"1:4\" x14ac:dyDescent=\"0.25\">"
+            + "<c r=\"A1\" s=\"2\"><v>1</v></c><c r=\"B1\"><v>2.5</v></c>"
+            + "<c r=\"C1\" t=\"s\"><v>0</v></c><c r=\"D1\" t=\"b\"><v>1</v></c></row>";
+    private static final String ROW2 = "<row r=\"2\">"
+            + "<c r=\"A2\"><f t=\"shared\" ref=\"A2:A3\" si=\"0\">B1*2</f><v>5</v></c>"
+            + "<c r=\"B2\" t=\"str\"><f>\"a\"&amp;\"b\"</f><v>ab</v></c>"
+            + "<c r=\"C2\" t=\"e\"><v>#DIV/0!</v></c><c r=\"D2\"><v>1.50</v></c></row>";
+    private static final String SHEET = "<worksheet"
+            + " xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\""
+            + " xmlns:x14ac=\"http://schemas.microsoft.com/office/spreadsheetml/2009/9/ac\">"
+            + "<dimension ref=\"A1:D5\"/><sheetData>\n"
+            + ROW1 + "\n" + ROW2 + "\n"
+            // neither the row nor the cells have a reference
+            + "<row><c><f t=\"shared\" si=\"0\"/><v>6</v></c><c t=\"inlineStr\"><is><t>x</t></is></c></row>\n"
+            + "<!-- before five --><row r=\"5\"><c r=\"A5\"><v>1.0E-5</v></c></row>\n"
+            + "<!-- after the rows --></sheetData></worksheet>";
+
+    private static PackedSheetData read() throws Exception {
+        PackedSheetData packed = new PackedSheetData();
+        CTWorksheet worksheet = WorksheetDocument.Factory.parse(
+                packed.read(new ByteArrayInputStream(SHEET.getBytes("UTF-8")))).getWorksheet();
+        assertEquals("A1:D5", worksheet.getDimension().getRef());
+        assertEquals(0, worksheet.getSheetData().sizeOfRowArray());
+        return packed;
+    }
+
+    private static String writeRows(PackedSheetData packed) throws Exception {
+        XmlWriter out = new XmlWriter(null);
+        packed.writeRows(out, 0, Integer.MAX_VALUE);
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+    public void testWriteRows() throws Exception {
+        PackedSheetData packed = read();
+        assertEquals(4, packed.size());
+        assertEquals(0, packed.getFirstRowNum());
+        assertEquals(4, packed.getLastRowNum());
+        // the master cell of the shared formula
+        assertEquals(Arrays.asList(1), packed.getFormulaRows());
+
+        // the third row keeps its XML because of the inline string, the fifth row because
+        //  of the comment before it, and the comment after the last row is lost
+        assertEquals(ROW1 + ROW2
+                + "<row r=\"3\"><c><f t=\"shared\" si=\"0\"></f><v>6</v></c>"
+                + "<c t=\"inlineStr\"><is><t>x</t></is></c></row>"
+                + "<!-- before five --><row r=\"5\"><c r=\"A5\"><v>1.0E-5</v></c></row>",
+                writeRows(packed));
+
+        CTSheetData rows = packed.unpack(1, 2, 10);
+        assertEquals(2, rows.sizeOfRowArray());
+        assertEquals("B1*2", rows.getRowArray(0).getCArray(0).getF().getStringValue());
+        assertEquals("\"a\"&\"b\"", rows.getRowArray(0).getCArray(1).getF().getStringValue());
+        assertEquals(3, rows.getRowArray(1).getR());
+        assertFalse(rows.getRowArray(1).getCArray(0).isSetR());
+        assertEquals(2, packed.size());
+        assertEquals(ROW1 + "<!-- before five --><row r=\"5\"><c r=\"A5\"><v>1.0E-5</v></c></row>",
+                writeRows(packed));
+    }
+
+    public void testReadValues() throws Exception {
+        PackedSheetData packed = read();
+        SharedStringsTable sst = new SharedStringsTable();
+        CTRst st = CTRst.Factory.newInstance();
+        st.setT("shared");
+        sst.addEntry(st);
+
+        double[] numbers = new double[3];
+        assertTrue(packed.readNumbers(0, 0, numbers, 1, 2));
+        assertTrue(Arrays.equals(new double[] { 0, 1, 2.5 }, numbers));
+        assertTrue(packed.readNumbers(1, 0, numbers, 0, 1));
+        assertEquals(5.0, numbers[0]);
+        // a shared string
+        assertFalse(packed.readNumbers(0, 0, numbers, 0, 3));
+        // a value that is only kept as text
+        assertFalse(packed.readNumbers(1, 3, numbers, 0, 1));
+        // a row which keeps its XML, and a missing row
+        assertFalse(packed.readNumbers(2, 0, numbers, 0, 1));
+        assertFalse(packed.readNumbers(3, 0, numbers, 0, 1));
+
+        String[] strings = new String[3];
+        assertTrue(packed.readStrings(0, 2, strings, 0, 1, sst));
+        assertTrue(packed.readStrings(1, 1, strings, 1, 1, sst));
+        assertTrue(packed.readStrings(0, 4, strings, 2, 1, sst));
+        assertTrue(Arrays.equals(new String[] { "shared", "ab", "" }, strings));
+        assertFalse(packed.readStrings(0, 0, strings, 0, 1, sst));
+        assertFalse(packed.readStrings(1, 2, strings, 0, 1, sst));
+
+        boolean[] booleans = new boolean[2];
+        assertTrue(packed.readBooleans(0, 3, booleans, 0, 2));
+        assertTrue(booleans[0]);
+        assertFalse(booleans[1]);
+        assertFalse(packed.readBooleans(0, 0, booleans, 0, 1));
+
+        // the values are read from the rows that are still packed only
+        packed.unpack(0, 0, 1);
+        assertFalse(packed.readBooleans(0, 3, booleans, 0, 1));
+    }
+}
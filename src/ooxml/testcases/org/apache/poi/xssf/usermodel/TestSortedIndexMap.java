@@ -0,0 +1,184 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+
+public final class TestSortedIndexMap extends TestCase {
+
+    public void testDense() {
+        SortedIndexMap<String> map = new SortedIndexMap<String>();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0));
+        for (int i = 3; i < 10; i++) {
+            assertNull(map.put(i, "v" + i));
+        }
+        assertEquals(7, map.size());
+        assertEquals(3, map.firstKey());
+        assertEquals(9, map.lastKey());
+        assertNull(map.get(2));
+        assertEquals("v3", map.get(3));
+        assertEquals("v9", map.get(9));
+        assertNull(map.get(10));
+        assertEquals(0, map.headSize(0));
+        assertEquals(2, map.headSize(5));
+        assertEquals(7, map.headSize(100));
+
+        assertEquals("v5", map.put(5, "x"));
+        assertEquals(7, map.size());
+        assertEquals("x", map.get(5));
+    }
+
+    public void testSparse() {
+        SortedIndexMap<String> map = new SortedIndexMap<String>(1);
+        // out of order, as after shifting rows
+        int[] keys = { 40, 2, 17, 1000, 0, 3 };
+        for (int key : keys) {
+            map.put(key, "v" + key);
+        }
+        int[] sorted = { 0, 2, 3, 17, 40, 1000 };
+        assertEquals(sorted.length, map.size());
+        int i = 0;
+        for (String value : map) {
+            assertEquals(sorted[i], map.keyAt(i));
+            assertEquals("v" + sorted[i], value);
+            i++;
+        }
+        assertNull(map.get(1));
+        assertNull(map.get(18));
+        assertEquals("v17", map.get(17));
+        assertEquals(4, map.headSize(18));
+        assertEquals(-5, map.indexOf(18));
+
+        assertEquals("v17", map.remove(17));
+        assertNull(map.remove(17));
+        assertEquals("v40", map.get(40));
+        assertEquals(3, map.headSize(40));
+        assertEquals(5, map.size());
+    }
+
+    public void testReplaceRange() {
+        SortedIndexMap<String> map = new SortedIndexMap<String>();
+        for (int i = 0; i < 8; i++) {
+            map.put(i, "v" + i);
+        }
+        // drop 2 and 3, move 4 to 5 and keep the rest
+        map.replaceRange(2, 6, new int[] { 5 }, Arrays.asList("v4"));
+        assertEquals(5, map.size());
+        int[] keys = { 0, 1, 5, 6, 7 };
+        String[] values = { "v0", "v1", "v4", "v6", "v7" };
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(keys[i], map.keyAt(i));
+            assertEquals(values[i], map.valueAt(i));
+        }
+        assertNull(map.get(2));
+        assertEquals("v4", map.get(5));
+
+        try {
+            map.replaceRange(0, 1, new int[] { 0, 1 }, Arrays.asList("a", "b"));
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected during successful test
+        }
+    }
+
+    public void testIterator() {
+        SortedIndexMap<String> map = new SortedIndexMap<String>();
+        for (int i = 0; i < 6; i++) {
+            map.put(i, "v" + i);
+        }
+        for (Iterator<String> it = map.iterator(); it.hasNext(); ) {
+            String value = it.next();
+            if (value.equals("v1") || value.equals("v2") || value.equals("v5")) {
+                it.remove();
+            }
+        }
+        assertEquals(3, map.size());
+        assertEquals("v0", map.get(0));
+        assertNull(map.get(1));
+        assertEquals("v3", map.get(3));
+        assertEquals("v4", map.get(4));
+
+        Iterator<String> it = map.iterator();
+        it.next();
+        map.put(10, "v10");
+        try {
+            it.next();
+            fail("expected ConcurrentModificationException");
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Cells and rows are found by their index both in dense and in sparse rows and sheets
+     */
+    public void testRowsAndCells() {
+        XSSFWorkbook wb = new XSSFWorkbook();
+        XSSFSheet sheet = wb.createSheet();
+        Row dense = sheet.createRow(5);
+        for (int i = 9; i >= 0; i--) {
+            dense.createCell(i).setCellValue(i);
+        }
+        Row sparse = sheet.createRow(2);
+        sparse.createCell(200).setCellValue(200);
+        sparse.createCell(3).setCellValue(3);
+        sparse.createCell(50).setCellValue(50);
+
+        assertEquals(2, sheet.getFirstRowNum());
+        assertEquals(5, sheet.getLastRowNum());
+        assertSame(dense, sheet.getRow(5));
+        assertSame(sparse, sheet.getRow(2));
+        assertNull(sheet.getRow(3));
+
+        assertEquals(0, dense.getFirstCellNum());
+        assertEquals(10, dense.getLastCellNum());
+        int col = 0;
+        for (Cell cell : dense) {
+            assertEquals(col++, cell.getColumnIndex());
+        }
+        assertEquals(7.0, dense.getCell(7).getNumericCellValue(), 0.0);
+        assertNull(dense.getCell(10));
+
+        assertEquals(3, sparse.getFirstCellNum());
+        assertEquals(201, sparse.getLastCellNum());
+        assertNull(sparse.getCell(4));
+        assertNull(sparse.getCell(4, Row.RETURN_BLANK_AS_NULL));
+        assertEquals(50.0, sparse.getCell(50).getNumericCellValue(), 0.0);
+        Cell blank = sparse.getCell(4, Row.CREATE_NULL_AS_BLANK);
+        assertEquals(Cell.CELL_TYPE_BLANK, blank.getCellType());
+        assertEquals(4, sparse.getPhysicalNumberOfCells());
+        assertNull(sparse.getCell(4, Row.RETURN_BLANK_AS_NULL));
+        assertSame(blank, sparse.getCell(4, Row.RETURN_NULL_AND_BLANK));
+
+        sparse.removeCell(blank);
+        assertNull(sparse.getCell(4));
+        assertEquals(3, sparse.getPhysicalNumberOfCells());
+
+        sheet.removeRow(sparse);
+        assertEquals(5, sheet.getFirstRowNum());
+        assertEquals(1, sheet.getPhysicalNumberOfRows());
+    }
+}
@@ -182,4 +182,55 @@ public final class TestXSSFCell extends BaseTestCell {
         wb.getCreationHelper().createFormulaEvaluator().evaluateFormulaCell(cell);
         assertEquals(36, cell.getErrorCellValue());
     }
+
+    /**
+     * The values read are cached, the cache must follow every change of the cell
+     */
+    public void testCachedValues() {
+        XSSFWorkbook wb = new XSSFWorkbook();
+        XSSFSheet sheet = wb.createSheet();
+        XSSFCell cell = sheet.createRow(0).createCell(0);
+
+        cell.setCellValue(1.5);
+        assertEquals(1.5, cell.getNumericCellValue(), 0.0);
+        assertEquals(1.5, cell.getNumericCellValue(), 0.0);
+        cell.setCellValue(2.5);
+        assertEquals(2.5, cell.getNumericCellValue(), 0.0);
+
+        cell.setCellValue("first");
+        assertEquals("first", cell.getStringCellValue());
+        assertEquals("first", cell.getStringCellValue());
+        cell.setCellValue("second_x0009_");
+        assertEquals("second\t", cell.getStringCellValue());
+
+        cell.setCellValue(3.5);
+        assertEquals(3.5, cell.getNumericCellValue(), 0.0);
+        cell.setCellType(Cell.CELL_TYPE_STRING);
+        assertEquals("3.5", cell.getStringCellValue());
+        cell.setCellType(Cell.CELL_TYPE_BLANK);
+        assertEquals(0.0, cell.getNumericCellValue(), 0.0);
+        assertEquals("", cell.getStringCellValue());
+
+        cell.setCellValue(4.5);
+        assertEquals(4.5, cell.getNumericCellValue(), 0.0);
+        cell.setCellFormula("1+2");
+        assertEquals(0.0, cell.getNumericCellValue(), 0.0);
+        wb.getCreationHelper().createFormulaEvaluator().evaluateFormulaCell(cell);
+        assertEquals(3.0, cell.getNumericCellValue(), 0.0);
+        cell.setCellErrorValue(FormulaError.NA);
+        assertEquals(FormulaError.NA.getCode(), cell.getErrorCellValue());
+        cell.setCellType(Cell.CELL_TYPE_BLANK);
+
+        cell.setCellValue(5.5);
+        assertEquals(5.5, cell.getNumericCellValue(), 0.0);
+        cell.getCTCell().setV("6.5");
+        assertEquals(6.5, cell.getNumericCellValue(), 0.0);
+
+        cell.setCellValue("third");
+        assertEquals("third", cell.getStringCellValue());
+        SharedStringsTable sst = wb.getSharedStringSource();
+        int idx = sst.addEntry(new XSSFRichTextString("fourth").getCTRst());
+        cell.getCTCell().setV(Integer.toString(idx));
+        assertEquals("fourth", cell.getStringCellValue());
+    }
 }
@@ -17,6 +17,9 @@
 
 package org.apache.poi.xssf.usermodel;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.poi.ss.usermodel.*;
@@ -29,6 +32,7 @@ import org.apache.poi.xssf.model.CalculationChain;
 import org.apache.poi.xssf.usermodel.helpers.ColumnHelper;
 import org.apache.poi.util.HexDump;
 import org.apache.poi.hssf.record.PasswordRecord;
+import org.apache.xmlbeans.XmlCursor;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.*;
 
 
@@ -1084,4 +1088,199 @@ public final class TestXSSFSheet extends BaseTestSheet {
          sheet = workbook.getSheet("Sheet 1");
          assertEquals(false, sheet.getForceFormulaRecalculation());
 	}
+
+    public void testBlockValues() {
+        XSSFWorkbook wb = new XSSFWorkbook();
+        XSSFSheet sh = wb.createSheet();
+        XSSFCellStyle style = wb.createCellStyle();
+        XSSFCell styled = sh.createRow(1).createCell(2);
+        styled.setCellStyle(style);
+        sh.createRow(2).createCell(3).setCellFormula("1+1");
+
+        sh.writeNumericBlock(1, 2, 1, 3, new double[] { 1, 2, 3, 4, 5, 6 });
+        sh.writeStringBlock(4, 4, 0, 2, new String[] { "a", null, "c" });
+        sh.writeBooleanBlock(5, 5, 0, 1, new boolean[] { true, false });
+
+        wb = XSSFTestDataSamples.writeOutAndReadBack(wb);
+        sh = wb.getSheetAt(0);
+        double[] numbers = new double[9];
+        sh.readNumericBlock(0, 2, 1, 3, numbers);
+        assertTrue(Arrays.equals(new double[] { 0, 0, 0, 1, 2, 3, 4, 5, 6 }, numbers));
+        // the values are read from the packed rows
+        assertEquals(0, sh.getCTWorksheetWithoutRows().getSheetData().sizeOfRowArray());
+        assertEquals(style.getIndex(), sh.getRow(1).getCell(2).getCellStyle().getIndex());
+        assertEquals("1+1", sh.getRow(2).getCell(3).getCellFormula());
+        String[] strings = new String[4];
+        sh.readStringBlock(4, 4, 0, 3, strings);
+        assertTrue(Arrays.equals(new String[] { "a", "", "c", "" }, strings));
+        boolean[] booleans = new boolean[2];
+        sh.readBooleanBlock(5, 5, 0, 1, booleans);
+        assertTrue(booleans[0]);
+        assertFalse(booleans[1]);
+        assertEquals(2, sh.getCTWorksheetWithoutRows().getSheetData().sizeOfRowArray());
+
+        try {
+            sh.readNumericBlock(4, 4, 0, 0, numbers);
+            fail("expected exception");
+        } catch (IllegalStateException e) {
+            // text cell
+        }
+    }
+
+    /**
+     * The rows read from a file are unpacked when they are accessed,
+     * the others are written back as they are
+     */
+    public void testPackedRows() {
+        XSSFWorkbook wb = new XSSFWorkbook();
+        XSSFSheet sh = wb.createSheet();
+        for (int i = 2; i < 12; i++) {
+            XSSFRow row = sh.createRow(i);
+            row.createCell(0).setCellValue(i);
+            row.createCell(1).setCellValue("text <" + i + "> & \u00e9");
+            row.createCell(2).setCellFormula("A" + (i + 1) + "*2");
+        }
+        sh.getRow(4).setHeightInPoints(30);
+
+        wb = XSSFTestDataSamples.writeOutAndReadBack(wb);
+        sh = wb.getSheetAt(0);
+        assertEquals(2, sh.getFirstRowNum());
+        assertEquals(11, sh.getLastRowNum());
+        assertEquals(10, sh.getPhysicalNumberOfRows());
+        assertNull(sh.getRow(1));
+
+        XSSFRow row = sh.getRow(6);
+        assertEquals(6.0, row.getCell(0).getNumericCellValue());
+        assertEquals("text <6> & \u00e9", row.getCell(1).getStringCellValue());
+        assertEquals("A7*2", row.getCell(2).getCellFormula());
+        row.getCell(0).setCellValue(60);
+        // replaces the packed row
+        sh.createRow(8).createCell(3).setCellValue(true);
+        sh.removeRow(sh.getRow(10));
+        sh.createRow(13).createCell(0).setCellValue(13);
+        sh.createRow(0).createCell(0).setCellValue(0);
+        assertEquals(0, sh.getFirstRowNum());
+        assertEquals(13, sh.getLastRowNum());
+        assertEquals(11, sh.getPhysicalNumberOfRows());
+
+        wb = XSSFTestDataSamples.writeOutAndReadBack(wb);
+        sh = wb.getSheetAt(0);
+        int[] rowNums = { 0, 2, 3, 4, 5, 6, 7, 8, 9, 11, 13 };
+        int i = 0;
+        for (Row r : sh) {
+            assertEquals(rowNums[i++], r.getRowNum());
+        }
+        assertEquals(rowNums.length, i);
+        assertEquals(30.0f, sh.getRow(4).getHeightInPoints());
+        assertEquals(60.0, sh.getRow(6).getCell(0).getNumericCellValue());
+        assertEquals("text <9> & \u00e9", sh.getRow(9).getCell(1).getStringCellValue());
+        assertEquals("A12*2", sh.getRow(11).getCell(2).getCellFormula());
+        assertEquals(1, sh.getRow(8).getPhysicalNumberOfCells());
+        assertTrue(sh.getRow(8).getCell(3).getBooleanCellValue());
+    }
+
+    /**
+     * The rows are written directly, the other parts of the worksheet are saved by XMLBeans
+     */
+    public void testWriteRows() throws Exception {
+        XSSFWorkbook wb = XSSFTestDataSamples.openSampleWorkbook("WithConditionalFormatting.xlsx");
+        XSSFSheet sh = wb.getSheetAt(0);
+        // unpacks the fifth row, the others stay packed
+        XSSFRow row = sh.getRow(4);
+        row.getCell(0).setCellValue(40);
+        XSSFFont font = wb.createFont();
+        font.setBold(true);
+        XSSFRichTextString rt = new XSSFRichTextString("  bold < \u0001 plain  ");
+        rt.applyFont(0, 6, font);
+        CTCell inline = row.createCell(3).getCTCell();
+        inline.setT(STCellType.INLINE_STR);
+        inline.setIs(rt.getCTRst());
+        XSSFHyperlink link = wb.getCreationHelper().createHyperlink(Hyperlink.LINK_URL);
+        link.setAddress("http://poi.apache.org/");
+        row.getCell(1).setHyperlink(link);
+        // comments and processing instructions in the rows are kept
+        XmlCursor cursor = row.getCTRow().newCursor();
+        cursor.toEndToken();
+        cursor.insertComment(" kept ");
+        cursor.insertProcInst("target", "data");
+        cursor.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sh.write(out);
+        String xml = new String(out.toByteArray(), "UTF-8");
+        WorksheetDocument.Factory.parse(xml);
+        assertTrue(xml.contains("<!-- kept --><?target data?></row>"));
+        assertTrue(xml.contains("mc:Ignorable=\"x14ac\""));
+        // the packed and the unpacked rows keep the attribute of the other namespace
+        assertEquals(10, xml.split("x14ac:dyDescent=").length - 1);
+        assertTrue(xml.contains("<row r=\"5\" spans=\"1:2\" x14ac:dyDescent=\"0.25\">"));
+
+        wb = XSSFTestDataSamples.writeOutAndReadBack(wb);
+        sh = wb.getSheetAt(0);
+        assertEquals(8, sh.getLastRowNum());
+        assertEquals(9, sh.getPhysicalNumberOfRows());
+        assertEquals(2.0, sh.getRow(0).getCell(0).getNumericCellValue());
+        assertEquals(40.0, sh.getRow(4).getCell(0).getNumericCellValue());
+        assertEquals("SUM(A1:A7)", sh.getRow(7).getCell(0).getCellFormula());
+        rt = sh.getRow(4).getCell(3).getRichStringCellValue();
+        assertEquals("  bold < ? plain  ", rt.getString());
+        assertEquals(2, rt.numFormattingRuns());
+        assertTrue(rt.getFontAtIndex(0).getBold());
+        assertEquals("http://poi.apache.org/", sh.getHyperlink(4, 1).getAddress());
+        assertEquals(3, sh.getSheetConditionalFormatting().getNumConditionalFormattings());
+        assertEquals(15.0f, sh.getDefaultRowHeightInPoints());
+    }
+
+    public void testPackedSharedFormulas() {
+        XSSFWorkbook wb = XSSFTestDataSamples.openSampleWorkbook("shared_formulas.xlsx");
+        XSSFWorkbook expected = XSSFTestDataSamples.openSampleWorkbook("shared_formulas.xlsx");
+        // read the last rows first, their formulas refer to the master cells
+        XSSFSheet sh = wb.getSheetAt(0);
+        XSSFSheet expectedSheet = expected.getSheetAt(0);
+        expectedSheet.getCTWorksheet();
+        for (int i = sh.getLastRowNum(); i >= 0; i--) {
+            XSSFRow row = sh.getRow(i);
+            XSSFRow expectedRow = expectedSheet.getRow(i);
+            if (expectedRow == null) {
+                assertNull(row);
+                continue;
+            }
+            for (Cell c : expectedRow) {
+                if (c.getCellType() == Cell.CELL_TYPE_FORMULA) {
+                    assertEquals(c.getCellFormula(), row.getCell(c.getColumnIndex()).getCellFormula());
+                }
+            }
+        }
+    }
+
+    /**
+     * The comments and processing instructions of a worksheet are kept, except for those
+     * between the rows, which are kept with the next row only while that row is packed
+     */
+    public void testPackedComments() throws Exception {
+        XSSFSheet sh = new XSSFWorkbook().createSheet();
+        String xml = "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+                + "<!-- before the rows --><sheetData>"
+                + "<row r=\"1\"><c r=\"A1\"><v>1</v></c><!-- in the row --></row>"
+                + "<!-- before the second row --><row r=\"2\"><c r=\"A2\"><v>2</v></c></row>"
+                + "<!-- after the rows --></sheetData><?target data?></worksheet>";
+        sh.read(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sh.write(out);
+        String written = new String(out.toByteArray(), "UTF-8");
+        assertTrue(written.contains("<!-- before the rows --><sheetData>"));
+        assertTrue(written.contains("<!-- in the row --></row>"));
+        assertTrue(written.contains("<!-- before the second row --><row r=\"2\">"));
+        assertFalse(written.contains("after the rows"));
+        assertTrue(written.contains("</sheetData><?target data?></worksheet>"));
+
+        assertEquals(2.0, sh.getRow(1).getCell(0).getNumericCellValue());
+        out.reset();
+        sh.write(out);
+        written = new String(out.toByteArray(), "UTF-8");
+        assertTrue(written.contains("<!-- in the row --></row>"));
+        assertFalse(written.contains("before the second row"));
+        assertTrue(written.contains("<row r=\"2\"><c r=\"A2\"><v>2</v></c></row>"));
+    }
 }
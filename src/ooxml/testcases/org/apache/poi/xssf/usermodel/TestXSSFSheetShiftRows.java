@@ -17,8 +17,15 @@
 
 package org.apache.poi.xssf.usermodel;
 
+import java.util.List;
+
 import org.apache.poi.ss.usermodel.BaseTestSheetShiftRows;
+import org.apache.poi.ss.usermodel.DataValidationConstraint;
+import org.apache.poi.ss.usermodel.DataValidationHelper;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellRangeAddressList;
 import org.apache.poi.xssf.XSSFITestDataProvider;
+import org.apache.poi.xssf.XSSFTestDataSamples;
 
 /**
  * @author Yegor Kozlov
@@ -36,4 +43,86 @@ public final class TestXSSFSheetShiftRows extends BaseTestSheetShiftRows {
     public void testShiftWithComments() { // disabled test from superclass
         // TODO - support shifting of comments.
     }
+
+    public void testShiftDataValidations() {
+        XSSFWorkbook wb = new XSSFWorkbook();
+        XSSFSheet sheet = wb.createSheet();
+        for (int i = 0; i < 10; i++) {
+            sheet.createRow(i).createCell(0).setCellValue(i);
+        }
+        DataValidationHelper helper = sheet.getDataValidationHelper();
+        DataValidationConstraint constraint = helper.createExplicitListConstraint(new String[] {"a", "b"});
+        sheet.addValidationData(helper.createValidation(constraint, new CellRangeAddressList(2, 3, 0, 0)));
+        sheet.addValidationData(helper.createValidation(constraint, new CellRangeAddressList(8, 8, 0, 0)));
+
+        sheet.shiftRows(2, 3, 4);
+
+        List<XSSFDataValidation> dvs = sheet.getDataValidations();
+        assertEquals(2, dvs.size());
+        CellRangeAddress[] regions = dvs.get(0).getRegions().getCellRangeAddresses();
+        assertEquals(1, regions.length);
+        assertEquals("A7:A8", regions[0].formatAsString());
+        regions = dvs.get(1).getRegions().getCellRangeAddresses();
+        assertEquals("A9", regions[0].formatAsString());
+    }
+
+    /**
+     * Without copyRowHeight only the shifted rows lose their height, the rows before and
+     *  after the shifted block keep it
+     */
+    public void testShiftRowHeights() {
+        XSSFWorkbook wb = new XSSFWorkbook();
+        XSSFSheet sheet = wb.createSheet();
+        for (int i = 0; i < 10; i++) {
+            XSSFRow row = sheet.createRow(i);
+            row.createCell(0).setCellValue(i);
+            row.setHeight((short)(300 + i * 20));
+        }
+
+        sheet.shiftRows(2, 3, 2);
+        assertTrue(sheet.getRow(1).getCTRow().isSetHt());
+        assertEquals(320, sheet.getRow(1).getHeight());
+        assertFalse(sheet.getRow(4).getCTRow().isSetHt());
+        assertFalse(sheet.getRow(5).getCTRow().isSetHt());
+        assertEquals(2.0, sheet.getRow(4).getCell(0).getNumericCellValue(), 0.0);
+        assertEquals(480, sheet.getRow(9).getHeight());
+
+        sheet.shiftRows(8, 9, -2, true, false);
+        assertEquals(460, sheet.getRow(6).getHeight());
+        assertEquals(480, sheet.getRow(7).getHeight());
+    }
+
+    /**
+     * The rows read from a file stay packed, unless they are shifted or overwritten or hold formulas
+     */
+    public void testShiftPackedRows() {
+        XSSFWorkbook wb = new XSSFWorkbook();
+        XSSFSheet sheet = wb.createSheet();
+        XSSFSheet other = wb.createSheet();
+        for (int i = 0; i < 10; i++) {
+            sheet.createRow(i).createCell(0).setCellValue(i);
+            other.createRow(i).createCell(0).setCellValue(i);
+        }
+        sheet.getRow(9).createCell(1).setCellFormula("A1*2");
+        other.getRow(5).createCell(1).setCellFormula("Sheet0!A2");
+        DataValidationHelper helper = sheet.getDataValidationHelper();
+        DataValidationConstraint constraint = helper.createExplicitListConstraint(new String[] {"a", "b"});
+        sheet.addValidationData(helper.createValidation(constraint, new CellRangeAddressList(0, 1, 0, 0)));
+
+        wb = XSSFTestDataSamples.writeOutAndReadBack(wb);
+        sheet = wb.getSheetAt(0);
+        other = wb.getSheetAt(1);
+        sheet.shiftRows(0, 1, 20);
+
+        // rows 0 and 1 moved to 20 and 21, and the formula rows
+        assertEquals(3, sheet.getCTWorksheetWithoutRows().getSheetData().sizeOfRowArray());
+        assertEquals(1, other.getCTWorksheetWithoutRows().getSheetData().sizeOfRowArray());
+        assertEquals("A21*2", sheet.getRow(9).getCell(1).getCellFormula());
+        assertEquals("Sheet0!A22", other.getRow(5).getCell(1).getCellFormula());
+        assertEquals("A21:A22", sheet.getDataValidations().get(0).getRegions()
+                .getCellRangeAddress(0).formatAsString());
+        assertEquals(5.0, sheet.getRow(5).getCell(0).getNumericCellValue(), 0.0);
+        assertEquals(1.0, sheet.getRow(21).getCell(0).getNumericCellValue(), 0.0);
+        assertNull(sheet.getRow(0));
+    }
 }
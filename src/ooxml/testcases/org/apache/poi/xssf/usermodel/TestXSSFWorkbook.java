@@ -17,17 +17,23 @@
 
 package org.apache.poi.xssf.usermodel;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.zip.CRC32;
 
+import org.apache.poi.POIXMLDocumentPart;
 import org.apache.poi.POIXMLProperties;
 import org.apache.poi.hssf.HSSFTestDataSamples;
 import org.apache.poi.openxml4j.opc.*;
 import org.apache.poi.openxml4j.opc.internal.PackagePropertiesPart;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.util.IOUtils;
 import org.apache.poi.util.TempFile;
 import org.apache.poi.xssf.XSSFITestDataProvider;
 import org.apache.poi.xssf.XSSFTestDataSamples;
@@ -441,4 +447,53 @@ public final class TestXSSFWorkbook extends BaseTestWorkbook {
         assertEquals(IndexedColors.RED.index,
                 sh.getCTWorksheet().getSheetPr().getTabColor().getIndexed());
     }
+
+    public void testLoadSheetsLazily() throws Exception {
+        XSSFWorkbook eager = XSSFTestDataSamples.openSampleWorkbook("sample.xlsx");
+        OPCPackage pkg = XSSFTestDataSamples.openSamplePackage("sample.xlsx");
+        XSSFWorkbook wb = new XSSFWorkbook(pkg, true);
+        assertEquals(eager.getNumberOfSheets(), wb.getNumberOfSheets());
+        for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+            assertEquals(eager.getSheetName(i), wb.getSheetName(i));
+        }
+        List<XSSFSheet> sheets = new ArrayList<XSSFSheet>();
+        for (POIXMLDocumentPart p : wb.getRelations()) {
+            if (p instanceof XSSFSheet) {
+                assertTrue(((XSSFSheet) p).isDocumentReadPending());
+                sheets.add((XSSFSheet) p);
+            }
+        }
+        assertTrue(sheets.size() > 1);
+
+        XSSFSheet sheet = wb.getSheetAt(0);
+        assertFalse(sheet.isDocumentReadPending());
+        assertEquals(eager.getSheetAt(0).getLastRowNum(), sheet.getLastRowNum());
+        sheet.createRow(100).createCell(0).setCellValue("lazy");
+        XSSFSheet untouched = null;
+        for (XSSFSheet sh : sheets) {
+            if (sh != sheet) {
+                assertTrue(sh.isDocumentReadPending());
+                untouched = sh;
+            }
+        }
+        byte[] original = IOUtils.toByteArray(untouched.getPackagePart().getInputStream());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        wb.write(out);
+        OPCPackage written = OPCPackage.open(new ByteArrayInputStream(out.toByteArray()));
+        PackagePart part = written.getPart(untouched.getPackagePart().getPartName());
+        assertTrue(Arrays.equals(original, IOUtils.toByteArray(part.getInputStream())));
+
+        wb = new XSSFWorkbook(written);
+        assertEquals("lazy", wb.getSheetAt(0).getRow(100).getCell(0).getStringCellValue());
+        for (int i = 1; i < wb.getNumberOfSheets(); i++) {
+            assertEquals(eager.getSheetAt(i).getPhysicalNumberOfRows(), wb.getSheetAt(i).getPhysicalNumberOfRows());
+        }
+
+        // iterating loads the sheets
+        wb = new XSSFWorkbook(XSSFTestDataSamples.openSamplePackage("sample.xlsx"), true);
+        for (XSSFSheet sh : wb) {
+            assertFalse(sh.isDocumentReadPending());
+        }
+    }
 }
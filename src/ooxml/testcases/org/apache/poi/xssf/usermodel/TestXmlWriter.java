@@ -0,0 +1,57 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import junit.framework.TestCase;
+
+public final class TestXmlWriter extends TestCase {
+
+    private static String escape(String text) throws Exception {
+        XmlWriter out = new XmlWriter(null);
+        out.writeEscaped(text, false);
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+    public void testEscape() throws Exception {
+        assertEquals("a &lt; b &amp; \"c\" \u00E9\u20AC", escape("a < b & \"c\" \u00E9\u20AC"));
+        assertEquals("? ?", escape("\u0001 \uFFFF"));
+    }
+
+    public void testSurrogates() throws Exception {
+        assertEquals("\uD83D\uDE00", escape("\uD83D\uDE00"));
+        // unpaired surrogates are not written as invalid UTF-8
+        assertEquals("?x", escape("\uD83Dx"));
+        assertEquals("x?", escape("x\uD83D"));
+        assertEquals("?x", escape("\uDE00x"));
+        assertEquals("??\uD83D\uDE00", escape("\uDE00\uD83D\uD83D\uDE00"));
+
+        // a pair split between two pieces of text
+        XmlWriter out = new XmlWriter(null);
+        char[] ch = "a\uD83D\uDE00b".toCharArray();
+        out.writeEscaped(ch, 0, 2, false);
+        out.writeEscaped(ch, 2, 2, false);
+        out.write("</t>");
+        assertEquals("a\uD83D\uDE00b</t>", new String(out.toByteArray(), "UTF-8"));
+
+        // a high surrogate at the end of a text
+        out.reset();
+        out.writeEscaped(ch, 0, 2, false);
+        out.write("</t>");
+        assertEquals("a?</t>", new String(out.toByteArray(), "UTF-8"));
+    }
+}
@@ -16,21 +16,38 @@
 ==================================================================== */
 
 package org.apache.poi.hssf.eventusermodel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import junit.framework.TestCase;
 
 import org.apache.poi.hssf.HSSFTestDataSamples;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
 import org.apache.poi.hssf.record.ContinueRecord;
 import org.apache.poi.hssf.record.DVALRecord;
 import org.apache.poi.hssf.record.DVRecord;
 import org.apache.poi.hssf.record.EOFRecord;
 import org.apache.poi.hssf.record.FeatHdrRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
 import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.SSTRecord;
 import org.apache.poi.hssf.record.SelectionRecord;
+import org.apache.poi.hssf.record.SharedFormulaRecord;
 import org.apache.poi.hssf.record.WindowTwoRecord;
+import org.apache.poi.hssf.usermodel.HSSFCellStyle;
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 /**
  * 
@@ -111,6 +128,248 @@ public final class TestHSSFEventFactory extends TestCase {
 		assertTrue("no errors while processing the file", true);
 	}
 
+	public void testProcessSheetRows() throws Exception {
+		HSSFWorkbook wb = new HSSFWorkbook();
+		wb.createSheet("first").createRow(0).createCell(0).setCellValue("first sheet");
+		HSSFSheet sheet = wb.createSheet("second");
+		for (int i = 0; i < 500; i++) {
+			HSSFRow row = sheet.createRow(i);
+			row.createCell(0).setCellValue(i);
+			row.createCell(1).setCellValue("r" + i);
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		wb.write(baos);
+		POIFSFileSystem fs = new POIFSFileSystem(new ByteArrayInputStream(baos.toByteArray()));
+
+		HSSFRequest req = new HSSFRequest();
+		MockHSSFListener mockListen = new MockHSSFListener();
+		req.addListenerForAllRecords(mockListen);
+		new HSSFEventFactory().processSheetRows(req, fs.getRoot(), 1, 100, 140);
+		Record[] recs = mockListen.getRecords();
+
+		// workbook globals first
+		int i = 0;
+		boolean foundSST = false;
+		while (!(recs[i] instanceof EOFRecord)) {
+			foundSST |= recs[i] instanceof SSTRecord;
+			i++;
+		}
+		assertTrue(foundSST);
+		assertEquals(BOFRecord.TYPE_WORKSHEET, ((BOFRecord) recs[++i]).getType());
+		assertEquals(EOFRecord.class, recs[recs.length - 1].getClass());
+
+		int nRows = 0;
+		int nStrings = 0;
+		double expectedValue = 100;
+		for (i++; i < recs.length - 1; i++) {
+			if (recs[i] instanceof RowRecord) {
+				assertEquals(100 + nRows, ((RowRecord) recs[i]).getRowNumber());
+				nRows++;
+			} else if (recs[i] instanceof NumberRecord) {
+				assertEquals(expectedValue++, ((NumberRecord) recs[i]).getValue(), 0.0);
+			} else {
+				assertEquals(LabelSSTRecord.class, recs[i].getClass());
+				nStrings++;
+			}
+		}
+		assertEquals(41, nRows);
+		assertEquals(141.0, expectedValue, 0.0);
+		assertEquals(41, nStrings);
+	}
+
+	/**
+	 * The INDEX and DBCELL records written by Excel should lead to the same cells as a full scan
+	 */
+	public void testProcessSheetRowsMatchesFullScan() throws Exception {
+		POIFSFileSystem fs = new POIFSFileSystem(openSample("ex47747-sharedFormula.xls"));
+
+		HSSFRequest req = new HSSFRequest();
+		MockHSSFListener fullListen = new MockHSSFListener();
+		req.addListenerForAllRecords(fullListen);
+		new HSSFEventFactory().processWorkbookEvents(req, fs);
+		List<String> expected = new ArrayList<String>();
+		int bofCount = 0;
+		for (Record r : fullListen.getRecords()) {
+			if (r instanceof BOFRecord) {
+				bofCount++;
+			}
+			if (bofCount == 2 && r instanceof CellValueRecordInterface) {
+				int row = ((CellValueRecordInterface) r).getRow();
+				if (row >= 15 && row <= 22) {
+					expected.add(r.toString());
+				}
+			}
+		}
+		assertTrue(expected.size() > 0);
+
+		req = new HSSFRequest();
+		MockHSSFListener rangeListen = new MockHSSFListener();
+		req.addListenerForAllRecords(rangeListen);
+		new HSSFEventFactory().processSheetRows(req, fs.getRoot(), 0, 15, 22);
+		List<String> actual = new ArrayList<String>();
+		for (Record r : rangeListen.getRecords()) {
+			if (r instanceof CellValueRecordInterface) {
+				actual.add(r.toString());
+			}
+		}
+		assertEquals(expected, actual);
+	}
+
+	/**
+	 * The shared formula of A2:A41 follows its first cell, in the first row block.  Rows from
+	 * the second row block still get it, before their formulas
+	 */
+	public void testProcessSheetRowsSharedFormulaFromEarlierBlock() throws Exception {
+		POIFSFileSystem fs = new POIFSFileSystem(openSample("shared_formulas.xls"));
+
+		HSSFRequest req = new HSSFRequest();
+		MockHSSFListener mockListen = new MockHSSFListener();
+		req.addListenerForAllRecords(mockListen);
+		new HSSFEventFactory().processSheetRows(req, fs.getRoot(), 0, 35, 38);
+		int nShared = 0;
+		int nFormulas = 0;
+		for (Record r : mockListen.getRecords()) {
+			if (r instanceof SharedFormulaRecord) {
+				assertEquals(0, nFormulas);
+				SharedFormulaRecord sfr = (SharedFormulaRecord) r;
+				assertEquals(1, sfr.getFirstRow());
+				assertEquals(40, sfr.getLastRow());
+				nShared++;
+			} else if (r instanceof FormulaRecord) {
+				FormulaRecord fr = (FormulaRecord) r;
+				assertTrue(fr.getRow() >= 35 && fr.getRow() <= 38);
+				if (fr.isSharedFormula()) {
+					nFormulas++;
+				}
+			}
+		}
+		assertEquals(1, nShared);
+		assertEquals(4, nFormulas);
+	}
+
+	public void testProcessSheetsInParallel() throws Exception {
+		HSSFWorkbook wb = new HSSFWorkbook();
+		HSSFCellStyle style = wb.createCellStyle();
+		style.setDataFormat(wb.createDataFormat().getFormat("0.000"));
+		for (int s = 0; s < 5; s++) {
+			HSSFSheet sheet = wb.createSheet("s" + s);
+			for (int i = 0; i < 50 * s; i++) {
+				HSSFRow row = sheet.createRow(i);
+				row.createCell(0).setCellValue(i);
+				row.getCell(0).setCellStyle(style);
+				row.createCell(1).setCellValue("s" + s + "r" + i);
+			}
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		wb.write(baos);
+		POIFSFileSystem fs = new POIFSFileSystem(new ByteArrayInputStream(baos.toByteArray()));
+
+		// the sheet sub-streams of a sequential scan
+		HSSFRequest req = new HSSFRequest();
+		MockHSSFListener fullListen = new MockHSSFListener();
+		req.addListenerForAllRecords(fullListen);
+		new HSSFEventFactory().processWorkbookEvents(req, fs);
+		List<List<String>> expected = new ArrayList<List<String>>();
+		int bofCount = 0;
+		for (Record r : fullListen.getRecords()) {
+			if (r instanceof BOFRecord) {
+				bofCount++;
+				if (bofCount > 1) {
+					expected.add(new ArrayList<String>());
+				}
+			}
+			if (bofCount > 1) {
+				expected.get(bofCount - 2).add(r.toString());
+			}
+		}
+		assertEquals(5, expected.size());
+
+		req = new HSSFRequest();
+		final FormatTrackingHSSFListener globalFormats = new FormatTrackingHSSFListener(new MockHSSFListener());
+		req.addListenerForAllRecords(globalFormats);
+		final MockHSSFListener[] sheetListeners = new MockHSSFListener[5];
+		final FormatTrackingHSSFListener[] sheetFormats = new FormatTrackingHSSFListener[5];
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			new HSSFEventFactory().processSheetsInParallel(req, new HSSFSheetListenerFactory() {
+				public HSSFListener createSheetListener(int sheetIndex, BoundSheetRecord boundSheet) {
+					assertEquals("s" + sheetIndex, boundSheet.getSheetname());
+					sheetListeners[sheetIndex] = new MockHSSFListener();
+					sheetFormats[sheetIndex] = new FormatTrackingHSSFListener(sheetListeners[sheetIndex], globalFormats);
+					return sheetFormats[sheetIndex];
+				}
+			}, fs, executor);
+		} finally {
+			executor.shutdown();
+		}
+		for (int s = 0; s < 5; s++) {
+			List<String> actual = new ArrayList<String>();
+			for (Record r : sheetListeners[s].getRecords()) {
+				actual.add(r.toString());
+				if (r instanceof NumberRecord && ((NumberRecord) r).getRow() == 3) {
+					assertEquals("3.000", sheetFormats[s].formatNumberDateCell((NumberRecord) r));
+				}
+			}
+			assertEquals(expected.get(s), actual);
+		}
+	}
+
+	/**
+	 * The sheet listeners look up the strings of their cells in the SST of the globals
+	 *  concurrently.  There are more strings than the SST caches, so the lookups keep
+	 *  changing the cache.
+	 */
+	public void testProcessSheetsInParallelSharedStrings() throws Exception {
+		final int nSheets = 6;
+		final int nStrings = 3000;
+		HSSFWorkbook wb = new HSSFWorkbook();
+		for (int s = 0; s < nSheets; s++) {
+			HSSFSheet sheet = wb.createSheet("s" + s);
+			for (int i = 0; i < 2000; i++) {
+				HSSFRow row = sheet.createRow(i);
+				row.createCell(0).setCellValue("t" + ((i * 7 + s * 13) % nStrings));
+				row.createCell(1).setCellValue("t" + ((i * 11 + s) % nStrings));
+			}
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		wb.write(baos);
+		POIFSFileSystem fs = new POIFSFileSystem(new ByteArrayInputStream(baos.toByteArray()));
+
+		HSSFRequest req = new HSSFRequest();
+		final SSTRecord[] sst = new SSTRecord[1];
+		req.addListener(new HSSFListener() {
+			public void processRecord(Record record) {
+				sst[0] = (SSTRecord) record;
+			}
+		}, SSTRecord.sid);
+		final int[] labels = new int[nSheets];
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			new HSSFEventFactory().processSheetsInParallel(req, new HSSFSheetListenerFactory() {
+				public HSSFListener createSheetListener(final int sheetIndex, BoundSheetRecord boundSheet) {
+					assertEquals(nStrings, sst[0].getNumUniqueStrings());
+					return new HSSFListener() {
+						public void processRecord(Record record) {
+							if (!(record instanceof LabelSSTRecord)) {
+								return;
+							}
+							LabelSSTRecord label = (LabelSSTRecord) record;
+							int i = label.getRow();
+							int n = label.getColumn() == 0 ? (i * 7 + sheetIndex * 13) % nStrings : (i * 11 + sheetIndex) % nStrings;
+							assertEquals("t" + n, sst[0].getString(label.getSSTIndex()).getString());
+							labels[sheetIndex]++;
+						}
+					};
+				}
+			}, fs, executor);
+		} finally {
+			executor.shutdown();
+		}
+		for (int s = 0; s < nSheets; s++) {
+			assertEquals(4000, labels[s]);
+		}
+	}
+
 	private static class MockHSSFListener implements HSSFListener {
 		private final List<Record> records = new ArrayList<Record>();
 
@@ -131,6 +131,35 @@ public final class TestRecordFactoryInputStream extends TestCase {
 		confirmReadInitialRecords(rfis);
 	}
 
+	/**
+	 * The password passed to the constructor takes precedence over the one set for the current thread
+	 */
+	public void testExplicitPassword() {
+		final String SAMPLE_WINDOW1_ENCR2 = "3D 00 12 00"
+			+ "45, B9, 90, FE, B6, C6, EC, 73, EE, 3F, 52, 45, 97, DB, E3, C1, D6, FE";
+
+		byte[] data = HexRead.readFromString(""
+				+ COMMON_HEX_DATA
+				+ "C728659A C38E35E0 568A338F C3FC9D70" // correct saltHash for supplied password (and docId/saltHash)
+				+ SAMPLE_WINDOW1_ENCR2
+		);
+
+		Biff8EncryptionKey.setCurrentUserPassword("wrong");
+		try {
+			RecordFactoryInputStream rfis = new RecordFactoryInputStream(new ByteArrayInputStream(data), true, "passw0rd");
+			confirmReadInitialRecords(rfis);
+		} finally {
+			Biff8EncryptionKey.setCurrentUserPassword(null);
+		}
+
+		try {
+			new RecordFactoryInputStream(new ByteArrayInputStream(data), true, null);
+			throw new AssertionFailedError("Expected password mismatch error");
+		} catch (EncryptedDocumentException e) {
+			assertEquals("Default password is invalid for docId/saltData/saltHash", e.getMessage());
+		}
+	}
+
 	/**
 	 * makes sure the record stream starts with {@link BOFRecord} and then {@link WindowOneRecord}
 	 * The second record is gets decrypted so this method also checks its content.
@@ -94,4 +94,24 @@ public final class TestRecordInputStream extends TestCase {
 		String actual = in.readString();
 		assertEquals("Multilingual - \u591A\u8A00\u8A9E", actual);
 	}
+
+	/**
+	 * Strings which fit in the current record are decoded in bulk, all byte values must
+	 * be kept, including unpaired surrogates
+	 */
+	public void testReadStringsInOneRecord() {
+		byte[] data = HexRead.readFromString(""
+				+ "AA AA "  // fake SID
+				+ "10 00 "  // rec len 16
+				+ "41 E9 FF "  // 3 compressed chars
+				+ "41 00 E9 00 00 D8 1A 59 "  // 4 uncompressed chars
+				+ "42 43 44 45 46 "  // 5 compressed chars
+				);
+		RecordInputStream in = TestcaseRecordInputStream.create(data);
+		assertEquals("A\u00E9\u00FF", in.readCompressedUnicode(3));
+		assertEquals("A\u00E9\uD800\u591A", in.readUnicodeLEString(4));
+		assertEquals("", in.readCompressedUnicode(0));
+		assertEquals("BCDEF", in.readCompressedUnicode(5));
+		assertEquals(0, in.remaining());
+	}
 }
@@ -34,6 +34,7 @@ import org.apache.poi.hssf.record.common.UnicodeString;
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.util.HexRead;
+import org.apache.poi.util.IntMapper;
 import org.apache.poi.util.LittleEndian;
 
 /**
@@ -124,6 +125,35 @@ public final class TestSSTRecord extends TestCase {
         }
     }
 
+    /**
+     * Strings are decoded on demand - make sure random access across {@link ContinueRecord}
+     * boundaries gives the same results as decoding the whole table in sequence.
+     */
+    public void testLazyStringDecoding() {
+        byte[] origData = concatHexDumps("BigSSTRecord2", "BigSSTRecord2CR1", "BigSSTRecord2CR2", "BigSSTRecord2CR3",
+                "BigSSTRecord2CR4", "BigSSTRecord2CR5", "BigSSTRecord2CR6", "BigSSTRecord2CR7");
+        SSTRecord record = createSSTFromRawData(origData);
+
+        RecordInputStream in = new RecordInputStream(new ByteArrayInputStream(origData));
+        in.nextRecord();
+        in.readInt();
+        in.readInt();
+        IntMapper<UnicodeString> strings = new IntMapper<UnicodeString>();
+        new SSTDeserializer(strings).manufactureStrings(5249, in);
+
+        for (int i = strings.size() - 1; i >= 0; i -= 7) {
+            assertEquals("String at idx=" + i, strings.get(i), record.getString(i));
+        }
+        for (int i = 0; i < strings.size(); i++) {
+            assertEquals("String at idx=" + i, strings.get(i), record.getString(i));
+        }
+
+        // adding a string decodes the whole table
+        assertEquals(17, record.addString(strings.get(17)));
+        assertEquals(5249, record.addString(new UnicodeString("not in the table")));
+        assertEquals(5250, record.countStrings());
+    }
+
     private boolean areSameSSTs(SSTRecord a, SSTRecord b) {
 
         if (a.getNumStrings() != b.getNumStrings()) {
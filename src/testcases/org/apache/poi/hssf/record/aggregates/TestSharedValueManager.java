@@ -171,6 +171,36 @@ public final class TestSharedValueManager extends TestCase {
 		assertEquals("$AF24*A$7", formulaText);
 	}
 
+	/**
+	 * Shared formula cells are only linked to their group when first used.  Changing one cell
+	 * of a group must still convert the cells which have not been touched yet.
+	 */
+	public void testUnlinkBeforeOtherCellsAreUsed() {
+		HSSFWorkbook wb = HSSFTestDataSamples.openSampleWorkbook("ex47747-sharedFormula.xls");
+		HSSFSheet sheet = wb.getSheetAt(0);
+		int nSharedFormulas = countSharedFormulas(sheet);
+
+		sheet.getRow(23).getCell(0).setCellFormula("1+1");
+
+		wb = HSSFTestDataSamples.writeOutAndReadBack(wb);
+		sheet = wb.getSheetAt(0);
+		assertEquals(nSharedFormulas - 1, countSharedFormulas(sheet));
+		assertEquals("1+1", sheet.getRow(23).getCell(0).getCellFormula());
+		assertEquals("$AF25*A$7", sheet.getRow(24).getCell(0).getCellFormula());
+		assertEquals("$AF27*A$7", sheet.getRow(26).getCell(0).getCellFormula());
+	}
+
+	private static int countSharedFormulas(HSSFSheet sheet) {
+		Record[] records = RecordInspector.getRecords(sheet, 0);
+		int count = 0;
+		for (int i = 0; i < records.length; i++) {
+			if (records[i] instanceof SharedFormulaRecord) {
+				count++;
+			}
+		}
+		return count;
+	}
+
 	/**
 	 * Convenience test method for digging the {@link SharedValueManager} out of a
 	 * {@link RowRecordsAggregate}.
@@ -33,8 +33,13 @@ import org.apache.poi.hssf.model.RowBlocksReader;
 import org.apache.poi.hssf.record.BlankRecord;
 import org.apache.poi.hssf.record.CellValueRecordInterface;
 import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
 import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RKRecord;
 import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactory;
 import org.apache.poi.hssf.record.SharedFormulaRecord;
 import org.apache.poi.hssf.record.WindowTwoRecord;
 import org.apache.poi.hssf.record.aggregates.RecordAggregate.RecordVisitor;
@@ -95,6 +100,153 @@ public final class TestValueRecordsAggregate extends TestCase {
 		return records;
 	}
 
+	/**
+	 * Plain value cells read from a file are kept in packed form until they are accessed
+	 */
+	public void testPackedCells() {
+		List<Record> records = new ArrayList<Record>();
+		NumberRecord nr = new NumberRecord();
+		nr.setRow(0);
+		nr.setColumn((short) 3);
+		nr.setXFIndex((short) 21);
+		nr.setValue(12.5);
+		records.add(nr);
+		LabelSSTRecord lr = new LabelSSTRecord();
+		lr.setRow(0);
+		lr.setColumn((short) 1);
+		lr.setXFIndex((short) 22);
+		lr.setSSTIndex(7);
+		records.add(lr);
+		records.add(new MulBlankRecord(1, 2, new short[] { 15, 16, }));
+		records.add(new WindowTwoRecord());
+
+		RowBlocksReader rbr = new RowBlocksReader(new RecordStream(records, 0));
+		RecordStream rs = rbr.getPlainRecordStream();
+		while(rs.hasNext()) {
+			Record rec = rs.getNext();
+			if (rec instanceof MulBlankRecord) {
+				valueRecord.addMultipleBlanks((MulBlankRecord) rec);
+			} else {
+				valueRecord.construct((CellValueRecordInterface)rec, rs, rbr.getSharedFormulaManager());
+			}
+		}
+		assertEquals(4, valueRecord.getPhysicalNumberOfCells());
+		assertEquals(1, valueRecord.getFirstCellNum());
+		assertEquals(3, valueRecord.getLastCellNum());
+		assertTrue(valueRecord.rowHasCells(1));
+
+		// the packed cells can be written without being unpacked
+		final List<Record> written = new ArrayList<Record>();
+		valueRecord.visitCellsForRow(0, new RecordVisitor() {
+			public void visitRecord(Record r) {
+				written.add(r);
+			}
+		});
+		assertEquals(2, written.size());
+		assertEquals(7, ((LabelSSTRecord) written.get(0)).getSSTIndex());
+		assertEquals(12.5, ((RKRecord) written.get(1)).getRKNumber(), 0.0);
+		assertEquals(21, ((RKRecord) written.get(1)).getXFIndex());
+		written.clear();
+		valueRecord.visitCellsForRow(1, new RecordVisitor() {
+			public void visitRecord(Record r) {
+				written.add(r);
+			}
+		});
+		assertEquals(1, written.size());
+		assertEquals(16, ((MulBlankRecord) written.get(0)).getXFAt(1));
+
+		// once accessed, the same record object is returned
+		CellValueRecordInterface cell = valueRecord.getCell(0, 3);
+		assertTrue(cell instanceof NumberRecord);
+		assertSame(cell, valueRecord.getCell(0, 3));
+		assertNull(valueRecord.getCell(0, 2));
+		assertEquals(2, valueRecord.getRowCells(0).size());
+		assertEquals(4, valueRecord.getPhysicalNumberOfCells());
+
+		// replacing a packed cell
+		BlankRecord br = new BlankRecord();
+		br.setRow(1);
+		br.setColumn((short) 3);
+		valueRecord.insertCell(br);
+		assertEquals(4, valueRecord.getPhysicalNumberOfCells());
+		assertSame(br, valueRecord.getRowCells(1).get(1));
+	}
+
+	/**
+	 * The record returned by peekCell for a packed cell is reused, reading a cell
+	 * through it does not unpack the cell
+	 */
+	public void testPeekCell() {
+		valueRecord.insertNumberCell(0, 1, (short) 15, 1.5);
+		valueRecord.insertNumberCell(0, 2, (short) 16, 2.5);
+		valueRecord.insertLabelSSTCell(0, 3, (short) 17, 4);
+
+		NumberRecord first = (NumberRecord) valueRecord.peekCell(0, 1);
+		assertEquals(1.5, first.getValue(), 0.0);
+		assertEquals(1, first.getColumn());
+		NumberRecord second = (NumberRecord) valueRecord.peekCell(0, 2);
+		// the same temporary record, now with the value of the other cell
+		assertSame(first, second);
+		assertEquals(2.5, first.getValue(), 0.0);
+		assertEquals(2, first.getColumn());
+		assertEquals(16, first.getXFIndex());
+		assertEquals(4, ((LabelSSTRecord) valueRecord.peekCell(0, 3)).getSSTIndex());
+
+		// changing the temporary record does not change the cell
+		second = (NumberRecord) valueRecord.peekCell(0, 2);
+		second.setValue(99);
+		assertEquals(2.5, ((NumberRecord) valueRecord.peekCell(0, 2)).getValue(), 0.0);
+
+		// once the cell has its record object, that is returned
+		CellValueRecordInterface cell = valueRecord.getCell(0, 2);
+		assertNotSame(second, cell);
+		assertSame(cell, valueRecord.peekCell(0, 2));
+		assertSame(cell, valueRecord.peekCell(0, 2));
+		assertEquals(2.5, ((NumberRecord) cell).getValue(), 0.0);
+		assertEquals(1.5, ((NumberRecord) valueRecord.peekCell(0, 1)).getValue(), 0.0);
+		assertNull(valueRecord.peekCell(0, 4));
+		assertNull(valueRecord.peekCell(5, 1));
+	}
+
+	/**
+	 * Shifting rows moves the packed cells without unpacking them and keeps the record objects
+	 */
+	public void testShiftRows() {
+		valueRecord.insertNumberCell(0, 1, (short) 15, 1.5);
+		valueRecord.insertNumberCell(0, 2, (short) 16, 2.5);
+		BlankRecord moved = newBlankRecord(4, 1);
+		valueRecord.insertCell(moved);
+		valueRecord.insertCell(newBlankRecord(0, 3));
+		valueRecord.insertNumberCell(3, 1, (short) 15, 7.0);
+
+		valueRecord.shiftRows(0, 1, 2);
+		assertNull(valueRecord.peekCell(0, 1));
+		assertNull(valueRecord.peekCell(1, 4));
+		// the cells of row 3 were replaced
+		assertNull(valueRecord.peekCell(3, 0));
+		assertNull(valueRecord.peekCell(3, 1));
+		// still packed, so both reads give the same temporary record
+		NumberRecord nr = (NumberRecord) valueRecord.peekCell(2, 1);
+		assertEquals(2, nr.getRow());
+		assertEquals(1.5, nr.getValue(), 0.0);
+		assertSame(nr, valueRecord.peekCell(2, 2));
+		assertEquals(2.5, nr.getValue(), 0.0);
+		assertSame(moved, valueRecord.peekCell(3, 4));
+		assertEquals(3, moved.getRow());
+		assertEquals(3, valueRecord.getPhysicalNumberOfCells());
+
+		valueRecord.shiftRows(2, 3, -2);
+		assertEquals(1.5, ((NumberRecord) valueRecord.peekCell(0, 1)).getValue(), 0.0);
+		assertSame(moved, valueRecord.peekCell(1, 4));
+		assertEquals(1, moved.getRow());
+		try {
+			valueRecord.shiftRows(0, 1, -1);
+			fail("expected exception");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
     @SuppressWarnings("deprecation") // uses deprecated {@link ValueRecordsAggregate#getValueRecords()}
 	public void testInsertCell() {
 		CellValueRecordInterface[] cvrs = valueRecord.getValueRecords();
@@ -188,6 +340,52 @@ public final class TestValueRecordsAggregate extends TestCase {
 		assertTrue(Arrays.equals(expectedArray, actualArray));
 	}
 
+	/**
+	 * Numbers which can be stored as RK numbers are written as RK records,
+	 * and runs of them as MULRK records
+	 */
+	public void testWriteRKNumbers() {
+		double[] values = { 1, 2.5, -3.33, Math.PI, 4, };
+		for (int i = 0; i < values.length; i++) {
+			NumberRecord nr = new NumberRecord();
+			nr.setRow(0);
+			nr.setColumn((short) i);
+			nr.setXFIndex((short) (15 + i));
+			nr.setValue(values[i]);
+			valueRecord.insertCell(nr);
+		}
+
+		final List<Record> written = new ArrayList<Record>();
+		valueRecord.visitCellsForRow(0, new RecordVisitor() {
+			public void visitRecord(Record r) {
+				written.add(r);
+			}
+		});
+		assertEquals(3, written.size());
+		MulRKRecord mrk = (MulRKRecord) written.get(0);
+		assertEquals(0, mrk.getFirstColumn());
+		assertEquals(2, mrk.getLastColumn());
+		assertEquals(-3.33, mrk.getRKNumberAt(2), 0.0);
+		assertEquals(17, mrk.getXFAt(2));
+		assertTrue(written.get(1) instanceof NumberRecord);
+		assertEquals(4.0, ((RKRecord) written.get(2)).getRKNumber(), 0.0);
+
+		int size = 0;
+		for (Record r : written) {
+			size += r.getRecordSize();
+		}
+		assertEquals(size, valueRecord.getRowCellBlockSize(0, 0));
+
+		// the MULRK record can be read back
+		byte[] data = new byte[mrk.getRecordSize()];
+		mrk.serialize(0, data);
+		NumberRecord[] nrs = RecordFactory.convertRKRecords((MulRKRecord) RecordFactory.createRecords(
+				new java.io.ByteArrayInputStream(data)).get(0));
+		assertEquals(3, nrs.length);
+		assertEquals(2.5, nrs[1].getValue(), 0.0);
+		assertEquals(16, nrs[1].getXFIndex());
+	}
+
 	private static BlankRecord newBlankRecord() {
 		return newBlankRecord( 2, 2 );
 	}
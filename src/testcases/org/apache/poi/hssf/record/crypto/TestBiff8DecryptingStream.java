@@ -224,6 +224,23 @@ public final class TestBiff8DecryptingStream extends TestCase {
 		st.assertNoErrors();
 	}
 
+	/**
+	 * A stream may start anywhere within the RC4 key stream, even after the first key block
+	 */
+	public void testLargeInitialOffset() {
+		StreamTester st = createStreamTester(0x50, "BA AD F0 0D 00", 0x96C66829);
+		st.rollForward(0x0004, 0x2FFC);
+		byte[] expected = new byte[8];
+		st.getBDS().readFully(expected);
+
+		byte[] keyDigest = HexRead.readFromString("BA AD F0 0D 00");
+		Biff8DecryptingStream bds = new Biff8DecryptingStream(new MockStream(0x50 + 0x2FFC), 0x2FFC,
+				new Biff8EncryptionKey(keyDigest));
+		byte[] actual = new byte[8];
+		bds.readFully(actual);
+		assertTrue(Arrays.equals(expected, actual));
+	}
+
 	private static StreamTester createStreamTester(int mockStreamStartVal, String keyDigestHex, int expectedFirstInt) {
 		return new StreamTester(new MockStream(mockStreamStartVal), keyDigestHex, expectedFirstInt);
 	}
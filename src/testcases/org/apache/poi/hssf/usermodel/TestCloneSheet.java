@@ -17,8 +17,13 @@
 
 package org.apache.poi.hssf.usermodel;
 
+import java.util.Iterator;
+
 import junit.framework.TestCase;
 
+import org.apache.poi.hssf.HSSFTestDataSamples;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.util.CellRangeAddress;
 
 /**
@@ -55,4 +60,52 @@ public final class TestCloneSheet extends TestCase {
 
 		assertTrue("Row 3 still should be broken", clone.isRowBroken(3));
 	}
+
+	/**
+	 * The cells of the clone must be independent copies, including the shared formulas
+	 */
+	public void testCloneCellValues() {
+		HSSFWorkbook b = HSSFTestDataSamples.openSampleWorkbook("shared_formulas.xls");
+		HSSFSheet s = b.getSheetAt(0);
+		s.createRow(200).createCell(0).setCellValue(1.5);
+		s.getRow(200).createCell(1).setCellValue("text");
+		s.getRow(200).createCell(2);
+
+		HSSFSheet clone = b.cloneSheet(0);
+		confirmSameCells(s, clone);
+
+		clone.getRow(200).getCell(0).setCellValue(2.5);
+		clone.getRow(200).createCell(3).setCellValue(true);
+		assertEquals(1.5, s.getRow(200).getCell(0).getNumericCellValue(), 0.0);
+		assertNull(s.getRow(200).getCell(3));
+		s.getRow(200).getCell(1).setCellValue("changed");
+		assertEquals("text", clone.getRow(200).getCell(1).getStringCellValue());
+
+		b = HSSFTestDataSamples.writeOutAndReadBack(b);
+		clone = b.getSheetAt(b.getNumberOfSheets() - 1);
+		assertEquals(2.5, clone.getRow(200).getCell(0).getNumericCellValue(), 0.0);
+		assertEquals(true, clone.getRow(200).getCell(3).getBooleanCellValue());
+		assertEquals("text", clone.getRow(200).getCell(1).getStringCellValue());
+		assertEquals(Cell.CELL_TYPE_BLANK, clone.getRow(200).getCell(2).getCellType());
+		clone.getRow(200).getCell(0).setCellValue(1.5);
+		clone.getRow(200).removeCell(clone.getRow(200).getCell(3));
+		clone.getRow(200).getCell(1).setCellValue("changed");
+		confirmSameCells(b.getSheetAt(0), clone);
+	}
+
+	private static void confirmSameCells(HSSFSheet expected, HSSFSheet actual) {
+		assertEquals(expected.getPhysicalNumberOfRows(), actual.getPhysicalNumberOfRows());
+		for (Iterator<Row> it = expected.rowIterator(); it.hasNext(); ) {
+			Row row = it.next();
+			Row actualRow = actual.getRow(row.getRowNum());
+			assertEquals(row.getPhysicalNumberOfCells(), actualRow.getPhysicalNumberOfCells());
+			for (Iterator<Cell> cit = row.cellIterator(); cit.hasNext(); ) {
+				Cell cell = cit.next();
+				Cell actualCell = actualRow.getCell(cell.getColumnIndex());
+				assertEquals(cell.getCellType(), actualCell.getCellType());
+				assertEquals(cell.getCellStyle().getIndex(), actualCell.getCellStyle().getIndex());
+				assertEquals(cell.toString(), actualCell.toString());
+			}
+		}
+	}
 }
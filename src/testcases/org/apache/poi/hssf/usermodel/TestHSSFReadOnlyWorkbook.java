@@ -0,0 +1,173 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hssf.usermodel;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.hssf.HSSFTestDataSamples;
+import org.apache.poi.ss.usermodel.Cell;
+
+/**
+ * Tests for {@link HSSFReadOnlyWorkbook}
+ */
+public final class TestHSSFReadOnlyWorkbook extends TestCase {
+
+    private static HSSFWorkbook createWorkbook() {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        HSSFSheet sheet = wb.createSheet("Rates");
+        wb.createSheet("Empty");
+
+        HSSFCellStyle dateStyle = wb.createCellStyle();
+        dateStyle.setDataFormat(wb.createDataFormat().getFormat("yyyy-mm-dd"));
+
+        HSSFRow row = sheet.createRow(2);
+        row.createCell(0).setCellValue(1.5);
+        row.createCell(1).setCellValue(new HSSFRichTextString("text"));
+        row.createCell(3).setCellValue(true);
+        row.createCell(4).setCellErrorValue((byte) HSSFErrorConstants.ERROR_DIV_0);
+        HSSFCell cell = row.createCell(5);
+        cell.setCellValue(new GregorianCalendar(2010, Calendar.MAY, 17).getTime());
+        cell.setCellStyle(dateStyle);
+        row.createCell(6).setCellFormula("A3*2");
+        row.createCell(7);
+        sheet.createRow(4).createCell(2).setCellValue(new HSSFRichTextString("text"));
+
+        new HSSFFormulaEvaluator(wb).evaluateFormulaCell(row.getCell(6));
+        return wb;
+    }
+
+    public void testValues() {
+        HSSFWorkbook wb = createWorkbook();
+        HSSFReadOnlyWorkbook view = new HSSFReadOnlyWorkbook(wb);
+
+        assertEquals(2, view.getNumberOfSheets());
+        assertEquals("Rates", view.getSheetName(0));
+        assertEquals(1, view.getSheetIndex("empty"));
+        assertNull(view.getSheet("missing"));
+        assertEquals(0, view.getSheet("Empty").getPhysicalNumberOfRows());
+        assertNull(view.getSheet("Empty").getRow(0));
+
+        HSSFReadOnlySheet sheet = view.getSheetAt(0);
+        assertEquals(2, sheet.getFirstRowNum());
+        assertEquals(4, sheet.getLastRowNum());
+        assertEquals(2, sheet.getPhysicalNumberOfRows());
+        assertNull(sheet.getRow(3));
+        assertNull(sheet.getRow(100));
+
+        HSSFReadOnlyRow row = sheet.getRow(2);
+        assertEquals(2, row.getRowNum());
+        assertEquals(0, row.getFirstCellNum());
+        assertEquals(8, row.getLastCellNum());
+        assertEquals(7, row.getPhysicalNumberOfCells());
+        assertFalse(row.hasCell(2));
+
+        assertEquals(Cell.CELL_TYPE_NUMERIC, row.getCellType(0));
+        assertEquals(1.5, row.getNumericCellValue(0), 0.0);
+        assertEquals("text", row.getStringCellValue(1));
+        assertTrue(row.getBooleanCellValue(3));
+        assertEquals(HSSFErrorConstants.ERROR_DIV_0, row.getErrorCellValue(4));
+        assertTrue(row.isCellDateFormatted(5));
+        assertFalse(row.isCellDateFormatted(0));
+        assertEquals("yyyy-mm-dd", row.getDataFormatString(5));
+        assertEquals(new GregorianCalendar(2010, Calendar.MAY, 17).getTime(), row.getDateCellValue(5));
+
+        assertEquals(Cell.CELL_TYPE_FORMULA, row.getCellType(6));
+        assertEquals(Cell.CELL_TYPE_NUMERIC, row.getCachedFormulaResultType(6));
+        assertEquals("A3*2", row.getCellFormula(6));
+        assertEquals(3.0, row.getNumericCellValue(6), 0.0);
+
+        // blank and missing cells
+        assertEquals(Cell.CELL_TYPE_BLANK, row.getCellType(7));
+        assertEquals(Cell.CELL_TYPE_BLANK, row.getCellType(2));
+        assertEquals("", row.getStringCellValue(2));
+        assertEquals(0.0, row.getNumericCellValue(7), 0.0);
+        assertEquals(-1, row.getCellStyleIndex(2));
+        try {
+            row.getNumericCellValue(1);
+            fail("expected exception");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            row.getCellFormula(0);
+            fail("expected exception");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        // the same text is only stored once
+        assertSame(row.getStringCellValue(1), sheet.getRow(4).getStringCellValue(2));
+
+        // the view does not follow changes to the workbook
+        wb.getSheetAt(0).getRow(2).getCell(0).setCellValue(7);
+        assertEquals(1.5, row.getNumericCellValue(0), 0.0);
+    }
+
+    public void testConcurrentReaders() throws Exception {
+        HSSFWorkbook wb = HSSFTestDataSamples.openSampleWorkbook("SimpleMultiCell.xls");
+        final HSSFReadOnlyWorkbook view = new HSSFReadOnlyWorkbook(wb);
+        final HSSFSheet sheet = wb.getSheetAt(0);
+
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        for (int n = 0; n < 200; n++) {
+                            HSSFReadOnlySheet roSheet = view.getSheetAt(0);
+                            for (int r = roSheet.getFirstRowNum(); r <= roSheet.getLastRowNum(); r++) {
+                                HSSFReadOnlyRow roRow = roSheet.getRow(r);
+                                if (roRow == null) {
+                                    continue;
+                                }
+                                for (int c = roRow.getFirstCellNum(); c < roRow.getLastCellNum(); c++) {
+                                    if (roRow.getCellType(c) == Cell.CELL_TYPE_NUMERIC) {
+                                        roRow.getNumericCellValue(c);
+                                    }
+                                }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+        }
+        assertEquals(0, failures.size());
+
+        // and the same values as the workbook
+        HSSFRow row = sheet.getRow(sheet.getFirstRowNum());
+        HSSFReadOnlyRow roRow = view.getSheetAt(0).getRow(sheet.getFirstRowNum());
+        assertEquals(row.getPhysicalNumberOfCells(), roRow.getPhysicalNumberOfCells());
+        for (Cell c : row) {
+            assertEquals(c.getCellType(), roRow.getCellType(c.getColumnIndex()));
+        }
+    }
+}
@@ -20,6 +20,8 @@ package org.apache.poi.hssf.usermodel;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import junit.framework.AssertionFailedError;
@@ -30,6 +32,7 @@ import org.apache.poi.hssf.HSSFTestDataSamples;
 import org.apache.poi.hssf.model.DrawingManager2;
 import org.apache.poi.hssf.model.InternalWorkbook;
 import org.apache.poi.hssf.model.InternalSheet;
+import org.apache.poi.hssf.model.RecordStream;
 import org.apache.poi.hssf.record.*;
 import org.apache.poi.ss.formula.ptg.Ptg;
 import org.apache.poi.ss.formula.ptg.Area3DPtg;
@@ -935,4 +938,101 @@ public final class TestHSSFSheet extends BaseTestSheet {
         assertTrue(subRecords.get(1) instanceof FtCblsSubRecord ); // must be present, see Bug 51481
         assertTrue(subRecords.get(2) instanceof LbsDataSubRecord );
     }
+
+    public void testBlockValues() {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        HSSFSheet sh = wb.createSheet();
+        HSSFCellStyle style = wb.createCellStyle();
+        HSSFRow row1 = sh.createRow(1);
+        HSSFCell styled = row1.createCell(2);
+        styled.setCellStyle(style);
+        sh.createRow(2).createCell(3).setCellFormula("1+1");
+
+        sh.writeNumericBlock(1, 2, 1, 3, new double[] { 1, 2, 3, 4, 5, 6 });
+        assertEquals(2.0, styled.getNumericCellValue(), 0.0);
+        assertEquals(style.getIndex(), styled.getCellStyle().getIndex());
+        assertEquals(3, row1.getPhysicalNumberOfCells());
+        assertEquals(1, row1.getFirstCellNum());
+        assertEquals(4, row1.getLastCellNum());
+        HSSFCell formulaCell = sh.getRow(2).getCell(3);
+        assertEquals(HSSFCell.CELL_TYPE_FORMULA, formulaCell.getCellType());
+        assertEquals(6.0, formulaCell.getNumericCellValue(), 0.0);
+
+        sh.writeStringBlock(4, 4, 0, 2, new String[] { "a", null, "c" });
+        sh.writeBooleanBlock(5, 5, 0, 1, new boolean[] { true, false });
+        sh.writeNumericBlock(6, 6, 0, 0, new double[] { Double.NaN });
+
+        wb = HSSFTestDataSamples.writeOutAndReadBack(wb);
+        sh = wb.getSheetAt(0);
+        double[] numbers = new double[9];
+        sh.readNumericBlock(0, 2, 1, 3, numbers);
+        assertTrue(Arrays.equals(new double[] { 0, 0, 0, 1, 2, 3, 4, 5, 6 }, numbers));
+        String[] strings = new String[4];
+        sh.readStringBlock(4, 4, 0, 3, strings);
+        assertTrue(Arrays.equals(new String[] { "a", "", "c", "" }, strings));
+        assertEquals(HSSFCell.CELL_TYPE_BLANK, sh.getRow(4).getCell(1).getCellType());
+        boolean[] booleans = new boolean[2];
+        sh.readBooleanBlock(5, 5, 0, 1, booleans);
+        assertTrue(booleans[0]);
+        assertFalse(booleans[1]);
+        assertEquals(HSSFCell.CELL_TYPE_ERROR, sh.getRow(6).getCell(0).getCellType());
+        assertEquals("1+1", sh.getRow(2).getCell(3).getCellFormula());
+        assertEquals(style.getIndex(), sh.getRow(1).getCell(2).getCellStyle().getIndex());
+
+        try {
+            sh.readNumericBlock(4, 4, 0, 0, numbers);
+            fail("expected exception");
+        } catch (IllegalStateException e) {
+            assertEquals("Cannot get a numeric value from the text cell A5", e.getMessage());
+        }
+        try {
+            sh.readNumericBlock(0, 2, 0, 3, numbers);
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+            // the array is too small
+        }
+    }
+
+    /**
+     * If some rows have a row record then all rows with cells must have one.  The cells are
+     *  only read on first access, and so is this checked.
+     */
+    public void testMissingRowRecord() {
+        List<Record> records = new ArrayList<Record>();
+        records.add(BOFRecord.createSheetBOF());
+        records.add(new DimensionsRecord());
+        records.add(new RowRecord(0));
+        NumberRecord nr = new NumberRecord();
+        nr.setRow(0);
+        nr.setValue(1.0);
+        records.add(nr);
+        nr = new NumberRecord();
+        nr.setRow(1);
+        nr.setValue(2.0);
+        records.add(nr);
+        records.add(new WindowTwoRecord());
+        records.add(EOFRecord.instance);
+
+        HSSFWorkbook wb = new HSSFWorkbook();
+        HSSFSheet sh = new HSSFSheet(wb, InternalSheet.createSheet(new RecordStream(records, 0)));
+        assertNotNull(sh.getRow(0));
+        assertNull(sh.getRow(1));
+        try {
+            sh.getRow(0).getCell(0);
+            fail("expected exception");
+        } catch (RuntimeException e) {
+            assertEquals("Unexpected missing row when some rows already present", e.getMessage());
+        }
+        try {
+            sh.readNumericBlock(0, 1, 0, 0, new double[2]);
+            fail("expected exception");
+        } catch (RuntimeException e) {
+            assertEquals("Unexpected missing row when some rows already present", e.getMessage());
+        }
+
+        // without any row records the rows are created on the fly
+        records.remove(2);
+        sh = new HSSFSheet(wb, InternalSheet.createSheet(new RecordStream(records, 0)));
+        assertEquals(2.0, sh.getRow(1).getCell(0).getNumericCellValue(), 0.0);
+    }
 }
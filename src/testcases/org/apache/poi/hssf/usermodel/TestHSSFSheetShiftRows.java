@@ -17,8 +17,19 @@
 
 package org.apache.poi.hssf.usermodel;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.poi.hssf.HSSFITestDataProvider;
+import org.apache.poi.hssf.HSSFTestDataSamples;
+import org.apache.poi.hssf.record.DVRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.aggregates.RecordAggregate.RecordVisitor;
 import org.apache.poi.ss.usermodel.BaseTestSheetShiftRows;
+import org.apache.poi.ss.usermodel.DataValidationConstraint;
+import org.apache.poi.ss.usermodel.DataValidationHelper;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellRangeAddressList;
 
 /**
  * @author Yegor Kozlov
@@ -28,4 +39,63 @@ public final class TestHSSFSheetShiftRows extends BaseTestSheetShiftRows {
     public TestHSSFSheetShiftRows() {
         super(HSSFITestDataProvider.instance);
     }
+
+    public void testShiftDataValidations() {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        HSSFSheet sheet = wb.createSheet();
+        for (int i = 0; i < 10; i++) {
+            sheet.createRow(i).createCell(0).setCellValue(i);
+        }
+        DataValidationHelper helper = sheet.getDataValidationHelper();
+        DataValidationConstraint constraint = helper.createExplicitListConstraint(new String[] {"a", "b"});
+        sheet.addValidationData(helper.createValidation(constraint, new CellRangeAddressList(2, 3, 0, 0)));
+        sheet.addValidationData(helper.createValidation(constraint, new CellRangeAddressList(8, 8, 0, 0)));
+
+        sheet.shiftRows(2, 3, 4);
+
+        final List<DVRecord> dvRecords = new ArrayList<DVRecord>();
+        sheet.getSheet().getOrCreateDataValidityTable().visitContainedRecords(new RecordVisitor() {
+            public void visitRecord(Record r) {
+                if (r instanceof DVRecord) {
+                    dvRecords.add((DVRecord) r);
+                }
+            }
+        });
+        assertEquals(2, dvRecords.size());
+        CellRangeAddress[] regions = dvRecords.get(0).getCellRangeAddress().getCellRangeAddresses();
+        assertEquals(1, regions.length);
+        assertEquals("A7:A8", regions[0].formatAsString());
+        regions = dvRecords.get(1).getCellRangeAddress().getCellRangeAddresses();
+        assertEquals("A9", regions[0].formatAsString());
+    }
+
+    /**
+     * The row objects obtained before the shift see the cells now stored for their row
+     */
+    public void testShiftRowsKeepsRowObjects() {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        HSSFSheet sheet = wb.createSheet();
+        HSSFRow row0 = sheet.createRow(0);
+        row0.createCell(1).setCellValue(1.5);
+        row0.createCell(3).setCellFormula("B1*2");
+        HSSFRow row2 = sheet.createRow(2);
+        row2.createCell(0).setCellValue("replaced");
+
+        sheet.shiftRows(0, 0, 2);
+
+        assertSame(row2, sheet.getRow(2));
+        assertNull(row2.getCell(0));
+        assertEquals(1.5, row2.getCell(1).getNumericCellValue(), 0.0);
+        assertEquals("B3*2", row2.getCell(3).getCellFormula());
+        assertEquals(1, row2.getFirstCellNum());
+        assertEquals(4, row2.getLastCellNum());
+        assertEquals(2, row2.getPhysicalNumberOfCells());
+        assertSame(row0, sheet.getRow(0));
+        assertEquals(0, row0.getPhysicalNumberOfCells());
+        assertEquals(-1, row0.getFirstCellNum());
+
+        sheet = HSSFTestDataSamples.writeOutAndReadBack(wb).getSheetAt(0);
+        assertEquals(0, sheet.getRow(0).getPhysicalNumberOfCells());
+        assertEquals("B3*2", sheet.getRow(2).getCell(3).getCellFormula());
+    }
 }
@@ -122,6 +122,21 @@ public final class TestHSSFWorkbook extends BaseTestWorkbook {
         assertEquals(2, b.getNumberOfSheets());
     }
     
+    /**
+     * Sheets without drawings should not need the workbook drawing group
+     */
+    public void testNoDrawingGroupDecodingForSheetsWithoutDrawings() {
+        HSSFWorkbook b = HSSFTestDataSamples.openSampleWorkbook("44010-TwoCharts.xls");
+
+        assertNull(b.getSheetAt(1).getDrawingPatriarch());
+        b.cloneSheet(1);
+        assertNull(b.getWorkbook().getDrawingManager());
+
+        // but the drawings of the first sheet are still found
+        assertNotNull(b.getSheetAt(0).getDrawingPatriarch());
+        assertNotNull(b.getWorkbook().getDrawingManager());
+    }
+
     public void testReadWriteWithCharts() {
         HSSFWorkbook b;
         HSSFSheet s;
@@ -718,4 +733,52 @@ public final class TestHSSFWorkbook extends BaseTestWorkbook {
         changeSheetNameWithSharedFormulas("shared_formulas.xls");
     }
 
+
+    public void testInternCellStyle() {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        int nStyles = wb.getNumCellStyles();
+        HSSFCellStyle first = wb.createCellStyle();
+        first.setDataFormat((short) 14);
+        assertSame(first, wb.internCellStyle(first));
+
+        // more than the limit of 4000 styles
+        for (int i = 0; i < 5000; i++) {
+            HSSFCellStyle style = wb.createCellStyle();
+            style.setDataFormat((short) (i % 2 == 0 ? 14 : 15));
+            style = wb.internCellStyle(style);
+            assertEquals(i % 2 == 0 ? 14 : 15, style.getDataFormat());
+        }
+        assertEquals(nStyles + 2, wb.getNumCellStyles());
+
+        // styles may be changed after they have been interned
+        first.setDataFormat((short) 16);
+        HSSFCellStyle style = wb.createCellStyle();
+        style.setDataFormat((short) 14);
+        assertEquals(nStyles + 2, wb.internCellStyle(style).getIndex());
+    }
+
+    public void testInternFont() {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        int nFonts = wb.getNumberOfFonts();
+        HSSFFont bold = wb.createFont();
+        bold.setBoldweight(HSSFFont.BOLDWEIGHT_BOLD);
+        assertSame(bold, wb.internFont(bold));
+        for (int i = 0; i < 100; i++) {
+            HSSFFont font = wb.createFont();
+            font.setBoldweight(HSSFFont.BOLDWEIGHT_BOLD);
+            assertSame(bold, wb.internFont(font));
+        }
+        assertEquals(nFonts + 1, wb.getNumberOfFonts());
+
+        // fonts may be changed after they have been interned
+        bold.setItalic(true);
+        HSSFFont font = wb.createFont();
+        font.setBoldweight(HSSFFont.BOLDWEIGHT_BOLD);
+        font.setItalic(true);
+        assertSame(bold, wb.internFont(font));
+        font = wb.createFont();
+        font.setBoldweight(HSSFFont.BOLDWEIGHT_BOLD);
+        assertSame(font, wb.internFont(font));
+        assertEquals(nFonts + 2, wb.getNumberOfFonts());
+    }
 }
@@ -48,4 +48,21 @@ public final class TestRKUtil extends TestCase {
 			}
 		}
 	}
+
+	public void testEncode() {
+		double[] values = { 0, -0.0, 3.0, 3.3, 3.33, 1, 1.23, 12345678, 123456.78, -13149594,
+				0.5, Math.scalb(1.0, 900), -0.01, };
+		for (int i = 0; i < values.length; i++) {
+			long rk = RKUtil.encodeNumber(values[i]);
+			assertTrue("encoding " + values[i], rk != -1);
+			assertEquals(Double.doubleToLongBits(values[i]),
+					Double.doubleToLongBits(RKUtil.decodeNumber((int) rk)));
+		}
+		assertEquals(0x02F1853B, RKUtil.encodeNumber(123456.78));
+		assertEquals(-1, RKUtil.encodeNumber(Math.PI));
+		assertEquals(-1, RKUtil.encodeNumber(0.1234567));
+		assertEquals(-1, RKUtil.encodeNumber(Double.POSITIVE_INFINITY));
+		assertEquals(-1, RKUtil.encodeNumber(Double.NEGATIVE_INFINITY));
+		assertEquals(-1, RKUtil.encodeNumber(Double.NaN));
+	}
 }
@@ -712,4 +712,43 @@ public abstract class BaseTestSheet extends TestCase {
         assertNull(sheet.getPaneInformation());
     }
 
+    /**
+     * The block value methods through the common interface, and the checks of their arguments
+     */
+    public void testBlockArguments() {
+        Workbook wb = _testDataProvider.createWorkbook();
+        CellBlockAccess sheet = (CellBlockAccess) wb.createSheet();
+        sheet.writeNumericBlock(0, 1, 0, 1, new double[] { 1, 2, 3, 4 });
+        sheet.writeStringBlock(2, 2, 2, 3, new String[] { "a", "b" });
+        double[] numbers = new double[6];
+        sheet.readNumericBlock(0, 2, 0, 1, numbers);
+        assertEquals(4.0, numbers[3], 0.0);
+        assertEquals(0.0, numbers[4], 0.0);
+        String[] strings = new String[3];
+        sheet.readStringBlock(2, 2, 1, 3, strings);
+        assertEquals("", strings[0]);
+        assertEquals("b", strings[2]);
+
+        SpreadsheetVersion version = _testDataProvider.getSpreadsheetVersion();
+        int lastRow = version.getLastRowIndex();
+        int lastCol = version.getLastColumnIndex();
+        sheet.readBooleanBlock(lastRow, lastRow, lastCol, lastCol, new boolean[1]);
+        int[][] invalid = {
+                { -1, 0, 0, 0 }, { 1, 0, 0, 0 }, { 0, lastRow + 1, 0, 0 },
+                { 0, 0, -1, 0 }, { 0, 0, 1, 0 }, { 0, 0, 0, lastCol + 1 } };
+        for (int[] block : invalid) {
+            try {
+                sheet.readNumericBlock(block[0], block[1], block[2], block[3], new double[10]);
+                fail("expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        try {
+            sheet.writeBooleanBlock(0, 1, 0, 1, new boolean[3]);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("The array has room for 3 values, but the block has 4 cells", e.getMessage());
+        }
+    }
 }
@@ -311,6 +311,42 @@ public abstract class BaseTestSheetShiftRows extends TestCase {
         // Note - named ranges formulas have not been updated
     }
 
+    /**
+     * Shifting rows up must replace the rows they are moved onto
+     */
+    public final void testShiftRowsUpOverExistingRows() {
+        Workbook wb = _testDataProvider.createWorkbook();
+        Sheet sheet = wb.createSheet();
+        for (int i = 0; i < 6; i++) {
+            Row row = sheet.createRow(i);
+            row.createCell(0).setCellValue(i);
+            row.createCell(1).setCellValue("row" + i);
+        }
+        sheet.addMergedRegion(new CellRangeAddress(4, 4, 0, 1));
+
+        sheet.shiftRows(3, 5, -2);
+
+        assertEquals(0.0, sheet.getRow(0).getCell(0).getNumericCellValue(), 0.0);
+        for (int i = 1; i < 4; i++) {
+            Row row = sheet.getRow(i);
+            assertEquals(i, row.getRowNum());
+            assertEquals(i + 2.0, row.getCell(0).getNumericCellValue(), 0.0);
+            assertEquals("row" + (i + 2), row.getCell(1).getStringCellValue());
+        }
+        // the rows moved away from are left empty
+        for (int i = 4; i < 6; i++) {
+            Row row = sheet.getRow(i);
+            assertTrue(row == null || row.getPhysicalNumberOfCells() == 0);
+        }
+        assertEquals(1, sheet.getNumMergedRegions());
+        assertEquals("A3:B3", sheet.getMergedRegion(0).formatAsString());
+
+        wb = _testDataProvider.writeOutAndReadBack(wb);
+        sheet = wb.getSheetAt(0);
+        assertEquals("row3", sheet.getRow(1).getCell(1).getStringCellValue());
+        assertEquals("row5", sheet.getRow(3).getCell(1).getStringCellValue());
+    }
+
     private static void confirmRow(Sheet sheet, int rowIx, double valA, double valB, double valC,
                 String formulaA, String formulaB, String formulaC) {
         confirmCell(sheet, rowIx, 4, valA, formulaA);